@@ -0,0 +1,64 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.services.Tutorials;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+
+/**
+ * Data sets used by the benchmarks: the Mexican Hat regression and spiral classification data of the unit tests, and
+ * Mexican Hat samples of any size for the scaling benchmarks.
+ */
+public class BenchmarkData {
+
+   public static List<BasicObservation> mexicanHat() {
+      return Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+   }
+
+   // rowCount samples of the mexican hat function (1 - x^2/4 - y^2/4) * exp(-(x^2 + y^2)/8) on [-4, 4]^2
+   public static List<BasicObservation> mexicanHat(int rowCount, long seed) {
+      Random random = new Random(seed);
+      List<BasicObservation> result = new ArrayList<>();
+      for(int i=0; i < rowCount; ++i) {
+         double x = random.nextDouble() * 8 - 4;
+         double y = random.nextDouble() * 8 - 4;
+         BasicObservation observation = new BasicObservation(2, 1);
+         observation.setInput(0, x);
+         observation.setInput(1, y);
+         observation.setOutput(0, (1 - x * x / 4 - y * y / 4) * Math.exp(- x * x / 8 - y * y / 8));
+         result.add(observation);
+      }
+      return result;
+   }
+
+   public static List<BasicObservation> spiral() {
+      List<BasicObservation> result = new ArrayList<>();
+      InputStream inputStream = BenchmarkData.class.getClassLoader().getResourceAsStream("spiral-dataset.txt");
+      try(BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+         String line = reader.readLine();
+         while((line = reader.readLine()) != null) {
+            String[] parts = line.split("\t");
+            int label = Integer.parseInt(parts[2]);
+
+            BasicObservation observation = new BasicObservation(2, 2);
+            observation.setInput(0, Double.parseDouble(parts[0]));
+            observation.setInput(1, Double.parseDouble(parts[1]));
+            observation.setOutput(0, label == -1 ? 1 : 0);
+            observation.setOutput(1, label != -1 ? 1 : 0);
+            result.add(observation);
+         }
+      } catch (IOException e) {
+         throw new RuntimeException("Failed to read spiral-dataset.txt", e);
+      }
+      return result;
+   }
+}
@@ -0,0 +1,144 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.enums.LGPCrossoverStrategy;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.lgp.program.operators.Cosine;
+import com.github.chen0040.gp.lgp.program.operators.Divide;
+import com.github.chen0040.gp.lgp.program.operators.Minus;
+import com.github.chen0040.gp.lgp.program.operators.Multiply;
+import com.github.chen0040.gp.lgp.program.operators.Plus;
+import com.github.chen0040.gp.lgp.program.operators.Power;
+import com.github.chen0040.gp.lgp.program.operators.Sine;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.util.List;
+
+
+/**
+ * The LGP and TreeGP configurations of the unit tests, shared by the benchmarks.
+ */
+public class BenchmarkModels {
+
+   public static JavaSparkContext createSparkContext(int threadCount) {
+      SparkConf conf = new SparkConf()
+              .setAppName("spark-ml-gp-benchmarks")
+              .setMaster("local[" + threadCount + "]")
+              .set("spark.ui.enabled", "false");
+      return new JavaSparkContext(conf);
+   }
+
+   public static SparkLGP mexicanHatLGP() {
+      SparkLGP lgp = new SparkLGP();
+      lgp.getOperatorSet().addAll(new Plus(), new Minus(), new Divide(), new Multiply(), new Power());
+      lgp.getOperatorSet().addIfLessThanOperator();
+      lgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      lgp.setRegisterCount(6);
+      lgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      lgp.setDisplayEvery(0);
+      return lgp;
+   }
+
+   public static SparkLGP spiralLGP() {
+      SparkLGP lgp = new SparkLGP();
+      lgp.getOperatorSet().addAll(new Plus(), new Minus(), new Divide(), new Multiply(), new Sine(), new Cosine());
+      lgp.getOperatorSet().addIfLessThanOperator();
+      lgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      lgp.setRegisterCount(6);
+      lgp.setPredictionCostEvaluator(observation -> {
+         int actual = observation.getOutput(0) > 0.5 ? -1 : 1;
+         int predicted = observation.getPredictedOutput(0) > 0.5 ? -1 : 1;
+         return actual != predicted ? 1.0 : 0;
+      });
+      lgp.setCrossoverStrategy(LGPCrossoverStrategy.OneSegment);
+      lgp.setMaxProgramLength(200);
+      lgp.setMinProgramLength(1);
+      lgp.setDisplayEvery(0);
+      return lgp;
+   }
+
+   public static SparkTreeGP mexicanHatTreeGP() {
+      SparkTreeGP tgp = new SparkTreeGP();
+      tgp.getOperatorSet().addAll(new com.github.chen0040.gp.treegp.program.operators.Plus(),
+              new com.github.chen0040.gp.treegp.program.operators.Minus(),
+              new com.github.chen0040.gp.treegp.program.operators.Divide(),
+              new com.github.chen0040.gp.treegp.program.operators.Multiply(),
+              new com.github.chen0040.gp.treegp.program.operators.Power());
+      tgp.getOperatorSet().addIfLessThanOperator();
+      tgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      tgp.setVariableCount(2);
+      tgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      tgp.setDisplayEvery(0);
+      return tgp;
+   }
+
+   // only operators which have compiled opcodes, so that every program compiles to its compact form
+   public static SparkLGP compilableLGP() {
+      SparkLGP lgp = new SparkLGP();
+      lgp.getOperatorSet().addAll(new Plus(), new Minus(), new Multiply(), new Sine(), new Cosine());
+      lgp.getOperatorSet().addIfLessThanOperator();
+      lgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      lgp.setRegisterCount(6);
+      lgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      lgp.setDisplayEvery(0);
+      return lgp;
+   }
+
+   public static SparkTreeGP compilableTreeGP() {
+      SparkTreeGP tgp = new SparkTreeGP();
+      tgp.getOperatorSet().addAll(new com.github.chen0040.gp.treegp.program.operators.Plus(),
+              new com.github.chen0040.gp.treegp.program.operators.Minus(),
+              new com.github.chen0040.gp.treegp.program.operators.Multiply());
+      tgp.getOperatorSet().addIfLessThanOperator();
+      tgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      tgp.setVariableCount(2);
+      tgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      tgp.setDisplayEvery(0);
+      return tgp;
+   }
+
+   public static SparkTreeGP spiralTreeGP() {
+      SparkTreeGP tgp = mexicanHatTreeGP();
+      tgp.setPredictionCostEvaluator(observation -> {
+         int actual = observation.getOutput(0) > 0.5 ? -1 : 1;
+         int predicted = observation.getPredictedOutput(0) > 0.5 ? -1 : 1;
+         return actual != predicted ? 1.0 : 0;
+      });
+      return tgp;
+   }
+
+   // the best program of an initial population, evaluated in-process on the given data
+   public static Program initialProgram(SparkLGP lgp, List<BasicObservation> data) {
+      lgp.setLocalObservations(data);
+      com.github.chen0040.gp.lgp.gp.Population population = lgp.newPopulation();
+      population.initialize();
+      return population.getGlobalBestProgram();
+   }
+
+   public static Solution initialSolution(SparkTreeGP tgp, List<BasicObservation> data) {
+      tgp.setLocalObservations(data);
+      com.github.chen0040.gp.treegp.gp.Population population = tgp.newPopulation();
+      population.initialize();
+      return population.getGlobalBestSolution();
+   }
+
+   // every program of an initial population, e.g. the candidates of one broadcast
+   public static List<Program> initialPrograms(SparkLGP lgp, List<BasicObservation> data) {
+      lgp.setLocalObservations(data);
+      com.github.chen0040.gp.lgp.gp.Population population = lgp.newPopulation();
+      population.initialize();
+      return population.getPrograms();
+   }
+
+   public static List<Solution> initialSolutions(SparkTreeGP tgp, List<BasicObservation> data) {
+      tgp.setLocalObservations(data);
+      com.github.chen0040.gp.treegp.gp.Population population = tgp.newPopulation();
+      population.initialize();
+      return population.getSolutions();
+   }
+}
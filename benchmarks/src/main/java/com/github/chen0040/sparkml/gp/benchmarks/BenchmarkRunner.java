@@ -0,0 +1,30 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks selected on the command line (all by default) and writes the results as JSON, so that releases
+ * can be compared. Accepts the usual JMH options, e.g. "EvaluateCost -p rowCount=10000 -rff lgp.json".
+ */
+public class BenchmarkRunner {
+
+   public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+   public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+      CommandLineOptions commandLine = new CommandLineOptions(args);
+      Options options = new OptionsBuilder()
+              .parent(commandLine)
+              .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+              .result(commandLine.getResult().orElse(DEFAULT_RESULT_FILE))
+              .build();
+      new Runner(options).run();
+   }
+}
@@ -0,0 +1,81 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Latency of SparkLGP.evaluateCost and SparkTreeGP.evaluateCost for a single candidate on local[threadCount], by data
+ * size, partition count and evaluation backend. The fitness cache is disabled so that every call evaluates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluateCostBenchmark {
+
+   @Param({"1000", "10000", "100000"})
+   private int rowCount;
+
+   @Param({"1", "4", "16"})
+   private int partitionCount;
+
+   @Param({"4"})
+   private int threadCount;
+
+   @Param({"Spark", "Local"})
+   private EvaluationBackendType backend;
+
+   private JavaSparkContext context;
+
+   private SparkLGP lgp;
+   private Program program;
+
+   private SparkTreeGP tgp;
+   private Solution solution;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      List<BasicObservation> data = BenchmarkData.mexicanHat(rowCount, 42L);
+      context = BenchmarkModels.createSparkContext(threadCount);
+
+      program = BenchmarkModels.initialProgram(BenchmarkModels.mexicanHatLGP(), data.subList(0, Math.min(1000, rowCount)));
+      lgp = BenchmarkModels.mexicanHatLGP();
+      lgp.setFitnessCacheSize(0);
+      lgp.setEvaluationBackend(backend);
+      lgp.setObservationRdd(context.parallelize(data), partitionCount);
+
+      solution = BenchmarkModels.initialSolution(BenchmarkModels.mexicanHatTreeGP(), data.subList(0, Math.min(1000, rowCount)));
+      tgp = BenchmarkModels.mexicanHatTreeGP();
+      tgp.setFitnessCacheSize(0);
+      tgp.setEvaluationBackend(backend);
+      tgp.setObservationRdd(context.parallelize(data), partitionCount);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      context.stop();
+   }
+
+   @Benchmark
+   public double lgpEvaluateCost() {
+      return lgp.evaluateCost(program);
+   }
+
+   @Benchmark
+   public double treeGpEvaluateCost() {
+      return tgp.evaluateCost(solution);
+   }
+}
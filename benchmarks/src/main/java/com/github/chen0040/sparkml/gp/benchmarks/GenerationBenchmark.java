@@ -0,0 +1,87 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Time of one full generation (variation plus evaluation) of the unit test configurations on the Mexican Hat and spiral
+ * data. Each iteration starts from a freshly initialized population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenerationBenchmark {
+
+   @Param({"mexicanHat", "spiral"})
+   private String dataset;
+
+   @Param({"Spark", "Local"})
+   private EvaluationBackendType backend;
+
+   @Param({"4"})
+   private int threadCount;
+
+   private JavaSparkContext context;
+
+   private SparkLGP lgp;
+   private com.github.chen0040.gp.lgp.gp.Population lgpPopulation;
+
+   private SparkTreeGP tgp;
+   private com.github.chen0040.gp.treegp.gp.Population tgpPopulation;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      context = BenchmarkModels.createSparkContext(threadCount);
+      List<BasicObservation> data = "spiral".equals(dataset) ? BenchmarkData.spiral() : BenchmarkData.mexicanHat();
+
+      lgp = "spiral".equals(dataset) ? BenchmarkModels.spiralLGP() : BenchmarkModels.mexicanHatLGP();
+      lgp.setMaxGeneration(Integer.MAX_VALUE);
+      lgp.setEvaluationBackend(backend);
+      lgp.setObservationRdd(context.parallelize(data));
+
+      tgp = "spiral".equals(dataset) ? BenchmarkModels.spiralTreeGP() : BenchmarkModels.mexicanHatTreeGP();
+      tgp.setMaxGeneration(Integer.MAX_VALUE);
+      tgp.setEvaluationBackend(backend);
+      tgp.setObservationRdd(context.parallelize(data));
+   }
+
+   @Setup(Level.Iteration)
+   public void initializePopulations() {
+      lgp.getFitnessCache().clear();
+      lgpPopulation = lgp.newPopulation();
+      lgpPopulation.initialize();
+
+      tgp.getFitnessCache().clear();
+      tgpPopulation = tgp.newPopulation();
+      tgpPopulation.initialize();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      context.stop();
+   }
+
+   @Benchmark
+   public double lgpGeneration() {
+      lgpPopulation.evolve();
+      return lgpPopulation.getGlobalBestProgram().getCost();
+   }
+
+   @Benchmark
+   public double treeGpGeneration() {
+      tgpPopulation.evolve();
+      return tgpPopulation.getGlobalBestSolution().getCost();
+   }
+}
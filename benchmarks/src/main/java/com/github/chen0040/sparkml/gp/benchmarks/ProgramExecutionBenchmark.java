@@ -0,0 +1,84 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+import com.github.chen0040.sparkml.gp.compiler.LgpCompiler;
+import com.github.chen0040.sparkml.gp.compiler.TreeGpCompiler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Per-row cost of executing one program, interpreted by the library and compiled by this project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProgramExecutionBenchmark {
+
+   private static final int ROW_COUNT = 1000;
+
+   private List<BasicObservation> rows;
+
+   private Program program;
+   private ExecutableProgram compiledProgram;
+
+   private Solution solution;
+   private ExecutableProgram compiledSolution;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      rows = BenchmarkData.mexicanHat(ROW_COUNT, 42L);
+
+      program = BenchmarkModels.initialProgram(BenchmarkModels.mexicanHatLGP(), rows);
+      compiledProgram = LgpCompiler.compile(program, rows);
+
+      solution = BenchmarkModels.initialSolution(BenchmarkModels.mexicanHatTreeGP(), rows);
+      compiledSolution = TreeGpCompiler.compile(solution, rows);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ROW_COUNT)
+   public void lgpInterpreted(Blackhole blackhole) {
+      for(BasicObservation row : rows) {
+         program.execute(row);
+         blackhole.consume(row.getPredictedOutput(0));
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ROW_COUNT)
+   public void lgpCompiled(Blackhole blackhole) {
+      for(BasicObservation row : rows) {
+         compiledProgram.execute(row);
+         blackhole.consume(row.getPredictedOutput(0));
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ROW_COUNT)
+   public void treeGpInterpreted(Blackhole blackhole) {
+      for(BasicObservation row : rows) {
+         solution.execute(row);
+         blackhole.consume(row.getPredictedOutput(0));
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ROW_COUNT)
+   public void treeGpCompiled(Blackhole blackhole) {
+      for(BasicObservation row : rows) {
+         compiledSolution.execute(row);
+         blackhole.consume(row.getPredictedOutput(0));
+      }
+   }
+}
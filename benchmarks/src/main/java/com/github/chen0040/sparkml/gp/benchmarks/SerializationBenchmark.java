@@ -0,0 +1,160 @@
+package com.github.chen0040.sparkml.gp.benchmarks;
+
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+import com.github.chen0040.sparkml.gp.compiler.LgpCompiler;
+import com.github.chen0040.sparkml.gp.compiler.TreeGpCompiler;
+import com.github.chen0040.sparkml.gp.serialization.GpKryoRegistrator;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Time per candidate to serialize and deserialize the candidates of one broadcast: the effective library programs with
+ * java serialization, and the compiled programs with java serialization (compact form) and with kryo. The operator sets
+ * have opcodes only, so every candidate compiles. Every benchmark also reports the payload bytes per candidate of its
+ * format as the secondary result bytesPerCandidate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+   private static final int ROW_COUNT = 1000;
+
+   private static final int CANDIDATE_COUNT = 100;
+
+   private ArrayList<Program> programs;
+   private ArrayList<ExecutableProgram> compiledPrograms;
+
+   private ArrayList<Solution> solutions;
+   private ArrayList<ExecutableProgram> compiledSolutions;
+
+   private Kryo kryo;
+
+   private long lgpJavaBytes;
+   private long lgpCompiledJavaBytes;
+   private long lgpCompiledKryoBytes;
+   private long treeGpJavaBytes;
+   private long treeGpCompiledJavaBytes;
+   private long treeGpCompiledKryoBytes;
+
+   // the payload size of the format under measurement; jmh reports the value of the field at the end of every iteration
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.EVENTS)
+   public static class Payload {
+      public long bytesPerCandidate;
+   }
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      List<BasicObservation> rows = BenchmarkData.mexicanHat(ROW_COUNT, 42L);
+
+      SparkLGP lgp = BenchmarkModels.compilableLGP();
+      lgp.setPopulationSize(CANDIDATE_COUNT);
+      programs = new ArrayList<>();
+      compiledPrograms = new ArrayList<>();
+      for(Program program : BenchmarkModels.initialPrograms(lgp, rows)) {
+         program.markStructuralIntrons(lgp);
+         Program effectiveProgram = program.makeEffectiveCopy();
+         programs.add(effectiveProgram);
+         compiledPrograms.add(LgpCompiler.compile(effectiveProgram));
+      }
+
+      SparkTreeGP tgp = BenchmarkModels.compilableTreeGP();
+      tgp.setPopulationSize(CANDIDATE_COUNT);
+      solutions = new ArrayList<>(BenchmarkModels.initialSolutions(tgp, rows));
+      compiledSolutions = new ArrayList<>();
+      for(Solution solution : solutions) {
+         compiledSolutions.add(TreeGpCompiler.compile(solution));
+      }
+
+      kryo = new Kryo();
+      kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+      new GpKryoRegistrator().registerClasses(kryo);
+
+      lgpJavaBytes = javaBytes(programs);
+      lgpCompiledJavaBytes = javaBytes(compiledPrograms);
+      lgpCompiledKryoBytes = kryoBytes(compiledPrograms).length / compiledPrograms.size();
+      treeGpJavaBytes = javaBytes(solutions);
+      treeGpCompiledJavaBytes = javaBytes(compiledSolutions);
+      treeGpCompiledKryoBytes = kryoBytes(compiledSolutions).length / compiledSolutions.size();
+   }
+
+   private static long javaBytes(ArrayList<?> candidates) {
+      return JavaSerialization.serializedSize(candidates) / candidates.size();
+   }
+
+   private byte[] kryoBytes(ArrayList<?> candidates) {
+      Output output = new Output(4096, -1);
+      kryo.writeClassAndObject(output, candidates);
+      return output.toBytes();
+   }
+
+   private Object kryoRoundTrip(ArrayList<?> candidates) {
+      return kryo.readClassAndObject(new Input(kryoBytes(candidates)));
+   }
+
+   private static Object javaRoundTrip(Serializable candidates) {
+      return JavaSerialization.deserialize(JavaSerialization.serialize(candidates));
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object lgpJava(Payload payload) {
+      payload.bytesPerCandidate = lgpJavaBytes;
+      return javaRoundTrip(programs);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object lgpCompiledJava(Payload payload) {
+      payload.bytesPerCandidate = lgpCompiledJavaBytes;
+      return javaRoundTrip(compiledPrograms);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object lgpCompiledKryo(Payload payload) {
+      payload.bytesPerCandidate = lgpCompiledKryoBytes;
+      return kryoRoundTrip(compiledPrograms);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object treeGpJava(Payload payload) {
+      payload.bytesPerCandidate = treeGpJavaBytes;
+      return javaRoundTrip(solutions);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object treeGpCompiledJava(Payload payload) {
+      payload.bytesPerCandidate = treeGpCompiledJavaBytes;
+      return javaRoundTrip(compiledSolutions);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(CANDIDATE_COUNT)
+   public Object treeGpCompiledKryo(Payload payload) {
+      payload.bytesPerCandidate = treeGpCompiledKryoBytes;
+      return kryoRoundTrip(compiledSolutions);
+   }
+}
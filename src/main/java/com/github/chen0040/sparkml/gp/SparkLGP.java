@@ -3,74 +3,713 @@ package com.github.chen0040.sparkml.gp;
 
 import com.github.chen0040.gp.commons.BasicObservation;
 import com.github.chen0040.gp.lgp.LGP;
-import com.github.chen0040.gp.lgp.gp.Population;
+import com.github.chen0040.gp.lgp.program.Instruction;
+import com.github.chen0040.gp.lgp.program.Operand;
 import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.lgp.program.operators.Multiply;
+import com.github.chen0040.gp.lgp.program.operators.Operator;
+import com.github.chen0040.gp.lgp.program.operators.Plus;
+import com.github.chen0040.sparkml.gp.checkpoint.CheckpointFormat;
+import com.github.chen0040.sparkml.gp.checkpoint.CheckpointWriter;
+import com.github.chen0040.sparkml.gp.compiler.CompiledLgpProgram;
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+import com.github.chen0040.sparkml.gp.compiler.LgpCompiler;
+import com.github.chen0040.sparkml.gp.compiler.VectorizedLgpProgram;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.MappedObservationStore;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.evaluation.BroadcastStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.CostEstimates;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationEngine;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationSchedule;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.FitnessCache;
+import com.github.chen0040.sparkml.gp.evaluation.ObjectiveEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.ObservationCostEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.PredictionCostEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.StructureKey;
+import com.github.chen0040.sparkml.gp.evolution.PopulationSnapshot;
+import com.github.chen0040.sparkml.gp.evolution.SparkGP;
+import com.github.chen0040.sparkml.gp.lgp.SparkLGPPopulation;
+import com.github.chen0040.sparkml.gp.metrics.ConsoleGenerationListener;
+import com.github.chen0040.sparkml.gp.metrics.GenerationListener;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import com.github.chen0040.sparkml.gp.metrics.WorkCounters;
+import com.github.chen0040.sparkml.gp.multiobjective.ObjectiveRanking;
+import com.github.chen0040.sparkml.gp.scoring.ModelScoring;
+import com.github.chen0040.sparkml.gp.scoring.Prediction;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.Function;
-import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
 
 /**
  * Created by xschen on 6/6/2017.
  */
-public class SparkLGP extends LGP {
+public class SparkLGP extends LGP implements SparkGP<Program> {
+
+   private final EvaluationEngine engine = new EvaluationEngine();
+
+   private boolean columnarObservations = false;
+
+   private ObservationCostEvaluator<Program> observationCostEvaluator;
+
+   private PredictionCostEvaluator predictionCostEvaluator;
+
+   private boolean compiledEvaluation = false;
+
+   private boolean vectorizedEvaluation = false;
+
+   private boolean batchEvaluation = true;
+
+   private final Map<Program, Double> prefetchedCosts = new IdentityHashMap<>();
+
+   private transient List<Program> offspring;
+
+   private final FitnessCache<StructureKey> fitnessCache = new FitnessCache<>();
+
+   private final ModelScoring modelScoring = new ModelScoring();
+
+   private double targetCost = Double.NEGATIVE_INFINITY;
+
+   private long timeToTargetCost = -1;
+
+   private transient List<GenerationListener> generationListeners;
 
-   private JavaRDD<BasicObservation> observationRdd;
+   private boolean boundedEvaluation = false;
 
-   private Function<Tuple2<Program, BasicObservation>, Double> perObservationCostEvaluator;
+   private double survivalThreshold = Double.POSITIVE_INFINITY;
+
+   private String checkpointPath;
+
+   private int checkpointEvery = 0;
+
+   private transient PopulationSnapshot<Program> resumedSnapshot;
+
+   private final List<PredictionCostEvaluator> objectives = new ArrayList<>();
+
+   private boolean sizeObjective = true;
+
+   private boolean timeObjective = false;
+
+   private final ObjectiveRanking<Program> objectiveRanking = new ObjectiveRanking<>();
 
    public void setPerObservationCostEvaluator(Function<Tuple2<Program, BasicObservation>, Double> perObservationCostEvaluator) {
-      this.perObservationCostEvaluator = perObservationCostEvaluator;
+      this.observationCostEvaluator = ObservationCostEvaluator.of(perObservationCostEvaluator);
+   }
+
+   public void setObservationCostEvaluator(ObservationCostEvaluator<Program> observationCostEvaluator) {
+      this.observationCostEvaluator = observationCostEvaluator;
+   }
+
+   public ObservationCostEvaluator<Program> getObservationCostEvaluator() {
+      return observationCostEvaluator;
+   }
+
+   // the evaluator only scores the predicted outputs, which allows the programs to be compiled before they are evaluated
+   public void setPredictionCostEvaluator(PredictionCostEvaluator predictionCostEvaluator) {
+      this.predictionCostEvaluator = predictionCostEvaluator;
+      this.observationCostEvaluator = (program, observation) -> {
+         program.execute(observation);
+         return predictionCostEvaluator.evaluate(observation);
+      };
+   }
+
+   public PredictionCostEvaluator getPredictionCostEvaluator() {
+      return predictionCostEvaluator;
+   }
+
+   public boolean isCompiledEvaluation() {
+      return compiledEvaluation;
+   }
+
+   // takes effect only with a prediction cost evaluator; programs which cannot be compiled exactly are interpreted
+   public void setCompiledEvaluation(boolean compiledEvaluation) {
+      this.compiledEvaluation = compiledEvaluation;
+   }
+
+   private boolean isCompiling() {
+      return compiledEvaluation && predictionCostEvaluator != null;
+   }
+
+   public boolean isVectorizedEvaluation() {
+      return vectorizedEvaluation;
+   }
+
+   // with compiled evaluation over columnar or local observations, runs every instruction over a chunk of rows at once;
+   // programs with operators which have no opcode are executed one row at a time
+   public void setVectorizedEvaluation(boolean vectorizedEvaluation) {
+      this.vectorizedEvaluation = vectorizedEvaluation;
    }
 
    public void setObservationRdd(JavaRDD<BasicObservation> observationRdd) {
       setObservationRdd(observationRdd, -1);
    }
 
+   // a partitionCount of -1 sizes the partitions automatically; skewed or differently sized rdds are repartitioned evenly
    public void setObservationRdd(JavaRDD<BasicObservation> observationRdd, int partitionCount) {
-      if(partitionCount == -1) {
-         this.observationRdd = observationRdd.cache();
-      } else {
-         this.observationRdd = observationRdd.coalesce(partitionCount).cache();
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationRdd(observationRdd, partitionCount, columnarObservations);
+   }
+
+   // evaluates against the given observations in the current JVM without spark jobs
+   public void setLocalObservations(List<BasicObservation> observations) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setLocalObservations(observations);
+   }
+
+   // evaluates in the current JVM against one block per partition, e.g. the batches of a stream; with weights the cost of
+   // the programs is the weighted mean over the blocks
+   public void setLocalObservationBlocks(List<ObservationBlock> blocks, double[] weights) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setLocalObservationBlocks(blocks, weights);
+   }
+
+   // evaluates by spark jobs over cached blocks, e.g. the batches of a stream window kept on the cluster; with weights the
+   // cost of the programs is the weighted mean over the partitions
+   public void setObservationBlockRdd(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationBlockRdd(observationBlockRdd, partitionWeights);
+   }
+
+   // evaluates against a memory-mapped store of observations larger than the heap, see fit(MappedObservationStore, JavaSparkContext)
+   public void setObservationStore(MappedObservationStore store, JavaSparkContext context) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationStore(store, context);
+   }
+
+   public EvaluationBackendType getEvaluationBackend() {
+      return engine.getBackendType();
+   }
+
+   // Spark, Local (in-process over primitive in-memory data) or Auto, which picks Local for small data; takes effect on the next setObservationRdd
+   public void setEvaluationBackend(EvaluationBackendType evaluationBackend) {
+      engine.setBackendType(evaluationBackend);
+   }
+
+   public long getLocalRowThreshold() {
+      return engine.getLocalRowThreshold();
+   }
+
+   // the largest row count which the Auto backend evaluates locally
+   public void setLocalRowThreshold(long localRowThreshold) {
+      engine.setLocalRowThreshold(localRowThreshold);
+   }
+
+   public StorageLevel getStorageLevel() {
+      return engine.getStorageLevel();
+   }
+
+   // storage level of the cached observations for the spark backend, MEMORY_ONLY by default; takes effect on the next setObservationRdd
+   public void setStorageLevel(StorageLevel storageLevel) {
+      engine.setStorageLevel(storageLevel);
+   }
+
+   public int getMaxInFlightJobs() {
+      return engine.getMaxInFlightJobs();
+   }
+
+   public boolean isCostAwareScheduling() {
+      return engine.isCostAwareScheduling();
+   }
+
+   // packs the programs of an evaluation into work units of balanced estimated cost, from their effective instruction counts and the
+   // measured task times, so that the units run side by side on every partition
+   public void setCostAwareScheduling(boolean costAwareScheduling) {
+      engine.setCostAwareScheduling(costAwareScheduling);
+   }
+
+   // the number of evaluations which may run at the same time, over all the managers forked from this one
+   public void setMaxInFlightJobs(int maxInFlightJobs) {
+      engine.setMaxInFlightJobs(maxInFlightJobs);
+   }
+
+   // a copy of this manager over the same cached observations, with broadcasts and generations of its own, for evolving
+   // another population on another driver thread
+   public SparkLGP fork() {
+      SparkLGP fork = JavaSerialization.deserialize(JavaSerialization.serialize(this));
+      fork.engine.shareObservations(engine);
+      return fork;
+   }
+
+   // restarts the random engine of the library, e.g. so that the copies of this manager on the islands of an island
+   // model breed with sequences of their own
+   @Override
+   public void reseed(long seed) {
+      getRandEngine().setSeed(seed);
+   }
+
+   public boolean isColumnarObservations() {
+      return columnarObservations;
+   }
+
+   // when enabled, each partition is cached as one ObservationBlock of primitive columns instead of BasicObservation objects
+   public void setColumnarObservations(boolean columnarObservations) {
+      this.columnarObservations = columnarObservations;
+   }
+
+   public EvaluationSchedule getEvaluationSchedule() {
+      return engine.getSchedule();
+   }
+
+   public void setEvaluationSchedule(EvaluationSchedule evaluationSchedule) {
+      engine.setSchedule(evaluationSchedule);
+   }
+
+   public boolean isBatchEvaluation() {
+      return batchEvaluation;
+   }
+
+   // when disabled, every program is evaluated by its own spark job via evaluateCost(Program)
+   public void setBatchEvaluation(boolean batchEvaluation) {
+      this.batchEvaluation = batchEvaluation;
+   }
+
+   public boolean isBoundedEvaluation() {
+      return boundedEvaluation;
+   }
+
+   // when enabled, a program stops being evaluated once its cost is proven to reach the survival threshold (the worst cost in
+   // the population before the generation) and receives that lower bound instead; requires non-negative per-observation costs
+   public void setBoundedEvaluation(boolean boundedEvaluation) {
+      this.boundedEvaluation = boundedEvaluation;
+   }
+
+   public double getSurvivalThreshold() {
+      return survivalThreshold;
+   }
+
+   // set by the population before every generation; costs below it are always exact
+   public void setSurvivalThreshold(double survivalThreshold) {
+      this.survivalThreshold = survivalThreshold;
+   }
+
+   // enables NSGA-II multi-objective evolution. Every evaluator is a data-dependent objective, the first one being the error;
+   // all of them are averaged in the same pass over the observations. The objective vector of a program holds these means,
+   // then its mean running time per observation in nanoseconds when the time objective is on, then the effective instruction count when the
+   // size objective is on. Selection and replacement then prefer lower Pareto fronts and, within a front, isolated programs.
+   public void setObjectives(PredictionCostEvaluator... objectives) {
+      this.objectives.clear();
+      this.objectives.addAll(Arrays.asList(objectives));
+      objectiveRanking.clear();
+   }
+
+   public List<PredictionCostEvaluator> getObjectives() {
+      return objectives;
+   }
+
+   public boolean isMultiObjective() {
+      return !objectives.isEmpty();
+   }
+
+   public boolean isSizeObjective() {
+      return sizeObjective;
+   }
+
+   public void setSizeObjective(boolean sizeObjective) {
+      this.sizeObjective = sizeObjective;
+   }
+
+   public boolean isTimeObjective() {
+      return timeObjective;
+   }
+
+   public void setTimeObjective(boolean timeObjective) {
+      this.timeObjective = timeObjective;
+   }
+
+   // objective vector of a member of the population, as described by setObjectives()
+   public double[] getObjectiveValues(Program program) {
+      return objectiveRanking.getObjectiveValues(program);
+   }
+
+   // the non-dominated programs of the population, by increasing error
+   public List<Program> getParetoFront() {
+      return objectiveRanking.getParetoFront();
+   }
+
+   // hit and miss counts tell how many spark jobs were saved by the cache
+   public FitnessCache<StructureKey> getFitnessCache() {
+      return fitnessCache;
+   }
+
+   // a size of 0 disables the fitness cache
+   public void setFitnessCacheSize(int size) {
+      fitnessCache.setCapacity(size);
+   }
+
+   // broadcasts created and bytes shipped to the executors per generation by the spark evaluation backend
+   public List<BroadcastStatistics> getBroadcastStatistics() {
+      return engine.getBroadcastStatistics();
+   }
+
+   // listeners receive a GenerationEvent after the initial population and after every generation of fit(), and the
+   // progress events of the island, steady-state and streaming models
+   public void addGenerationListener(GenerationListener listener) {
+      getGenerationListeners().add(listener);
+   }
+
+   public void removeGenerationListener(GenerationListener listener) {
+      getGenerationListeners().remove(listener);
+   }
+
+   public List<GenerationListener> getGenerationListeners() {
+      if(generationListeners == null) {
+         generationListeners = new ArrayList<>();
       }
+      return generationListeners;
+   }
+
+   // input, output and row counts and column ranges of the training data, computed once when the observations are set
+   public DatasetDescriptor getDatasetDescriptor() {
+      return engine.getDatasetDescriptor();
+   }
+
+   // running totals of evaluation time, spark jobs and rows scanned
+   public EvaluationStatistics getEvaluationStatistics() {
+      return engine.getStatistics();
+   }
+
+   @Override
+   public WorkCounters getWorkCounters() {
+      return WorkCounters.of(engine.getStatistics(), engine.getBroadcastStatistics(), fitnessCache);
+   }
+
+   public String getCheckpointPath() {
+      return checkpointPath;
+   }
+
+   // local or hadoop-compatible (e.g. hdfs://) path which fit() overwrites with the latest checkpoint
+   public void setCheckpointPath(String checkpointPath) {
+      this.checkpointPath = checkpointPath;
+   }
+
+   public int getCheckpointEvery() {
+      return checkpointEvery;
+   }
+
+   // number of generations between two checkpoints written by fit(); 0 disables checkpointing
+   public void setCheckpointEvery(int checkpointEvery) {
+      this.checkpointEvery = checkpointEvery;
+   }
+
+   // restores the manager, its random state and its population from a checkpoint written by fit(); the next call to fit()
+   // continues the evolution after the checkpointed generation exactly as the interrupted run would have. Generation
+   // listeners are not part of the checkpoint and have to be added again.
+   public static SparkLGP resume(String checkpointPath) {
+      return resume(checkpointPath, new Configuration());
    }
 
+   public static SparkLGP resume(String checkpointPath, Configuration configuration) {
+      PopulationSnapshot<Program> snapshot = CheckpointFormat.read(checkpointPath, configuration);
+      SparkLGP manager = (SparkLGP) snapshot.getManager();
+      manager.resumedSnapshot = snapshot;
+      return manager;
+   }
+
+   // fit() records the time at which the global best cost first reaches the target
+   public void setTargetCost(double targetCost) {
+      this.targetCost = targetCost;
+   }
+
+   // milliseconds from the start of fit() until the target cost was reached, or -1
+   public long getTimeToTargetCost() {
+      return timeToTargetCost;
+   }
+
+   @Override
+   public SparkLGPPopulation newPopulation() {
+      return new SparkLGPPopulation(this);
+   }
+
+   // called by the population before the programs of a generation are evaluated
+   public void beginGeneration(int generation) {
+      prefetchedCosts.clear();
+      engine.beginGeneration(generation, getMaxGeneration());
+   }
+
+   // evaluates the programs in a single spark job and keeps the costs for the evaluateCost(Program) calls that follow
+   public void prefetchCosts(List<Program> programs) {
+      if(!batchEvaluation || programs.isEmpty()) {
+         return;
+      }
+      double[] costs = evaluateCosts(programs);
+      for(int i=0; i < programs.size(); ++i) {
+         prefetchedCosts.put(programs.get(i), costs[i]);
+      }
+   }
+
+
+   // called by the population in multi-objective mode: ranks the members together with the programs about to be evaluated,
+   // updating the selection costs of the members and prefetching those of the new programs
+   public void rankObjectives(List<Program> members, List<Program> programs) {
+      Map<Program, Double> selectionCosts = objectiveRanking.rank(members, programs, this::evaluateObjectives);
+      for(Program member : members) {
+         member.setCost(selectionCosts.get(member));
+      }
+      for(Program program : programs) {
+         prefetchedCosts.put(program, selectionCosts.get(program));
+      }
+   }
+
+   @Override
+   public void collectOffspring(List<Program> offspring) {
+      this.offspring = offspring;
+   }
+
+   @Override
+   public double[] evaluateCandidates(List<Program> members, List<Program> candidates) {
+      if(!isMultiObjective()) {
+         return evaluateCosts(candidates);
+      }
+      rankObjectives(members, candidates);
+      double[] costs = new double[candidates.size()];
+      for(int i=0; i < costs.length; ++i) {
+         costs[i] = prefetchedCosts.remove(candidates.get(i));
+      }
+      return costs;
+   }
+
+   @Override
+   public CompletableFuture<double[]> evaluateCandidatesAsync(List<Program> members, List<Program> candidates) {
+      if(isMultiObjective()) {
+         return CompletableFuture.completedFuture(evaluateCandidates(members, candidates));
+      }
+      return evaluateCostsAsync(candidates);
+   }
+
+   @Override
+   public double costOf(Program program) {
+      return program.getCost();
+   }
+
+   @Override
+   public void assignCost(Program program, double cost) {
+      program.setCost(cost);
+   }
+
+   @Override
+   public Program copyOf(Program program) {
+      return program.makeCopy();
+   }
+
+   @Override
+   public int sizeOf(Program program) {
+      return program.getInstructions().size();
+   }
+
+   // the objective vectors of the programs, evaluated on their effective copies in one pass over the observations
+   public double[][] evaluateObjectives(List<Program> programs) {
+      List<Program> effectivePrograms = new ArrayList<>();
+      for(Program program : programs) {
+         program.markStructuralIntrons(this);
+         effectivePrograms.add(program.makeEffectiveCopy());
+      }
+      ObjectiveEvaluator<Program> evaluator = ObjectiveEvaluator.ofPredictions(Program::execute, objectives);
+      double[][] values = engine.evaluateObjectives(effectivePrograms, evaluator, timeObjective, sizes(effectivePrograms));
+      if(!sizeObjective) {
+         return values;
+      }
+      double[][] vectors = new double[values.length][];
+      for(int i=0; i < values.length; ++i) {
+         vectors[i] = Arrays.copyOf(values[i], values[i].length + 1);
+         vectors[i][values[i].length] = effectivePrograms.get(i).getInstructions().size();
+      }
+      return vectors;
+   }
 
    @Override
    public double evaluateCost(Program program) {
-      program.markStructuralIntrons(this);
-      program = program.makeEffectiveCopy();
-
-      JavaSparkContext context = JavaSparkContext.fromSparkContext(observationRdd.context());
-      Broadcast<Program> programBroadcast = context.broadcast(program);
-      Tuple2<Double, Integer> result = observationRdd.map(observation -> {
-         Program p = programBroadcast.getValue();
-         return new Tuple2<>(p, observation);
-      }).map(perObservationCostEvaluator)
-              .map(a -> new Tuple2<>(a, 1))
-              .reduce((a, b) -> new Tuple2<>(a._1() + b._1(), a._2() + b._2()));
-      double cost = result._1() / result._2();
-      programBroadcast.destroy();
-      return cost;
+      if(offspring != null) {
+         offspring.add(program);
+         return Double.POSITIVE_INFINITY;
+      }
+      Double prefetchedCost = prefetchedCosts.remove(program);
+      if(prefetchedCost != null) {
+         return prefetchedCost;
+      }
+      return estimateCosts(Collections.singletonList(program)).getCost(0);
+   }
+
+   // returns the costs of the programs in the same order, using one broadcast and one pass over the observations
+   public double[] evaluateCosts(List<Program> programs) {
+      return estimateCosts(programs).getCosts();
+   }
+
+   // as evaluateCosts(), telling which costs are exact and which are lower bounds from bounded evaluation
+   public CostEstimates estimateCosts(List<Program> programs) {
+      List<Program> effectivePrograms = new ArrayList<>();
+      List<StructureKey> keys = new ArrayList<>();
+      String context = engine.cacheContext();
+      for(Program program : programs) {
+         program.markStructuralIntrons(this);
+         Program effectiveProgram = program.makeEffectiveCopy();
+         effectivePrograms.add(effectiveProgram);
+         keys.add(structureKey(effectiveProgram).build(context));
+      }
+
+      return fitnessCache.estimate(effectivePrograms, keys, this::estimateEffectiveCosts);
+   }
+
+   protected CostEstimates estimateEffectiveCosts(List<Program> effectivePrograms) {
+      double threshold = boundedEvaluation ? survivalThreshold : Double.POSITIVE_INFINITY;
+      if(isCompiling()) {
+         return engine.evaluate(executables(effectivePrograms), PredictionCostEvaluator.forExecutables(predictionCostEvaluator), threshold, sizes(effectivePrograms));
+      }
+      return engine.evaluate(effectivePrograms, observationCostEvaluator, threshold, sizes(effectivePrograms));
+   }
+
+   // the instructions of the effective program, with the operands of sums and products in a fixed order
+   private static StructureKey.Builder structureKey(Program effectiveProgram) {
+      StructureKey.Builder key = new StructureKey.Builder();
+      List<Instruction> instructions = effectiveProgram.getInstructions();
+      key.code(effectiveProgram.getRegisterSet().size()).code(instructions.size());
+      for(Instruction instruction : instructions) {
+         Operator operator = instruction.getOperator();
+         key.symbol(operator.getClass().getName()).code(instruction.getTargetOperand().getIndex());
+         StructureKey.Builder first = operand(instruction.getOperand1());
+         StructureKey.Builder second = operand(instruction.getOperand2());
+         if((operator instanceof Plus || operator instanceof Multiply) && second.hash() < first.hash()) {
+            key.append(second).append(first);
+         } else {
+            key.append(first).append(second);
+         }
+      }
+      return key;
+   }
+
+   private static StructureKey.Builder operand(Operand operand) {
+      StructureKey.Builder key = new StructureKey.Builder();
+      if(operand.isConstant()) {
+         return key.code(1).constant(operand.getValue());
+      }
+      return key.code(0).code(operand.getIndex());
+   }
+
+   private static double[] sizes(List<Program> effectivePrograms) {
+      double[] sizes = new double[effectivePrograms.size()];
+      for(int i=0; i < sizes.length; ++i) {
+         sizes[i] = effectivePrograms.get(i).getInstructions().size();
+      }
+      return sizes;
+   }
+
+   // submits the evaluation of the programs and returns at once, so that the caller can create further programs while the
+   // executors evaluate; at most getMaxInFlightJobs() evaluations run at a time. The fitness cache is not consulted.
+   public CompletableFuture<double[]> evaluateCostsAsync(List<Program> programs) {
+      List<Program> effectivePrograms = new ArrayList<>();
+      for(Program program : programs) {
+         program.markStructuralIntrons(this);
+         effectivePrograms.add(program.makeEffectiveCopy());
+      }
+      if(isCompiling()) {
+         return engine.evaluateAsync(executables(effectivePrograms), PredictionCostEvaluator.forExecutables(predictionCostEvaluator));
+      }
+      return engine.evaluateAsync(effectivePrograms, observationCostEvaluator);
+   }
+
+   private List<ExecutableProgram> executables(List<Program> effectivePrograms) {
+      List<BasicObservation> probes = engine.probeObservations();
+      List<ExecutableProgram> executables = new ArrayList<>();
+      boolean vectorized = vectorizedEvaluation && engine.isColumnar();
+      for(Program program : effectivePrograms) {
+         ExecutableProgram executable = LgpCompiler.compile(program, probes);
+         if(vectorized && executable instanceof CompiledLgpProgram && !((CompiledLgpProgram) executable).hasDelegates()) {
+            executable = new VectorizedLgpProgram((CompiledLgpProgram) executable);
+         }
+         executables.add(executable);
+      }
+      return executables;
+   }
+
+   // scores the program over the observations on the executors, e.g. the program returned by fit()
+   public JavaRDD<Prediction> transform(Program program, JavaRDD<BasicObservation> observations) {
+      return transform(program, observations, false);
+   }
+
+   // with withCost, every prediction also carries the cost of its observation under the cost evaluator used for training
+   public JavaRDD<Prediction> transform(Program program, JavaRDD<BasicObservation> observations, boolean withCost) {
+      if(withCost && observationCostEvaluator == null) {
+         throw new IllegalStateException("A cost evaluator is required to score the cost of every observation");
+      }
+      return modelScoring.transform(observations, program, Program::execute, withCost ? observationCostEvaluator : null);
+   }
+
+   // destroys the broadcast of the model scored last by transform(), whose predictions can no longer be computed afterwards
+   public void releaseTransform() {
+      modelScoring.release();
    }
 
    public Program fit(JavaRDD<BasicObservation> trainingData) {
+      // setting the observations resets the racing state, which a resumed population continues from
+      double bestFullCost = engine.getBestFullCost();
       setObservationRdd(trainingData);
+      return evolve(bestFullCost, trainingData.context().hadoopConfiguration());
+   }
+
+   // trains against a memory-mapped store, evaluated by spark jobs when a context is given and in the current JVM otherwise
+   public Program fit(MappedObservationStore trainingData, JavaSparkContext context) {
+      double bestFullCost = engine.getBestFullCost();
+      setObservationStore(trainingData, context);
+      return evolve(bestFullCost, context != null ? context.hadoopConfiguration() : new Configuration());
+   }
+
+   private Program evolve(double bestFullCost, Configuration configuration) {
+      GenerationTracker tracker = newGenerationTracker();
 
-      long startTime = System.currentTimeMillis();
-      Population pop = this.newPopulation();
-      pop.initialize();
-      while (!pop.isTerminated())
-      {
-         pop.evolve();
-         if(getDisplayEvery() > 0 && pop.getCurrentGeneration() % getDisplayEvery() == 0) {
-            long seconds = (System.currentTimeMillis() - startTime) / 1000;
-            System.out.println("Generation: " + pop.getCurrentGeneration() + " (Pop: " + pop.size() + "), elapsed: " + seconds + " seconds");
-            System.out.println("Global Cost: " + pop.getGlobalBestProgram().getCost() + "\tCurrent Cost: " + pop.getCostInCurrentGeneration());
+      CheckpointWriter checkpointWriter = null;
+      if(checkpointPath != null && checkpointEvery > 0) {
+         checkpointWriter = new CheckpointWriter(configuration);
+      }
+
+      try {
+         tracker.start();
+         SparkLGPPopulation pop = newPopulation();
+         if(resumedSnapshot != null) {
+            pop.restore(resumedSnapshot);
+            resumedSnapshot = null;
+            engine.setBestFullCost(bestFullCost);
+         } else {
+            timeToTargetCost = -1;
+            pop.initialize();
+            endGeneration(tracker, pop.getCurrentGeneration(), pop.getGlobalBestProgram(), pop.getMembers());
+         }
+         while (!pop.isTerminated())
+         {
+            pop.evolve();
+            if(timeToTargetCost < 0 && pop.getGlobalBestProgram().getCost() <= targetCost) {
+               timeToTargetCost = tracker.getElapsedMillis();
+            }
+            endGeneration(tracker, pop.getCurrentGeneration(), pop.getGlobalBestProgram(), pop.getMembers());
+            if(checkpointWriter != null && pop.getCurrentGeneration() % checkpointEvery == 0) {
+               checkpointWriter.write(pop.snapshot(), checkpointPath);
+            }
+         }
+         return isMultiObjective() ? getParetoFront().get(0) : pop.getGlobalBestProgram();
+      } finally {
+         if(checkpointWriter != null) {
+            checkpointWriter.close();
          }
       }
-      return pop.getGlobalBestProgram();
+   }
+
+   @Override
+   public GenerationTracker newGenerationTracker() {
+      List<GenerationListener> listeners = new ArrayList<>(getGenerationListeners());
+      listeners.add(new ConsoleGenerationListener(getDisplayEvery()));
+      return new GenerationTracker(this::getWorkCounters, listeners);
    }
 }
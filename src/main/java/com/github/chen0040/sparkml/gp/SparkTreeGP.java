@@ -3,76 +3,808 @@ package com.github.chen0040.sparkml.gp;
 
 import com.github.chen0040.gp.commons.BasicObservation;
 import com.github.chen0040.gp.treegp.TreeGP;
-import com.github.chen0040.gp.treegp.gp.Population;
+import com.github.chen0040.gp.treegp.program.Primitive;
 import com.github.chen0040.gp.treegp.program.Program;
 import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.gp.treegp.program.TreeNode;
+import com.github.chen0040.gp.treegp.program.operators.Multiply;
+import com.github.chen0040.gp.treegp.program.operators.Plus;
+import com.github.chen0040.gp.treegp.program.terminals.Constant;
+import com.github.chen0040.gp.treegp.program.terminals.Variable;
+import com.github.chen0040.sparkml.gp.checkpoint.CheckpointFormat;
+import com.github.chen0040.sparkml.gp.checkpoint.CheckpointWriter;
+import com.github.chen0040.sparkml.gp.compiler.CompiledSolution;
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+import com.github.chen0040.sparkml.gp.compiler.FusedSolution;
+import com.github.chen0040.sparkml.gp.compiler.SemanticSolution;
+import com.github.chen0040.sparkml.gp.compiler.SubtreeCache;
+import com.github.chen0040.sparkml.gp.compiler.SubtreeCacheStatistics;
+import com.github.chen0040.sparkml.gp.compiler.TreeGpCompiler;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.MappedObservationStore;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.evaluation.BroadcastStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.CostEstimates;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationBackend;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationEngine;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationSchedule;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.FitnessCache;
+import com.github.chen0040.sparkml.gp.evaluation.ObjectiveEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.ObservationCostEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.OutputErrorEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.PredictionCostEvaluator;
+import com.github.chen0040.sparkml.gp.evaluation.SparkEvaluationBackend;
+import com.github.chen0040.sparkml.gp.evaluation.StructureKey;
+import com.github.chen0040.sparkml.gp.evolution.PopulationSnapshot;
+import com.github.chen0040.sparkml.gp.evolution.SparkGP;
+import com.github.chen0040.sparkml.gp.metrics.ConsoleGenerationListener;
+import com.github.chen0040.sparkml.gp.metrics.GenerationListener;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import com.github.chen0040.sparkml.gp.metrics.WorkCounters;
+import com.github.chen0040.sparkml.gp.multiobjective.ObjectiveRanking;
+import com.github.chen0040.sparkml.gp.scoring.ModelScoring;
+import com.github.chen0040.sparkml.gp.scoring.Prediction;
+import com.github.chen0040.sparkml.gp.treegp.SparkTreeGPPopulation;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.Function;
-import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
 
 /**
  * Created by xschen on 6/6/2017.
  */
-public class SparkTreeGP extends TreeGP {
+public class SparkTreeGP extends TreeGP implements SparkGP<Solution> {
+
+   private final EvaluationEngine engine = new EvaluationEngine();
+
+   private boolean columnarObservations = false;
+
+   private ObservationCostEvaluator<Solution> observationCostEvaluator;
+
+   private PredictionCostEvaluator predictionCostEvaluator;
+
+   private boolean compiledEvaluation = false;
+
+   private boolean batchEvaluation = true;
+
+   private boolean semanticCaching = false;
+
+   private long semanticCacheBytes = SubtreeCache.DEFAULT_CAPACITY;
+
+   private boolean fusedEvaluation = false;
+
+   private OutputErrorEvaluator outputErrorEvaluator;
+
+   private final Map<Solution, Double> prefetchedCosts = new IdentityHashMap<>();
+
+   private transient List<Solution> offspring;
+
+   private final FitnessCache<StructureKey> fitnessCache = new FitnessCache<>();
+
+   private final ModelScoring modelScoring = new ModelScoring();
+
+   private double targetCost = Double.NEGATIVE_INFINITY;
+
+   private long timeToTargetCost = -1;
 
-   private JavaRDD<BasicObservation> observationRdd;
+   private transient List<GenerationListener> generationListeners;
 
-   private Function<Tuple2<Solution, BasicObservation>, Double> perObservationCostEvaluator;
+   private boolean boundedEvaluation = false;
+
+   private double survivalThreshold = Double.POSITIVE_INFINITY;
+
+   private String checkpointPath;
+
+   private int checkpointEvery = 0;
+
+   private transient PopulationSnapshot<Solution> resumedSnapshot;
+
+   private final List<PredictionCostEvaluator> objectives = new ArrayList<>();
+
+   private boolean sizeObjective = true;
+
+   private boolean timeObjective = false;
+
+   private final ObjectiveRanking<Solution> objectiveRanking = new ObjectiveRanking<>();
 
    public void setPerObservationCostEvaluator(Function<Tuple2<Solution, BasicObservation>, Double> perObservationCostEvaluator) {
-      this.perObservationCostEvaluator = perObservationCostEvaluator;
+      this.observationCostEvaluator = ObservationCostEvaluator.of(perObservationCostEvaluator);
+   }
+
+   public void setObservationCostEvaluator(ObservationCostEvaluator<Solution> observationCostEvaluator) {
+      this.observationCostEvaluator = observationCostEvaluator;
+   }
+
+   public ObservationCostEvaluator<Solution> getObservationCostEvaluator() {
+      return observationCostEvaluator;
+   }
+
+   // the evaluator only scores the predicted outputs, which allows the solutions to be compiled before they are evaluated
+   public void setPredictionCostEvaluator(PredictionCostEvaluator predictionCostEvaluator) {
+      this.predictionCostEvaluator = predictionCostEvaluator;
+      this.observationCostEvaluator = (solution, observation) -> {
+         solution.execute(observation);
+         return predictionCostEvaluator.evaluate(observation);
+      };
+   }
+
+   public PredictionCostEvaluator getPredictionCostEvaluator() {
+      return predictionCostEvaluator;
+   }
+
+   // scores every output of a multi-output solution with the same error; the cost is the mean error over the outputs
+   // and evaluateOutputErrors() reports the error of each output
+   public void setOutputErrorEvaluator(OutputErrorEvaluator outputErrorEvaluator) {
+      this.outputErrorEvaluator = outputErrorEvaluator;
+      setPredictionCostEvaluator(outputErrorEvaluator.meanOverOutputs());
+   }
+
+   public OutputErrorEvaluator getOutputErrorEvaluator() {
+      return outputErrorEvaluator;
+   }
+
+   public boolean isCompiledEvaluation() {
+      return compiledEvaluation;
+   }
+
+   // takes effect only with a prediction cost evaluator; solutions which cannot be compiled exactly are interpreted
+   public void setCompiledEvaluation(boolean compiledEvaluation) {
+      this.compiledEvaluation = compiledEvaluation;
+   }
+
+   private boolean isCompiling() {
+      return compiledEvaluation && predictionCostEvaluator != null;
+   }
+
+   public boolean isSemanticCaching() {
+      return semanticCaching;
+   }
+
+   // with compiled evaluation over columnar or local observations, reuses the output vectors of subtrees which the
+   // solutions share, cached per observation block on every executor
+   public void setSemanticCaching(boolean semanticCaching) {
+      this.semanticCaching = semanticCaching;
+   }
+
+   public boolean isFusedEvaluation() {
+      return fusedEvaluation;
+   }
+
+   // with compiled evaluation, evaluates all the trees of a solution in one pass per observation, computing the
+   // subexpressions which the trees share once; semantic caching takes precedence where it applies
+   public void setFusedEvaluation(boolean fusedEvaluation) {
+      this.fusedEvaluation = fusedEvaluation;
+   }
+
+   public long getSemanticCacheBytes() {
+      return semanticCacheBytes;
+   }
+
+   // the memory bound of the subtree cache of every executor
+   public void setSemanticCacheBytes(long semanticCacheBytes) {
+      this.semanticCacheBytes = semanticCacheBytes;
+   }
+
+   // hit ratio and memory footprint of the subtree cache, one entry per executor (or of this JVM without spark jobs)
+   public List<SubtreeCacheStatistics> getSemanticCacheStatistics() {
+      EvaluationBackend backend = engine.getBackend();
+      if(backend instanceof SparkEvaluationBackend) {
+         return SubtreeCache.collectStatistics(((SparkEvaluationBackend) backend).sparkContext());
+      }
+      return Collections.singletonList(SubtreeCache.getInstance().statistics("driver"));
    }
 
    public void setObservationRdd(JavaRDD<BasicObservation> observationRdd) {
       setObservationRdd(observationRdd, -1);
    }
 
+   // a partitionCount of -1 sizes the partitions automatically; skewed or differently sized rdds are repartitioned evenly
    public void setObservationRdd(JavaRDD<BasicObservation> observationRdd, int partitionCount) {
-      if(partitionCount == -1) {
-         this.observationRdd = observationRdd.cache();
-      } else {
-         this.observationRdd = observationRdd.coalesce(partitionCount).cache();
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationRdd(observationRdd, partitionCount, columnarObservations);
+   }
+
+   // evaluates against the given observations in the current JVM without spark jobs
+   public void setLocalObservations(List<BasicObservation> observations) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setLocalObservations(observations);
+   }
+
+   // evaluates in the current JVM against one block per partition, e.g. the batches of a stream; with weights the cost of
+   // the solutions is the weighted mean over the blocks
+   public void setLocalObservationBlocks(List<ObservationBlock> blocks, double[] weights) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setLocalObservationBlocks(blocks, weights);
+   }
+
+   // evaluates by spark jobs over cached blocks, e.g. the batches of a stream window kept on the cluster; with weights the
+   // cost of the solutions is the weighted mean over the partitions
+   public void setObservationBlockRdd(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationBlockRdd(observationBlockRdd, partitionWeights);
+   }
+
+   // evaluates against a memory-mapped store of observations larger than the heap, see fit(MappedObservationStore, JavaSparkContext)
+   public void setObservationStore(MappedObservationStore store, JavaSparkContext context) {
+      fitnessCache.clear();
+      objectiveRanking.clear();
+      engine.setObservationStore(store, context);
+   }
+
+   public EvaluationBackendType getEvaluationBackend() {
+      return engine.getBackendType();
+   }
+
+   // Spark, Local (in-process over primitive in-memory data) or Auto, which picks Local for small data; takes effect on the next setObservationRdd
+   public void setEvaluationBackend(EvaluationBackendType evaluationBackend) {
+      engine.setBackendType(evaluationBackend);
+   }
+
+   public long getLocalRowThreshold() {
+      return engine.getLocalRowThreshold();
+   }
+
+   // the largest row count which the Auto backend evaluates locally
+   public void setLocalRowThreshold(long localRowThreshold) {
+      engine.setLocalRowThreshold(localRowThreshold);
+   }
+
+   public StorageLevel getStorageLevel() {
+      return engine.getStorageLevel();
+   }
+
+   // storage level of the cached observations for the spark backend, MEMORY_ONLY by default; takes effect on the next setObservationRdd
+   public void setStorageLevel(StorageLevel storageLevel) {
+      engine.setStorageLevel(storageLevel);
+   }
+
+   public int getMaxInFlightJobs() {
+      return engine.getMaxInFlightJobs();
+   }
+
+   public boolean isCostAwareScheduling() {
+      return engine.isCostAwareScheduling();
+   }
+
+   // packs the solutions of an evaluation into work units of balanced estimated cost, from their node counts and the
+   // measured task times, so that the units run side by side on every partition
+   public void setCostAwareScheduling(boolean costAwareScheduling) {
+      engine.setCostAwareScheduling(costAwareScheduling);
+   }
+
+   // the number of evaluations which may run at the same time, over all the managers forked from this one
+   public void setMaxInFlightJobs(int maxInFlightJobs) {
+      engine.setMaxInFlightJobs(maxInFlightJobs);
+   }
+
+   // a copy of this manager over the same cached observations, with broadcasts and generations of its own, for evolving
+   // another population on another driver thread
+   public SparkTreeGP fork() {
+      SparkTreeGP fork = JavaSerialization.deserialize(JavaSerialization.serialize(this));
+      fork.engine.shareObservations(engine);
+      return fork;
+   }
+
+   // restarts the random engine of the library, e.g. so that the copies of this manager on the islands of an island
+   // model breed with sequences of their own
+   @Override
+   public void reseed(long seed) {
+      getRandEngine().setSeed(seed);
+   }
+
+   public boolean isColumnarObservations() {
+      return columnarObservations;
+   }
+
+   // when enabled, each partition is cached as one ObservationBlock of primitive columns instead of BasicObservation objects
+   public void setColumnarObservations(boolean columnarObservations) {
+      this.columnarObservations = columnarObservations;
+   }
+
+   public EvaluationSchedule getEvaluationSchedule() {
+      return engine.getSchedule();
+   }
+
+   public void setEvaluationSchedule(EvaluationSchedule evaluationSchedule) {
+      engine.setSchedule(evaluationSchedule);
+   }
+
+   public boolean isBatchEvaluation() {
+      return batchEvaluation;
+   }
+
+   // when disabled, every solution is evaluated by its own spark job via evaluateCost(Solution)
+   public void setBatchEvaluation(boolean batchEvaluation) {
+      this.batchEvaluation = batchEvaluation;
+   }
+
+   public boolean isBoundedEvaluation() {
+      return boundedEvaluation;
+   }
+
+   // when enabled, a solution stops being evaluated once its cost is proven to reach the survival threshold (the worst cost in
+   // the population before the generation) and receives that lower bound instead; requires non-negative per-observation costs
+   public void setBoundedEvaluation(boolean boundedEvaluation) {
+      this.boundedEvaluation = boundedEvaluation;
+   }
+
+   public double getSurvivalThreshold() {
+      return survivalThreshold;
+   }
+
+   // set by the population before every generation; costs below it are always exact
+   public void setSurvivalThreshold(double survivalThreshold) {
+      this.survivalThreshold = survivalThreshold;
+   }
+
+   // enables NSGA-II multi-objective evolution. Every evaluator is a data-dependent objective, the first one being the error;
+   // all of them are averaged in the same pass over the observations. The objective vector of a solution holds these means,
+   // then its mean running time per observation in nanoseconds when the time objective is on, then the depth of the deepest tree when the
+   // size objective is on. Selection and replacement then prefer lower Pareto fronts and, within a front, isolated solutions.
+   public void setObjectives(PredictionCostEvaluator... objectives) {
+      this.objectives.clear();
+      this.objectives.addAll(Arrays.asList(objectives));
+      objectiveRanking.clear();
+   }
+
+   public List<PredictionCostEvaluator> getObjectives() {
+      return objectives;
+   }
+
+   public boolean isMultiObjective() {
+      return !objectives.isEmpty();
+   }
+
+   public boolean isSizeObjective() {
+      return sizeObjective;
+   }
+
+   public void setSizeObjective(boolean sizeObjective) {
+      this.sizeObjective = sizeObjective;
+   }
+
+   public boolean isTimeObjective() {
+      return timeObjective;
+   }
+
+   public void setTimeObjective(boolean timeObjective) {
+      this.timeObjective = timeObjective;
+   }
+
+   // objective vector of a member of the population, as described by setObjectives()
+   public double[] getObjectiveValues(Solution solution) {
+      return objectiveRanking.getObjectiveValues(solution);
+   }
+
+   // the non-dominated solutions of the population, by increasing error
+   public List<Solution> getParetoFront() {
+      return objectiveRanking.getParetoFront();
+   }
+
+   // hit and miss counts tell how many spark jobs were saved by the cache
+   public FitnessCache<StructureKey> getFitnessCache() {
+      return fitnessCache;
+   }
+
+   // a size of 0 disables the fitness cache
+   public void setFitnessCacheSize(int size) {
+      fitnessCache.setCapacity(size);
+   }
+
+   // broadcasts created and bytes shipped to the executors per generation by the spark evaluation backend
+   public List<BroadcastStatistics> getBroadcastStatistics() {
+      return engine.getBroadcastStatistics();
+   }
+
+   // listeners receive a GenerationEvent after the initial population and after every generation of fit(), and the
+   // progress events of the island, steady-state and streaming models
+   public void addGenerationListener(GenerationListener listener) {
+      getGenerationListeners().add(listener);
+   }
+
+   public void removeGenerationListener(GenerationListener listener) {
+      getGenerationListeners().remove(listener);
+   }
+
+   public List<GenerationListener> getGenerationListeners() {
+      if(generationListeners == null) {
+         generationListeners = new ArrayList<>();
       }
+      return generationListeners;
+   }
+
+   // input, output and row counts and column ranges of the training data, computed once when the observations are set
+   public DatasetDescriptor getDatasetDescriptor() {
+      return engine.getDatasetDescriptor();
+   }
+
+   // running totals of evaluation time, spark jobs and rows scanned
+   public EvaluationStatistics getEvaluationStatistics() {
+      return engine.getStatistics();
+   }
+
+   @Override
+   public WorkCounters getWorkCounters() {
+      return WorkCounters.of(engine.getStatistics(), engine.getBroadcastStatistics(), fitnessCache);
+   }
+
+   public String getCheckpointPath() {
+      return checkpointPath;
+   }
+
+   // local or hadoop-compatible (e.g. hdfs://) path which fit() overwrites with the latest checkpoint
+   public void setCheckpointPath(String checkpointPath) {
+      this.checkpointPath = checkpointPath;
+   }
+
+   public int getCheckpointEvery() {
+      return checkpointEvery;
+   }
+
+   // number of generations between two checkpoints written by fit(); 0 disables checkpointing
+   public void setCheckpointEvery(int checkpointEvery) {
+      this.checkpointEvery = checkpointEvery;
+   }
+
+   // restores the manager, its random state and its population from a checkpoint written by fit(); the next call to fit()
+   // continues the evolution after the checkpointed generation exactly as the interrupted run would have. Generation
+   // listeners are not part of the checkpoint and have to be added again.
+   public static SparkTreeGP resume(String checkpointPath) {
+      return resume(checkpointPath, new Configuration());
+   }
+
+   public static SparkTreeGP resume(String checkpointPath, Configuration configuration) {
+      PopulationSnapshot<Solution> snapshot = CheckpointFormat.read(checkpointPath, configuration);
+      SparkTreeGP manager = (SparkTreeGP) snapshot.getManager();
+      manager.resumedSnapshot = snapshot;
+      return manager;
+   }
+
+   // fit() records the time at which the global best cost first reaches the target
+   public void setTargetCost(double targetCost) {
+      this.targetCost = targetCost;
+   }
+
+   // milliseconds from the start of fit() until the target cost was reached, or -1
+   public long getTimeToTargetCost() {
+      return timeToTargetCost;
+   }
+
+   @Override
+   public SparkTreeGPPopulation newPopulation() {
+      return new SparkTreeGPPopulation(this);
    }
 
    @Override
    public int getTreeCountPerSolution(){
-      return observationRdd.first().outputCount();
+      return engine.outputCount();
+   }
+
+   // called by the population before the solutions of a generation are evaluated
+   public void beginGeneration(int generation) {
+      prefetchedCosts.clear();
+      engine.beginGeneration(generation, getMaxGeneration());
+   }
+
+   // evaluates the solutions in a single spark job and keeps the costs for the evaluateCost(Solution) calls that follow
+   public void prefetchCosts(List<Solution> solutions) {
+      if(!batchEvaluation || solutions.isEmpty()) {
+         return;
+      }
+      double[] costs = evaluateCosts(solutions);
+      for(int i=0; i < solutions.size(); ++i) {
+         prefetchedCosts.put(solutions.get(i), costs[i]);
+      }
+   }
+
+   // called by the population in multi-objective mode: ranks the members together with the solutions about to be evaluated,
+   // updating the selection costs of the members and prefetching those of the new solutions
+   public void rankObjectives(List<Solution> members, List<Solution> solutions) {
+      Map<Solution, Double> selectionCosts = objectiveRanking.rank(members, solutions, this::evaluateObjectives);
+      for(Solution member : members) {
+         member.setCost(selectionCosts.get(member));
+      }
+      for(Solution solution : solutions) {
+         prefetchedCosts.put(solution, selectionCosts.get(solution));
+      }
+   }
+
+   @Override
+   public void collectOffspring(List<Solution> offspring) {
+      this.offspring = offspring;
+   }
+
+   @Override
+   public double[] evaluateCandidates(List<Solution> members, List<Solution> candidates) {
+      if(!isMultiObjective()) {
+         return evaluateCosts(candidates);
+      }
+      rankObjectives(members, candidates);
+      double[] costs = new double[candidates.size()];
+      for(int i=0; i < costs.length; ++i) {
+         costs[i] = prefetchedCosts.remove(candidates.get(i));
+      }
+      return costs;
+   }
+
+   @Override
+   public CompletableFuture<double[]> evaluateCandidatesAsync(List<Solution> members, List<Solution> candidates) {
+      if(isMultiObjective()) {
+         return CompletableFuture.completedFuture(evaluateCandidates(members, candidates));
+      }
+      return evaluateCostsAsync(candidates);
+   }
+
+   @Override
+   public double costOf(Solution solution) {
+      return solution.getCost();
+   }
+
+   @Override
+   public void assignCost(Solution solution, double cost) {
+      solution.setCost(cost);
+   }
+
+   @Override
+   public Solution copyOf(Solution solution) {
+      return solution.makeCopy();
+   }
+
+   @Override
+   public int sizeOf(Solution solution) {
+      return nodeCount(solution);
+   }
+
+   // the objective vectors of the solutions, evaluated in one pass over the observations
+   public double[][] evaluateObjectives(List<Solution> solutions) {
+      ObjectiveEvaluator<Solution> evaluator = ObjectiveEvaluator.ofPredictions(Solution::execute, objectives);
+      double[][] values = engine.evaluateObjectives(solutions, evaluator, timeObjective, sizes(solutions));
+      if(!sizeObjective) {
+         return values;
+      }
+      double[][] vectors = new double[values.length][];
+      for(int i=0; i < values.length; ++i) {
+         vectors[i] = Arrays.copyOf(values[i], values[i].length + 1);
+         vectors[i][values[i].length] = depth(solutions.get(i));
+      }
+      return vectors;
+   }
+
+   // the mean error of every output of the solutions, e.g. [solution][output], evaluated in one pass over the
+   // observations and aggregated in a single reduce
+   public double[][] evaluateOutputErrors(List<Solution> solutions) {
+      if(outputErrorEvaluator == null) {
+         throw new IllegalStateException("evaluateOutputErrors() requires an output error evaluator");
+      }
+      int outputCount = getTreeCountPerSolution();
+      if(isCompiling()) {
+         return engine.evaluateObjectives(executables(solutions), outputErrorEvaluator.perOutput(ExecutableProgram::execute, outputCount), false, sizes(solutions));
+      }
+      return engine.evaluateObjectives(solutions, outputErrorEvaluator.perOutput(Solution::execute, outputCount), false, sizes(solutions));
    }
 
    @Override
    public double evaluateCost(Solution solution) {
-      JavaSparkContext context = JavaSparkContext.fromSparkContext(observationRdd.context());
-      Broadcast<Solution> solutionBroadcast = context.broadcast(solution);
-      Tuple2<Double, Integer> result = observationRdd.map(observation -> {
-         Solution p = solutionBroadcast.getValue();
-         return new Tuple2<>(p, observation);
-      }).map(perObservationCostEvaluator)
-              .map(a -> new Tuple2<>(a, 1))
-              .reduce((a, b) -> new Tuple2<>(a._1() + b._1(), a._2() + b._2()));
-      solutionBroadcast.destroy();
-      double cost = result._1() / result._2();
-      return cost;
+      if(offspring != null) {
+         offspring.add(solution);
+         return Double.POSITIVE_INFINITY;
+      }
+      Double prefetchedCost = prefetchedCosts.remove(solution);
+      if(prefetchedCost != null) {
+         return prefetchedCost;
+      }
+      return estimateCosts(Collections.singletonList(solution)).getCost(0);
+   }
+
+   // returns the costs of the solutions in the same order, using one broadcast and one pass over the observations
+   public double[] evaluateCosts(List<Solution> solutions) {
+      return estimateCosts(solutions).getCosts();
+   }
+
+   // as evaluateCosts(), telling which costs are exact and which are lower bounds from bounded evaluation
+   public CostEstimates estimateCosts(List<Solution> solutions) {
+      List<StructureKey> keys = new ArrayList<>();
+      String context = engine.cacheContext();
+      for(Solution solution : solutions) {
+         StructureKey.Builder key = new StructureKey.Builder().code(solution.getTrees().size());
+         for(Program tree : solution.getTrees()) {
+            key.append(structureKey(tree.getRoot()));
+         }
+         keys.add(key.build(context));
+      }
+
+      return fitnessCache.estimate(solutions, keys, this::estimateDistinctCosts);
+   }
+
+   protected CostEstimates estimateDistinctCosts(List<Solution> solutions) {
+      double threshold = boundedEvaluation ? survivalThreshold : Double.POSITIVE_INFINITY;
+      if(isCompiling()) {
+         return engine.evaluate(executables(solutions), PredictionCostEvaluator.forExecutables(predictionCostEvaluator), threshold, sizes(solutions));
+      }
+      return engine.evaluate(solutions, observationCostEvaluator, threshold, sizes(solutions));
+   }
+
+   private static double[] sizes(List<Solution> solutions) {
+      double[] sizes = new double[solutions.size()];
+      for(int i=0; i < sizes.length; ++i) {
+         sizes[i] = nodeCount(solutions.get(i));
+      }
+      return sizes;
+   }
+
+   // submits the evaluation of the solutions and returns at once, so that the caller can create further solutions while
+   // the executors evaluate; at most getMaxInFlightJobs() evaluations run at a time. The fitness cache is not consulted.
+   public CompletableFuture<double[]> evaluateCostsAsync(List<Solution> solutions) {
+      if(isCompiling()) {
+         return engine.evaluateAsync(executables(solutions), PredictionCostEvaluator.forExecutables(predictionCostEvaluator));
+      }
+      return engine.evaluateAsync(solutions, observationCostEvaluator);
+   }
+
+   private List<ExecutableProgram> executables(List<Solution> solutions) {
+      List<BasicObservation> probes = engine.probeObservations();
+      List<ExecutableProgram> executables = new ArrayList<>();
+      boolean semantic = semanticCaching && engine.isColumnar();
+      for(Solution solution : solutions) {
+         ExecutableProgram executable = TreeGpCompiler.compile(solution, probes);
+         if(semantic && executable instanceof CompiledSolution) {
+            executable = new SemanticSolution((CompiledSolution) executable, semanticCacheBytes);
+         } else if(fusedEvaluation && executable instanceof CompiledSolution) {
+            executable = FusedSolution.fuse((CompiledSolution) executable);
+         }
+         executables.add(executable);
+      }
+      return executables;
+   }
+
+   // scores the solution over the observations on the executors, e.g. the solution returned by fit()
+   public JavaRDD<Prediction> transform(Solution solution, JavaRDD<BasicObservation> observations) {
+      return transform(solution, observations, false);
+   }
+
+   // with withCost, every prediction also carries the cost of its observation under the cost evaluator used for training
+   public JavaRDD<Prediction> transform(Solution solution, JavaRDD<BasicObservation> observations, boolean withCost) {
+      if(withCost && observationCostEvaluator == null) {
+         throw new IllegalStateException("A cost evaluator is required to score the cost of every observation");
+      }
+      return modelScoring.transform(observations, solution, Solution::execute, withCost ? observationCostEvaluator : null);
+   }
+
+   // destroys the broadcast of the model scored last by transform(), whose predictions can no longer be computed afterwards
+   public void releaseTransform() {
+      modelScoring.release();
    }
 
    public Solution fit(JavaRDD<BasicObservation> trainingData) {
+      // setting the observations resets the racing state, which a resumed population continues from
+      double bestFullCost = engine.getBestFullCost();
       setObservationRdd(trainingData);
-      long startTime = System.currentTimeMillis();
-      Population pop = this.newPopulation();
-      pop.initialize();
-      while (!pop.isTerminated())
-      {
-         pop.evolve();
-         if(getDisplayEvery() > 0 && pop.getCurrentGeneration() % getDisplayEvery() == 0) {
-            long seconds = (System.currentTimeMillis() - startTime) / 1000;
-            System.out.println("Generation: " + pop.getCurrentGeneration() + " (Pop: " + pop.size() + "), elapsed: " + seconds + " seconds");
-            System.out.println("Global Cost: " + pop.getGlobalBestSolution().getCost() + "\tCurrent Cost: " + pop.getCostInCurrentGeneration());
+      return evolve(bestFullCost, trainingData.context().hadoopConfiguration());
+   }
+
+   // trains against a memory-mapped store, evaluated by spark jobs when a context is given and in the current JVM otherwise
+   public Solution fit(MappedObservationStore trainingData, JavaSparkContext context) {
+      double bestFullCost = engine.getBestFullCost();
+      setObservationStore(trainingData, context);
+      return evolve(bestFullCost, context != null ? context.hadoopConfiguration() : new Configuration());
+   }
+
+   private Solution evolve(double bestFullCost, Configuration configuration) {
+      GenerationTracker tracker = newGenerationTracker();
+
+      CheckpointWriter checkpointWriter = null;
+      if(checkpointPath != null && checkpointEvery > 0) {
+         checkpointWriter = new CheckpointWriter(configuration);
+      }
+
+      try {
+         tracker.start();
+         SparkTreeGPPopulation pop = newPopulation();
+         if(resumedSnapshot != null) {
+            pop.restore(resumedSnapshot);
+            resumedSnapshot = null;
+            engine.setBestFullCost(bestFullCost);
+         } else {
+            timeToTargetCost = -1;
+            pop.initialize();
+            endGeneration(tracker, pop.getCurrentGeneration(), pop.getGlobalBestSolution(), pop.getMembers());
          }
+         while (!pop.isTerminated())
+         {
+            pop.evolve();
+            if(timeToTargetCost < 0 && pop.getGlobalBestSolution().getCost() <= targetCost) {
+               timeToTargetCost = tracker.getElapsedMillis();
+            }
+            endGeneration(tracker, pop.getCurrentGeneration(), pop.getGlobalBestSolution(), pop.getMembers());
+            if(checkpointWriter != null && pop.getCurrentGeneration() % checkpointEvery == 0) {
+               checkpointWriter.write(pop.snapshot(), checkpointPath);
+            }
+         }
+         return isMultiObjective() ? getParetoFront().get(0) : pop.getGlobalBestSolution();
+      } finally {
+         if(checkpointWriter != null) {
+            checkpointWriter.close();
+         }
+      }
+   }
+
+   @Override
+   public GenerationTracker newGenerationTracker() {
+      List<GenerationListener> listeners = new ArrayList<>(getGenerationListeners());
+      listeners.add(new ConsoleGenerationListener(getDisplayEvery()));
+      return new GenerationTracker(this::getWorkCounters, listeners);
+   }
+
+   // number of nodes over all trees of the solution
+   private static int nodeCount(Solution solution) {
+      int count = 0;
+      for(Program tree : solution.getTrees()) {
+         count += nodeCount(tree.getRoot());
+      }
+      return count;
+   }
+
+   // depth of the deepest tree of the solution
+   private static int depth(Solution solution) {
+      int depth = 0;
+      for(Program tree : solution.getTrees()) {
+         depth = Math.max(depth, depth(tree.getRoot()));
+      }
+      return depth;
+   }
+
+   private static int depth(TreeNode node) {
+      int depth = 0;
+      for(TreeNode child : node.getChildren()) {
+         depth = Math.max(depth, depth(child));
+      }
+      return depth + 1;
+   }
+
+   // the nodes in prefix order, with the operands of sums and products ordered by their hashes
+   private static StructureKey.Builder structureKey(TreeNode node) {
+      Primitive primitive = node.getPrimitive();
+      StructureKey.Builder key = new StructureKey.Builder().symbol(primitive.getClass().getName()).code(node.getChildren().size());
+      if(primitive instanceof Variable) {
+         key.code(((Variable) primitive).getIndex());
+      } else if(primitive instanceof Constant) {
+         key.constant(primitive.getValue());
+      } else if(node.getChildren().isEmpty()) {
+         key.symbol(primitive.toString());
+      }
+
+      List<StructureKey.Builder> children = new ArrayList<>();
+      for(TreeNode child : node.getChildren()) {
+         children.add(structureKey(child));
+      }
+      if(primitive instanceof Plus || primitive instanceof Multiply) {
+         children.sort(Comparator.comparingLong(StructureKey.Builder::hash));
+      }
+      for(StructureKey.Builder child : children) {
+         key.append(child);
+      }
+      return key;
+   }
+
+   private static int nodeCount(TreeNode node) {
+      int count = 1;
+      for(TreeNode child : node.getChildren()) {
+         count += nodeCount(child);
       }
-      return pop.getGlobalBestSolution();
+      return count;
    }
 
 }
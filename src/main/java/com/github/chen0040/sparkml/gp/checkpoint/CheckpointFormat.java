@@ -0,0 +1,73 @@
+package com.github.chen0040.sparkml.gp.checkpoint;
+
+
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * Binary checkpoint file: a magic number and a format version followed by the deflated java serialization of the
+ * checkpointed state. Files are read and written through the hadoop FileSystem, so any local, hdfs:// or other
+ * hadoop-compatible path works; a file is written under a temporary name and renamed once complete, so a crash
+ * during the write never leaves a truncated checkpoint behind.
+ */
+public class CheckpointFormat {
+
+   private static final int MAGIC = 0x47504350;
+
+   private static final int VERSION = 2;
+
+   public static void write(byte[] serializedState, String path, Configuration configuration) {
+      Path target = new Path(path);
+      Path temporary = new Path(path + ".tmp");
+      try {
+         FileSystem fileSystem = target.getFileSystem(configuration);
+         try(FSDataOutputStream stream = fileSystem.create(temporary, true)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(serializedState.length);
+            DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 1 << 16);
+            deflater.write(serializedState);
+            deflater.finish();
+         }
+         if(fileSystem.exists(target)) {
+            fileSystem.delete(target, false);
+         }
+         if(!fileSystem.rename(temporary, target)) {
+            throw new IOException("Failed to rename " + temporary + " to " + target);
+         }
+      } catch (IOException e) {
+         throw new RuntimeException("Failed to write the checkpoint " + path, e);
+      }
+   }
+
+   public static <T> T read(String path, Configuration configuration) {
+      Path source = new Path(path);
+      try(FSDataInputStream stream = source.getFileSystem(configuration).open(source)) {
+         DataInputStream in = new DataInputStream(stream);
+         if(in.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file");
+         }
+         int version = in.readInt();
+         if(version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+         }
+         byte[] serializedState = new byte[in.readInt()];
+         new DataInputStream(new InflaterInputStream(in, new Inflater(), 1 << 16)).readFully(serializedState);
+         return JavaSerialization.deserialize(serializedState);
+      } catch (IOException e) {
+         throw new RuntimeException("Failed to read the checkpoint " + path, e);
+      }
+   }
+}
@@ -0,0 +1,74 @@
+package com.github.chen0040.sparkml.gp.checkpoint;
+
+
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Writes checkpoints in the background. The state is serialized on the calling thread, so the evolution can modify it
+ * right after write() returns; compressing and writing the bytes happens on a daemon thread. At most one checkpoint is
+ * in flight: write() waits for the previous one to finish, which bounds the memory held by pending checkpoints.
+ */
+public class CheckpointWriter implements Closeable {
+
+   private final Configuration configuration;
+
+   private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "gp-checkpoint-writer");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private Future<?> pending;
+
+   private long checkpointCount = 0;
+
+   public CheckpointWriter(Configuration configuration) {
+      this.configuration = configuration;
+   }
+
+   public void write(Serializable state, String path) {
+      byte[] serializedState = JavaSerialization.serialize(state);
+      awaitPending();
+      pending = executor.submit(() -> CheckpointFormat.write(serializedState, path, configuration));
+      checkpointCount++;
+   }
+
+   // blocks until the last checkpoint is on disk, rethrowing its failure
+   public void awaitPending() {
+      if(pending == null) {
+         return;
+      }
+      try {
+         pending.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Interrupted while writing a checkpoint", e);
+      } catch (ExecutionException e) {
+         throw new RuntimeException("Failed to write a checkpoint", e.getCause());
+      } finally {
+         pending = null;
+      }
+   }
+
+   public long getCheckpointCount() {
+      return checkpointCount;
+   }
+
+   @Override
+   public void close() {
+      try {
+         awaitPending();
+      } finally {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,171 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.lgp.program.Instruction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+
+/**
+ * Byte encoding of compiled programs for broadcasts and task results: one opcode byte per instruction or node followed by
+ * its operands as variable-length integers, then the constant pool. An effective LGP instruction typically takes four
+ * bytes and a TreeGP node one or two, instead of an object graph with the operator set.
+ */
+public class CompactEncoding {
+
+   private static final int VERSION = 1;
+
+   // instructions with delegated operators carry library objects, so such programs cannot be encoded
+   public static boolean canEncode(CompiledLgpProgram program) {
+      return !program.hasDelegates();
+   }
+
+   public static byte[] encode(CompiledLgpProgram program) {
+      if(!canEncode(program)) {
+         throw new IllegalArgumentException("Programs with delegated instructions cannot be encoded");
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 4 * program.length() + 8 * program.constantCount());
+      try(DataOutputStream out = new DataOutputStream(bytes)) {
+         out.writeByte(VERSION);
+         writeVarInt(out, program.getRegisterCount());
+         writeVarInt(out, program.length());
+         for(int i=0; i < program.length(); ++i) {
+            out.writeByte(program.getOpcode(i) << 1 | (program.isConditional(i) ? 1 : 0));
+            writeVarInt(out, program.getTarget(i));
+            writeVarInt(out, zigZag(program.getOperand1(i)));
+            writeVarInt(out, zigZag(program.getOperand2(i)));
+         }
+         writeConstants(out, program.constantCount(), program::getConstant);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+   }
+
+   public static CompiledLgpProgram decodeLgp(byte[] encoded) {
+      try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+         readVersion(in);
+         int registerCount = readVarInt(in);
+         int length = readVarInt(in);
+         int[] opcodes = new int[length];
+         int[] operands1 = new int[length];
+         int[] operands2 = new int[length];
+         int[] targets = new int[length];
+         boolean[] conditionals = new boolean[length];
+         for(int i=0; i < length; ++i) {
+            int header = in.readUnsignedByte();
+            opcodes[i] = header >>> 1;
+            conditionals[i] = (header & 1) != 0;
+            targets[i] = readVarInt(in);
+            operands1[i] = unZigZag(readVarInt(in));
+            operands2[i] = unZigZag(readVarInt(in));
+         }
+         double[] constants = readConstants(in);
+         return new CompiledLgpProgram(registerCount, opcodes, operands1, operands2, targets, conditionals, constants, new Instruction[length]);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   public static byte[] encode(CompiledSolution solution) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 2 * solution.length() + 8 * solution.constantCount());
+      try(DataOutputStream out = new DataOutputStream(bytes)) {
+         out.writeByte(VERSION);
+         writeVarInt(out, solution.treeCount());
+         for(int tree = 0; tree < solution.treeCount(); ++tree) {
+            writeVarInt(out, solution.getTreeEnd(tree) - solution.getTreeStart(tree));
+         }
+         // prefix order: the opcode in the low three bits, the variable or constant index above them
+         for(int node = 0; node < solution.length(); ++node) {
+            writeVarInt(out, solution.getArgument(node) << 3 | solution.getOpcode(node));
+         }
+         writeConstants(out, solution.constantCount(), solution::getConstant);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+   }
+
+   public static CompiledSolution decodeTreeGp(byte[] encoded) {
+      try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+         readVersion(in);
+         int treeCount = readVarInt(in);
+         int[] treeStarts = new int[treeCount + 1];
+         for(int tree = 0; tree < treeCount; ++tree) {
+            treeStarts[tree + 1] = treeStarts[tree] + readVarInt(in);
+         }
+         int length = treeStarts[treeCount];
+         int[] opcodes = new int[length];
+         int[] arguments = new int[length];
+         for(int node = 0; node < length; ++node) {
+            int packed = readVarInt(in);
+            opcodes[node] = packed & 7;
+            arguments[node] = packed >>> 3;
+         }
+         double[] constants = readConstants(in);
+         return new CompiledSolution(opcodes, arguments, treeStarts, constants);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private interface ConstantPool {
+      double get(int index);
+   }
+
+   private static void writeConstants(DataOutputStream out, int count, ConstantPool constants) throws IOException {
+      writeVarInt(out, count);
+      for(int i=0; i < count; ++i) {
+         out.writeDouble(constants.get(i));
+      }
+   }
+
+   private static double[] readConstants(DataInputStream in) throws IOException {
+      double[] constants = new double[readVarInt(in)];
+      for(int i=0; i < constants.length; ++i) {
+         constants[i] = in.readDouble();
+      }
+      return constants;
+   }
+
+   private static void readVersion(DataInputStream in) throws IOException {
+      int version = in.readUnsignedByte();
+      if(version != VERSION) {
+         throw new IOException("Unsupported encoding version " + version);
+      }
+   }
+
+   // negative operands are constant pool references, so they are zig-zag encoded to stay short
+   private static int zigZag(int value) {
+      return (value << 1) ^ (value >> 31);
+   }
+
+   private static int unZigZag(int value) {
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+      while((value & ~0x7F) != 0) {
+         out.writeByte((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      out.writeByte(value);
+   }
+
+   private static int readVarInt(DataInputStream in) throws IOException {
+      int value = 0;
+      for(int shift = 0; shift < 32; shift += 7) {
+         int b = in.readUnsignedByte();
+         value |= (b & 0x7F) << shift;
+         if((b & 0x80) == 0) {
+            return value;
+         }
+      }
+      throw new IOException("Malformed variable-length integer");
+   }
+}
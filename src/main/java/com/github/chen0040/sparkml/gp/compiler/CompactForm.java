@@ -0,0 +1,25 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import java.io.Serializable;
+
+
+/**
+ * What java serialization writes in place of a compiled program: its CompactEncoding bytes, decoded on read.
+ */
+class CompactForm implements Serializable {
+
+   private static final long serialVersionUID = 3305418847193026712L;
+
+   private final boolean treeGp;
+   private final byte[] encoded;
+
+   CompactForm(boolean treeGp, byte[] encoded) {
+      this.treeGp = treeGp;
+      this.encoded = encoded;
+   }
+
+   private Object readResolve() {
+      return treeGp ? CompactEncoding.decodeTreeGp(encoded) : CompactEncoding.decodeLgp(encoded);
+   }
+}
@@ -0,0 +1,198 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.enums.OperatorExecutionStatus;
+import com.github.chen0040.gp.lgp.program.Instruction;
+import com.github.chen0040.gp.lgp.program.Operand;
+import com.github.chen0040.gp.lgp.program.Register;
+
+
+/**
+ * Effective LGP instructions flattened into opcode and operand arrays and executed over a double[] register file.
+ * Operands are register indices when non-negative and constant pool indices encoded as -(index + 1) otherwise.
+ */
+public class CompiledLgpProgram implements ExecutableProgram {
+
+   private static final long serialVersionUID = -1209387542309871613L;
+
+   public static final int OP_ADD = 0;
+   public static final int OP_SUBTRACT = 1;
+   public static final int OP_MULTIPLY = 2;
+   public static final int OP_SINE = 3;
+   public static final int OP_COSINE = 4;
+   public static final int OP_IF_LESS_THAN = 5;
+   public static final int OP_DELEGATE = 6;
+
+   private final int registerCount;
+   private final int[] opcodes;
+   private final int[] operands1;
+   private final int[] operands2;
+   private final int[] targets;
+   private final boolean[] conditionals;
+   private final double[] constants;
+
+   // instructions whose operator has no opcode are executed by the operator itself
+   private final Instruction[] delegates;
+
+   private transient ThreadLocal<double[]> registers;
+
+   public CompiledLgpProgram(int registerCount, int[] opcodes, int[] operands1, int[] operands2, int[] targets, boolean[] conditionals, double[] constants, Instruction[] delegates) {
+      this.registerCount = registerCount;
+      this.opcodes = opcodes;
+      this.operands1 = operands1;
+      this.operands2 = operands2;
+      this.targets = targets;
+      this.conditionals = conditionals;
+      this.constants = constants;
+      this.delegates = delegates;
+   }
+
+   public int length() {
+      return opcodes.length;
+   }
+
+   public int getRegisterCount() {
+      return registerCount;
+   }
+
+   public int getOpcode(int instruction) {
+      return opcodes[instruction];
+   }
+
+   public int getOperand1(int instruction) {
+      return operands1[instruction];
+   }
+
+   public int getOperand2(int instruction) {
+      return operands2[instruction];
+   }
+
+   public int getTarget(int instruction) {
+      return targets[instruction];
+   }
+
+   public boolean isConditional(int instruction) {
+      return conditionals[instruction];
+   }
+
+   public double getConstant(int index) {
+      return constants[index];
+   }
+
+   public int constantCount() {
+      return constants.length;
+   }
+
+   public boolean hasDelegates() {
+      for(Instruction delegate : delegates) {
+         if(delegate != null) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   // broadcasts and task closures carry the compact encoding instead of the arrays and their class descriptors
+   private Object writeReplace() {
+      return CompactEncoding.canEncode(this) ? new CompactForm(false, CompactEncoding.encode(this)) : this;
+   }
+
+   // delegated instructions run on the registers of the library, which all the instructions of the program share, so
+   // every thread needs a copy of a program with delegates
+   @Override
+   public boolean isThreadSafe() {
+      return !hasDelegates();
+   }
+
+   @Override
+   public void execute(BasicObservation observation) {
+      double[] registers = registers();
+      int inputCount = observation.inputCount();
+      for(int i=0; i < registerCount; ++i) {
+         registers[i] = observation.getInput(i % inputCount);
+      }
+      run(registers);
+      int outputCount = Math.min(registerCount, observation.outputCount());
+      for(int i=0; i < outputCount; ++i) {
+         observation.setPredictedOutput(i, registers[i]);
+      }
+   }
+
+   public double eval(double[] inputs) {
+      double[] registers = registers();
+      for(int i=0; i < registerCount; ++i) {
+         registers[i] = inputs[i % inputs.length];
+      }
+      run(registers);
+      return registers[0];
+   }
+
+   private double[] registers() {
+      if(registers == null) {
+         registers = ThreadLocal.withInitial(() -> new double[registerCount]);
+      }
+      return registers.get();
+   }
+
+   private void run(double[] registers) {
+      boolean skip = false;
+      for(int i=0; i < opcodes.length; ++i) {
+         if(skip) {
+            // a skipped conditional also skips the instruction it guards
+            skip = conditionals[i];
+            continue;
+         }
+
+         double a = value(registers, operands1[i]);
+         double b = value(registers, operands2[i]);
+         switch (opcodes[i]) {
+            case OP_ADD:
+               registers[targets[i]] = a + b;
+               break;
+            case OP_SUBTRACT:
+               registers[targets[i]] = a - b;
+               break;
+            case OP_MULTIPLY:
+               registers[targets[i]] = a * b;
+               break;
+            case OP_SINE:
+               registers[targets[i]] = Math.sin(a);
+               break;
+            case OP_COSINE:
+               registers[targets[i]] = Math.cos(a);
+               break;
+            case OP_IF_LESS_THAN:
+               skip = !(a < b);
+               break;
+            default:
+               skip = delegate(i, registers);
+         }
+      }
+   }
+
+   private double value(double[] registers, int operand) {
+      return operand >= 0 ? registers[operand] : constants[-operand - 1];
+   }
+
+   private boolean delegate(int i, double[] registers) {
+      Instruction instruction = delegates[i];
+      synchronized (instruction) {
+         Operand operand1 = instruction.getOperand1();
+         Operand operand2 = instruction.getOperand2();
+         Register target = instruction.getTargetOperand();
+         load(operand1, registers);
+         load(operand2, registers);
+         target.setValue(registers[targets[i]]);
+         OperatorExecutionStatus status = instruction.getOperator().execute(operand1, operand2, target);
+         registers[targets[i]] = target.getValue();
+         return status == OperatorExecutionStatus.LGP_SKIP_NEXT_INSTRUCTION;
+      }
+   }
+
+   private void load(Operand operand, double[] registers) {
+      if(!operand.isConstant()) {
+         ((Register) operand).setValue(registers[operand.getIndex()]);
+      }
+   }
+}
@@ -0,0 +1,198 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+
+/**
+ * TreeGP trees flattened into prefix-order opcode arrays with a shared constant pool, one tree per output.
+ * A tree is evaluated from its last node to its first over a double[] stack.
+ */
+public class CompiledSolution implements ExecutableProgram {
+
+   private static final long serialVersionUID = 5364187766012894271L;
+
+   public static final int OP_VARIABLE = 0;
+   public static final int OP_CONSTANT = 1;
+   public static final int OP_ADD = 2;
+   public static final int OP_SUBTRACT = 3;
+   public static final int OP_MULTIPLY = 4;
+   public static final int OP_IF_LESS_THAN = 5;
+
+   private final int[] opcodes;
+   private final int[] arguments;
+   private final int[] treeStarts;
+   private final double[] constants;
+
+   private transient ThreadLocal<double[]> stack;
+
+   // treeStarts has one entry per tree plus a final entry equal to opcodes.length
+   public CompiledSolution(int[] opcodes, int[] arguments, int[] treeStarts, double[] constants) {
+      this.opcodes = opcodes;
+      this.arguments = arguments;
+      this.treeStarts = treeStarts;
+      this.constants = constants;
+   }
+
+   public int treeCount() {
+      return treeStarts.length - 1;
+   }
+
+   public int getTreeStart(int tree) {
+      return treeStarts[tree];
+   }
+
+   public int getTreeEnd(int tree) {
+      return treeStarts[tree + 1];
+   }
+
+   public int getOpcode(int node) {
+      return opcodes[node];
+   }
+
+   public int getArgument(int node) {
+      return arguments[node];
+   }
+
+   public double getConstant(int index) {
+      return constants[index];
+   }
+
+   public int constantCount() {
+      return constants.length;
+   }
+
+   public int length() {
+      return opcodes.length;
+   }
+
+   public static int arity(int opcode) {
+      switch (opcode) {
+         case OP_VARIABLE:
+         case OP_CONSTANT:
+            return 0;
+         case OP_IF_LESS_THAN:
+            return 4;
+         default:
+            return 2;
+      }
+   }
+
+   // the node after the last node of the subtree rooted at the node
+   public int subtreeEnd(int node) {
+      int open = 1;
+      while(open > 0) {
+         open += arity(opcodes[node]) - 1;
+         ++node;
+      }
+      return node;
+   }
+
+   // whether two subtrees compute the same function in the way canonical subtree hashes see them: equal nodes, with the
+   // operands of sums and products in either order
+   public static boolean sameSubtree(CompiledSolution a, int i, CompiledSolution b, int j) {
+      int opcode = a.opcodes[i];
+      if(opcode != b.opcodes[j]) {
+         return false;
+      }
+      if(opcode == OP_VARIABLE) {
+         return a.arguments[i] == b.arguments[j];
+      }
+      if(opcode == OP_CONSTANT) {
+         return Double.doubleToLongBits(a.constants[a.arguments[i]]) == Double.doubleToLongBits(b.constants[b.arguments[j]]);
+      }
+      if(opcode == OP_ADD || opcode == OP_MULTIPLY) {
+         int a2 = a.subtreeEnd(i + 1);
+         int b2 = b.subtreeEnd(j + 1);
+         return sameSubtree(a, i + 1, b, j + 1) && sameSubtree(a, a2, b, b2)
+                 || sameSubtree(a, i + 1, b, b2) && sameSubtree(a, a2, b, j + 1);
+      }
+      int childA = i + 1;
+      int childB = j + 1;
+      for(int child = 0; child < arity(opcode); ++child) {
+         if(!sameSubtree(a, childA, b, childB)) {
+            return false;
+         }
+         childA = a.subtreeEnd(childA);
+         childB = b.subtreeEnd(childB);
+      }
+      return true;
+   }
+
+   // broadcasts and task closures carry the compact encoding instead of the arrays and their class descriptors
+   private Object writeReplace() {
+      return new CompactForm(true, CompactEncoding.encode(this));
+   }
+
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
+   @Override
+   public void execute(BasicObservation observation) {
+      for(int tree = 0; tree < treeCount(); ++tree) {
+         observation.setPredictedOutput(tree, evalTree(tree, observation));
+      }
+   }
+
+   public double eval(double[] inputs) {
+      return evalTree(0, inputs);
+   }
+
+   public double evalTree(int tree, BasicObservation observation) {
+      double[] stack = stack();
+      int top = 0;
+      for(int node = treeStarts[tree + 1] - 1; node >= treeStarts[tree]; --node) {
+         int opcode = opcodes[node];
+         if(opcode == OP_VARIABLE) {
+            stack[top++] = observation.getInput(arguments[node]);
+         } else {
+            top = apply(opcode, arguments[node], stack, top);
+         }
+      }
+      return stack[0];
+   }
+
+   public double evalTree(int tree, double[] inputs) {
+      double[] stack = stack();
+      int top = 0;
+      for(int node = treeStarts[tree + 1] - 1; node >= treeStarts[tree]; --node) {
+         int opcode = opcodes[node];
+         if(opcode == OP_VARIABLE) {
+            stack[top++] = inputs[arguments[node]];
+         } else {
+            top = apply(opcode, arguments[node], stack, top);
+         }
+      }
+      return stack[0];
+   }
+
+   // the first child of a node sits on top of the stack because the prefix order is walked backwards
+   private int apply(int opcode, int argument, double[] stack, int top) {
+      switch (opcode) {
+         case OP_CONSTANT:
+            stack[top] = constants[argument];
+            return top + 1;
+         case OP_ADD:
+            stack[top - 2] = stack[top - 1] + stack[top - 2];
+            return top - 1;
+         case OP_SUBTRACT:
+            stack[top - 2] = stack[top - 1] - stack[top - 2];
+            return top - 1;
+         case OP_MULTIPLY:
+            stack[top - 2] = stack[top - 1] * stack[top - 2];
+            return top - 1;
+         default:
+            stack[top - 4] = stack[top - 1] < stack[top - 2] ? stack[top - 3] : stack[top - 4];
+            return top - 3;
+      }
+   }
+
+   private double[] stack() {
+      if(stack == null) {
+         stack = ThreadLocal.withInitial(() -> new double[opcodes.length + 1]);
+      }
+      return stack.get();
+   }
+}
@@ -0,0 +1,39 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.util.List;
+
+
+/**
+ * Checks that a compiled program produces bit-identical predictions to the interpreter.
+ */
+public class CompilerVerification {
+
+   public static boolean agrees(ExecutableProgram compiled, ExecutableProgram interpreted, List<BasicObservation> probes) {
+      for(BasicObservation probe : probes) {
+         BasicObservation expected = copy(probe);
+         BasicObservation actual = copy(probe);
+         interpreted.execute(expected);
+         compiled.execute(actual);
+         for(int i=0; i < probe.outputCount(); ++i) {
+            if(Double.doubleToLongBits(expected.getPredictedOutput(i)) != Double.doubleToLongBits(actual.getPredictedOutput(i))) {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+   private static BasicObservation copy(BasicObservation observation) {
+      BasicObservation copy = new BasicObservation(observation.inputCount(), observation.outputCount());
+      for(int i=0; i < observation.inputCount(); ++i) {
+         copy.setInput(i, observation.getInput(i));
+      }
+      for(int i=0; i < observation.outputCount(); ++i) {
+         copy.setOutput(i, observation.getOutput(i));
+      }
+      return copy;
+   }
+}
@@ -0,0 +1,20 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.io.Serializable;
+
+
+/**
+ * A program which writes its predicted outputs into the observation, either interpreted or compiled.
+ */
+public interface ExecutableProgram extends Serializable {
+   void execute(BasicObservation observation);
+
+   // true when the tasks of an executor can execute one instance side by side, i.e. the program keeps no registers of
+   // its own; the interpreters keep them in the program
+   default boolean isThreadSafe() {
+      return false;
+   }
+}
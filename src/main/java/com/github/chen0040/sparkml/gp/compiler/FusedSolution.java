@@ -0,0 +1,165 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * All the trees of a CompiledSolution merged into one list of values in dependency order, in which equal subtrees,
+ * within a tree or across the trees of the solution, are computed once (operands of + and * in either order count as
+ * equal). Every row reads each input once, evaluates the values into a reused buffer and writes one output per tree.
+ */
+public class FusedSolution implements ExecutableProgram {
+
+   private static final long serialVersionUID = 7741956201093360628L;
+
+   private final int[] opcodes;
+   private final int[] arguments;
+   private final int[][] children;
+   private final double[] constants;
+   private final int[] outputs;
+   private final int compiledLength;
+
+   private transient ThreadLocal<double[]> values;
+
+   private FusedSolution(int[] opcodes, int[] arguments, int[][] children, double[] constants, int[] outputs, int compiledLength) {
+      this.opcodes = opcodes;
+      this.arguments = arguments;
+      this.children = children;
+      this.constants = constants;
+      this.outputs = outputs;
+      this.compiledLength = compiledLength;
+   }
+
+   public static FusedSolution fuse(CompiledSolution compiled) {
+      Map<String, Integer> slots = new HashMap<>();
+      List<Integer> opcodes = new ArrayList<>();
+      List<Integer> arguments = new ArrayList<>();
+      List<int[]> children = new ArrayList<>();
+      List<Double> constants = new ArrayList<>();
+      int[] outputs = new int[compiled.treeCount()];
+
+      int[] stack = new int[compiled.length()];
+      for(int tree = 0; tree < compiled.treeCount(); ++tree) {
+         int top = 0;
+         // the prefix order walked backwards leaves the first child of a node on top of the stack
+         for(int node = compiled.getTreeEnd(tree) - 1; node >= compiled.getTreeStart(tree); --node) {
+            int opcode = compiled.getOpcode(node);
+            int arity = CompiledSolution.arity(opcode);
+            int[] operands = new int[arity];
+            for(int i = 0; i < arity; ++i) {
+               operands[i] = stack[top - 1 - i];
+            }
+            top -= arity;
+            if((opcode == CompiledSolution.OP_ADD || opcode == CompiledSolution.OP_MULTIPLY) && operands[0] > operands[1]) {
+               operands = new int[] { operands[1], operands[0] };
+            }
+
+            String key;
+            int argument = 0;
+            if(opcode == CompiledSolution.OP_VARIABLE) {
+               argument = compiled.getArgument(node);
+               key = "v" + argument;
+            } else if(opcode == CompiledSolution.OP_CONSTANT) {
+               double constant = compiled.getConstant(compiled.getArgument(node));
+               key = "c" + Double.doubleToLongBits(constant);
+               argument = constants.indexOf(constant);
+               if(argument < 0) {
+                  argument = constants.size();
+                  constants.add(constant);
+               }
+            } else {
+               StringBuilder builder = new StringBuilder().append(opcode);
+               for(int operand : operands) {
+                  builder.append(',').append(operand);
+               }
+               key = builder.toString();
+            }
+
+            Integer slot = slots.get(key);
+            if(slot == null) {
+               slot = opcodes.size();
+               slots.put(key, slot);
+               opcodes.add(opcode);
+               arguments.add(argument);
+               children.add(operands);
+            }
+            stack[top++] = slot;
+         }
+         outputs[tree] = stack[0];
+      }
+
+      int[] opcodeArray = new int[opcodes.size()];
+      int[] argumentArray = new int[opcodes.size()];
+      for(int i = 0; i < opcodeArray.length; ++i) {
+         opcodeArray[i] = opcodes.get(i);
+         argumentArray[i] = arguments.get(i);
+      }
+      double[] constantPool = new double[constants.size()];
+      for(int i = 0; i < constantPool.length; ++i) {
+         constantPool[i] = constants.get(i);
+      }
+      return new FusedSolution(opcodeArray, argumentArray, children.toArray(new int[0][]), constantPool, outputs, compiled.length());
+   }
+
+   // number of values computed per row
+   public int size() {
+      return opcodes.length;
+   }
+
+   // number of nodes of the trees before common subexpressions were merged
+   public int getCompiledLength() {
+      return compiledLength;
+   }
+
+   public int treeCount() {
+      return outputs.length;
+   }
+
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
+   @Override
+   public void execute(BasicObservation observation) {
+      double[] values = values();
+      for(int slot = 0; slot < opcodes.length; ++slot) {
+         int[] operands = children[slot];
+         switch (opcodes[slot]) {
+            case CompiledSolution.OP_VARIABLE:
+               values[slot] = observation.getInput(arguments[slot]);
+               break;
+            case CompiledSolution.OP_CONSTANT:
+               values[slot] = constants[arguments[slot]];
+               break;
+            case CompiledSolution.OP_ADD:
+               values[slot] = values[operands[0]] + values[operands[1]];
+               break;
+            case CompiledSolution.OP_SUBTRACT:
+               values[slot] = values[operands[0]] - values[operands[1]];
+               break;
+            case CompiledSolution.OP_MULTIPLY:
+               values[slot] = values[operands[0]] * values[operands[1]];
+               break;
+            default:
+               values[slot] = values[operands[0]] < values[operands[1]] ? values[operands[2]] : values[operands[3]];
+         }
+      }
+      for(int tree = 0; tree < outputs.length; ++tree) {
+         observation.setPredictedOutput(tree, values[outputs[tree]]);
+      }
+   }
+
+   private double[] values() {
+      if(values == null) {
+         values = ThreadLocal.withInitial(() -> new double[opcodes.length]);
+      }
+      return values.get();
+   }
+}
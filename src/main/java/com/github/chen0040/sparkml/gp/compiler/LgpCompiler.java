@@ -0,0 +1,83 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.program.Instruction;
+import com.github.chen0040.gp.lgp.program.Operand;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.gp.lgp.program.operators.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compiles effective LGP programs into CompiledLgpProgram.
+ */
+public class LgpCompiler {
+
+   public static CompiledLgpProgram compile(Program effectiveProgram) {
+      List<Instruction> instructions = effectiveProgram.getInstructions();
+      int length = instructions.size();
+
+      int[] opcodes = new int[length];
+      int[] operands1 = new int[length];
+      int[] operands2 = new int[length];
+      int[] targets = new int[length];
+      boolean[] conditionals = new boolean[length];
+      Instruction[] delegates = new Instruction[length];
+      List<Double> constants = new ArrayList<>();
+
+      for(int i=0; i < length; ++i) {
+         Instruction instruction = instructions.get(i);
+         Operator operator = instruction.getOperator();
+         opcodes[i] = opcode(operator);
+         if(opcodes[i] == CompiledLgpProgram.OP_DELEGATE) {
+            delegates[i] = instruction;
+         }
+         operands1[i] = operand(instruction.getOperand1(), constants);
+         operands2[i] = operand(instruction.getOperand2(), constants);
+         targets[i] = instruction.getTargetOperand().getIndex();
+         conditionals[i] = operator.isConditionalConstruct();
+      }
+
+      double[] constantPool = new double[constants.size()];
+      for(int i=0; i < constantPool.length; ++i) {
+         constantPool[i] = constants.get(i);
+      }
+
+      return new CompiledLgpProgram(effectiveProgram.getRegisterSet().size(), opcodes, operands1, operands2, targets, conditionals, constantPool, delegates);
+   }
+
+   // returns the compiled program, or the interpreter when the compiled form disagrees with it on any probe observation
+   public static ExecutableProgram compile(Program effectiveProgram, List<BasicObservation> probes) {
+      CompiledLgpProgram compiled = compile(effectiveProgram);
+      ExecutableProgram interpreted = effectiveProgram::execute;
+      return CompilerVerification.agrees(compiled, interpreted, probes) ? compiled : interpreted;
+   }
+
+   private static int opcode(Operator operator) {
+      if(operator instanceof Plus) {
+         return CompiledLgpProgram.OP_ADD;
+      } else if(operator instanceof Minus) {
+         return CompiledLgpProgram.OP_SUBTRACT;
+      } else if(operator instanceof Multiply) {
+         return CompiledLgpProgram.OP_MULTIPLY;
+      } else if(operator instanceof Sine) {
+         return CompiledLgpProgram.OP_SINE;
+      } else if(operator instanceof Cosine) {
+         return CompiledLgpProgram.OP_COSINE;
+      } else if(operator instanceof IfLessThan) {
+         return CompiledLgpProgram.OP_IF_LESS_THAN;
+      }
+      return CompiledLgpProgram.OP_DELEGATE;
+   }
+
+   private static int operand(Operand operand, List<Double> constants) {
+      if(operand.isConstant()) {
+         constants.add(operand.getValue());
+         return -constants.size();
+      }
+      return operand.getIndex();
+   }
+}
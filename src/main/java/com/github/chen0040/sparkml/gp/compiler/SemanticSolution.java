@@ -0,0 +1,179 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.evaluation.BlockAware;
+
+import java.util.Arrays;
+
+
+/**
+ * Evaluates a CompiledSolution one block at a time: the output vector of every subtree over the block is looked up in
+ * the executor's SubtreeCache by a canonical hash of the subtree, so that subtrees shared across the population are
+ * computed once per block; the cache compares the subtrees themselves before answering, so colliding hashes cost a
+ * recomputation and never a wrong vector. The rows of the block are then answered from the vectors of the trees, which belong to the
+ * thread, so that the tasks of an executor can share one instance.
+ */
+public class SemanticSolution implements ExecutableProgram, BlockAware {
+
+   private static final long serialVersionUID = -2419632305788437521L;
+
+   private static final long SEED = 0x9E3779B97F4A7C15L;
+
+   private final CompiledSolution compiled;
+   private final long cacheCapacity;
+   private final long[] hashes;
+   private final int[] subtreeEnds;
+
+   private transient ThreadLocal<Outputs> outputs;
+
+   public SemanticSolution(CompiledSolution compiled, long cacheCapacity) {
+      this.compiled = compiled;
+      this.cacheCapacity = cacheCapacity;
+      this.hashes = new long[compiled.length()];
+      this.subtreeEnds = new int[compiled.length()];
+      for(int tree = 0; tree < compiled.treeCount(); ++tree) {
+         index(compiled.getTreeStart(tree), compiled.getTreeEnd(tree));
+      }
+   }
+
+   public CompiledSolution getCompiledSolution() {
+      return compiled;
+   }
+
+   // canonical hash of the subtree rooted at the node: equal for equal subtrees, and for sums and products whose operands are swapped
+   public long getHash(int node) {
+      return hashes[node];
+   }
+
+   @Override
+   public void beginBlock(ObservationBlock block) {
+      SubtreeCache cache = SubtreeCache.getInstance();
+      if(cache.getCapacity() != cacheCapacity) {
+         cache.setCapacity(cacheCapacity);
+      }
+      Outputs o = outputs();
+      o.vectors = new double[compiled.treeCount()][];
+      for(int tree = 0; tree < compiled.treeCount(); ++tree) {
+         o.vectors[tree] = vector(compiled.getTreeStart(tree), block, cache);
+      }
+      o.row = 0;
+   }
+
+   @Override
+   public void execute(BasicObservation observation) {
+      Outputs o = outputs();
+      if(o.vectors == null) {
+         compiled.execute(observation);
+         return;
+      }
+      for(int tree = 0; tree < o.vectors.length; ++tree) {
+         observation.setPredictedOutput(tree, o.vectors[tree][o.row]);
+      }
+      o.row++;
+   }
+
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
+   private Outputs outputs() {
+      if(outputs == null) {
+         outputs = ThreadLocal.withInitial(Outputs::new);
+      }
+      return outputs.get();
+   }
+
+   // walks the prefix order backwards, so the children of a node are indexed before the node itself
+   private void index(int start, int end) {
+      int[] stack = new int[end - start];
+      int top = 0;
+      for(int node = end - 1; node >= start; --node) {
+         int opcode = compiled.getOpcode(node);
+         long hash = mix(SEED, opcode);
+         int arity = CompiledSolution.arity(opcode);
+         if(opcode == CompiledSolution.OP_VARIABLE) {
+            hash = mix(hash, compiled.getArgument(node));
+         } else if(opcode == CompiledSolution.OP_CONSTANT) {
+            hash = mix(hash, Double.doubleToLongBits(compiled.getConstant(compiled.getArgument(node))));
+         } else if(opcode == CompiledSolution.OP_ADD || opcode == CompiledSolution.OP_MULTIPLY) {
+            long first = hashes[stack[top - 1]];
+            long second = hashes[stack[top - 2]];
+            hash = mix(mix(hash, Math.min(first, second)), Math.max(first, second));
+         } else {
+            for(int child = 1; child <= arity; ++child) {
+               hash = mix(hash, hashes[stack[top - child]]);
+            }
+         }
+         top -= arity;
+         subtreeEnds[node] = arity == 0 ? node + 1 : subtreeEnds[stack[top]];
+         hashes[node] = hash;
+         stack[top++] = node;
+      }
+   }
+
+   private double[] vector(int node, ObservationBlock block, SubtreeCache cache) {
+      int opcode = compiled.getOpcode(node);
+      if(opcode == CompiledSolution.OP_VARIABLE) {
+         return block.getInputColumn(compiled.getArgument(node));
+      }
+      if(opcode == CompiledSolution.OP_CONSTANT) {
+         double[] vector = new double[block.size()];
+         Arrays.fill(vector, compiled.getConstant(compiled.getArgument(node)));
+         return vector;
+      }
+
+      double[] cached = cache.get(block.getId(), hashes[node], compiled, node);
+      if(cached != null) {
+         return cached;
+      }
+
+      double[][] children = new double[CompiledSolution.arity(opcode)][];
+      int child = node + 1;
+      for(int i = 0; i < children.length; ++i) {
+         children[i] = vector(child, block, cache);
+         child = subtreeEnds[child];
+      }
+
+      double[] vector = new double[block.size()];
+      double[] first = children[0];
+      double[] second = children[1];
+      switch (opcode) {
+         case CompiledSolution.OP_ADD:
+            for(int i = 0; i < vector.length; ++i) {
+               vector[i] = first[i] + second[i];
+            }
+            break;
+         case CompiledSolution.OP_SUBTRACT:
+            for(int i = 0; i < vector.length; ++i) {
+               vector[i] = first[i] - second[i];
+            }
+            break;
+         case CompiledSolution.OP_MULTIPLY:
+            for(int i = 0; i < vector.length; ++i) {
+               vector[i] = first[i] * second[i];
+            }
+            break;
+         default:
+            for(int i = 0; i < vector.length; ++i) {
+               vector[i] = first[i] < second[i] ? children[2][i] : children[3][i];
+            }
+      }
+      cache.put(block.getId(), hashes[node], compiled, node, vector);
+      return vector;
+   }
+
+   private static long mix(long hash, long value) {
+      long h = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+      return h * 0x94D049BB133111EBL + SEED;
+   }
+
+   // the vectors of the trees over the block which a thread is answering rows from
+   private static class Outputs {
+      private double[][] vectors;
+      private int row;
+   }
+}
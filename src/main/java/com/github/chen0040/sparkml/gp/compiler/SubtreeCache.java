@@ -0,0 +1,150 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import org.apache.spark.SparkEnv;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Least recently used output vectors of subtrees over the observation blocks of this JVM, keyed by block id and
+ * canonical subtree hash and bounded by the estimated size of the vectors. One instance is shared by all the tasks of an
+ * executor, so solutions of a generation reuse the subtrees which solutions of earlier jobs have computed. Every vector
+ * keeps the subtree it was computed from, and a lookup whose subtree differs from it despite the equal hash is a miss.
+ */
+public class SubtreeCache {
+
+   public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+   // array header plus the map entry and key which hold the vector
+   private static final long ENTRY_OVERHEAD = 96;
+
+   private static final SubtreeCache instance = new SubtreeCache();
+
+   private final LinkedHashMap<Key, Entry> vectors = new LinkedHashMap<>(256, 0.75f, true);
+   private long capacity = DEFAULT_CAPACITY;
+   private long bytes;
+   private long hits;
+   private long misses;
+   private long evictions;
+
+   public static SubtreeCache getInstance() {
+      return instance;
+   }
+
+   public synchronized long getCapacity() {
+      return capacity;
+   }
+
+   // shrinking the capacity evicts the least recently used vectors at once
+   public synchronized void setCapacity(long capacity) {
+      this.capacity = capacity;
+      evict();
+   }
+
+   // the vector of the subtree rooted at the node of the solution, or null on a miss; the vector is shared and must not
+   // be modified
+   public synchronized double[] get(long blockId, long hash, CompiledSolution solution, int node) {
+      Entry entry = vectors.get(new Key(blockId, hash));
+      if(entry == null || !CompiledSolution.sameSubtree(entry.solution, entry.node, solution, node)) {
+         misses++;
+         return null;
+      }
+      hits++;
+      return entry.vector;
+   }
+
+   // a colliding subtree replaces the vector stored under the hash
+   public synchronized void put(long blockId, long hash, CompiledSolution solution, int node, double[] vector) {
+      Entry previous = vectors.put(new Key(blockId, hash), new Entry(vector, solution, node));
+      if(previous != null) {
+         bytes -= sizeOf(previous.vector);
+      }
+      bytes += sizeOf(vector);
+      evict();
+   }
+
+   public synchronized void clear() {
+      vectors.clear();
+      bytes = 0;
+      hits = 0;
+      misses = 0;
+      evictions = 0;
+   }
+
+   public synchronized SubtreeCacheStatistics statistics(String executorId) {
+      return new SubtreeCacheStatistics(executorId, hits, misses, evictions, vectors.size(), bytes, capacity);
+   }
+
+   // the statistics of every executor which runs one of a few small tasks, i.e. all of them unless the cluster is busy
+   public static List<SubtreeCacheStatistics> collectStatistics(JavaSparkContext context) {
+      int taskCount = Math.max(1, context.defaultParallelism() * 4);
+      List<Integer> tasks = IntStream.range(0, taskCount).boxed().collect(Collectors.toList());
+      List<SubtreeCacheStatistics> collected = context.parallelize(tasks, taskCount).mapPartitions(ignored ->
+              Collections.singletonList(instance.statistics(SparkEnv.get().executorId()))).collect();
+
+      Map<String, SubtreeCacheStatistics> byExecutor = new LinkedHashMap<>();
+      for(SubtreeCacheStatistics statistics : collected) {
+         byExecutor.putIfAbsent(statistics.getExecutorId(), statistics);
+      }
+      return new ArrayList<>(byExecutor.values());
+   }
+
+   private void evict() {
+      Iterator<Map.Entry<Key, Entry>> iterator = vectors.entrySet().iterator();
+      while(bytes > capacity && iterator.hasNext()) {
+         bytes -= sizeOf(iterator.next().getValue().vector);
+         iterator.remove();
+         evictions++;
+      }
+   }
+
+   private static long sizeOf(double[] vector) {
+      return 8L * vector.length + ENTRY_OVERHEAD;
+   }
+
+   // the vector with the subtree it was computed from
+   private static class Entry {
+      private final double[] vector;
+      private final CompiledSolution solution;
+      private final int node;
+
+      Entry(double[] vector, CompiledSolution solution, int node) {
+         this.vector = vector;
+         this.solution = solution;
+         this.node = node;
+      }
+   }
+
+   private static class Key {
+      private final long blockId;
+      private final long hash;
+
+      Key(long blockId, long hash) {
+         this.blockId = blockId;
+         this.hash = hash;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if(!(o instanceof Key)) {
+            return false;
+         }
+         Key that = (Key) o;
+         return blockId == that.blockId && hash == that.hash;
+      }
+
+      @Override
+      public int hashCode() {
+         return Long.hashCode(blockId * 31 + hash);
+      }
+   }
+}
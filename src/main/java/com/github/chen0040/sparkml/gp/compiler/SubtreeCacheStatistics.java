@@ -0,0 +1,71 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Hits, misses and memory footprint of the subtree cache of one executor.
+ */
+public class SubtreeCacheStatistics implements Serializable {
+
+   private static final long serialVersionUID = -6027836641184939118L;
+
+   private final String executorId;
+   private final long hits;
+   private final long misses;
+   private final long evictions;
+   private final int entryCount;
+   private final long bytes;
+   private final long capacity;
+
+   public SubtreeCacheStatistics(String executorId, long hits, long misses, long evictions, int entryCount, long bytes, long capacity) {
+      this.executorId = executorId;
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.entryCount = entryCount;
+      this.bytes = bytes;
+      this.capacity = capacity;
+   }
+
+   public String getExecutorId() {
+      return executorId;
+   }
+
+   public long getHits() {
+      return hits;
+   }
+
+   public long getMisses() {
+      return misses;
+   }
+
+   public long getEvictions() {
+      return evictions;
+   }
+
+   public int getEntryCount() {
+      return entryCount;
+   }
+
+   // estimated size of the cached output vectors
+   public long getBytes() {
+      return bytes;
+   }
+
+   public long getCapacity() {
+      return capacity;
+   }
+
+   public double getHitRatio() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+   }
+
+   @Override
+   public String toString() {
+      return "executor: " + executorId + ", hit ratio: " + getHitRatio() + ", hits: " + hits + ", misses: " + misses
+              + ", evictions: " + evictions + ", entries: " + entryCount + ", bytes: " + bytes + "/" + capacity;
+   }
+}
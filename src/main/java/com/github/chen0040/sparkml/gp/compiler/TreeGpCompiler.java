@@ -0,0 +1,96 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.treegp.program.Primitive;
+import com.github.chen0040.gp.treegp.program.Program;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.gp.treegp.program.TreeNode;
+import com.github.chen0040.gp.treegp.program.operators.IfLessThan;
+import com.github.chen0040.gp.treegp.program.operators.Minus;
+import com.github.chen0040.gp.treegp.program.operators.Multiply;
+import com.github.chen0040.gp.treegp.program.operators.Plus;
+import com.github.chen0040.gp.treegp.program.terminals.Constant;
+import com.github.chen0040.gp.treegp.program.terminals.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compiles the trees of a TreeGP solution into CompiledSolution.
+ */
+public class TreeGpCompiler {
+
+   // returns null when a tree contains a primitive which has no opcode
+   public static CompiledSolution compile(Solution solution) {
+      List<Integer> opcodes = new ArrayList<>();
+      List<Integer> arguments = new ArrayList<>();
+      List<Double> constants = new ArrayList<>();
+      List<Program> trees = solution.getTrees();
+      int[] treeStarts = new int[trees.size() + 1];
+
+      for(int i=0; i < trees.size(); ++i) {
+         treeStarts[i] = opcodes.size();
+         if(!emit(trees.get(i).getRoot(), opcodes, arguments, constants)) {
+            return null;
+         }
+      }
+      treeStarts[trees.size()] = opcodes.size();
+
+      int[] opcodeArray = new int[opcodes.size()];
+      int[] argumentArray = new int[arguments.size()];
+      for(int i=0; i < opcodeArray.length; ++i) {
+         opcodeArray[i] = opcodes.get(i);
+         argumentArray[i] = arguments.get(i);
+      }
+      double[] constantPool = new double[constants.size()];
+      for(int i=0; i < constantPool.length; ++i) {
+         constantPool[i] = constants.get(i);
+      }
+      return new CompiledSolution(opcodeArray, argumentArray, treeStarts, constantPool);
+   }
+
+   // returns the compiled solution, or the interpreter when it cannot be compiled or disagrees with it on any probe observation
+   public static ExecutableProgram compile(Solution solution, List<BasicObservation> probes) {
+      CompiledSolution compiled = compile(solution);
+      ExecutableProgram interpreted = solution::execute;
+      if(compiled == null || !CompilerVerification.agrees(compiled, interpreted, probes)) {
+         return interpreted;
+      }
+      return compiled;
+   }
+
+   private static boolean emit(TreeNode node, List<Integer> opcodes, List<Integer> arguments, List<Double> constants) {
+      Primitive primitive = node.getPrimitive();
+      int opcode;
+      int argument = 0;
+      if(primitive instanceof Variable) {
+         opcode = CompiledSolution.OP_VARIABLE;
+         argument = ((Variable) primitive).getIndex();
+      } else if(primitive instanceof Constant) {
+         opcode = CompiledSolution.OP_CONSTANT;
+         argument = constants.size();
+         constants.add(primitive.getValue());
+      } else if(primitive instanceof Plus) {
+         opcode = CompiledSolution.OP_ADD;
+      } else if(primitive instanceof Minus) {
+         opcode = CompiledSolution.OP_SUBTRACT;
+      } else if(primitive instanceof Multiply) {
+         opcode = CompiledSolution.OP_MULTIPLY;
+      } else if(primitive instanceof IfLessThan) {
+         opcode = CompiledSolution.OP_IF_LESS_THAN;
+      } else {
+         return false;
+      }
+
+      opcodes.add(opcode);
+      arguments.add(argument);
+      for(TreeNode child : node.getChildren()) {
+         if(!emit(child, opcodes, arguments, constants)) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
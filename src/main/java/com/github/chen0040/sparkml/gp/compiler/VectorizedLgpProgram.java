@@ -0,0 +1,199 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.evaluation.BlockAware;
+
+import java.util.Arrays;
+
+
+/**
+ * Executes a CompiledLgpProgram over a block of rows at once: every register is a double[] of up to chunkRows rows and
+ * every instruction is a loop over those rows, which the JIT can unroll and vectorize. Conditional instructions update a
+ * per-row skip mask; while no row is skipping the instructions run without the mask. The registers and the outputs of the
+ * current block belong to the thread, so that the tasks of an executor can share one instance.
+ */
+public class VectorizedLgpProgram implements ExecutableProgram, BlockAware {
+
+   private static final long serialVersionUID = 6392218450726315084L;
+
+   public static final int DEFAULT_CHUNK_ROWS = 1024;
+
+   private final CompiledLgpProgram compiled;
+   private final int chunkRows;
+
+   private transient ThreadLocal<Workspace> workspace;
+
+   // the program must not have delegates, since the operators of delegated instructions execute one row at a time
+   public VectorizedLgpProgram(CompiledLgpProgram compiled, int chunkRows) {
+      if(compiled.hasDelegates()) {
+         throw new IllegalArgumentException("Programs with delegated instructions cannot be vectorized");
+      }
+      this.compiled = compiled;
+      this.chunkRows = chunkRows;
+   }
+
+   public VectorizedLgpProgram(CompiledLgpProgram compiled) {
+      this(compiled, DEFAULT_CHUNK_ROWS);
+   }
+
+   public CompiledLgpProgram getCompiledProgram() {
+      return compiled;
+   }
+
+   @Override
+   public void beginBlock(ObservationBlock block) {
+      Workspace w = workspace();
+      double[][] registers = w.registers;
+      int outputCount = Math.min(compiled.getRegisterCount(), block.outputCount());
+      w.outputs = new double[outputCount][block.size()];
+      for(int offset = 0; offset < block.size(); offset += chunkRows) {
+         int n = Math.min(chunkRows, block.size() - offset);
+         for(int i = 0; i < registers.length; ++i) {
+            System.arraycopy(block.getInputColumn(i % block.inputCount()), offset, registers[i], 0, n);
+         }
+         run(w, n);
+         for(int i = 0; i < outputCount; ++i) {
+            System.arraycopy(registers[i], 0, w.outputs[i], offset, n);
+         }
+      }
+      w.row = 0;
+   }
+
+   @Override
+   public void execute(BasicObservation observation) {
+      Workspace w = workspace();
+      if(w.outputs == null) {
+         compiled.execute(observation);
+         return;
+      }
+      for(int i = 0; i < w.outputs.length; ++i) {
+         observation.setPredictedOutput(i, w.outputs[i][w.row]);
+      }
+      w.row++;
+   }
+
+   @Override
+   public boolean isThreadSafe() {
+      return true;
+   }
+
+   private Workspace workspace() {
+      if(workspace == null) {
+         workspace = ThreadLocal.withInitial(() -> new Workspace(compiled, chunkRows));
+      }
+      return workspace.get();
+   }
+
+   private void run(Workspace w, int n) {
+      double[][] registers = w.registers;
+      boolean[] skip = w.skip;
+      Arrays.fill(skip, 0, n, false);
+      boolean masked = false;
+      for(int i = 0; i < compiled.length(); ++i) {
+         double[] a = w.vector(compiled.getOperand1(i));
+         double[] b = w.vector(compiled.getOperand2(i));
+         int opcode = compiled.getOpcode(i);
+         if(opcode == CompiledLgpProgram.OP_IF_LESS_THAN) {
+            // a row which skips this conditional also skips the instruction it guards
+            for(int r = 0; r < n; ++r) {
+               skip[r] = skip[r] || !(a[r] < b[r]);
+            }
+            masked = true;
+            continue;
+         }
+
+         double[] target = registers[compiled.getTarget(i)];
+         if(masked) {
+            runMasked(opcode, a, b, target, skip, n);
+            Arrays.fill(skip, 0, n, false);
+            masked = false;
+         } else {
+            run(opcode, a, b, target, n);
+         }
+      }
+   }
+
+   private static void run(int opcode, double[] a, double[] b, double[] target, int n) {
+      switch (opcode) {
+         case CompiledLgpProgram.OP_ADD:
+            for(int r = 0; r < n; ++r) {
+               target[r] = a[r] + b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_SUBTRACT:
+            for(int r = 0; r < n; ++r) {
+               target[r] = a[r] - b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_MULTIPLY:
+            for(int r = 0; r < n; ++r) {
+               target[r] = a[r] * b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_SINE:
+            for(int r = 0; r < n; ++r) {
+               target[r] = Math.sin(a[r]);
+            }
+            break;
+         default:
+            for(int r = 0; r < n; ++r) {
+               target[r] = Math.cos(a[r]);
+            }
+      }
+   }
+
+   // keeps the register of the rows which skip the instruction, as a select rather than a branch
+   private static void runMasked(int opcode, double[] a, double[] b, double[] target, boolean[] skip, int n) {
+      switch (opcode) {
+         case CompiledLgpProgram.OP_ADD:
+            for(int r = 0; r < n; ++r) {
+               target[r] = skip[r] ? target[r] : a[r] + b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_SUBTRACT:
+            for(int r = 0; r < n; ++r) {
+               target[r] = skip[r] ? target[r] : a[r] - b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_MULTIPLY:
+            for(int r = 0; r < n; ++r) {
+               target[r] = skip[r] ? target[r] : a[r] * b[r];
+            }
+            break;
+         case CompiledLgpProgram.OP_SINE:
+            for(int r = 0; r < n; ++r) {
+               target[r] = skip[r] ? target[r] : Math.sin(a[r]);
+            }
+            break;
+         default:
+            for(int r = 0; r < n; ++r) {
+               target[r] = skip[r] ? target[r] : Math.cos(a[r]);
+            }
+      }
+   }
+
+   // the registers of one thread, and the outputs of the block it is answering rows from
+   private static class Workspace {
+
+      private final double[][] registers;
+      private final double[][] constants;
+      private final boolean[] skip;
+      private double[][] outputs;
+      private int row;
+
+      private Workspace(CompiledLgpProgram compiled, int chunkRows) {
+         registers = new double[compiled.getRegisterCount()][chunkRows];
+         constants = new double[compiled.constantCount()][chunkRows];
+         for(int i = 0; i < constants.length; ++i) {
+            Arrays.fill(constants[i], compiled.getConstant(i));
+         }
+         skip = new boolean[chunkRows];
+      }
+
+      private double[] vector(int operand) {
+         return operand >= 0 ? registers[operand] : constants[-operand - 1];
+      }
+   }
+}
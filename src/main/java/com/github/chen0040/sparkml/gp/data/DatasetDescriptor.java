@@ -0,0 +1,193 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * Shape and ranges of the training data: input, output and row counts and the min/max of every column. It is computed
+ * in the same pass that loads the observations, so the evolution never needs a cluster action to learn the data shape.
+ * Descriptors of the partitions are merged into the descriptor of the whole data set.
+ */
+public class DatasetDescriptor implements Serializable {
+
+   private static final long serialVersionUID = 3390812075126583094L;
+
+   private long rowCount = 0;
+   private int inputCount = -1;
+   private int outputCount = -1;
+   private boolean consistent = true;
+
+   private double[] inputMin;
+   private double[] inputMax;
+   private double[] outputMin;
+   private double[] outputMax;
+
+   public static DatasetDescriptor of(Iterator<BasicObservation> observations) {
+      DatasetDescriptor descriptor = new DatasetDescriptor();
+      while(observations.hasNext()) {
+         descriptor.add(observations.next());
+      }
+      return descriptor;
+   }
+
+   public static DatasetDescriptor ofBlocks(Iterator<ObservationBlock> blocks) {
+      DatasetDescriptor descriptor = new DatasetDescriptor();
+      while(blocks.hasNext()) {
+         descriptor.add(blocks.next());
+      }
+      return descriptor;
+   }
+
+   public DatasetDescriptor add(BasicObservation observation) {
+      if(!hasShape(observation.inputCount(), observation.outputCount())) {
+         return this;
+      }
+      for(int i=0; i < inputCount; ++i) {
+         double value = observation.getInput(i);
+         inputMin[i] = Math.min(inputMin[i], value);
+         inputMax[i] = Math.max(inputMax[i], value);
+      }
+      for(int i=0; i < outputCount; ++i) {
+         double value = observation.getOutput(i);
+         outputMin[i] = Math.min(outputMin[i], value);
+         outputMax[i] = Math.max(outputMax[i], value);
+      }
+      rowCount++;
+      return this;
+   }
+
+   public DatasetDescriptor add(ObservationBlock block) {
+      if(block.size() == 0 || !hasShape(block.inputCount(), block.outputCount())) {
+         return this;
+      }
+      for(int i=0; i < inputCount; ++i) {
+         double[] column = block.getInputColumn(i);
+         for(int row = 0; row < block.size(); ++row) {
+            inputMin[i] = Math.min(inputMin[i], column[row]);
+            inputMax[i] = Math.max(inputMax[i], column[row]);
+         }
+      }
+      for(int i=0; i < outputCount; ++i) {
+         double[] column = block.getOutputColumn(i);
+         for(int row = 0; row < block.size(); ++row) {
+            outputMin[i] = Math.min(outputMin[i], column[row]);
+            outputMax[i] = Math.max(outputMax[i], column[row]);
+         }
+      }
+      rowCount += block.size();
+      return this;
+   }
+
+   public DatasetDescriptor add(MappedObservationPartition partition) {
+      if(partition.size() == 0 || !hasShape(partition.inputCount(), partition.outputCount())) {
+         return this;
+      }
+      for(int row = 0; row < partition.size(); ++row) {
+         for(int i=0; i < inputCount; ++i) {
+            inputMin[i] = Math.min(inputMin[i], partition.getInput(row, i));
+            inputMax[i] = Math.max(inputMax[i], partition.getInput(row, i));
+         }
+         for(int i=0; i < outputCount; ++i) {
+            outputMin[i] = Math.min(outputMin[i], partition.getOutput(row, i));
+            outputMax[i] = Math.max(outputMax[i], partition.getOutput(row, i));
+         }
+      }
+      rowCount += partition.size();
+      return this;
+   }
+
+   public DatasetDescriptor merge(DatasetDescriptor that) {
+      if(!that.consistent) {
+         consistent = false;
+      }
+      if(that.rowCount == 0 || !hasShape(that.inputCount, that.outputCount)) {
+         return this;
+      }
+      for(int i=0; i < inputCount; ++i) {
+         inputMin[i] = Math.min(inputMin[i], that.inputMin[i]);
+         inputMax[i] = Math.max(inputMax[i], that.inputMax[i]);
+      }
+      for(int i=0; i < outputCount; ++i) {
+         outputMin[i] = Math.min(outputMin[i], that.outputMin[i]);
+         outputMax[i] = Math.max(outputMax[i], that.outputMax[i]);
+      }
+      rowCount += that.rowCount;
+      return this;
+   }
+
+   // takes the shape of the first row and tells whether the row has that shape; a row of another shape makes the data inconsistent
+   private boolean hasShape(int rowInputCount, int rowOutputCount) {
+      if(inputCount == -1) {
+         inputCount = rowInputCount;
+         outputCount = rowOutputCount;
+         inputMin = filled(inputCount, Double.POSITIVE_INFINITY);
+         inputMax = filled(inputCount, Double.NEGATIVE_INFINITY);
+         outputMin = filled(outputCount, Double.POSITIVE_INFINITY);
+         outputMax = filled(outputCount, Double.NEGATIVE_INFINITY);
+         return true;
+      }
+      if(inputCount != rowInputCount || outputCount != rowOutputCount) {
+         consistent = false;
+         return false;
+      }
+      return true;
+   }
+
+   private static double[] filled(int length, double value) {
+      double[] values = new double[length];
+      Arrays.fill(values, value);
+      return values;
+   }
+
+   // throws when the data is empty or its rows differ in the number of inputs or outputs
+   public void validate() {
+      if(rowCount == 0) {
+         throw new IllegalArgumentException("The observations are empty");
+      }
+      if(!consistent) {
+         throw new IllegalArgumentException("The observations do not all have the same number of inputs and outputs");
+      }
+   }
+
+   public long getRowCount() {
+      return rowCount;
+   }
+
+   public int getInputCount() {
+      return Math.max(0, inputCount);
+   }
+
+   public int getOutputCount() {
+      return Math.max(0, outputCount);
+   }
+
+   public boolean isConsistent() {
+      return consistent;
+   }
+
+   public double getInputMin(int column) {
+      return inputMin[column];
+   }
+
+   public double getInputMax(int column) {
+      return inputMax[column];
+   }
+
+   public double getOutputMin(int column) {
+      return outputMin[column];
+   }
+
+   public double getOutputMax(int column) {
+      return outputMax[column];
+   }
+
+   @Override
+   public String toString() {
+      return "DatasetDescriptor{rows=" + rowCount + ", inputs=" + getInputCount() + ", outputs=" + getOutputCount() + "}";
+   }
+}
@@ -0,0 +1,67 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.nio.DoubleBuffer;
+
+
+/**
+ * Read-only view of one partition file of a MappedObservationStore: the rows, inputs followed by outputs, as a
+ * DoubleBuffer over the memory-mapped file. Only absolute reads are used, so one view is shared by every thread.
+ */
+public class MappedObservationPartition {
+
+   private final DoubleBuffer values;
+   private final int inputCount;
+   private final int outputCount;
+   private final int rowCount;
+
+   MappedObservationPartition(DoubleBuffer values, int inputCount, int outputCount, int rowCount) {
+      this.values = values;
+      this.inputCount = inputCount;
+      this.outputCount = outputCount;
+      this.rowCount = rowCount;
+   }
+
+   public int size() {
+      return rowCount;
+   }
+
+   public int inputCount() {
+      return inputCount;
+   }
+
+   public int outputCount() {
+      return outputCount;
+   }
+
+   public double getInput(int row, int column) {
+      return values.get(row * (inputCount + outputCount) + column);
+   }
+
+   public double getOutput(int row, int column) {
+      return values.get(row * (inputCount + outputCount) + inputCount + column);
+   }
+
+   // a view of the mapped rows with its own position, without copying them
+   public DoubleBuffer values() {
+      return values.duplicate();
+   }
+
+   public BasicObservation newBuffer() {
+      return new BasicObservation(inputCount, outputCount);
+   }
+
+   // copies the row into a reusable observation so that programs can execute against it
+   public void read(int row, BasicObservation buffer) {
+      int offset = row * (inputCount + outputCount);
+      for(int i=0; i < inputCount; ++i) {
+         buffer.setInput(i, values.get(offset + i));
+      }
+      offset += inputCount;
+      for(int i=0; i < outputCount; ++i) {
+         buffer.setOutput(i, values.get(offset + i));
+      }
+   }
+}
@@ -0,0 +1,394 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Observations stored off the heap in a directory of fixed-width binary files, one partition per file: a 32-byte header
+ * (magic, version, input count, output count, row count) followed by the rows, each its inputs then its outputs as
+ * little-endian doubles. A partition is memory-mapped once per JVM and read in place, so the data may exceed the heap of
+ * the executors. The directory must be visible to every executor under the same path, e.g. local disk for single-node
+ * runs or a shared file system. A JVM keeps one mapping per file, which is replaced once the file is rewritten and
+ * dropped when the store is rewritten or closed; the memory is unmapped once the garbage collector reclaims it.
+ */
+public class MappedObservationStore implements Serializable, Closeable {
+
+   private static final long serialVersionUID = -2954311770926618437L;
+
+   public static final String FILE_PREFIX = "part-";
+   public static final String FILE_SUFFIX = ".obs";
+
+   public static final int DEFAULT_ROWS_PER_PARTITION = 1 << 18;
+
+   private static final int MAGIC = 0x47504f42;
+   private static final int VERSION = 1;
+   private static final int HEADER_BYTES = 32;
+
+   // a partition is mapped as one buffer, whose size is bounded by the int index of the buffer
+   private static final long MAX_PARTITION_BYTES = Integer.MAX_VALUE;
+
+   // by absolute path of the partition file
+   private static final ConcurrentMap<String, Mapping> mappedPartitions = new ConcurrentHashMap<>();
+
+   private final String directory;
+   private final String[] fileNames;
+   private final long[] rowCounts;
+   private final int inputCount;
+   private final int outputCount;
+
+   private MappedObservationStore(String directory, String[] fileNames, long[] rowCounts, int inputCount, int outputCount) {
+      this.directory = directory;
+      this.fileNames = fileNames;
+      this.rowCounts = rowCounts;
+      this.inputCount = inputCount;
+      this.outputCount = outputCount;
+   }
+
+   public static MappedObservationStore open(String directory) {
+      String[] fileNames = new File(directory).list((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+      if(fileNames == null) {
+         throw new UncheckedIOException(new IOException("Not a directory: " + directory));
+      }
+      Arrays.sort(fileNames);
+
+      long[] rowCounts = new long[fileNames.length];
+      int inputCount = 0;
+      int outputCount = 0;
+      for(int i=0; i < fileNames.length; ++i) {
+         File file = new File(directory, fileNames[i]);
+         try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, file);
+            if(i > 0 && (header.getInt(8) != inputCount || header.getInt(12) != outputCount)) {
+               throw new IllegalArgumentException("The partitions of " + directory + " do not all have the same number of inputs and outputs");
+            }
+            inputCount = header.getInt(8);
+            outputCount = header.getInt(12);
+            rowCounts[i] = header.getLong(16);
+         } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+         }
+      }
+      return new MappedObservationStore(directory, fileNames, rowCounts, inputCount, outputCount);
+   }
+
+   public static MappedObservationStore write(Iterator<BasicObservation> observations, String directory) {
+      return write(observations, directory, DEFAULT_ROWS_PER_PARTITION);
+   }
+
+   // writes the observations in order, starting a new partition every rowsPerPartition rows
+   public static MappedObservationStore write(Iterator<BasicObservation> observations, String directory, int rowsPerPartition) {
+      clear(directory);
+      try(PartitionWriter writer = new PartitionWriter(directory, "00000", rowsPerPartition)) {
+         while(observations.hasNext()) {
+            writer.write(observations.next());
+         }
+      }
+      return open(directory);
+   }
+
+   // every partition of the rdd is written by its task, so the directory must be on a file system which the executors share
+   // (or local disk when the executors run on the driver); partitions beyond the size of one mapped buffer are split
+   public static MappedObservationStore write(JavaRDD<BasicObservation> observationRdd, String directory) {
+      clear(directory);
+      observationRdd.mapPartitionsWithIndex((partitionIndex, observations) -> {
+         try(PartitionWriter writer = new PartitionWriter(directory, String.format("%05d", partitionIndex), Integer.MAX_VALUE)) {
+            while(observations.hasNext()) {
+               writer.write(observations.next());
+            }
+            return writer.getFileNames().iterator();
+         }
+      }, true).count();
+      return open(directory);
+   }
+
+   // converts a csv file whose lines hold the inputs followed by the outputs; blank lines are skipped
+   public static MappedObservationStore writeCsv(String csvPath, String directory, int inputCount, boolean header, int rowsPerPartition) {
+      try(BufferedReader reader = Files.newBufferedReader(new File(csvPath).toPath(), StandardCharsets.UTF_8);
+          PartitionWriter writer = new PartitionWriter(clear(directory), "00000", rowsPerPartition)) {
+         if(header) {
+            reader.readLine();
+         }
+         String line;
+         double[] values = null;
+         while((line = reader.readLine()) != null) {
+            if(line.trim().isEmpty()) {
+               continue;
+            }
+            String[] fields = line.split(",");
+            if(values == null) {
+               values = new double[fields.length];
+            } else if(fields.length != values.length) {
+               throw new IllegalArgumentException("The lines of " + csvPath + " do not all have the same number of columns");
+            }
+            for(int i=0; i < fields.length; ++i) {
+               values[i] = Double.parseDouble(fields[i].trim());
+            }
+            writer.write(values, inputCount);
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to convert " + csvPath, e);
+      }
+      return open(directory);
+   }
+
+   // removes the partitions of an earlier store, so that the partitions written next are not mixed with them
+   private static String clear(String directory) {
+      unmap(new File(directory));
+      File[] files = new File(directory).listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && (name.endsWith(FILE_SUFFIX) || name.endsWith(".tmp")));
+      if(files != null) {
+         for(File file : files) {
+            if(!file.delete()) {
+               throw new UncheckedIOException(new IOException("Failed to delete " + file));
+            }
+         }
+      }
+      new File(directory).mkdirs();
+      return directory;
+   }
+
+   public String getDirectory() {
+      return directory;
+   }
+
+   public int partitionCount() {
+      return fileNames.length;
+   }
+
+   public long[] partitionRowCounts() {
+      return rowCounts.clone();
+   }
+
+   public long rowCount() {
+      long rowCount = 0;
+      for(long rows : rowCounts) {
+         rowCount += rows;
+      }
+      return rowCount;
+   }
+
+   public int inputCount() {
+      return inputCount;
+   }
+
+   public int outputCount() {
+      return outputCount;
+   }
+
+   // the partition, mapped on first use and shared by every task of this JVM; a rewritten file is mapped again and the
+   // mapping of its previous content is dropped
+   public MappedObservationPartition partition(int index) {
+      File file = new File(directory, fileNames[index]);
+      long lastModified = file.lastModified();
+      long length = file.length();
+      return mappedPartitions.compute(file.getAbsolutePath(), (path, mapping) ->
+              mapping != null && mapping.isCurrent(lastModified, length) ? mapping : new Mapping(map(file), lastModified, length)).partition;
+   }
+
+   // drops the mappings of the partitions held by this JVM; a later partition() maps the file again. Executors drop
+   // theirs when the store is rewritten.
+   @Override
+   public void close() {
+      for(String fileName : fileNames) {
+         mappedPartitions.remove(new File(directory, fileName).getAbsolutePath());
+      }
+   }
+
+   private static void unmap(File directory) {
+      String prefix = directory.getAbsolutePath() + File.separator;
+      mappedPartitions.keySet().removeIf(path -> path.startsWith(prefix));
+   }
+
+   private static MappedObservationPartition map(File file) {
+      try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         ByteBuffer header = readHeader(channel, file);
+         int inputCount = header.getInt(8);
+         int outputCount = header.getInt(12);
+         int rowCount = (int) header.getLong(16);
+         long size = 8L * rowCount * (inputCount + outputCount);
+         // the mapping stays valid once the channel is closed
+         ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size).order(ByteOrder.LITTLE_ENDIAN);
+         return new MappedObservationPartition(mapped.asDoubleBuffer(), inputCount, outputCount, rowCount);
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to map " + file, e);
+      }
+   }
+
+   private static ByteBuffer readHeader(FileChannel channel, File file) throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      int read = 0;
+      while(header.hasRemaining() && read >= 0) {
+         read = channel.read(header, header.position());
+      }
+      if(header.hasRemaining() || header.getInt(0) != MAGIC) {
+         throw new IOException("Not an observation partition: " + file);
+      }
+      if(header.getInt(4) != VERSION) {
+         throw new IOException("Unsupported observation partition version " + header.getInt(4) + ": " + file);
+      }
+      return header;
+   }
+
+   // a partition with the modification time and length of the file it was mapped from
+   private static class Mapping {
+      private final MappedObservationPartition partition;
+      private final long lastModified;
+      private final long length;
+
+      Mapping(MappedObservationPartition partition, long lastModified, long length) {
+         this.partition = partition;
+         this.lastModified = lastModified;
+         this.length = length;
+      }
+
+      boolean isCurrent(long lastModified, long length) {
+         return this.lastModified == lastModified && this.length == length;
+      }
+   }
+
+   /**
+    * Streams rows into the partition files of one writer, through a small buffer and without an object per row. A file is
+    * written under a temporary name and renamed once complete, so that open() never sees a partial partition.
+    */
+   private static class PartitionWriter implements Closeable {
+
+      private final File directory;
+      private final String name;
+      private final int rowsPerPartition;
+      private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      private final List<String> fileNames = new ArrayList<>();
+
+      private int inputCount = -1;
+      private int outputCount;
+      private int maxRows;
+
+      private FileChannel channel;
+      private File temporary;
+      private int rows;
+
+      PartitionWriter(String directory, String name, int rowsPerPartition) {
+         this.directory = new File(directory);
+         this.name = name;
+         this.rowsPerPartition = rowsPerPartition;
+         this.directory.mkdirs();
+      }
+
+      void write(BasicObservation observation) {
+         begin(observation.inputCount(), observation.outputCount());
+         for(int i=0; i < inputCount; ++i) {
+            put(observation.getInput(i));
+         }
+         for(int i=0; i < outputCount; ++i) {
+            put(observation.getOutput(i));
+         }
+         endRow();
+      }
+
+      void write(double[] values, int inputCount) {
+         begin(inputCount, values.length - inputCount);
+         for(double value : values) {
+            put(value);
+         }
+         endRow();
+      }
+
+      List<String> getFileNames() {
+         return fileNames;
+      }
+
+      private void begin(int inputs, int outputs) {
+         if(inputCount == -1) {
+            inputCount = inputs;
+            outputCount = outputs;
+            long rowBytes = 8L * Math.max(1, inputs + outputs);
+            maxRows = (int) Math.min(rowsPerPartition, (MAX_PARTITION_BYTES - HEADER_BYTES) / rowBytes);
+         } else if(inputs != inputCount || outputs != outputCount) {
+            throw new IllegalArgumentException("The observations do not all have the same number of inputs and outputs");
+         }
+         if(channel != null) {
+            return;
+         }
+         temporary = new File(directory, FILE_PREFIX + name + "-" + String.format("%03d", fileNames.size()) + ".tmp");
+         try {
+            channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(HEADER_BYTES);
+         } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create " + temporary, e);
+         }
+         rows = 0;
+      }
+
+      private void put(double value) {
+         if(buffer.remaining() < 8) {
+            flush();
+         }
+         buffer.putDouble(value);
+      }
+
+      private void endRow() {
+         if(++rows == maxRows) {
+            finish();
+         }
+      }
+
+      private void flush() {
+         buffer.flip();
+         try {
+            while(buffer.hasRemaining()) {
+               channel.write(buffer);
+            }
+         } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + temporary, e);
+         }
+         buffer.clear();
+      }
+
+      private void finish() {
+         flush();
+         ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+         header.putInt(MAGIC).putInt(VERSION).putInt(inputCount).putInt(outputCount).putLong(rows).putLong(0L);
+         header.flip();
+         String fileName = temporary.getName().substring(0, temporary.getName().length() - ".tmp".length()) + FILE_SUFFIX;
+         try {
+            long position = 0;
+            while(header.hasRemaining()) {
+               position += channel.write(header, position);
+            }
+            channel.close();
+            Files.move(temporary.toPath(), new File(directory, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+         } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + temporary, e);
+         }
+         fileNames.add(fileName);
+         channel = null;
+      }
+
+      @Override
+      public void close() {
+         if(channel != null) {
+            finish();
+         }
+      }
+   }
+}
@@ -0,0 +1,164 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Columnar copy of the observations in one partition: one double[] per input column and one per output column.
+ */
+public class ObservationBlock implements Serializable {
+
+   private static final long serialVersionUID = 6021470711851937462L;
+
+   private final double[][] inputColumns;
+   private final double[][] outputColumns;
+   private final int rowCount;
+   private final long id;
+
+   public ObservationBlock(double[][] inputColumns, double[][] outputColumns, int rowCount) {
+      this(inputColumns, outputColumns, rowCount, ThreadLocalRandom.current().nextLong());
+   }
+
+   private ObservationBlock(double[][] inputColumns, double[][] outputColumns, int rowCount, long id) {
+      this.inputColumns = inputColumns;
+      this.outputColumns = outputColumns;
+      this.rowCount = rowCount;
+      this.id = id;
+   }
+
+   public static ObservationBlock pack(Iterator<BasicObservation> observations) {
+      List<BasicObservation> rows = new ArrayList<>();
+      while(observations.hasNext()) {
+         rows.add(observations.next());
+      }
+      return pack(rows);
+   }
+
+   public static ObservationBlock pack(List<BasicObservation> rows) {
+      int rowCount = rows.size();
+      int inputCount = rowCount == 0 ? 0 : rows.get(0).inputCount();
+      int outputCount = rowCount == 0 ? 0 : rows.get(0).outputCount();
+
+      double[][] inputColumns = new double[inputCount][rowCount];
+      double[][] outputColumns = new double[outputCount][rowCount];
+      for(int row = 0; row < rowCount; ++row) {
+         BasicObservation observation = rows.get(row);
+         if(observation.inputCount() != inputCount || observation.outputCount() != outputCount) {
+            throw new IllegalArgumentException("The observations do not all have the same number of inputs and outputs");
+         }
+         for(int i=0; i < inputCount; ++i) {
+            inputColumns[i][row] = observation.getInput(i);
+         }
+         for(int i=0; i < outputCount; ++i) {
+            outputColumns[i][row] = observation.getOutput(i);
+         }
+      }
+      return new ObservationBlock(inputColumns, outputColumns, rowCount);
+   }
+
+   // packs every partition of the rdd into a single block
+   public static JavaRDD<ObservationBlock> pack(JavaRDD<BasicObservation> observationRdd) {
+      return observationRdd.mapPartitions(observations -> Collections.singletonList(pack(observations)));
+   }
+
+   // draws a seeded bernoulli sample of the rows in every block
+   public static JavaRDD<ObservationBlock> sample(JavaRDD<ObservationBlock> blockRdd, double fraction, long seed) {
+      return blockRdd.mapPartitionsWithIndex((partitionIndex, blocks) -> {
+         Random random = new Random(seed + partitionIndex);
+         List<ObservationBlock> samples = new ArrayList<>();
+         while(blocks.hasNext()) {
+            samples.add(blocks.next().sample(fraction, random));
+         }
+         return samples.iterator();
+      }, true);
+   }
+
+   // the sample is identified by this block and the rows drawn, so that executor-side caches recognize the same sample
+   // again and never mistake another sample of this block for it
+   public ObservationBlock sample(double fraction, Random random) {
+      int[] rows = new int[rowCount];
+      int sampleCount = 0;
+      long sampleId = mix(id, rowCount);
+      for(int row = 0; row < rowCount; ++row) {
+         if(random.nextDouble() < fraction) {
+            rows[sampleCount++] = row;
+            sampleId = mix(sampleId, row);
+         }
+      }
+
+      double[][] sampledInputs = new double[inputColumns.length][sampleCount];
+      double[][] sampledOutputs = new double[outputColumns.length][sampleCount];
+      for(int i=0; i < sampleCount; ++i) {
+         for(int column = 0; column < inputColumns.length; ++column) {
+            sampledInputs[column][i] = inputColumns[column][rows[i]];
+         }
+         for(int column = 0; column < outputColumns.length; ++column) {
+            sampledOutputs[column][i] = outputColumns[column][rows[i]];
+         }
+      }
+      return new ObservationBlock(sampledInputs, sampledOutputs, sampleCount, mix(sampleId, sampleCount));
+   }
+
+   public int size() {
+      return rowCount;
+   }
+
+   // random identity which survives serialization, so that executor-side caches recognize the block in every job
+   public long getId() {
+      return id;
+   }
+
+   public int inputCount() {
+      return inputColumns.length;
+   }
+
+   public int outputCount() {
+      return outputColumns.length;
+   }
+
+   public double getInput(int row, int column) {
+      return inputColumns[column][row];
+   }
+
+   public double getOutput(int row, int column) {
+      return outputColumns[column][row];
+   }
+
+   public double[] getInputColumn(int column) {
+      return inputColumns[column];
+   }
+
+   public double[] getOutputColumn(int column) {
+      return outputColumns[column];
+   }
+
+   public BasicObservation newBuffer() {
+      return new BasicObservation(inputCount(), outputCount());
+   }
+
+   // copies the row into a reusable observation so that programs can execute against it
+   public void read(int row, BasicObservation buffer) {
+      for(int i=0; i < inputColumns.length; ++i) {
+         buffer.setInput(i, inputColumns[i][row]);
+      }
+      for(int i=0; i < outputColumns.length; ++i) {
+         buffer.setOutput(i, outputColumns[i][row]);
+      }
+   }
+
+   private static long mix(long hash, long value) {
+      long h = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+      return h * 0x94D049BB133111EBL + 0x9E3779B97F4A7C15L;
+   }
+}
@@ -0,0 +1,50 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+
+
+/**
+ * Sizes the partitions of the observation rdd: a few partitions per executor core so that every core stays busy while
+ * the slowest task finishes, but never so many that a task scores fewer than MIN_ROWS_PER_PARTITION rows.
+ */
+public class ObservationPartitioning {
+
+   public static final int PARTITIONS_PER_CORE = 2;
+
+   public static final long MIN_ROWS_PER_PARTITION = 1000;
+
+   // a partition holding more than this multiple of the mean row count makes the whole rdd skewed
+   public static final double SKEW_FACTOR = 2.0;
+
+   public static int partitionCount(JavaSparkContext context, long rowCount) {
+      return partitionCount(context.defaultParallelism(), rowCount);
+   }
+
+   public static int partitionCount(int coreCount, long rowCount) {
+      long byCores = (long) Math.max(1, coreCount) * PARTITIONS_PER_CORE;
+      long byRows = Math.max(1, rowCount / MIN_ROWS_PER_PARTITION);
+      return (int) Math.min(byCores, byRows);
+   }
+
+   public static boolean isSkewed(long[] partitionRowCounts) {
+      long total = 0;
+      long max = 0;
+      for(long rows : partitionRowCounts) {
+         total += rows;
+         max = Math.max(max, rows);
+      }
+      return partitionRowCounts.length > 1 && max > SKEW_FACTOR * total / partitionRowCounts.length;
+   }
+
+   // re-balances the rdd with a shuffle when its partition count is off or its partitions are skewed; unlike coalesce,
+   // the rows are spread evenly over the new partitions
+   public static JavaRDD<BasicObservation> balance(JavaRDD<BasicObservation> observationRdd, long[] partitionRowCounts, int partitionCount) {
+      if(partitionRowCounts.length == partitionCount && !isSkewed(partitionRowCounts)) {
+         return observationRdd;
+      }
+      return observationRdd.repartition(partitionCount);
+   }
+}
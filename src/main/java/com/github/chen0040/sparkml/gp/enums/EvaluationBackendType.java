@@ -0,0 +1,11 @@
+package com.github.chen0040.sparkml.gp.enums;
+
+
+/**
+ * Where the candidates are evaluated against the observations.
+ */
+public enum EvaluationBackendType {
+   Auto,
+   Spark,
+   Local
+}
@@ -0,0 +1,12 @@
+package com.github.chen0040.sparkml.gp.enums;
+
+
+/**
+ * How much of the observation data is scanned to evaluate a candidate.
+ */
+public enum EvaluationScheduleType {
+   Full,
+   FixedFraction,
+   Growing,
+   Racing
+}
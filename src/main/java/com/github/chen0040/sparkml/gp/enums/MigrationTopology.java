@@ -0,0 +1,10 @@
+package com.github.chen0040.sparkml.gp.enums;
+
+
+/**
+ * Which island receives the migrants of each island.
+ */
+public enum MigrationTopology {
+   Ring,
+   Random
+}
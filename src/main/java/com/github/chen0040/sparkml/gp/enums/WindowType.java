@@ -0,0 +1,11 @@
+package com.github.chen0040.sparkml.gp.enums;
+
+
+/**
+ * How the batches of a stream are weighted when the population is evaluated: Sliding weighs the recent batches equally,
+ * Decayed multiplies the weight of a batch by the decay factor with every newer batch.
+ */
+public enum WindowType {
+   Sliding,
+   Decayed
+}
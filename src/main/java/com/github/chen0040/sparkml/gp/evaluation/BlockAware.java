@@ -0,0 +1,13 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+
+
+/**
+ * A candidate which evaluates a whole block at once: it is told about every block before its rows are evaluated one by
+ * one in row order, and can then answer each row from the vectors it computed for the block.
+ */
+public interface BlockAware {
+   void beginBlock(ObservationBlock block);
+}
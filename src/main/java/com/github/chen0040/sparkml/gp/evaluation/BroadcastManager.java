@@ -0,0 +1,139 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Generation-scoped broadcasts of candidates. The candidates of an evaluation which are not on the executors yet are
+ * shipped together in one broadcast; candidates which were broadcast in the current or the previous generation (the
+ * same objects, e.g. unchanged elites or racing finalists) are referenced in place. Broadcasts are destroyed on a
+ * background thread once they are two generations old.
+ */
+public class BroadcastManager {
+
+   private static final ExecutorService releaser = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "gp-broadcast-release");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private Map<Object, Slot> currentSlots = new IdentityHashMap<>();
+   private Map<Object, Slot> previousSlots = new IdentityHashMap<>();
+   private List<Broadcast<?>> currentBroadcasts = new ArrayList<>();
+   private List<Broadcast<?>> previousBroadcasts = new ArrayList<>();
+
+   private BroadcastStatistics statistics = new BroadcastStatistics(0);
+   private final List<BroadcastStatistics> history = new ArrayList<>();
+
+   @SuppressWarnings("unchecked")
+   public synchronized <T> BroadcastSelection<T> acquire(JavaSparkContext context, List<T> candidates) {
+      List<Broadcast<List<T>>> broadcasts = new ArrayList<>();
+      Map<Broadcast<?>, Integer> broadcastIndexMap = new IdentityHashMap<>();
+      int[] broadcastIndices = new int[candidates.size()];
+      int[] positions = new int[candidates.size()];
+
+      ArrayList<T> shipped = new ArrayList<>();
+      List<Integer> shippedIndices = new ArrayList<>();
+      for(int i=0; i < candidates.size(); ++i) {
+         T candidate = candidates.get(i);
+         Slot slot = currentSlots.get(candidate);
+         if(slot == null) {
+            slot = previousSlots.get(candidate);
+         }
+         if(slot == null) {
+            shipped.add(candidate);
+            shippedIndices.add(i);
+            continue;
+         }
+         Integer broadcastIndex = broadcastIndexMap.get(slot.broadcast);
+         if(broadcastIndex == null) {
+            broadcastIndex = broadcasts.size();
+            broadcasts.add((Broadcast<List<T>>) slot.broadcast);
+            broadcastIndexMap.put(slot.broadcast, broadcastIndex);
+         }
+         broadcastIndices[i] = broadcastIndex;
+         positions[i] = slot.position;
+      }
+      statistics.reused(candidates.size() - shipped.size());
+
+      if(!shipped.isEmpty()) {
+         Broadcast<List<T>> broadcast = context.broadcast(shipped);
+         statistics.shipped(shipped.size(), JavaSerialization.serializedSize(shipped));
+         currentBroadcasts.add(broadcast);
+
+         int broadcastIndex = broadcasts.size();
+         broadcasts.add(broadcast);
+         for(int position = 0; position < shipped.size(); ++position) {
+            int i = shippedIndices.get(position);
+            broadcastIndices[i] = broadcastIndex;
+            positions[i] = position;
+            currentSlots.put(shipped.get(position), new Slot(broadcast, position));
+         }
+      }
+
+      return new BroadcastSelection<>(broadcasts, broadcastIndices, positions);
+   }
+
+   public synchronized void beginGeneration(int generation) {
+      if(generation == statistics.getGeneration()) {
+         return;
+      }
+      history.add(statistics);
+      statistics = new BroadcastStatistics(generation);
+
+      release(previousBroadcasts);
+      previousBroadcasts = currentBroadcasts;
+      previousSlots = currentSlots;
+      currentBroadcasts = new ArrayList<>();
+      currentSlots = new IdentityHashMap<>();
+   }
+
+   public synchronized void releaseAll() {
+      release(previousBroadcasts);
+      release(currentBroadcasts);
+      previousBroadcasts = new ArrayList<>();
+      currentBroadcasts = new ArrayList<>();
+      previousSlots = new IdentityHashMap<>();
+      currentSlots = new IdentityHashMap<>();
+   }
+
+   public synchronized BroadcastStatistics getCurrentStatistics() {
+      return statistics;
+   }
+
+   // statistics of the closed generations followed by the current one
+   public synchronized List<BroadcastStatistics> getStatistics() {
+      List<BroadcastStatistics> result = new ArrayList<>(history);
+      result.add(statistics);
+      return result;
+   }
+
+   private static void release(List<Broadcast<?>> broadcasts) {
+      if(broadcasts.isEmpty()) {
+         return;
+      }
+      List<Broadcast<?>> released = new ArrayList<>(broadcasts);
+      releaser.submit(() -> {
+         for(Broadcast<?> broadcast : released) {
+            broadcast.destroy();
+         }
+      });
+   }
+
+   private static class Slot {
+      private final Broadcast<?> broadcast;
+      private final int position;
+
+      Slot(Broadcast<?> broadcast, int position) {
+         this.broadcast = broadcast;
+         this.position = position;
+      }
+   }
+}
@@ -0,0 +1,97 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The candidates of one evaluation, each referenced by its position in one of the live generation broadcasts.
+ */
+public class BroadcastSelection<T> implements Serializable {
+
+   private static final long serialVersionUID = -7719826104857371523L;
+
+   // broadcasts of the executor thread whose stateful candidates it has copied, least recently used first
+   private static final int MAX_COPIED_BROADCASTS = 16;
+
+   private static final ThreadLocal<Map<Long, Copies>> copies = ThreadLocal.withInitial(() -> new LinkedHashMap<Long, Copies>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Copies> eldest) {
+         return size() > MAX_COPIED_BROADCASTS;
+      }
+   });
+
+   private final List<Broadcast<List<T>>> broadcasts;
+   private final int[] broadcastIndices;
+   private final int[] positions;
+
+   public BroadcastSelection(List<Broadcast<List<T>>> broadcasts, int[] broadcastIndices, int[] positions) {
+      this.broadcasts = broadcasts;
+      this.broadcastIndices = broadcastIndices;
+      this.positions = positions;
+   }
+
+   public int size() {
+      return positions.length;
+   }
+
+   // resolves the candidates on the executor, in the order in which they were selected. The broadcast values are shared by
+   // all tasks of an executor while interpreted programs keep their registers in themselves, so those are copied, once per
+   // executor thread; thread-safe executables are used as broadcast
+   public List<T> getValue() {
+      List<T> candidates = new ArrayList<>(positions.length);
+      for(int i=0; i < positions.length; ++i) {
+         candidates.add(resolve(i));
+      }
+      return candidates;
+   }
+
+   // as getValue(), resolving only the candidates at the given indices of the selection
+   public List<T> getValue(int[] indices) {
+      List<T> candidates = new ArrayList<>(indices.length);
+      for(int index : indices) {
+         candidates.add(resolve(index));
+      }
+      return candidates;
+   }
+
+   @SuppressWarnings("unchecked")
+   private T resolve(int index) {
+      Broadcast<List<T>> broadcast = broadcasts.get(broadcastIndices[index]);
+      List<T> values = broadcast.getValue();
+      T candidate = values.get(positions[index]);
+      if(candidate instanceof ExecutableProgram && ((ExecutableProgram) candidate).isThreadSafe()) {
+         return candidate;
+      }
+
+      Copies copied = copies.get().get(broadcast.id());
+      // broadcast ids start over with every spark context
+      if(copied == null || copied.values != values) {
+         copied = new Copies(values);
+         copies.get().put(broadcast.id(), copied);
+      }
+      if(copied.candidates[positions[index]] == null) {
+         copied.candidates[positions[index]] = JavaSerialization.deserialize(JavaSerialization.serialize((Serializable) candidate));
+      }
+      return (T) copied.candidates[positions[index]];
+   }
+
+   // the copies made by one thread of the candidates of one broadcast value
+   private static class Copies {
+      private final List<?> values;
+      private final Object[] candidates;
+
+      private Copies(List<?> values) {
+         this.values = values;
+         this.candidates = new Object[values.size()];
+      }
+   }
+}
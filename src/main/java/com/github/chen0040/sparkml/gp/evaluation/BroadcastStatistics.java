@@ -0,0 +1,61 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Number of broadcasts created and bytes shipped to the executors during one generation.
+ */
+public class BroadcastStatistics implements Serializable {
+
+   private static final long serialVersionUID = 4160728123450926613L;
+
+   private final int generation;
+   private int broadcastCount;
+   private long bytesShipped;
+   private int candidatesShipped;
+   private int candidatesReused;
+
+   public BroadcastStatistics(int generation) {
+      this.generation = generation;
+   }
+
+   public void shipped(int candidateCount, long bytes) {
+      broadcastCount++;
+      candidatesShipped += candidateCount;
+      bytesShipped += bytes;
+   }
+
+   public void reused(int candidateCount) {
+      candidatesReused += candidateCount;
+   }
+
+   public int getGeneration() {
+      return generation;
+   }
+
+   public int getBroadcastCount() {
+      return broadcastCount;
+   }
+
+   // java-serialized size of the broadcast values
+   public long getBytesShipped() {
+      return bytesShipped;
+   }
+
+   public int getCandidatesShipped() {
+      return candidatesShipped;
+   }
+
+   // candidates evaluated from a broadcast which was already on the executors
+   public int getCandidatesReused() {
+      return candidatesReused;
+   }
+
+   @Override
+   public String toString() {
+      return "generation: " + generation + ", broadcasts: " + broadcastCount + ", bytes: " + bytesShipped
+              + ", shipped: " + candidatesShipped + ", reused: " + candidatesReused;
+   }
+}
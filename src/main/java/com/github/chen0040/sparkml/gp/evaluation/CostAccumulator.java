@@ -0,0 +1,102 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+/**
+ * Mutable running sum of costs per candidate plus the number of observations seen, updated in place by the aggregations.
+ */
+public class CostAccumulator implements Serializable {
+
+   private static final long serialVersionUID = -3175318027429962391L;
+
+   private final double[] sums;
+   private long count;
+   private double weightedCount;
+   private long elapsedNanos;
+
+   public CostAccumulator(int candidateCount) {
+      this.sums = new double[candidateCount];
+   }
+
+   public <P> CostAccumulator add(List<P> candidates, ObservationCostEvaluator<P> evaluator, BasicObservation observation) {
+      for(int i=0; i < sums.length; ++i) {
+         sums[i] += evaluator.evaluate(candidates.get(i), observation);
+      }
+      count++;
+      weightedCount++;
+      return this;
+   }
+
+   public <P> CostAccumulator add(P candidate, ObservationCostEvaluator<P> evaluator, BasicObservation observation) {
+      sums[0] += evaluator.evaluate(candidate, observation);
+      count++;
+      weightedCount++;
+      return this;
+   }
+
+   public CostAccumulator merge(CostAccumulator that) {
+      for(int i=0; i < sums.length; ++i) {
+         sums[i] += that.sums[i];
+      }
+      count += that.count;
+      weightedCount += that.weightedCount;
+      elapsedNanos += that.elapsedNanos;
+      return this;
+   }
+
+   // adds the sums of a work unit, which holds the candidates at the given indices; every unit sees the same observations
+   public CostAccumulator mergeUnit(CostAccumulator unit, int[] indices) {
+      for(int i=0; i < indices.length; ++i) {
+         sums[indices[i]] += unit.sums[i];
+      }
+      count = unit.count;
+      weightedCount = unit.weightedCount;
+      elapsedNanos += unit.elapsedNanos;
+      return this;
+   }
+
+   public CostAccumulator timed(long elapsedNanos) {
+      this.elapsedNanos = elapsedNanos;
+      return this;
+   }
+
+   // scales the sums and the observation count in place, so that merged accumulators yield weighted mean costs
+   public CostAccumulator weighted(double weight) {
+      for(int i=0; i < sums.length; ++i) {
+         sums[i] *= weight;
+      }
+      weightedCount *= weight;
+      return this;
+   }
+
+   public long getCount() {
+      return count;
+   }
+
+   // equal to the count unless the accumulator was weighted
+   public double getWeightedCount() {
+      return weightedCount;
+   }
+
+   // the running time of the task which filled the accumulator, summed over merged accumulators; 0 when not timed
+   public long getElapsedNanos() {
+      return elapsedNanos;
+   }
+
+   public double getSum(int index) {
+      return sums[index];
+   }
+
+   public double[] means() {
+      double[] means = new double[sums.length];
+      for(int i=0; i < sums.length; ++i) {
+         means[i] = sums[i] / weightedCount;
+      }
+      return means;
+   }
+}
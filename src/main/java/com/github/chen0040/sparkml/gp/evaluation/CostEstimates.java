@@ -0,0 +1,56 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Costs of a list of candidates, each either exact or, under bounded evaluation, a lower bound of the exact cost which
+ * is already at or above the survival threshold the candidate was evaluated against.
+ */
+public class CostEstimates {
+
+   private final double[] costs;
+   private final boolean[] exact;
+
+   public CostEstimates(double[] costs, boolean[] exact) {
+      this.costs = costs;
+      this.exact = exact;
+   }
+
+   public static CostEstimates exact(double[] costs) {
+      boolean[] exact = new boolean[costs.length];
+      Arrays.fill(exact, true);
+      return new CostEstimates(costs, exact);
+   }
+
+   public int size() {
+      return costs.length;
+   }
+
+   public double[] getCosts() {
+      return costs;
+   }
+
+   public double getCost(int index) {
+      return costs[index];
+   }
+
+   public boolean isExact(int index) {
+      return exact[index];
+   }
+
+   public boolean isLowerBound(int index) {
+      return !exact[index];
+   }
+
+   public int lowerBoundCount() {
+      int count = 0;
+      for(boolean e : exact) {
+         if(!e) {
+            count++;
+         }
+      }
+      return count;
+   }
+}
@@ -0,0 +1,128 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.MappedObservationPartition;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Computes the mean per-observation cost of broadcast candidates in one pass over the data.
+ * The accumulators are updated in place so that no object is allocated per observation.
+ *
+ * Every partition is sampled with its own Random(seed + partitionIndex) and the partition sums are merged in partition
+ * order, so the spark and the local evaluation backends produce bit-identical costs on the same partitions.
+ */
+public class CostEvaluation {
+
+   // the cost sums of the partitions firstPartition (inclusive) to lastPartition (exclusive), in partition order; the other partitions are skipped
+   public static <P> List<CostAccumulator> evaluate(JavaRDD<BasicObservation> observationRdd, BroadcastSelection<P> candidatesBroadcast, ObservationCostEvaluator<P> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      return partitionCosts(observationRdd, candidatesBroadcast, evaluator, fraction, seed, firstPartition, lastPartition).collect();
+   }
+
+   // the rdd of the partition sums, for the caller to collect with a synchronous or an asynchronous action
+   public static <P> JavaRDD<CostAccumulator> partitionCosts(JavaRDD<BasicObservation> observationRdd, BroadcastSelection<P> candidatesBroadcast, ObservationCostEvaluator<P> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      return observationRdd.mapPartitionsWithIndex((partitionIndex, observations) -> {
+         if(partitionIndex < firstPartition || partitionIndex >= lastPartition) {
+            return Collections.<CostAccumulator>emptyIterator();
+         }
+         return Collections.singletonList(accumulateRows(observations, candidatesBroadcast.getValue(), evaluator, fraction, seed + partitionIndex)).iterator();
+      }, true);
+   }
+
+   // the rdd of the timed partition sums of one work unit, the candidates at the given indices of the selection
+   public static <P> JavaRDD<CostAccumulator> partitionUnitCosts(JavaRDD<BasicObservation> observationRdd, BroadcastSelection<P> candidatesBroadcast, int[] unit, ObservationCostEvaluator<P> evaluator, double fraction, long seed) {
+      return observationRdd.mapPartitionsWithIndex((partitionIndex, observations) -> {
+         long startTime = System.nanoTime();
+         CostAccumulator accumulator = accumulateRows(observations, candidatesBroadcast.getValue(unit), evaluator, fraction, seed + partitionIndex);
+         return Collections.singletonList(accumulator.timed(System.nanoTime() - startTime)).iterator();
+      }, true);
+   }
+
+   public static <P> JavaRDD<CostAccumulator> partitionUnitBlockCosts(JavaRDD<ObservationBlock> blockRdd, BroadcastSelection<P> candidatesBroadcast, int[] unit, ObservationCostEvaluator<P> evaluator, double fraction, long seed) {
+      return blockRdd.mapPartitionsWithIndex((partitionIndex, blocks) -> {
+         long startTime = System.nanoTime();
+         CostAccumulator accumulator = accumulate(blocks, candidatesBroadcast.getValue(unit), evaluator, fraction, seed + partitionIndex);
+         return Collections.singletonList(accumulator.timed(System.nanoTime() - startTime)).iterator();
+      }, true);
+   }
+
+   // the cost sums of one partition of rows, sampled with Random(partitionSeed)
+   private static <P> CostAccumulator accumulateRows(Iterator<BasicObservation> observations, List<P> candidates, ObservationCostEvaluator<P> evaluator, double fraction, long partitionSeed) {
+      CostAccumulator accumulator = new CostAccumulator(candidates.size());
+      Random random = new Random(partitionSeed);
+      while(observations.hasNext()) {
+         BasicObservation observation = observations.next();
+         if(fraction >= 1.0 || random.nextDouble() < fraction) {
+            accumulator.add(candidates, evaluator, observation);
+         }
+      }
+      return accumulator;
+   }
+
+   public static <P> List<CostAccumulator> evaluateBlocks(JavaRDD<ObservationBlock> blockRdd, BroadcastSelection<P> candidatesBroadcast, ObservationCostEvaluator<P> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      return partitionBlockCosts(blockRdd, candidatesBroadcast, evaluator, fraction, seed, firstPartition, lastPartition).collect();
+   }
+
+   public static <P> JavaRDD<CostAccumulator> partitionBlockCosts(JavaRDD<ObservationBlock> blockRdd, BroadcastSelection<P> candidatesBroadcast, ObservationCostEvaluator<P> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      return blockRdd.mapPartitionsWithIndex((partitionIndex, blocks) -> {
+         if(partitionIndex < firstPartition || partitionIndex >= lastPartition) {
+            return Collections.<CostAccumulator>emptyIterator();
+         }
+         return Collections.singletonList(accumulate(blocks, candidatesBroadcast.getValue(), evaluator, fraction, seed + partitionIndex)).iterator();
+      }, true);
+   }
+
+   // the cost sums of one partition, whose blocks are sampled with a single Random(partitionSeed)
+   public static <P> CostAccumulator accumulate(Iterator<ObservationBlock> blocks, List<P> candidates, ObservationCostEvaluator<P> evaluator, double fraction, long partitionSeed) {
+      CostAccumulator accumulator = new CostAccumulator(candidates.size());
+      Random random = new Random(partitionSeed);
+      while(blocks.hasNext()) {
+         ObservationBlock block = blocks.next();
+         if(fraction < 1.0) {
+            block = block.sample(fraction, random);
+         }
+         for(P candidate : candidates) {
+            if(candidate instanceof BlockAware) {
+               ((BlockAware) candidate).beginBlock(block);
+            }
+         }
+         BasicObservation buffer = block.newBuffer();
+         for(int row = 0; row < block.size(); ++row) {
+            block.read(row, buffer);
+            accumulator.add(candidates, evaluator, buffer);
+         }
+      }
+      return accumulator;
+   }
+
+   // the cost sums of one memory-mapped partition, whose rows are sampled with Random(partitionSeed) like those of an rdd
+   // partition; every row is read in place into one reused observation
+   public static <P> CostAccumulator accumulate(MappedObservationPartition partition, List<P> candidates, ObservationCostEvaluator<P> evaluator, double fraction, long partitionSeed) {
+      CostAccumulator accumulator = new CostAccumulator(candidates.size());
+      Random random = new Random(partitionSeed);
+      BasicObservation buffer = partition.newBuffer();
+      for(int row = 0; row < partition.size(); ++row) {
+         if(fraction >= 1.0 || random.nextDouble() < fraction) {
+            partition.read(row, buffer);
+            accumulator.add(candidates, evaluator, buffer);
+         }
+      }
+      return accumulator;
+   }
+
+   // merges the partition sums in partition order
+   public static CostAccumulator merge(int candidateCount, List<CostAccumulator> accumulators) {
+      CostAccumulator total = new CostAccumulator(candidateCount);
+      for(CostAccumulator accumulator : accumulators) {
+         total.merge(accumulator);
+      }
+      return total;
+   }
+}
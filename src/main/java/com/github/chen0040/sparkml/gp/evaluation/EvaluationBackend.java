@@ -0,0 +1,89 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+
+/**
+ * Evaluates lists of candidates against the observations it holds and returns the cost sums of each candidate together
+ * with the number of observations scanned.
+ */
+public interface EvaluationBackend {
+
+   // the cost sums of every partition from firstPartition (inclusive) to lastPartition (exclusive), in partition order
+   <T> List<CostAccumulator> evaluatePartitions(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition);
+
+   // as evaluatePartitions(), returning as soon as the evaluation is submitted; backends without asynchronous jobs
+   // evaluate before they return
+   default <T> Future<List<CostAccumulator>> evaluatePartitionsAsync(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      return CompletableFuture.completedFuture(evaluatePartitions(candidates, evaluator, fraction, seed, firstPartition, lastPartition));
+   }
+
+   default <T> CostAccumulator evaluate(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed) {
+      return CostEvaluation.merge(candidates.size(), evaluatePartitions(candidates, evaluator, fraction, seed, 0, partitionCount()));
+   }
+
+   // the cost sums of every work unit (the candidates at the given indices) on every partition, unit after unit and in
+   // partition order within a unit, each timed by its task. Backends which cannot run the units side by side evaluate
+   // them one after another, and report a single slot so that the candidates are not split
+   default <T> List<CostAccumulator> evaluateUnits(List<T> candidates, List<int[]> units, ObservationCostEvaluator<T> evaluator, double fraction, long seed) {
+      List<CostAccumulator> accumulators = new ArrayList<>();
+      for(int[] unit : units) {
+         List<T> unitCandidates = new ArrayList<>();
+         for(int index : unit) {
+            unitCandidates.add(candidates.get(index));
+         }
+         accumulators.addAll(evaluatePartitions(unitCandidates, evaluator, fraction, seed, 0, partitionCount()));
+      }
+      return accumulators;
+   }
+
+   // the number of tasks which run at the same time
+   default int slotCount() {
+      return 1;
+   }
+
+   int partitionCount();
+
+   // number of observations in every partition, before sampling
+   long[] partitionRowCounts();
+
+   // true when evaluate() runs a spark job
+   boolean isDistributed();
+
+   // true when the observations are evaluated as ObservationBlocks, which BlockAware candidates require
+   default boolean isColumnar() {
+      return false;
+   }
+
+   // shape and column ranges of the observations, computed without a further pass once the data is loaded
+   DatasetDescriptor descriptor();
+
+   List<BasicObservation> probeObservations(int count);
+
+   void release();
+
+   // weight of every partition in the mean cost, or null when all observations weigh the same
+   default double[] partitionWeights() {
+      return null;
+   }
+
+   default void beginGeneration(int generation) {
+   }
+
+   // a backend over the same observations which can be used from another thread with its own generations
+   default EvaluationBackend fork() {
+      return this;
+   }
+
+   default List<BroadcastStatistics> getBroadcastStatistics() {
+      return Collections.emptyList();
+   }
+}
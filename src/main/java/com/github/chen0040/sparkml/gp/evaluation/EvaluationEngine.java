@@ -0,0 +1,562 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.MappedObservationStore;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.data.ObservationPartitioning;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.enums.EvaluationScheduleType;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+
+/**
+ * Holds the cached observations shared by SparkLGP and SparkTreeGP and evaluates lists of candidates against them,
+ * following the evaluation schedule of the current generation.
+ */
+public class EvaluationEngine implements Serializable {
+
+   private static final long serialVersionUID = 2797462349163406718L;
+
+   private static final int PROBE_SIZE = 16;
+
+   public static final long DEFAULT_LOCAL_ROW_THRESHOLD = 100000;
+
+   public static final int DEFAULT_WAVE_COUNT = 4;
+
+   public static final int DEFAULT_MAX_IN_FLIGHT_JOBS = 4;
+
+   private static final ExecutorService completions = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "gp-evaluation-async");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private transient EvaluationBackend backend;
+
+   private transient List<BasicObservation> probeObservations;
+
+   // shared with the engines which share the observations, so that they are bounded together
+   private transient Semaphore jobPermits;
+
+   private int maxInFlightJobs = DEFAULT_MAX_IN_FLIGHT_JOBS;
+
+   private EvaluationBackendType backendType = EvaluationBackendType.Auto;
+
+   private long localRowThreshold = DEFAULT_LOCAL_ROW_THRESHOLD;
+
+   private int waveCount = DEFAULT_WAVE_COUNT;
+
+   private StorageLevel storageLevel = StorageLevel.MEMORY_ONLY();
+
+   private EvaluationSchedule schedule = EvaluationSchedule.full();
+
+   private boolean costAwareScheduling = false;
+
+   private final WorkUnitScheduler workUnitScheduler = new WorkUnitScheduler();
+
+   private int generation = 0;
+
+   private int maxGeneration = 0;
+
+   private double bestFullCost = Double.POSITIVE_INFINITY;
+
+   private final EvaluationStatistics statistics = new EvaluationStatistics();
+
+   // a partitionCount of -1 sizes the partitions from the executor cores and the row count. The rdd is read only once: it
+   // is cached at the storage level and described in one job, which also yields the row counts of its partitions; the
+   // Auto backend then picks Local or Spark from the cached rows, and a repartition when the partition count differs or
+   // the partitions are skewed shuffles the cached rows. The Local backend collects the rdd without caching or balancing it
+   public void setObservationRdd(JavaRDD<BasicObservation> observationRdd, int partitionCount, boolean columnar) {
+      if(backendType == EvaluationBackendType.Local) {
+         setBackend(LocalEvaluationBackend.collect(observationRdd));
+         return;
+      }
+
+      // an rdd which the caller has cached keeps its cache
+      boolean cachedByCaller = !StorageLevel.NONE().equals(observationRdd.getStorageLevel());
+      JavaRDD<BasicObservation> cachedRdd = cachedByCaller ? observationRdd : observationRdd.persist(storageLevel);
+      List<DatasetDescriptor> partitionDescriptors = SparkEvaluationBackend.describePartitions(cachedRdd);
+      long[] partitionRows = new long[partitionDescriptors.size()];
+      long rowCount = 0;
+      for(int i=0; i < partitionRows.length; ++i) {
+         partitionRows[i] = partitionDescriptors.get(i).getRowCount();
+         rowCount += partitionRows[i];
+      }
+
+      if(backendType == EvaluationBackendType.Auto && rowCount <= localRowThreshold) {
+         setBackend(LocalEvaluationBackend.collect(cachedRdd));
+         if(!cachedByCaller) {
+            cachedRdd.unpersist();
+         }
+         return;
+      }
+
+      if(partitionCount == -1) {
+         partitionCount = ObservationPartitioning.partitionCount(JavaSparkContext.fromSparkContext(cachedRdd.context()), rowCount);
+      }
+      JavaRDD<BasicObservation> balancedRdd = ObservationPartitioning.balance(cachedRdd, partitionRows, partitionCount);
+      SparkEvaluationBackend sparkBackend = new SparkEvaluationBackend(balancedRdd, columnar, storageLevel);
+      if(balancedRdd == cachedRdd && !columnar) {
+         sparkBackend.describe(partitionDescriptors);
+      } else {
+         // loads the cache of the balanced rows or of the blocks from the cached rows, which are no longer needed then
+         sparkBackend.materialize();
+         if(!cachedByCaller) {
+            cachedRdd.unpersist();
+         }
+      }
+      setBackend(sparkBackend);
+   }
+
+   // evaluates against a memory-mapped store, by spark jobs with a context unless the backend type is Local or Auto picks
+   // Local for small data, and in the current JVM otherwise
+   public void setObservationStore(MappedObservationStore store, JavaSparkContext context) {
+      EvaluationBackendType type = backendType;
+      if(context == null || type == EvaluationBackendType.Auto && store.rowCount() <= localRowThreshold) {
+         type = EvaluationBackendType.Local;
+      }
+      setBackend(new MappedEvaluationBackend(store, type == EvaluationBackendType.Local ? null : context));
+   }
+
+   // evaluates against an in-memory shard inside the current JVM instead of the cluster, e.g. on the executor running an island
+   public void setLocalObservations(List<BasicObservation> localObservations) {
+      setBackend(LocalEvaluationBackend.of(localObservations));
+   }
+
+   // evaluates by spark jobs over blocks which the caller has cached, e.g. the window of a stream, the cost being the
+   // weighted mean over the partitions when weights are given; the blocks are read once to describe them
+   public void setObservationBlockRdd(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights) {
+      SparkEvaluationBackend sparkBackend = new SparkEvaluationBackend(observationBlockRdd, partitionWeights);
+      sparkBackend.materialize();
+      setBackend(sparkBackend);
+   }
+
+   // evaluates in the current JVM with one partition per block, the cost being the weighted mean when weights are given
+   public void setLocalObservationBlocks(List<ObservationBlock> blocks, double[] weights) {
+      setBackend(new LocalEvaluationBackend(blocks, weights));
+   }
+
+   public void setBackend(EvaluationBackend backend) {
+      if(this.backend != null) {
+         this.backend.release();
+      }
+      this.backend = backend;
+      this.probeObservations = null;
+      this.bestFullCost = Double.POSITIVE_INFINITY;
+   }
+
+   // evaluates over a fork of the backend of the source, e.g. from another driver thread, sharing its bound on jobs in flight
+   public void shareObservations(EvaluationEngine source) {
+      setBackend(source.backend.fork());
+      this.jobPermits = source.jobPermits();
+      this.maxInFlightJobs = source.maxInFlightJobs;
+   }
+
+   public EvaluationBackend getBackend() {
+      return backend;
+   }
+
+   public EvaluationBackendType getBackendType() {
+      return backendType;
+   }
+
+   // Auto evaluates in the driver JVM when the data has no more than localRowThreshold rows, and with spark jobs otherwise
+   public void setBackendType(EvaluationBackendType backendType) {
+      this.backendType = backendType;
+   }
+
+   public long getLocalRowThreshold() {
+      return localRowThreshold;
+   }
+
+   public void setLocalRowThreshold(long localRowThreshold) {
+      this.localRowThreshold = localRowThreshold;
+   }
+
+   public StorageLevel getStorageLevel() {
+      return storageLevel;
+   }
+
+   // how the spark backend caches the observations, e.g. MEMORY_ONLY_SER to trade cpu for memory or OFF_HEAP
+   public void setStorageLevel(StorageLevel storageLevel) {
+      this.storageLevel = storageLevel;
+   }
+
+   public int getWaveCount() {
+      return waveCount;
+   }
+
+   // number of groups of partitions scored one after the other by bounded evaluation
+   public void setWaveCount(int waveCount) {
+      this.waveCount = waveCount;
+   }
+
+   public int getMaxInFlightJobs() {
+      return maxInFlightJobs;
+   }
+
+   // the number of evaluations which may run at the same time, synchronous or not; further evaluations wait for one to
+   // complete. Takes effect for the engines which share the observations afterwards.
+   public void setMaxInFlightJobs(int maxInFlightJobs) {
+      this.maxInFlightJobs = maxInFlightJobs;
+      this.jobPermits = null;
+   }
+
+   private synchronized Semaphore jobPermits() {
+      if(jobPermits == null) {
+         jobPermits = new Semaphore(maxInFlightJobs, true);
+      }
+      return jobPermits;
+   }
+
+   public boolean isCostAwareScheduling() {
+      return costAwareScheduling;
+   }
+
+   // when enabled, the candidates of an unbounded evaluation are packed into work units of balanced estimated cost which
+   // run side by side on every partition, as many as the free task slots allow
+   public void setCostAwareScheduling(boolean costAwareScheduling) {
+      this.costAwareScheduling = costAwareScheduling;
+   }
+
+   public WorkUnitScheduler getWorkUnitScheduler() {
+      return workUnitScheduler;
+   }
+
+   // true when the current backend evaluates ObservationBlocks
+   public boolean isColumnar() {
+      return backend != null && backend.isColumnar();
+   }
+
+   public int outputCount() {
+      return backend.descriptor().getOutputCount();
+   }
+
+   // shape and column ranges of the current observations
+   public DatasetDescriptor getDatasetDescriptor() {
+      return backend == null ? null : backend.descriptor();
+   }
+
+   // a few observations used on the driver to verify compiled programs against the interpreter
+   public List<BasicObservation> probeObservations() {
+      if(probeObservations == null) {
+         probeObservations = backend.probeObservations(PROBE_SIZE);
+      }
+      return probeObservations;
+   }
+
+   public EvaluationSchedule getSchedule() {
+      return schedule;
+   }
+
+   public void setSchedule(EvaluationSchedule schedule) {
+      this.schedule = schedule;
+   }
+
+   public void beginGeneration(int generation, int maxGeneration) {
+      this.generation = generation;
+      this.maxGeneration = maxGeneration;
+      if(backend != null) {
+         backend.beginGeneration(generation);
+      }
+   }
+
+   // running totals of evaluation time, spark jobs and rows scanned
+   public EvaluationStatistics getStatistics() {
+      return statistics;
+   }
+
+   // broadcasts created and bytes shipped per generation; empty for the local backend
+   public List<BroadcastStatistics> getBroadcastStatistics() {
+      return backend == null ? Collections.emptyList() : backend.getBroadcastStatistics();
+   }
+
+   public int getGeneration() {
+      return generation;
+   }
+
+   // best exact cost on the full data since the observations were set, which racing compares the sampled costs against
+   public double getBestFullCost() {
+      return bestFullCost;
+   }
+
+   // restores the best full cost after the observations were set again, e.g. when resuming from a checkpoint
+   public void setBestFullCost(double bestFullCost) {
+      this.bestFullCost = bestFullCost;
+   }
+
+   // prefix for fitness cache keys so that costs computed on different samples are never mixed
+   public String cacheContext() {
+      return schedule.cacheContext(generation, maxGeneration);
+   }
+
+   public <T> double[] evaluate(List<T> candidates, ObservationCostEvaluator<T> evaluator) {
+      return evaluate(candidates, evaluator, Double.POSITIVE_INFINITY).getCosts();
+   }
+
+   // bounded evaluation: the partitions are scored in waves and a candidate is no longer evaluated once its cost is proven
+   // to be at least survivalThreshold; it then receives that proof as a lower bound instead of its exact cost. The proof
+   // assumes that the per-observation costs are never negative. An infinite threshold evaluates every candidate exactly.
+   public <T> CostEstimates evaluate(List<T> candidates, ObservationCostEvaluator<T> evaluator, double survivalThreshold) {
+      return evaluate(candidates, evaluator, survivalThreshold, null);
+   }
+
+   // as evaluate(), with the size of every candidate (e.g. its effective instruction or node count) for cost-aware scheduling
+   public <T> CostEstimates evaluate(List<T> candidates, ObservationCostEvaluator<T> evaluator, double survivalThreshold, double[] sizes) {
+      double fraction = schedule.fractionAt(generation, maxGeneration);
+      CostEstimates estimates = evaluate(candidates, evaluator, fraction, survivalThreshold, sizes, 1);
+
+      if(fraction >= 1.0) {
+         updateBestFullCost(estimates);
+      } else if(schedule.getType() == EvaluationScheduleType.Racing) {
+         List<Integer> promising = schedule.selectPromising(estimates.getCosts(), bestFullCost);
+         if(!promising.isEmpty()) {
+            List<T> finalists = new ArrayList<>();
+            double[] finalistSizes = sizes == null ? null : new double[promising.size()];
+            for(int i=0; i < promising.size(); ++i) {
+               finalists.add(candidates.get(promising.get(i)));
+               if(sizes != null) {
+                  finalistSizes[i] = sizes[promising.get(i)];
+               }
+            }
+            CostEstimates fullEstimates = evaluate(finalists, evaluator, 1.0, survivalThreshold, finalistSizes, 1);
+            double[] costs = estimates.getCosts().clone();
+            boolean[] exact = new boolean[costs.length];
+            for(int i=0; i < costs.length; ++i) {
+               exact[i] = estimates.isExact(i);
+            }
+            for(int i=0; i < fullEstimates.size(); ++i) {
+               costs[promising.get(i)] = fullEstimates.getCost(i);
+               exact[promising.get(i)] = fullEstimates.isExact(i);
+            }
+            updateBestFullCost(fullEstimates);
+            estimates = new CostEstimates(costs, exact);
+         }
+      }
+      return estimates;
+   }
+
+   // the mean of every objective per candidate, all aggregated in the same pass over the observations; with timed, a last
+   // column holds the mean running time of the candidate per observation in nanoseconds. Racing and bounded evaluation
+   // apply to single costs only, so the sample of the schedule is used as is.
+   public <T> double[][] evaluateObjectives(List<T> candidates, ObjectiveEvaluator<T> evaluator, boolean timed) {
+      return evaluateObjectives(candidates, evaluator, timed, null);
+   }
+
+   // as evaluateObjectives(), with the size of every candidate for cost-aware scheduling
+   public <T> double[][] evaluateObjectives(List<T> candidates, ObjectiveEvaluator<T> evaluator, boolean timed, double[] sizes) {
+      int valueCount = evaluator.objectiveCount() + (timed ? 1 : 0);
+      double fraction = schedule.fractionAt(generation, maxGeneration);
+      double[] means = evaluate(ObjectiveSlot.expand(candidates, valueCount), ObjectiveSlot.evaluator(evaluator, timed), fraction, Double.POSITIVE_INFINITY, sizes, valueCount).getCosts();
+
+      double[][] objectives = new double[candidates.size()][valueCount];
+      for(int i=0; i < candidates.size(); ++i) {
+         System.arraycopy(means, i * valueCount, objectives[i], 0, valueCount);
+      }
+      return objectives;
+   }
+
+   // submits one evaluation of the candidates over the sample of the current generation and returns at once; the caller
+   // waits only while getMaxInFlightJobs() evaluations are running. Racing and bounded evaluation need the costs of
+   // earlier evaluations, so the sample of the schedule is used as is.
+   public <T> CompletableFuture<double[]> evaluateAsync(List<T> candidates, ObservationCostEvaluator<T> evaluator) {
+      double fraction = schedule.fractionAt(generation, maxGeneration);
+      long seed = schedule.seedAt(generation);
+      EvaluationBackend backend = this.backend;
+      Semaphore permits = jobPermits();
+
+      permits.acquireUninterruptibly();
+      long startTime = System.nanoTime();
+      Future<List<CostAccumulator>> job;
+      try {
+         job = backend.evaluatePartitionsAsync(candidates, evaluator, fraction, seed, 0, backend.partitionCount());
+      } catch(RuntimeException e) {
+         permits.release();
+         throw e;
+      }
+
+      return CompletableFuture.supplyAsync(() -> {
+         try {
+            CostAccumulator total = CostEvaluation.merge(candidates.size(), job.get());
+            statistics.record(backend.isDistributed(), candidates.size(), total.getCount(), System.nanoTime() - startTime);
+            return total.means();
+         } catch(InterruptedException | ExecutionException e) {
+            throw new CompletionException(e);
+         } finally {
+            permits.release();
+         }
+      }, completions);
+   }
+
+   private void updateBestFullCost(CostEstimates estimates) {
+      for(int i=0; i < estimates.size(); ++i) {
+         if(estimates.isExact(i)) {
+            bestFullCost = Math.min(bestFullCost, estimates.getCost(i));
+         }
+      }
+   }
+
+   // the candidates come in groups of groupSize which must be evaluated together, e.g. the objective slots of one program,
+   // and sizes holds the size of every group
+   private <T> CostEstimates evaluate(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, double survivalThreshold, double[] sizes, int groupSize) {
+      long seed = schedule.seedAt(generation);
+      int partitionCount = backend.partitionCount();
+
+      if(Double.isInfinite(survivalThreshold) || Double.isNaN(survivalThreshold) || waveCount < 2 || partitionCount < 2) {
+         long startTime = System.nanoTime();
+         CostAccumulator total = withPermit(() -> evaluateUnits(candidates, evaluator, fraction, seed, sizes, groupSize));
+         statistics.record(backend.isDistributed(), candidates.size(), total.getCount(), System.nanoTime() - startTime);
+         return CostEstimates.exact(total.means());
+      }
+
+      long[] partitionRows = backend.partitionRowCounts();
+      double[] partitionWeights = backend.partitionWeights();
+      double rowCount = 0;
+      for(int partition = 0; partition < partitionCount; ++partition) {
+         rowCount += partitionRows[partition] * (partitionWeights == null ? 1.0 : partitionWeights[partition]);
+      }
+
+      int candidateCount = candidates.size();
+      double[] sums = new double[candidateCount];
+      double[] counts = new double[candidateCount];
+      boolean[] exact = new boolean[candidateCount];
+      List<Integer> active = new ArrayList<>();
+      for(int i=0; i < candidateCount; ++i) {
+         exact[i] = true;
+         active.add(i);
+      }
+
+      // the partition sums are added in partition order, so the exact costs are bit-identical to an unbounded evaluation
+      int waveSize = (partitionCount + waveCount - 1) / waveCount;
+      for(int firstPartition = 0; firstPartition < partitionCount && !active.isEmpty(); firstPartition += waveSize) {
+         int lastPartition = Math.min(partitionCount, firstPartition + waveSize);
+         List<T> wave = new ArrayList<>();
+         for(int index : active) {
+            wave.add(candidates.get(index));
+         }
+
+         long startTime = System.nanoTime();
+         final int first = firstPartition;
+         List<CostAccumulator> partitionCosts = withPermit(() -> backend.evaluatePartitions(wave, evaluator, fraction, seed, first, lastPartition));
+         long rowsScanned = 0;
+         for(CostAccumulator partitionCost : partitionCosts) {
+            for(int j=0; j < active.size(); ++j) {
+               int index = active.get(j);
+               sums[index] += partitionCost.getSum(j);
+               counts[index] += partitionCost.getWeightedCount();
+            }
+            rowsScanned += partitionCost.getCount();
+         }
+         statistics.record(backend.isDistributed(), wave.size(), rowsScanned, System.nanoTime() - startTime);
+
+         if(lastPartition < partitionCount) {
+            long remainingRows = 0;
+            for(int partition = lastPartition; partition < partitionCount; ++partition) {
+               remainingRows += partitionRows[partition];
+            }
+            List<Integer> survivors = new ArrayList<>();
+            for(int index : active) {
+               if(sums[index] / rowCount >= survivalThreshold) {
+                  exact[index] = false;
+                  statistics.recordCutOff(Math.round(remainingRows * Math.min(1.0, fraction)));
+               } else {
+                  survivors.add(index);
+               }
+            }
+            active = survivors;
+         }
+      }
+
+      double[] costs = new double[candidateCount];
+      for(int i=0; i < candidateCount; ++i) {
+         costs[i] = exact[i] ? sums[i] / counts[i] : sums[i] / rowCount;
+      }
+      return new CostEstimates(costs, exact);
+   }
+
+   // packs the groups of candidates into work units by their estimated cost, evaluates every unit on every partition and
+   // learns from the task times; the sums of a candidate are merged in partition order, so its cost is bit-identical to
+   // an evaluation without units
+   private <T> CostAccumulator evaluateUnits(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, double[] sizes, int groupSize) {
+      int groupCount = candidates.size() / groupSize;
+      int slotCount = backend.slotCount();
+      if(!costAwareScheduling || slotCount < 2 || groupCount < 2) {
+         return backend.evaluate(candidates, evaluator, fraction, seed);
+      }
+
+      long maxPartitionRows = 0;
+      for(long rows : backend.partitionRowCounts()) {
+         maxPartitionRows = Math.max(maxPartitionRows, rows);
+      }
+      double[] costs = workUnitScheduler.costs(sizes, groupCount);
+      int unitCount = workUnitScheduler.unitCount(costs, maxPartitionRows * Math.min(1.0, fraction), backend.partitionCount(), slotCount);
+      if(unitCount < 2) {
+         return backend.evaluate(candidates, evaluator, fraction, seed);
+      }
+
+      List<int[]> groupUnits = WorkUnitScheduler.pack(costs, unitCount);
+      List<int[]> units = new ArrayList<>();
+      for(int[] groups : groupUnits) {
+         int[] unit = new int[groups.length * groupSize];
+         for(int i=0; i < groups.length; ++i) {
+            for(int j=0; j < groupSize; ++j) {
+               unit[i * groupSize + j] = groups[i] * groupSize + j;
+            }
+         }
+         units.add(unit);
+      }
+      List<CostAccumulator> accumulators = backend.evaluateUnits(candidates, units, evaluator, fraction, seed);
+
+      int partitionCount = backend.partitionCount();
+      double[] taskSizes = new double[accumulators.size()];
+      int[] taskCandidates = new int[accumulators.size()];
+      long[] taskRows = new long[accumulators.size()];
+      long[] taskNanos = new long[accumulators.size()];
+      CostAccumulator total = new CostAccumulator(candidates.size());
+      for(int u=0; u < units.size(); ++u) {
+         int[] groups = groupUnits.get(u);
+         double unitSize = 0;
+         for(int group : groups) {
+            unitSize += sizes == null ? 1.0 : sizes[group];
+         }
+         List<CostAccumulator> unitPartitions = accumulators.subList(u * partitionCount, (u + 1) * partitionCount);
+         for(int partition = 0; partition < partitionCount; ++partition) {
+            int task = u * partitionCount + partition;
+            taskSizes[task] = unitSize;
+            taskCandidates[task] = groups.length;
+            taskRows[task] = unitPartitions.get(partition).getCount();
+            taskNanos[task] = unitPartitions.get(partition).getElapsedNanos();
+         }
+         total.mergeUnit(CostEvaluation.merge(units.get(u).length, unitPartitions), units.get(u));
+      }
+      workUnitScheduler.record(taskSizes, taskCandidates, taskRows, taskNanos);
+      return total;
+   }
+
+   private <R> R withPermit(Supplier<R> job) {
+      Semaphore permits = jobPermits();
+      permits.acquireUninterruptibly();
+      try {
+         return job.get();
+      } finally {
+         permits.release();
+      }
+   }
+}
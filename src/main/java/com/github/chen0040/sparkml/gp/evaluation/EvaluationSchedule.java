@@ -0,0 +1,128 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.sparkml.gp.enums.EvaluationScheduleType;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Decides which seeded fraction of the observations is used for evaluation in each generation.
+ *
+ * FixedFraction scores every candidate on the same fraction, Growing increases the fraction linearly to the full data
+ * at the last generation, and Racing scores on a sample first and re-scores only the promising candidates on the full data.
+ */
+public class EvaluationSchedule implements Serializable {
+
+   private static final long serialVersionUID = -8140227380693542861L;
+
+   private EvaluationScheduleType type = EvaluationScheduleType.Full;
+   private double fraction = 1.0;
+   private long seed = 42L;
+   private double racingSurvivorFraction = 0.2;
+   private double racingTolerance = 0.1;
+
+   public static EvaluationSchedule full() {
+      return new EvaluationSchedule();
+   }
+
+   public static EvaluationSchedule fixedFraction(double fraction) {
+      EvaluationSchedule schedule = new EvaluationSchedule();
+      schedule.type = EvaluationScheduleType.FixedFraction;
+      schedule.fraction = fraction;
+      return schedule;
+   }
+
+   // the sample grows linearly from the initial fraction to the full data at the last generation
+   public static EvaluationSchedule growing(double initialFraction) {
+      EvaluationSchedule schedule = new EvaluationSchedule();
+      schedule.type = EvaluationScheduleType.Growing;
+      schedule.fraction = initialFraction;
+      return schedule;
+   }
+
+   // candidates are scored on the sample, and those ranked in the top survivor fraction are re-scored on the full data
+   public static EvaluationSchedule racing(double sampleFraction, double survivorFraction) {
+      EvaluationSchedule schedule = new EvaluationSchedule();
+      schedule.type = EvaluationScheduleType.Racing;
+      schedule.fraction = sampleFraction;
+      schedule.racingSurvivorFraction = survivorFraction;
+      return schedule;
+   }
+
+   public double fractionAt(int generation, int maxGeneration) {
+      switch (type) {
+         case FixedFraction:
+         case Racing:
+            return Math.min(1.0, fraction);
+         case Growing:
+            if(maxGeneration <= 0) {
+               return 1.0;
+            }
+            return Math.min(1.0, fraction + (1.0 - fraction) * generation / maxGeneration);
+         default:
+            return 1.0;
+      }
+   }
+
+   public long seedAt(int generation) {
+      return seed * 31 + generation;
+   }
+
+   // costs computed on a sample are only comparable within the generation that drew it
+   public String cacheContext(int generation, int maxGeneration) {
+      double fraction = fractionAt(generation, maxGeneration);
+      if(fraction >= 1.0) {
+         return "";
+      }
+      return type + "(" + fraction + "," + seedAt(generation) + ")|";
+   }
+
+   // indices of the sampled candidates which are ranked in the survivor fraction or are close to the best full-data cost
+   public List<Integer> selectPromising(double[] sampleCosts, double bestFullCost) {
+      int survivorCount = (int)Math.floor(sampleCosts.length * racingSurvivorFraction);
+      double[] sorted = sampleCosts.clone();
+      Arrays.sort(sorted);
+      double survivorThreshold = survivorCount > 0 ? sorted[survivorCount - 1] : Double.NEGATIVE_INFINITY;
+      double bestThreshold = Double.isInfinite(bestFullCost) ? Double.NEGATIVE_INFINITY : bestFullCost * (1 + racingTolerance);
+
+      List<Integer> promising = new ArrayList<>();
+      for(int i=0; i < sampleCosts.length; ++i) {
+         if(sampleCosts[i] <= survivorThreshold || sampleCosts[i] <= bestThreshold) {
+            promising.add(i);
+         }
+      }
+      return promising;
+   }
+
+   public EvaluationScheduleType getType() {
+      return type;
+   }
+
+   public double getFraction() {
+      return fraction;
+   }
+
+   public long getSeed() {
+      return seed;
+   }
+
+   public void setSeed(long seed) {
+      this.seed = seed;
+   }
+
+   public double getRacingSurvivorFraction() {
+      return racingSurvivorFraction;
+   }
+
+   public double getRacingTolerance() {
+      return racingTolerance;
+   }
+
+   public void setRacingTolerance(double racingTolerance) {
+      this.racingTolerance = racingTolerance;
+   }
+}
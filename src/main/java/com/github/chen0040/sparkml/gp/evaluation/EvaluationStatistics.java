@@ -0,0 +1,107 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Running totals of the evaluations done by an EvaluationEngine; per-generation values are the difference of two copies.
+ */
+public class EvaluationStatistics implements Serializable {
+
+   private static final long serialVersionUID = -5526290913485207317L;
+
+   private long evaluationCount;
+   private long sparkJobCount;
+   private long candidateCount;
+   private long rowsScanned;
+   private long evaluationNanos;
+   private long lowerBoundCount;
+   private long savedRowEvaluations;
+
+   public synchronized void record(boolean sparkJob, int candidates, long rows, long nanos) {
+      evaluationCount++;
+      if(sparkJob) {
+         sparkJobCount++;
+      }
+      candidateCount += candidates;
+      rowsScanned += rows;
+      evaluationNanos += nanos;
+   }
+
+   // a candidate whose evaluation was cut off, skipping the given number of row evaluations
+   public synchronized void recordCutOff(long skippedRowEvaluations) {
+      lowerBoundCount++;
+      savedRowEvaluations += skippedRowEvaluations;
+   }
+
+   public synchronized EvaluationStatistics copy() {
+      EvaluationStatistics copy = new EvaluationStatistics();
+      copy.evaluationCount = evaluationCount;
+      copy.sparkJobCount = sparkJobCount;
+      copy.candidateCount = candidateCount;
+      copy.rowsScanned = rowsScanned;
+      copy.evaluationNanos = evaluationNanos;
+      copy.lowerBoundCount = lowerBoundCount;
+      copy.savedRowEvaluations = savedRowEvaluations;
+      return copy;
+   }
+
+   // the totals accumulated since the earlier copy was taken
+   public synchronized EvaluationStatistics since(EvaluationStatistics earlier) {
+      EvaluationStatistics delta = new EvaluationStatistics();
+      delta.evaluationCount = evaluationCount - earlier.evaluationCount;
+      delta.sparkJobCount = sparkJobCount - earlier.sparkJobCount;
+      delta.candidateCount = candidateCount - earlier.candidateCount;
+      delta.rowsScanned = rowsScanned - earlier.rowsScanned;
+      delta.evaluationNanos = evaluationNanos - earlier.evaluationNanos;
+      delta.lowerBoundCount = lowerBoundCount - earlier.lowerBoundCount;
+      delta.savedRowEvaluations = savedRowEvaluations - earlier.savedRowEvaluations;
+      return delta;
+   }
+
+   // the totals of this and another engine together
+   public synchronized EvaluationStatistics plus(EvaluationStatistics other) {
+      EvaluationStatistics sum = other.copy();
+      sum.evaluationCount += evaluationCount;
+      sum.sparkJobCount += sparkJobCount;
+      sum.candidateCount += candidateCount;
+      sum.rowsScanned += rowsScanned;
+      sum.evaluationNanos += evaluationNanos;
+      sum.lowerBoundCount += lowerBoundCount;
+      sum.savedRowEvaluations += savedRowEvaluations;
+      return sum;
+   }
+
+   public synchronized long getEvaluationCount() {
+      return evaluationCount;
+   }
+
+   public synchronized long getSparkJobCount() {
+      return sparkJobCount;
+   }
+
+   // candidates evaluated, counting a candidate once per evaluation it took part in
+   public synchronized long getCandidateCount() {
+      return candidateCount;
+   }
+
+   // observations read across all evaluations; an observation shared by several candidates is counted once per evaluation
+   public synchronized long getRowsScanned() {
+      return rowsScanned;
+   }
+
+   public synchronized long getEvaluationNanos() {
+      return evaluationNanos;
+   }
+
+   // candidates which received a lower bound instead of their exact cost
+   public synchronized long getLowerBoundCount() {
+      return lowerBoundCount;
+   }
+
+   // candidate-row evaluations skipped by bounded evaluation (expected value when the data is sampled)
+   public synchronized long getSavedRowEvaluations() {
+      return savedRowEvaluations;
+   }
+}
@@ -0,0 +1,151 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.DoubleSupplier;
+
+
+/**
+ * Driver-side LRU cache of costs keyed by the canonical form of a program, so that structurally identical programs
+ * are evaluated on the cluster only once. The managers key it by StructureKey.
+ */
+public class FitnessCache<K> implements Serializable {
+
+   private static final long serialVersionUID = 4608290135981733610L;
+
+   public static final int DEFAULT_CAPACITY = 10000;
+
+   private final LinkedHashMap<K, Double> costs = new LinkedHashMap<K, Double>(16, 0.75f, true) {
+      private static final long serialVersionUID = -2231866170325498185L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Double> eldest) {
+         return size() > capacity;
+      }
+   };
+
+   private int capacity;
+   private long hitCount;
+   private long missCount;
+
+   public FitnessCache() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   public FitnessCache(int capacity) {
+      this.capacity = capacity;
+   }
+
+   public synchronized Double get(K key) {
+      Double cost = capacity > 0 ? costs.get(key) : null;
+      if(cost != null) {
+         hitCount++;
+      } else {
+         missCount++;
+      }
+      return cost;
+   }
+
+   public synchronized void put(K key, double cost) {
+      if(capacity > 0) {
+         costs.put(key, cost);
+      }
+   }
+
+   public double evaluate(K key, DoubleSupplier evaluator) {
+      Double cost = get(key);
+      if(cost == null) {
+         cost = evaluator.getAsDouble();
+         put(key, cost);
+      }
+      return cost;
+   }
+
+   // serves the cached candidates and passes each distinct uncached key once to the evaluator, which returns costs in the same order
+   public <P> double[] evaluate(List<P> candidates, List<K> keys, Function<List<P>, double[]> evaluator) {
+      return estimate(candidates, keys, misses -> CostEstimates.exact(evaluator.apply(misses))).getCosts();
+   }
+
+   // as evaluate(), but only exact costs are cached; lower bounds are returned to the caller and evaluated again next time
+   public <P> CostEstimates estimate(List<P> candidates, List<K> keys, Function<List<P>, CostEstimates> evaluator) {
+      double[] costs = new double[candidates.size()];
+      boolean[] exact = new boolean[candidates.size()];
+      Map<K, List<Integer>> pending = new LinkedHashMap<>();
+      List<P> misses = new ArrayList<>();
+      for(int i=0; i < candidates.size(); ++i) {
+         K key = keys.get(i);
+         Double cost = get(key);
+         if(cost != null) {
+            costs[i] = cost;
+            exact[i] = true;
+            continue;
+         }
+         List<Integer> indices = pending.get(key);
+         if(indices == null) {
+            indices = new ArrayList<>();
+            pending.put(key, indices);
+            misses.add(candidates.get(i));
+         }
+         indices.add(i);
+      }
+
+      if(!misses.isEmpty()) {
+         CostEstimates missEstimates = evaluator.apply(misses);
+         int index = 0;
+         for(Map.Entry<K, List<Integer>> entry : pending.entrySet()) {
+            double cost = missEstimates.getCost(index);
+            boolean isExact = missEstimates.isExact(index);
+            index++;
+            if(isExact) {
+               put(entry.getKey(), cost);
+            }
+            for(int i : entry.getValue()) {
+               costs[i] = cost;
+               exact[i] = isExact;
+            }
+         }
+      }
+      return new CostEstimates(costs, exact);
+   }
+
+   public synchronized void clear() {
+      costs.clear();
+   }
+
+   public synchronized void resetStatistics() {
+      hitCount = 0;
+      missCount = 0;
+   }
+
+   public synchronized int size() {
+      return costs.size();
+   }
+
+   public int getCapacity() {
+      return capacity;
+   }
+
+   // a capacity of 0 disables caching
+   public synchronized void setCapacity(int capacity) {
+      this.capacity = capacity;
+      if(capacity <= 0) {
+         costs.clear();
+      } else {
+         Iterator<K> keys = costs.keySet().iterator();
+         while(costs.size() > capacity && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+         }
+      }
+   }
+
+   public synchronized long getHitCount() {
+      return hitCount;
+   }
+
+   public synchronized long getMissCount() {
+      return missCount;
+   }
+}
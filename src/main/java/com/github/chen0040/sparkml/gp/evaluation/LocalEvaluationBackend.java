@@ -0,0 +1,160 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Evaluates the candidates inside the current JVM over primitive in-memory blocks, one block per partition of the
+ * original rdd, with the partitions evaluated in parallel on the common fork-join pool.
+ *
+ * Programs keep their registers in the program object, so every parallel task evaluates its own deserialized copy of the
+ * candidates, just like a spark task would.
+ */
+public class LocalEvaluationBackend implements EvaluationBackend {
+
+   private final List<ObservationBlock> partitions;
+
+   private final double[] partitionWeights;
+
+   private DatasetDescriptor descriptor;
+
+   public LocalEvaluationBackend(List<ObservationBlock> partitions) {
+      this(partitions, null);
+   }
+
+   // the cost of a candidate becomes the weighted mean over the partitions, e.g. to decay older batches of a stream
+   public LocalEvaluationBackend(List<ObservationBlock> partitions, double[] partitionWeights) {
+      this.partitions = partitions;
+      this.partitionWeights = partitionWeights;
+   }
+
+   // collects every partition of the rdd into one block
+   public static LocalEvaluationBackend collect(JavaRDD<BasicObservation> observationRdd) {
+      return new LocalEvaluationBackend(ObservationBlock.pack(observationRdd).collect());
+   }
+
+   public static LocalEvaluationBackend of(List<BasicObservation> observations) {
+      return new LocalEvaluationBackend(Collections.singletonList(ObservationBlock.pack(observations)));
+   }
+
+   public List<ObservationBlock> getPartitions() {
+      return partitions;
+   }
+
+   public long rowCount() {
+      long rowCount = 0;
+      for(ObservationBlock block : partitions) {
+         rowCount += block.size();
+      }
+      return rowCount;
+   }
+
+   @Override
+   public <T> List<CostAccumulator> evaluatePartitions(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      if(lastPartition - firstPartition == 1) {
+         return Collections.singletonList(accumulate(firstPartition, candidates, evaluator, fraction, seed));
+      }
+
+      byte[] serializedCandidates = JavaSerialization.serialize(new ArrayList<>(candidates));
+      return IntStream.range(firstPartition, lastPartition).parallel()
+              .mapToObj(partitionIndex -> accumulate(partitionIndex, JavaSerialization.<List<T>>deserialize(serializedCandidates), evaluator, fraction, seed))
+              .collect(Collectors.toList());
+   }
+
+   // the units of every partition in parallel, each task deserializing the candidates of its unit only
+   @Override
+   public <T> List<CostAccumulator> evaluateUnits(List<T> candidates, List<int[]> units, ObservationCostEvaluator<T> evaluator, double fraction, long seed) {
+      List<byte[]> serializedUnits = new ArrayList<>();
+      for(int[] unit : units) {
+         ArrayList<T> unitCandidates = new ArrayList<>();
+         for(int index : unit) {
+            unitCandidates.add(candidates.get(index));
+         }
+         serializedUnits.add(JavaSerialization.serialize(unitCandidates));
+      }
+      int partitionCount = partitions.size();
+      return IntStream.range(0, units.size() * partitionCount).parallel()
+              .mapToObj(task -> {
+                 long startTime = System.nanoTime();
+                 List<T> unitCandidates = JavaSerialization.deserialize(serializedUnits.get(task / partitionCount));
+                 return accumulate(task % partitionCount, unitCandidates, evaluator, fraction, seed).timed(System.nanoTime() - startTime);
+              })
+              .collect(Collectors.toList());
+   }
+
+   @Override
+   public int slotCount() {
+      return ForkJoinPool.getCommonPoolParallelism();
+   }
+
+   private <T> CostAccumulator accumulate(int partitionIndex, List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed) {
+      CostAccumulator accumulator = CostEvaluation.accumulate(Collections.singletonList(partitions.get(partitionIndex)).iterator(), candidates, evaluator, fraction, seed + partitionIndex);
+      return partitionWeights == null ? accumulator : accumulator.weighted(partitionWeights[partitionIndex]);
+   }
+
+   @Override
+   public double[] partitionWeights() {
+      return partitionWeights;
+   }
+
+   @Override
+   public int partitionCount() {
+      return partitions.size();
+   }
+
+   @Override
+   public long[] partitionRowCounts() {
+      long[] counts = new long[partitions.size()];
+      for(int i=0; i < counts.length; ++i) {
+         counts[i] = partitions.get(i).size();
+      }
+      return counts;
+   }
+
+   @Override
+   public boolean isDistributed() {
+      return false;
+   }
+
+   @Override
+   public boolean isColumnar() {
+      return true;
+   }
+
+   @Override
+   public DatasetDescriptor descriptor() {
+      if(descriptor == null) {
+         descriptor = DatasetDescriptor.ofBlocks(partitions.iterator());
+      }
+      return descriptor;
+   }
+
+   @Override
+   public List<BasicObservation> probeObservations(int count) {
+      List<BasicObservation> probes = new ArrayList<>();
+      for(ObservationBlock block : partitions) {
+         for(int row = 0; row < block.size() && probes.size() < count; ++row) {
+            BasicObservation observation = block.newBuffer();
+            block.read(row, observation);
+            probes.add(observation);
+         }
+      }
+      return probes;
+   }
+
+   @Override
+   public void release() {
+   }
+}
@@ -0,0 +1,173 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.MappedObservationPartition;
+import com.github.chen0040.sparkml.gp.data.MappedObservationStore;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Evaluates the candidates against the memory-mapped partitions of a MappedObservationStore, reading every row in place
+ * into one reused observation, so that neither the data nor an object per row lives on the heap. With a spark context
+ * every partition is evaluated by one task of a job over the partition indices, which maps the partition file on its
+ * executor; without one the partitions are evaluated in parallel in the current JVM, like LocalEvaluationBackend.
+ */
+public class MappedEvaluationBackend implements EvaluationBackend {
+
+   private final MappedObservationStore store;
+
+   private final JavaSparkContext context;
+
+   private final JavaRDD<Integer> partitionRdd;
+
+   private final BroadcastManager broadcastManager = new BroadcastManager();
+
+   private DatasetDescriptor descriptor;
+
+   public MappedEvaluationBackend(MappedObservationStore store) {
+      this(store, null);
+   }
+
+   public MappedEvaluationBackend(MappedObservationStore store, JavaSparkContext context) {
+      this.store = store;
+      this.context = context;
+      if(context == null) {
+         this.partitionRdd = null;
+      } else {
+         List<Integer> partitionIndices = IntStream.range(0, store.partitionCount()).boxed().collect(Collectors.toList());
+         this.partitionRdd = context.parallelize(partitionIndices, Math.max(1, partitionIndices.size()));
+      }
+   }
+
+   // shares the store and its description, with broadcasts of its own
+   private MappedEvaluationBackend(MappedEvaluationBackend source) {
+      this.store = source.store;
+      this.context = source.context;
+      this.partitionRdd = source.partitionRdd;
+      this.descriptor = source.descriptor();
+   }
+
+   public MappedObservationStore getStore() {
+      return store;
+   }
+
+   @Override
+   public <T> List<CostAccumulator> evaluatePartitions(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      if(partitionRdd != null) {
+         return partitionCosts(candidates, evaluator, fraction, seed, firstPartition, lastPartition).collect();
+      }
+      if(lastPartition - firstPartition == 1) {
+         return Collections.singletonList(CostEvaluation.accumulate(store.partition(firstPartition), candidates, evaluator, fraction, seed + firstPartition));
+      }
+
+      byte[] serializedCandidates = JavaSerialization.serialize(new ArrayList<>(candidates));
+      return IntStream.range(firstPartition, lastPartition).parallel()
+              .mapToObj(partitionIndex -> CostEvaluation.accumulate(store.partition(partitionIndex), JavaSerialization.<List<T>>deserialize(serializedCandidates), evaluator, fraction, seed + partitionIndex))
+              .collect(Collectors.toList());
+   }
+
+   @Override
+   public <T> Future<List<CostAccumulator>> evaluatePartitionsAsync(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      if(partitionRdd != null) {
+         return partitionCosts(candidates, evaluator, fraction, seed, firstPartition, lastPartition).collectAsync();
+      }
+      return EvaluationBackend.super.evaluatePartitionsAsync(candidates, evaluator, fraction, seed, firstPartition, lastPartition);
+   }
+
+   private <T> JavaRDD<CostAccumulator> partitionCosts(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      BroadcastSelection<T> selection = broadcastManager.acquire(context, candidates);
+      MappedObservationStore store = this.store;
+      return partitionRdd.mapPartitionsWithIndex((partitionIndex, indices) -> {
+         if(partitionIndex < firstPartition || partitionIndex >= lastPartition) {
+            return Collections.<CostAccumulator>emptyIterator();
+         }
+         return Collections.singletonList(CostEvaluation.accumulate(store.partition(partitionIndex), selection.getValue(), evaluator, fraction, seed + partitionIndex)).iterator();
+      }, true);
+   }
+
+   @Override
+   public int partitionCount() {
+      return store.partitionCount();
+   }
+
+   @Override
+   public long[] partitionRowCounts() {
+      return store.partitionRowCounts();
+   }
+
+   @Override
+   public boolean isDistributed() {
+      return partitionRdd != null;
+   }
+
+   // describes the data with one pass over the mapped partitions, on the executors when they are used
+   @Override
+   public DatasetDescriptor descriptor() {
+      if(descriptor != null) {
+         return descriptor;
+      }
+      List<DatasetDescriptor> partitionDescriptors;
+      if(partitionRdd != null) {
+         MappedObservationStore store = this.store;
+         partitionDescriptors = partitionRdd.map(partitionIndex -> new DatasetDescriptor().add(store.partition(partitionIndex))).collect();
+      } else {
+         partitionDescriptors = IntStream.range(0, store.partitionCount()).parallel()
+                 .mapToObj(partitionIndex -> new DatasetDescriptor().add(store.partition(partitionIndex)))
+                 .collect(Collectors.toList());
+      }
+      DatasetDescriptor total = new DatasetDescriptor();
+      for(DatasetDescriptor partitionDescriptor : partitionDescriptors) {
+         total.merge(partitionDescriptor);
+      }
+      total.validate();
+      descriptor = total;
+      return descriptor;
+   }
+
+   @Override
+   public List<BasicObservation> probeObservations(int count) {
+      List<BasicObservation> probes = new ArrayList<>();
+      for(int partitionIndex = 0; partitionIndex < store.partitionCount() && probes.size() < count; ++partitionIndex) {
+         MappedObservationPartition partition = store.partition(partitionIndex);
+         for(int row = 0; row < partition.size() && probes.size() < count; ++row) {
+            BasicObservation observation = partition.newBuffer();
+            partition.read(row, observation);
+            probes.add(observation);
+         }
+      }
+      return probes;
+   }
+
+   @Override
+   public void beginGeneration(int generation) {
+      broadcastManager.beginGeneration(generation);
+   }
+
+   @Override
+   public EvaluationBackend fork() {
+      return partitionRdd != null ? new MappedEvaluationBackend(this) : this;
+   }
+
+   @Override
+   public List<BroadcastStatistics> getBroadcastStatistics() {
+      return broadcastManager.getStatistics();
+   }
+
+   // the partition files stay on disk for later runs; the driver drops its mappings of them
+   @Override
+   public void release() {
+      broadcastManager.releaseAll();
+      store.close();
+   }
+}
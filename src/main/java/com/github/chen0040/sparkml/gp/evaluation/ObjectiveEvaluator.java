@@ -0,0 +1,43 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.scoring.ModelExecutor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Computes several per-observation costs of a program at once, e.g. the squared error and the misclassification of the
+ * same prediction, so that every data-dependent objective is averaged in one pass over the observations.
+ */
+public interface ObjectiveEvaluator<P> extends Serializable {
+
+   int objectiveCount();
+
+   // writes the cost of every objective on the observation into objectives
+   void evaluate(P program, BasicObservation observation, double[] objectives);
+
+   // runs the program once per observation and scores its predicted outputs with each evaluator
+   static <P> ObjectiveEvaluator<P> ofPredictions(ModelExecutor<P> executor, List<PredictionCostEvaluator> evaluators) {
+      final List<PredictionCostEvaluator> objectives = new ArrayList<>(evaluators);
+      return new ObjectiveEvaluator<P>() {
+         private static final long serialVersionUID = -1427703861340296717L;
+
+         @Override
+         public int objectiveCount() {
+            return objectives.size();
+         }
+
+         @Override
+         public void evaluate(P program, BasicObservation observation, double[] values) {
+            executor.execute(program, observation);
+            for(int i=0; i < objectives.size(); ++i) {
+               values[i] = objectives.get(i).evaluate(observation);
+            }
+         }
+      };
+   }
+}
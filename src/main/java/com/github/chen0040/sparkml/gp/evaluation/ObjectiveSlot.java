@@ -0,0 +1,67 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * One objective of one candidate, evaluated by the backends like any single-cost candidate. The slots of a candidate
+ * share one row of objective values: the aggregation visits the candidates of an observation in list order, so the first
+ * slot runs the program and fills the row (plus its running time when timed) and the other slots read their value.
+ */
+public class ObjectiveSlot<P> implements Serializable {
+
+   private static final long serialVersionUID = 5584021360813937025L;
+
+   private final Row<P> row;
+   private final int index;
+
+   private ObjectiveSlot(Row<P> row, int index) {
+      this.row = row;
+      this.index = index;
+   }
+
+   // valueCount slots per candidate, in candidate order
+   public static <P> List<ObjectiveSlot<P>> expand(List<P> candidates, int valueCount) {
+      List<ObjectiveSlot<P>> slots = new ArrayList<>(candidates.size() * valueCount);
+      for(P candidate : candidates) {
+         Row<P> row = new Row<>(candidate, valueCount);
+         for(int i=0; i < valueCount; ++i) {
+            slots.add(new ObjectiveSlot<>(row, i));
+         }
+      }
+      return slots;
+   }
+
+   // with timed, the last value is the running time of the program in nanoseconds
+   public static <P> ObservationCostEvaluator<ObjectiveSlot<P>> evaluator(ObjectiveEvaluator<P> evaluator, boolean timed) {
+      return (slot, observation) -> slot.evaluate(evaluator, timed, observation);
+   }
+
+   private double evaluate(ObjectiveEvaluator<P> evaluator, boolean timed, BasicObservation observation) {
+      if(index == 0) {
+         long startTime = timed ? System.nanoTime() : 0;
+         evaluator.evaluate(row.candidate, observation, row.values);
+         if(timed) {
+            row.values[row.values.length - 1] = System.nanoTime() - startTime;
+         }
+      }
+      return row.values[index];
+   }
+
+   private static class Row<P> implements Serializable {
+      private static final long serialVersionUID = -6190842468537519330L;
+
+      private final P candidate;
+      private final double[] values;
+
+      Row(P candidate, int valueCount) {
+         this.candidate = candidate;
+         this.values = new double[valueCount];
+      }
+   }
+}
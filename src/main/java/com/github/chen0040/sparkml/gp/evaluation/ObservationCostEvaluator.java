@@ -0,0 +1,27 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.apache.spark.api.java.function.Function;
+import scala.Tuple2;
+
+import java.io.Serializable;
+
+
+/**
+ * Computes the cost of a program on a single observation without boxing the result.
+ */
+public interface ObservationCostEvaluator<P> extends Serializable {
+   double evaluate(P program, BasicObservation observation);
+
+   // adapter for the Function<Tuple2<...>, Double> evaluators accepted by setPerObservationCostEvaluator
+   static <P> ObservationCostEvaluator<P> of(Function<Tuple2<P, BasicObservation>, Double> function) {
+      return (program, observation) -> {
+         try {
+            return function.call(new Tuple2<>(program, observation));
+         } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate the cost of the observation", e);
+         }
+      };
+   }
+}
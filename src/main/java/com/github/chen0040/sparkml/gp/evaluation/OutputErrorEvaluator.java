@@ -0,0 +1,54 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.scoring.ModelExecutor;
+
+import java.io.Serializable;
+
+
+/**
+ * The error of a single predicted output against its actual value, applied to each output of a multi-output program.
+ */
+public interface OutputErrorEvaluator extends Serializable {
+
+   double evaluate(double actual, double predicted);
+
+   static OutputErrorEvaluator squared() {
+      return (actual, predicted) -> (actual - predicted) * (actual - predicted);
+   }
+
+   // the mean of the errors over the outputs of the observation
+   default PredictionCostEvaluator meanOverOutputs() {
+      return observation -> {
+         int outputCount = observation.outputCount();
+         double error = 0;
+         for(int i=0; i < outputCount; ++i) {
+            error += evaluate(observation.getOutput(i), observation.getPredictedOutput(i));
+         }
+         return error / outputCount;
+      };
+   }
+
+   // runs the program once per observation and reports the error of each of its outputs as a separate objective,
+   // so that the errors of all the outputs are averaged in the same pass and the same reduce
+   default <P> ObjectiveEvaluator<P> perOutput(ModelExecutor<P> executor, int outputCount) {
+      final OutputErrorEvaluator evaluator = this;
+      return new ObjectiveEvaluator<P>() {
+         private static final long serialVersionUID = 3920113558429174417L;
+
+         @Override
+         public int objectiveCount() {
+            return outputCount;
+         }
+
+         @Override
+         public void evaluate(P program, BasicObservation observation, double[] values) {
+            executor.execute(program, observation);
+            for(int i=0; i < outputCount; ++i) {
+               values[i] = evaluator.evaluate(observation.getOutput(i), observation.getPredictedOutput(i));
+            }
+         }
+      };
+   }
+}
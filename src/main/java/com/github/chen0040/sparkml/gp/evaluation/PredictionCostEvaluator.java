@@ -0,0 +1,23 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.compiler.ExecutableProgram;
+
+import java.io.Serializable;
+
+
+/**
+ * Computes the cost of the predicted outputs which have already been written into the observation.
+ * Unlike ObservationCostEvaluator it does not execute the program itself, so the evaluation can run programs in any form.
+ */
+public interface PredictionCostEvaluator extends Serializable {
+   double evaluate(BasicObservation observation);
+
+   static ObservationCostEvaluator<ExecutableProgram> forExecutables(PredictionCostEvaluator evaluator) {
+      return (program, observation) -> {
+         program.execute(observation);
+         return evaluator.evaluate(observation);
+      };
+   }
+}
@@ -0,0 +1,253 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+
+/**
+ * Evaluates the candidates with one spark job over the cached observation rdd, either as rows or as columnar blocks.
+ * The candidates reach the executors through the generation-scoped broadcasts of a BroadcastManager.
+ */
+public class SparkEvaluationBackend implements EvaluationBackend {
+
+   private final JavaRDD<BasicObservation> observationRdd;
+
+   private final JavaRDD<ObservationBlock> observationBlockRdd;
+
+   private final BroadcastManager broadcastManager = new BroadcastManager();
+
+   // forks leave the cached rdd to the backend which created it
+   private final boolean ownsRdd;
+
+   private final double[] partitionWeights;
+
+   private long[] partitionRowCounts;
+
+   private DatasetDescriptor descriptor;
+
+   public SparkEvaluationBackend(JavaRDD<BasicObservation> observationRdd, boolean columnar) {
+      this(observationRdd, columnar, StorageLevel.MEMORY_ONLY());
+   }
+
+   public SparkEvaluationBackend(JavaRDD<BasicObservation> observationRdd, boolean columnar, StorageLevel storageLevel) {
+      if(columnar) {
+         this.observationBlockRdd = ObservationBlock.pack(observationRdd).persist(storageLevel);
+         this.observationRdd = null;
+      } else {
+         this.observationRdd = observationRdd.persist(storageLevel);
+         this.observationBlockRdd = null;
+      }
+      this.ownsRdd = true;
+      this.partitionWeights = null;
+   }
+
+   // evaluates over blocks which the caller has cached and unpersists, e.g. the batches of a stream window; with weights
+   // the cost of the candidates is the weighted mean over the partitions
+   public SparkEvaluationBackend(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights) {
+      this.observationBlockRdd = observationBlockRdd;
+      this.observationRdd = null;
+      this.ownsRdd = false;
+      this.partitionWeights = partitionWeights;
+   }
+
+   // shares the cached rdd and its description, with broadcasts of its own
+   private SparkEvaluationBackend(SparkEvaluationBackend source) {
+      this.observationRdd = source.observationRdd;
+      this.observationBlockRdd = source.observationBlockRdd;
+      this.partitionRowCounts = source.partitionRowCounts();
+      this.descriptor = source.descriptor();
+      this.ownsRdd = false;
+      this.partitionWeights = source.partitionWeights;
+   }
+
+   // loads the cache with one job before the first generation, describing and validating the data in the same pass; the
+   // row counts of the partitions are kept for bounded evaluation
+   public void materialize() {
+      if(observationBlockRdd != null) {
+         describe(observationBlockRdd.mapPartitions(blocks -> Collections.singletonList(DatasetDescriptor.ofBlocks(blocks))).collect());
+      } else {
+         describe(describePartitions(observationRdd));
+      }
+   }
+
+   // the descriptor of every partition of the rows, in one job which also loads the cache of a persisted rdd
+   public static List<DatasetDescriptor> describePartitions(JavaRDD<BasicObservation> observationRdd) {
+      return observationRdd.mapPartitions(observations -> Collections.singletonList(DatasetDescriptor.of(observations))).collect();
+   }
+
+   // takes the description from a pass over the cached rows which has already been made, instead of materialize()
+   void describe(List<DatasetDescriptor> partitionDescriptors) {
+      DatasetDescriptor total = new DatasetDescriptor();
+      long[] rowCounts = new long[partitionDescriptors.size()];
+      for(int i=0; i < rowCounts.length; ++i) {
+         rowCounts[i] = partitionDescriptors.get(i).getRowCount();
+         total.merge(partitionDescriptors.get(i));
+      }
+      total.validate();
+      partitionRowCounts = rowCounts;
+      descriptor = total;
+   }
+
+   public JavaRDD<BasicObservation> getObservationRdd() {
+      return observationRdd;
+   }
+
+   public JavaRDD<ObservationBlock> getObservationBlockRdd() {
+      return observationBlockRdd;
+   }
+
+   public JavaSparkContext sparkContext() {
+      if(observationBlockRdd != null) {
+         return JavaSparkContext.fromSparkContext(observationBlockRdd.context());
+      }
+      return JavaSparkContext.fromSparkContext(observationRdd.context());
+   }
+
+   public BroadcastManager getBroadcastManager() {
+      return broadcastManager;
+   }
+
+   @Override
+   public <T> List<CostAccumulator> evaluatePartitions(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      BroadcastSelection<T> selection = broadcastManager.acquire(sparkContext(), candidates);
+      if(observationBlockRdd != null) {
+         return weighted(CostEvaluation.partitionBlockCosts(observationBlockRdd, selection, evaluator, fraction, seed, firstPartition, lastPartition)).collect();
+      }
+      return CostEvaluation.evaluate(observationRdd, selection, evaluator, fraction, seed, firstPartition, lastPartition);
+   }
+
+   // submits the job with an asynchronous action, so that the calling thread can go on while the executors evaluate
+   @Override
+   public <T> Future<List<CostAccumulator>> evaluatePartitionsAsync(List<T> candidates, ObservationCostEvaluator<T> evaluator, double fraction, long seed, int firstPartition, int lastPartition) {
+      BroadcastSelection<T> selection = broadcastManager.acquire(sparkContext(), candidates);
+      if(observationBlockRdd != null) {
+         return weighted(CostEvaluation.partitionBlockCosts(observationBlockRdd, selection, evaluator, fraction, seed, firstPartition, lastPartition)).collectAsync();
+      }
+      return CostEvaluation.partitionCosts(observationRdd, selection, evaluator, fraction, seed, firstPartition, lastPartition).collectAsync();
+   }
+
+   // one job over the union of the cached rdd with itself, once per unit, so that the tasks of all units run side by side
+   @Override
+   public <T> List<CostAccumulator> evaluateUnits(List<T> candidates, List<int[]> units, ObservationCostEvaluator<T> evaluator, double fraction, long seed) {
+      BroadcastSelection<T> selection = broadcastManager.acquire(sparkContext(), candidates);
+      List<JavaRDD<CostAccumulator>> unitCosts = new ArrayList<>();
+      for(int[] unit : units) {
+         if(observationBlockRdd != null) {
+            unitCosts.add(weighted(CostEvaluation.partitionUnitBlockCosts(observationBlockRdd, selection, unit, evaluator, fraction, seed)));
+         } else {
+            unitCosts.add(CostEvaluation.partitionUnitCosts(observationRdd, selection, unit, evaluator, fraction, seed));
+         }
+      }
+      return sparkContext().union(unitCosts.get(0), unitCosts.subList(1, unitCosts.size())).collect();
+   }
+
+   // scales the sums of every partition by its weight on the executors; the partition sums keep the partitions of the blocks
+   private JavaRDD<CostAccumulator> weighted(JavaRDD<CostAccumulator> partitionCosts) {
+      if(partitionWeights == null) {
+         return partitionCosts;
+      }
+      double[] weights = partitionWeights;
+      return partitionCosts.mapPartitionsWithIndex((partitionIndex, accumulators) -> {
+         List<CostAccumulator> weighted = new ArrayList<>();
+         while(accumulators.hasNext()) {
+            weighted.add(accumulators.next().weighted(weights[partitionIndex]));
+         }
+         return weighted.iterator();
+      }, true);
+   }
+
+   @Override
+   public double[] partitionWeights() {
+      return partitionWeights;
+   }
+
+   @Override
+   public int slotCount() {
+      return sparkContext().defaultParallelism();
+   }
+
+   @Override
+   public int partitionCount() {
+      return observationBlockRdd != null ? observationBlockRdd.partitions().size() : observationRdd.partitions().size();
+   }
+
+   @Override
+   public long[] partitionRowCounts() {
+      if(partitionRowCounts == null) {
+         materialize();
+      }
+      return partitionRowCounts;
+   }
+
+   @Override
+   public DatasetDescriptor descriptor() {
+      if(descriptor == null) {
+         materialize();
+      }
+      return descriptor;
+   }
+
+   @Override
+   public void beginGeneration(int generation) {
+      broadcastManager.beginGeneration(generation);
+   }
+
+   @Override
+   public EvaluationBackend fork() {
+      return new SparkEvaluationBackend(this);
+   }
+
+   @Override
+   public List<BroadcastStatistics> getBroadcastStatistics() {
+      return broadcastManager.getStatistics();
+   }
+
+   @Override
+   public boolean isDistributed() {
+      return true;
+   }
+
+   @Override
+   public boolean isColumnar() {
+      return observationBlockRdd != null;
+   }
+
+   @Override
+   public List<BasicObservation> probeObservations(int count) {
+      if(observationBlockRdd != null) {
+         List<BasicObservation> probes = new ArrayList<>();
+         for(ObservationBlock block : observationBlockRdd.filter(block -> block.size() > 0).take(1)) {
+            for(int row = 0; row < Math.min(count, block.size()); ++row) {
+               BasicObservation observation = block.newBuffer();
+               block.read(row, observation);
+               probes.add(observation);
+            }
+         }
+         return probes;
+      }
+      return observationRdd.take(count);
+   }
+
+   @Override
+   public void release() {
+      broadcastManager.releaseAll();
+      if(!ownsRdd) {
+         return;
+      }
+      if(observationBlockRdd != null) {
+         observationBlockRdd.unpersist();
+      } else {
+         observationRdd.unpersist();
+      }
+   }
+}
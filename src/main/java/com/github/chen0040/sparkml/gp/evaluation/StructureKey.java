@@ -0,0 +1,108 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * FitnessCache key of a program or solution: a 64-bit hash of its canonical form for the lookup, and the form itself,
+ * which equals() compares so that candidates with colliding hashes never share a cost. The managers append the form
+ * with a Builder while walking the structure; it has to be prefix-free, e.g. by writing the arity of nodes whose arity
+ * is not implied by their code.
+ */
+public class StructureKey implements Serializable {
+
+   private static final long serialVersionUID = 2874615019364728104L;
+
+   private static final long SEED = 0x9E3779B97F4A7C15L;
+
+   private final String context;
+   private final long[] form;
+   private final String[] symbols;
+   private final long hash;
+
+   private StructureKey(String context, long[] form, String[] symbols, long hash) {
+      this.context = context;
+      this.form = form;
+      this.symbols = symbols;
+      this.hash = mix(hash, context.hashCode());
+   }
+
+   public long getHash() {
+      return hash;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if(this == o) {
+         return true;
+      }
+      if(!(o instanceof StructureKey)) {
+         return false;
+      }
+      StructureKey that = (StructureKey) o;
+      return hash == that.hash && context.equals(that.context) && Arrays.equals(form, that.form) && Arrays.equals(symbols, that.symbols);
+   }
+
+   @Override
+   public int hashCode() {
+      return Long.hashCode(hash);
+   }
+
+   private static long mix(long hash, long value) {
+      long h = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+      return h * 0x94D049BB133111EBL + SEED;
+   }
+
+   /**
+    * Appends the canonical form of a structure; the hash is kept up to date, so that builders of commutative operands
+    * can be ordered by it before they are appended to their parent.
+    */
+   public static class Builder {
+
+      private long[] form = new long[16];
+      private int size;
+      private final List<String> symbols = new ArrayList<>();
+      private long hash = SEED;
+
+      public Builder code(long code) {
+         if(size == form.length) {
+            form = Arrays.copyOf(form, size * 2);
+         }
+         form[size++] = code;
+         hash = mix(hash, code);
+         return this;
+      }
+
+      public Builder constant(double value) {
+         return code(Double.doubleToLongBits(value));
+      }
+
+      // an operator or primitive without a code of its own, e.g. identified by its class name
+      public Builder symbol(String symbol) {
+         symbols.add(symbol);
+         return code(symbol.hashCode());
+      }
+
+      public Builder append(Builder other) {
+         for(int i=0; i < other.size; ++i) {
+            code(other.form[i]);
+         }
+         symbols.addAll(other.symbols);
+         return this;
+      }
+
+      public long hash() {
+         return hash;
+      }
+
+      // the context tells the observations the cost is measured on apart, see EvaluationEngine.cacheContext()
+      public StructureKey build(String context) {
+         return new StructureKey(context, Arrays.copyOf(form, size), symbols.toArray(new String[0]), hash);
+      }
+   }
+}
@@ -0,0 +1,180 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * Splits the candidates of an evaluation into work units of balanced estimated cost, so that every unit is evaluated by
+ * its own task on every partition and a few large programs do not leave most executors idle behind one straggler.
+ *
+ * The time of a task is modelled as rows * (a * size + b * candidates) + c, where size is the sum of the sizes of its
+ * candidates (effective instructions or tree nodes) and c the fixed overhead of a task. The coefficients are fitted by
+ * least squares over the measured task times, older evaluations weighing less; until then every size unit costs the same.
+ */
+public class WorkUnitScheduler implements Serializable {
+
+   private static final long serialVersionUID = 2178564010931870253L;
+
+   // weight of the earlier measurements each time the measurements of an evaluation are recorded
+   public static final double DEFAULT_DECAY = 0.8;
+
+   private final double[][] gram = new double[3][3];
+   private final double[] moments = new double[3];
+   private double[] coefficients = { 1.0, 0.0, 0.0 };
+   private double decay = DEFAULT_DECAY;
+   private long taskCount = 0;
+
+   // the estimated cost of each candidate per row, from its size; without sizes all candidates cost the same
+   public synchronized double[] costs(double[] sizes, int candidateCount) {
+      double[] costs = new double[candidateCount];
+      for(int i=0; i < candidateCount; ++i) {
+         costs[i] = coefficients[0] * (sizes == null ? 1.0 : sizes[i]) + coefficients[1];
+      }
+      return costs;
+   }
+
+   // the unit count which minimizes the estimated time of the evaluation: the unitCount * partitionCount tasks run in waves
+   // of slotCount tasks, each task paying the fixed overhead and lasting at least as long as its costliest candidate
+   public synchronized int unitCount(double[] costs, double partitionRows, int partitionCount, int slotCount) {
+      double totalCost = 0;
+      double maxCost = 0;
+      for(double cost : costs) {
+         totalCost += cost;
+         maxCost = Math.max(maxCost, cost);
+      }
+
+      int bestUnitCount = 1;
+      double bestTime = Double.POSITIVE_INFINITY;
+      int maxUnitCount = Math.min(costs.length, Math.max(1, slotCount));
+      for(int unitCount = 1; unitCount <= maxUnitCount; ++unitCount) {
+         long waves = ((long) unitCount * partitionCount + slotCount - 1) / slotCount;
+         double time = waves * (partitionRows * Math.max(totalCost / unitCount, maxCost) + coefficients[2]);
+         if(time < bestTime) {
+            bestTime = time;
+            bestUnitCount = unitCount;
+         }
+      }
+      return bestUnitCount;
+   }
+
+   // longest processing time first: the candidates in decreasing order of cost, each added to the least loaded unit. The
+   // indices of every unit are returned in increasing order
+   public static List<int[]> pack(double[] costs, int unitCount) {
+      Integer[] order = new Integer[costs.length];
+      for(int i=0; i < order.length; ++i) {
+         order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(costs[b], costs[a]));
+
+      double[] loads = new double[unitCount];
+      List<List<Integer>> members = new ArrayList<>();
+      PriorityQueue<Integer> units = new PriorityQueue<>(Comparator.<Integer>comparingDouble(unit -> loads[unit]).thenComparingInt(unit -> unit));
+      for(int unit = 0; unit < unitCount; ++unit) {
+         members.add(new ArrayList<>());
+         units.add(unit);
+      }
+      for(int candidate : order) {
+         int unit = units.poll();
+         members.get(unit).add(candidate);
+         loads[unit] += costs[candidate];
+         units.add(unit);
+      }
+
+      List<int[]> packed = new ArrayList<>();
+      for(List<Integer> unit : members) {
+         if(unit.isEmpty()) {
+            continue;
+         }
+         int[] indices = unit.stream().mapToInt(Integer::intValue).sorted().toArray();
+         packed.add(indices);
+      }
+      return packed;
+   }
+
+   // fits the model to the task times of one evaluation: the total size, the candidate count, the rows and the elapsed
+   // nanoseconds of every task; tasks without a measured time are ignored
+   public synchronized void record(double[] taskSizes, int[] taskCandidates, long[] taskRows, long[] taskNanos) {
+      for(int i=0; i < 3; ++i) {
+         moments[i] *= decay;
+         for(int j=0; j < 3; ++j) {
+            gram[i][j] *= decay;
+         }
+      }
+      for(int task = 0; task < taskNanos.length; ++task) {
+         if(taskNanos[task] <= 0) {
+            continue;
+         }
+         double[] features = { taskRows[task] * taskSizes[task], (double) taskRows[task] * taskCandidates[task], 1.0 };
+         for(int i=0; i < 3; ++i) {
+            moments[i] += features[i] * taskNanos[task];
+            for(int j=0; j < 3; ++j) {
+               gram[i][j] += features[i] * features[j];
+            }
+         }
+         taskCount++;
+      }
+
+      // a negative per-candidate or per-task time is noise in the measurements
+      double[] fitted = solve();
+      if(fitted != null && fitted[0] > 0) {
+         coefficients = new double[] { fitted[0], Math.max(0, fitted[1]), Math.max(0, fitted[2]) };
+      }
+   }
+
+   // gaussian elimination on the normal equations, slightly regularized against collinear measurements
+   private double[] solve() {
+      double[][] system = new double[3][4];
+      for(int i=0; i < 3; ++i) {
+         System.arraycopy(gram[i], 0, system[i], 0, 3);
+         system[i][i] *= 1 + 1e-9;
+         system[i][3] = moments[i];
+      }
+      for(int column = 0; column < 3; ++column) {
+         int pivot = column;
+         for(int row = column + 1; row < 3; ++row) {
+            if(Math.abs(system[row][column]) > Math.abs(system[pivot][column])) {
+               pivot = row;
+            }
+         }
+         if(system[pivot][column] == 0) {
+            return null;
+         }
+         double[] swapped = system[pivot];
+         system[pivot] = system[column];
+         system[column] = swapped;
+         for(int row = 0; row < 3; ++row) {
+            if(row == column) {
+               continue;
+            }
+            double factor = system[row][column] / system[column][column];
+            for(int k = column; k < 4; ++k) {
+               system[row][k] -= factor * system[column][k];
+            }
+         }
+      }
+      return new double[] { system[0][3] / system[0][0], system[1][3] / system[1][1], system[2][3] / system[2][2] };
+   }
+
+   public synchronized double getDecay() {
+      return decay;
+   }
+
+   public synchronized void setDecay(double decay) {
+      this.decay = decay;
+   }
+
+   // nanoseconds per size unit and row, per candidate and row, and per task
+   public synchronized double[] getCoefficients() {
+      return coefficients.clone();
+   }
+
+   public synchronized long getTaskCount() {
+      return taskCount;
+   }
+}
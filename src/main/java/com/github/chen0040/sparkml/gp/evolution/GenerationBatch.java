@@ -0,0 +1,228 @@
+package com.github.chen0040.sparkml.gp.evolution;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * The evolution shared by SparkLGPPopulation and SparkTreeGPPopulation. A generation runs the selection, crossover and
+ * mutation of the library with the evaluation of the offspring deferred: the manager collects every offspring instead of
+ * evaluating it, the members are left as they were, and once the generation is bred all its offspring are evaluated in a
+ * single job and the better ones replace the worst members. Without batch evaluation the library evaluates and replaces
+ * every offspring on its own.
+ */
+public class GenerationBatch<P> {
+
+   private final SparkGP<P> manager;
+
+   private boolean collecting = false;
+
+   private boolean initial = false;
+
+   private boolean initialized = false;
+
+   private List<P> pending;
+
+   private P globalBest;
+
+   private int generationOffset = 0;
+
+   public GenerationBatch(SparkGP<P> manager) {
+      this.manager = manager;
+   }
+
+   // initializes or evolves the members by one generation through the library step
+   public void step(List<P> members, int generation, boolean initial, Runnable libraryStep) {
+      if(!manager.isBatchEvaluation()) {
+         begin(members, generation, initial);
+         libraryStep.run();
+         updateGlobalBest(members);
+         return;
+      }
+      List<P> candidates = breed(members, generation, initial, libraryStep);
+      if(candidates.isEmpty()) {
+         complete(members, new double[0]);
+      } else {
+         complete(members, manager.evaluateCandidates(initial ? Collections.emptyList() : members, candidates));
+      }
+   }
+
+   // runs the library step with the evaluations deferred and returns the candidates whose costs complete() expects: the
+   // new members of an initial step, the offspring otherwise
+   public List<P> breed(List<P> members, int generation, boolean initial, Runnable libraryStep) {
+      begin(members, generation, initial);
+      List<P> parents = new ArrayList<>(members);
+      List<P> offspring = new ArrayList<>();
+      collecting = true;
+      manager.collectOffspring(offspring);
+      try {
+         libraryStep.run();
+      } finally {
+         manager.collectOffspring(null);
+         collecting = false;
+      }
+
+      this.initial = initial;
+      if(initial) {
+         pending = new ArrayList<>(members);
+      } else {
+         // the library has compared the offspring by their infinite costs; the replacement is redone below on the real ones
+         members.clear();
+         members.addAll(parents);
+         pending = distinct(offspring);
+      }
+      return pending;
+   }
+
+   // assigns the costs of the candidates returned by breed() and lets the better offspring replace the worst members
+   public void complete(List<P> members, double[] costs) {
+      for(int i=0; i < pending.size(); ++i) {
+         manager.assignCost(pending.get(i), costs[i]);
+      }
+      if(!initial) {
+         replace(members, pending);
+      }
+      pending = null;
+      updateGlobalBest(members);
+   }
+
+   // evaluates the immigrants against the observations of this population, whose costs they did not come with, and lets
+   // the better ones replace the worst members
+   public void immigrate(List<P> members, int generation, List<P> immigrants) {
+      if(immigrants.isEmpty()) {
+         return;
+      }
+      manager.beginGeneration(generation);
+      double[] costs = manager.evaluateCandidates(members, immigrants);
+      for(int i=0; i < costs.length; ++i) {
+         manager.assignCost(immigrants.get(i), costs[i]);
+      }
+      replace(members, immigrants);
+      updateGlobalBest(members);
+   }
+
+   // evaluates every member again after the observations of the manager have changed, e.g. to a new window of a stream;
+   // the survival threshold left from the previous generation is a cost on the old observations, so the members are
+   // evaluated exactly
+   public void reevaluate(List<P> members, int generation) {
+      manager.beginGeneration(generation);
+      manager.setSurvivalThreshold(Double.POSITIVE_INFINITY);
+      double[] costs = manager.evaluateCandidates(Collections.emptyList(), members);
+      for(int i=0; i < costs.length; ++i) {
+         manager.assignCost(members.get(i), costs[i]);
+      }
+   }
+
+   // called from the evaluate(manager, candidates) of the library population: evaluates the candidates in one job before
+   // the library asks for their costs one by one
+   public void prefetch(List<P> members, List<P> candidates) {
+      if(collecting) {
+         return;
+      }
+      if(manager.isMultiObjective()) {
+         manager.rankObjectives(members, candidates);
+      } else {
+         manager.prefetchCosts(candidates);
+      }
+   }
+
+   // generation counter of the population, continuing from the snapshot it was restored from
+   public int generation(int libraryGeneration) {
+      return libraryGeneration + generationOffset;
+   }
+
+   public PopulationSnapshot<P> snapshot(List<P> members, int generation, P globalBest) {
+      return new PopulationSnapshot<>(manager, new ArrayList<>(members), generation, globalBest);
+   }
+
+   public void restore(List<P> members, int libraryGeneration, PopulationSnapshot<P> snapshot) {
+      members.clear();
+      members.addAll(snapshot.getMembers());
+      generationOffset = snapshot.getGeneration() - libraryGeneration;
+      globalBest = snapshot.getGlobalBest();
+      initialized = true;
+   }
+
+   // whether the population has been initialized or restored, i.e. whether the next step evolves it
+   public boolean isInitialized() {
+      return initialized;
+   }
+
+   // the better of the best member seen at the end of any generation and the global best tracked by the library
+   public P globalBest(P libraryBest) {
+      if(globalBest == null || (libraryBest != null && isBetter(libraryBest, globalBest))) {
+         return libraryBest;
+      }
+      return globalBest;
+   }
+
+   public double bestCost(List<P> members) {
+      double best = Double.POSITIVE_INFINITY;
+      for(P member : members) {
+         best = Math.min(best, manager.costOf(member));
+      }
+      return best;
+   }
+
+   private void begin(List<P> members, int generation, boolean initial) {
+      initialized = true;
+      manager.beginGeneration(generation);
+      manager.setSurvivalThreshold(initial ? Double.POSITIVE_INFINITY : worstCost(members));
+   }
+
+   // offspring at least as bad as the worst current member are cut off by bounded evaluation
+   private double worstCost(List<P> members) {
+      double worst = Double.NEGATIVE_INFINITY;
+      for(P member : members) {
+         worst = Math.max(worst, manager.costOf(member));
+      }
+      return worst == Double.NEGATIVE_INFINITY ? Double.POSITIVE_INFINITY : worst;
+   }
+
+   // best offspring first, each replaces the worst member as long as it is strictly better; NaN costs never get in
+   private void replace(List<P> members, List<P> offspring) {
+      List<P> sorted = new ArrayList<>(offspring);
+      sorted.sort((a, b) -> Double.compare(manager.costOf(a), manager.costOf(b)));
+      for(P child : sorted) {
+         int worst = -1;
+         for(int j=0; j < members.size(); ++j) {
+            if(worst < 0 || isBetter(members.get(worst), members.get(j))) {
+               worst = j;
+            }
+         }
+         if(worst < 0 || !isBetter(child, members.get(worst))) {
+            break;
+         }
+         members.set(worst, child);
+      }
+   }
+
+   // an offspring which the library evaluated twice is collected twice
+   private static <P> List<P> distinct(List<P> offspring) {
+      Set<P> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+      List<P> distinct = new ArrayList<>();
+      for(P child : offspring) {
+         if(seen.add(child)) {
+            distinct.add(child);
+         }
+      }
+      return distinct;
+   }
+
+   private void updateGlobalBest(List<P> members) {
+      for(P member : members) {
+         if(globalBest == null || isBetter(member, globalBest)) {
+            globalBest = manager.copyOf(member);
+         }
+      }
+   }
+
+   // NaN costs order after every other cost
+   private boolean isBetter(P a, P b) {
+      return Double.compare(manager.costOf(a), manager.costOf(b)) < 0;
+   }
+}
@@ -0,0 +1,47 @@
+package com.github.chen0040.sparkml.gp.evolution;
+
+
+import java.io.Serializable;
+import java.util.List;
+
+
+/**
+ * The state of a population between two generations: its manager with the random state, its members, the generation
+ * counter and the best-so-far. The library populations are not serializable, so checkpoints carry this instead and a
+ * new population of the manager is restored from it.
+ */
+public class PopulationSnapshot<P> implements Serializable {
+
+   private static final long serialVersionUID = 5361097281946412687L;
+
+   private final SparkGP<P> manager;
+
+   private final List<P> members;
+
+   private final int generation;
+
+   private final P globalBest;
+
+   public PopulationSnapshot(SparkGP<P> manager, List<P> members, int generation, P globalBest) {
+      this.manager = manager;
+      this.members = members;
+      this.generation = generation;
+      this.globalBest = globalBest;
+   }
+
+   public SparkGP<P> getManager() {
+      return manager;
+   }
+
+   public List<P> getMembers() {
+      return members;
+   }
+
+   public int getGeneration() {
+      return generation;
+   }
+
+   public P getGlobalBest() {
+      return globalBest;
+   }
+}
@@ -0,0 +1,99 @@
+package com.github.chen0040.sparkml.gp.evolution;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.metrics.GenerationEvent;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import com.github.chen0040.sparkml.gp.metrics.WorkCounters;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * The part of SparkLGP and SparkTreeGP which the shared population and evolution models rely on, with P the type of
+ * the evolved candidates (Program or Solution).
+ */
+public interface SparkGP<P> extends Serializable {
+
+   SparkPopulation<P> newPopulation();
+
+   int getMaxGeneration();
+
+   int getDisplayEvery();
+
+   void setObservationRdd(JavaRDD<BasicObservation> observationRdd);
+
+   void setLocalObservations(List<BasicObservation> observations);
+
+   void setLocalObservationBlocks(List<ObservationBlock> blocks, double[] weights);
+
+   void setObservationBlockRdd(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights);
+
+   EvaluationBackendType getEvaluationBackend();
+
+   long getLocalRowThreshold();
+
+   StorageLevel getStorageLevel();
+
+   // a copy of the manager over the same cached observations, for evolving another population on another driver thread
+   SparkGP<P> fork();
+
+   void reseed(long seed);
+
+   boolean isBatchEvaluation();
+
+   boolean isMultiObjective();
+
+   void beginGeneration(int generation);
+
+   void setSurvivalThreshold(double survivalThreshold);
+
+   void prefetchCosts(List<P> candidates);
+
+   void rankObjectives(List<P> members, List<P> candidates);
+
+   // while a list is set, evaluateCost(P) appends the candidate to it and returns an infinite cost instead of evaluating it
+   void collectOffspring(List<P> offspring);
+
+   // the costs of the candidates in one pass over the observations; in multi-objective mode these are the selection costs
+   // from ranking the candidates together with the members, whose costs are updated as well
+   double[] evaluateCandidates(List<P> members, List<P> candidates);
+
+   // as evaluateCandidates(), submitted as an asynchronous spark job which bypasses the fitness cache and bounded
+   // evaluation; in multi-objective mode the ranking is done before returning
+   CompletableFuture<double[]> evaluateCandidatesAsync(List<P> members, List<P> candidates);
+
+   double costOf(P candidate);
+
+   void assignCost(P candidate, double cost);
+
+   P copyOf(P candidate);
+
+   // instructions of a program, nodes of a solution
+   int sizeOf(P candidate);
+
+   // running totals of the evaluations, broadcasts and fitness cache lookups of this manager
+   WorkCounters getWorkCounters();
+
+   // a tracker which reports to the generation listeners of the manager and to the console every displayEvery generations
+   GenerationTracker newGenerationTracker();
+
+   // reports the members at the end of a generation to the listeners of the tracker
+   default GenerationEvent endGeneration(GenerationTracker tracker, int generation, P globalBest, List<P> members) {
+      double[] costs = new double[members.size()];
+      int[] sizes = new int[members.size()];
+      double bestCost = Double.POSITIVE_INFINITY;
+      for(int i=0; i < costs.length; ++i) {
+         costs[i] = costOf(members.get(i));
+         sizes[i] = sizeOf(members.get(i));
+         bestCost = Math.min(bestCost, costs[i]);
+      }
+      return tracker.endGeneration(generation, costOf(globalBest), bestCost, costs, sizes);
+   }
+}
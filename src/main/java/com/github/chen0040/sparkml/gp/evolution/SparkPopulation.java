@@ -0,0 +1,43 @@
+package com.github.chen0040.sparkml.gp.evolution;
+
+
+import java.util.List;
+
+
+/**
+ * The part of SparkLGPPopulation and SparkTreeGPPopulation which the evolution models rely on.
+ */
+public interface SparkPopulation<P> {
+
+   void initialize();
+
+   void evolve();
+
+   // the asynchronous counterpart of initialize() and evolve(): breeds the initial population or the next generation with
+   // the evaluation deferred, and returns the candidates whose costs complete() expects in the same order
+   List<P> breed();
+
+   void complete(double[] costs);
+
+   boolean isTerminated();
+
+   int getCurrentGeneration();
+
+   double getCostInCurrentGeneration();
+
+   // the programs or solutions of the population, modifiable in place
+   List<P> getMembers();
+
+   P getGlobalBest();
+
+   // re-evaluates migrants from another population and lets the better ones replace the worst members
+   void immigrate(List<P> immigrants);
+
+   // evaluates every member again against the current observations of the manager
+   void reevaluate();
+
+   PopulationSnapshot<P> snapshot();
+
+   // replaces the members, generation counter and best-so-far of a population which has not been initialized
+   void restore(PopulationSnapshot<P> snapshot);
+}
@@ -0,0 +1,239 @@
+package com.github.chen0040.sparkml.gp.island;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.enums.MigrationTopology;
+import com.github.chen0040.sparkml.gp.evolution.PopulationSnapshot;
+import com.github.chen0040.sparkml.gp.evolution.SparkGP;
+import com.github.chen0040.sparkml.gp.evolution.SparkPopulation;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import com.github.chen0040.sparkml.gp.metrics.WorkCounters;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Evolves one population per island on the executors, each against its own shard of the observations, and sends
+ * migrants between the islands every few generations. Migrants are re-evaluated against the shard of their destination
+ * before they compete for a place there. SparkLGPIslandModel and SparkTreeGPIslandModel fix the candidate and manager
+ * types.
+ */
+public class IslandModel<P, M extends SparkGP<P>> implements Serializable {
+
+   private static final long serialVersionUID = -4513196384571946201L;
+
+   private final M manager;
+
+   private int islandCount = 4;
+
+   private int migrationInterval = 10;
+
+   private int migrantCount = 5;
+
+   private MigrationTopology migrationTopology = MigrationTopology.Ring;
+
+   private long seed = 42L;
+
+   private List<Island<P>> islands = new ArrayList<>();
+
+   public IslandModel(M manager) {
+      this.manager = manager;
+   }
+
+   public M getManager() {
+      return manager;
+   }
+
+   public int getIslandCount() {
+      return islandCount;
+   }
+
+   public void setIslandCount(int islandCount) {
+      this.islandCount = islandCount;
+   }
+
+   public int getMigrationInterval() {
+      return migrationInterval;
+   }
+
+   // number of generations each island evolves between two migrations
+   public void setMigrationInterval(int migrationInterval) {
+      this.migrationInterval = migrationInterval;
+   }
+
+   public int getMigrantCount() {
+      return migrantCount;
+   }
+
+   public void setMigrantCount(int migrantCount) {
+      this.migrantCount = migrantCount;
+   }
+
+   public MigrationTopology getMigrationTopology() {
+      return migrationTopology;
+   }
+
+   public void setMigrationTopology(MigrationTopology migrationTopology) {
+      this.migrationTopology = migrationTopology;
+   }
+
+   public long getSeed() {
+      return seed;
+   }
+
+   // seeds the random engines of the islands, each with a seed of its own, and the choice of destinations for the random
+   // migration topology
+   public void setSeed(long seed) {
+      this.seed = seed;
+   }
+
+   public List<Island<P>> getIslands() {
+      return islands;
+   }
+
+   // the generation listeners of the manager receive one event per round, over the members of all the islands and with
+   // the work which their copies of the manager did on the executors
+   public P fit(JavaRDD<BasicObservation> trainingData) {
+      JavaSparkContext context = JavaSparkContext.fromSparkContext(trainingData.context());
+      JavaRDD<BasicObservation> shards = trainingData.repartition(islandCount).cache();
+      Random random = new Random(seed);
+
+      islands = new ArrayList<>();
+      for(int i=0; i < islandCount; ++i) {
+         islands.add(new Island<>(i));
+      }
+
+      final SparkGP<P> template = manager;
+      final long islandSeed = seed;
+      GenerationTracker tracker = manager.newGenerationTracker();
+      tracker.start();
+      int generation = 0;
+      while(generation < manager.getMaxGeneration()) {
+         final int generations = Math.min(migrationInterval, manager.getMaxGeneration() - generation);
+
+         islands = context.parallelize(islands, islandCount).zipPartitions(shards, (Iterator<Island<P>> islandIterator, Iterator<BasicObservation> observationIterator) -> {
+            List<BasicObservation> shard = new ArrayList<>();
+            observationIterator.forEachRemaining(shard::add);
+            List<Island<P>> evolved = new ArrayList<>();
+            while(islandIterator.hasNext()) {
+               Island<P> island = islandIterator.next();
+               island.evolve(template, shard, generations, islandSeed);
+               evolved.add(island);
+            }
+            return evolved;
+         }).collect();
+         islands = new ArrayList<>(islands);
+         generation += generations;
+
+         if(generation < manager.getMaxGeneration()) {
+            // the migrants are re-evaluated against the shard of their destination before they compete there
+            int[] destinations = Migration.destinations(migrationTopology, islandCount, random);
+            for(int i=0; i < islands.size(); ++i) {
+               if(destinations[i] != i) {
+                  islands.get(destinations[i]).receive(Migration.emigrants(islands.get(i).getMembers(), migrantCount, manager::costOf, manager::copyOf));
+               }
+            }
+         }
+
+         List<P> members = new ArrayList<>();
+         for(Island<P> island : islands) {
+            members.addAll(island.getMembers());
+            tracker.addWork(island.getWork());
+         }
+         manager.endGeneration(tracker, generation, getGlobalBest(), members);
+      }
+
+      shards.unpersist();
+      return getGlobalBest();
+   }
+
+   // the best candidate found by any of the islands so far
+   public P getGlobalBest() {
+      P best = null;
+      for(Island<P> island : islands) {
+         if(island.getSnapshot() == null) {
+            continue;
+         }
+         P candidate = island.getSnapshot().getGlobalBest();
+         if(best == null || manager.costOf(candidate) < manager.costOf(best)) {
+            best = candidate;
+         }
+      }
+      return best;
+   }
+
+   /**
+    * One sub-population, shipped between the driver and the executor of its shard as a snapshot together with its manager.
+    */
+   public static class Island<P> implements Serializable {
+
+      private static final long serialVersionUID = 6120754738712630583L;
+
+      private final int index;
+
+      private PopulationSnapshot<P> snapshot;
+
+      private final List<P> immigrants = new ArrayList<>();
+
+      private WorkCounters work = WorkCounters.none();
+
+      public Island(int index) {
+         this.index = index;
+      }
+
+      public int getIndex() {
+         return index;
+      }
+
+      // the population after the latest round of generations, or null before the first round
+      public PopulationSnapshot<P> getSnapshot() {
+         return snapshot;
+      }
+
+      public List<P> getMembers() {
+         return snapshot == null ? Collections.emptyList() : snapshot.getMembers();
+      }
+
+      // the evaluations, broadcasts and fitness cache lookups of the latest round
+      public WorkCounters getWork() {
+         return work;
+      }
+
+      // migrants which join the population at the start of the next round
+      public void receive(List<P> migrants) {
+         immigrants.addAll(migrants);
+      }
+
+      // every island starts from a copy of the same manager, so the first round reseeds its random engine from the seed
+      // of the model and the index of the island; the engine then travels on in the snapshot
+      public void evolve(SparkGP<P> template, List<BasicObservation> shard, int generations, long seed) {
+         SparkGP<P> manager = snapshot == null ? template : snapshot.getManager();
+         if(snapshot == null) {
+            manager.reseed(seed + 0x9E3779B97F4A7C15L * (index + 1));
+         }
+         WorkCounters before = manager.getWorkCounters();
+         manager.setLocalObservations(shard);
+         SparkPopulation<P> population = manager.newPopulation();
+         if(snapshot == null) {
+            population.initialize();
+         } else {
+            population.restore(snapshot);
+            population.immigrate(immigrants);
+            immigrants.clear();
+         }
+
+         for(int i=0; i < generations && !population.isTerminated(); ++i) {
+            population.evolve();
+         }
+         snapshot = population.snapshot();
+         work = manager.getWorkCounters().since(before);
+      }
+   }
+}
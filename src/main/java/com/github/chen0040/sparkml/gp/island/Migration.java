@@ -0,0 +1,72 @@
+package com.github.chen0040.sparkml.gp.island;
+
+
+import com.github.chen0040.sparkml.gp.enums.MigrationTopology;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * Exchanges the best individuals between island populations on the driver.
+ */
+public class Migration {
+
+   // destinations[i] is the island which receives the migrants of island i
+   public static int[] destinations(MigrationTopology topology, int islandCount, Random random) {
+      int[] destinations = new int[islandCount];
+      for(int i=0; i < islandCount; ++i) {
+         if(islandCount == 1) {
+            destinations[i] = i;
+         } else if(topology == MigrationTopology.Ring) {
+            destinations[i] = (i + 1) % islandCount;
+         } else {
+            int destination = random.nextInt(islandCount - 1);
+            destinations[i] = destination >= i ? destination + 1 : destination;
+         }
+      }
+      return destinations;
+   }
+
+   // copies of the best migrantCount individuals of the population
+   public static <T> List<T> emigrants(List<T> population, int migrantCount, ToDoubleFunction<T> cost, Function<T, T> copier) {
+      List<T> sorted = new ArrayList<>(population);
+      sorted.sort(Comparator.comparingDouble(cost));
+      List<T> emigrants = new ArrayList<>();
+      for(int i=0; i < Math.min(migrantCount, sorted.size()); ++i) {
+         emigrants.add(copier.apply(sorted.get(i)));
+      }
+      return emigrants;
+   }
+
+   // copies of the best migrantCount individuals of each island replace the worst individuals of its destination
+   public static <T> void exchange(List<List<T>> populations, int[] destinations, int migrantCount, ToDoubleFunction<T> cost, Function<T, T> copier) {
+      List<List<T>> migrants = new ArrayList<>();
+      for(List<T> population : populations) {
+         migrants.add(emigrants(population, migrantCount, cost, copier));
+      }
+
+      for(int i=0; i < populations.size(); ++i) {
+         if(destinations[i] == i) {
+            continue;
+         }
+         List<T> population = populations.get(destinations[i]);
+         for(T migrant : migrants.get(i)) {
+            int worst = 0;
+            for(int j=1; j < population.size(); ++j) {
+               if(cost.applyAsDouble(population.get(j)) > cost.applyAsDouble(population.get(worst))) {
+                  worst = j;
+               }
+            }
+            if(population.isEmpty() || cost.applyAsDouble(population.get(worst)) <= cost.applyAsDouble(migrant)) {
+               break;
+            }
+            population.set(worst, migrant);
+         }
+      }
+   }
+}
@@ -0,0 +1,223 @@
+package com.github.chen0040.sparkml.gp.island;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.evolution.SparkGP;
+import com.github.chen0040.sparkml.gp.evolution.SparkPopulation;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+/**
+ * Evolves several demes, each of the manager's population size, over the same cached observations. The driver breeds a
+ * generation of one deme while the generations of the others are evaluated by asynchronous spark jobs, at most
+ * maxInFlightJobs of the manager at a time, so that the driver and the executors stay busy. The generations are consumed
+ * in the order in which they complete: every finished generation publishes copies of the best candidates of its
+ * deme, and every migrationInterval generations the candidates published by the other demes replace its worst members.
+ * The completion order depends on the cluster, so runs are not reproducible. SparkLGPSteadyStateModel and
+ * SparkTreeGPSteadyStateModel fix the candidate and manager types.
+ */
+public class SteadyStateModel<P, M extends SparkGP<P>> {
+
+   private final M manager;
+
+   private int demeCount = 4;
+
+   private int migrationInterval = 1;
+
+   private int migrantCount = 2;
+
+   private List<Deme<P>> demes = new ArrayList<>();
+
+   private final Map<Integer, List<P>> published = new LinkedHashMap<>();
+
+   private long generationCount;
+
+   public SteadyStateModel(M manager) {
+      this.manager = manager;
+   }
+
+   public M getManager() {
+      return manager;
+   }
+
+   public int getDemeCount() {
+      return demeCount;
+   }
+
+   // the number of populations evolving at the same time; beyond maxInFlightJobs of the manager, more demes keep the
+   // driver busier without adding jobs
+   public void setDemeCount(int demeCount) {
+      this.demeCount = demeCount;
+   }
+
+   public int getMigrationInterval() {
+      return migrationInterval;
+   }
+
+   // generations of a deme between two immigrations; 0 keeps the demes apart
+   public void setMigrationInterval(int migrationInterval) {
+      this.migrationInterval = migrationInterval;
+   }
+
+   public int getMigrantCount() {
+      return migrantCount;
+   }
+
+   public void setMigrantCount(int migrantCount) {
+      this.migrantCount = migrantCount;
+   }
+
+   public List<Deme<P>> getDemes() {
+      return demes;
+   }
+
+   // generations completed by all the demes together during the latest fit()
+   public long getGenerationCount() {
+      return generationCount;
+   }
+
+   // the generation listeners of the manager receive one event per completed generation of any deme, with the work of
+   // the forks of the manager which the demes evaluate through
+   public P fit(JavaRDD<BasicObservation> trainingData) {
+      manager.setObservationRdd(trainingData);
+      BlockingQueue<Deme<P>> completed = new LinkedBlockingQueue<>();
+      GenerationTracker tracker = manager.newGenerationTracker();
+      tracker.start();
+
+      demes = new ArrayList<>();
+      published.clear();
+      generationCount = 0;
+      for(int i=0; i < demeCount; ++i) {
+         Deme<P> deme = new Deme<>(i, manager.fork());
+         tracker.watch(deme.getManager()::getWorkCounters);
+         demes.add(deme);
+         deme.submit(completed);
+      }
+
+      int running = demeCount;
+      while(running > 0) {
+         Deme<P> deme = take(completed);
+         deme.complete();
+         generationCount++;
+         publish(deme);
+         manager.endGeneration(tracker, (int) generationCount, getGlobalBest(), deme.getPopulation().getMembers());
+         if(deme.getPopulation().isTerminated()) {
+            running--;
+            continue;
+         }
+         if(migrationInterval > 0 && deme.getPopulation().getCurrentGeneration() % migrationInterval == 0) {
+            immigrate(deme);
+         }
+         deme.submit(completed);
+      }
+      return getGlobalBest();
+   }
+
+   // the best candidate found by any of the demes; while fit() runs, only the demes which are not evolving are consulted
+   public P getGlobalBest() {
+      P best = null;
+      for(List<P> elites : published.values()) {
+         for(P candidate : elites) {
+            if(best == null || manager.costOf(candidate) < manager.costOf(best)) {
+               best = candidate;
+            }
+         }
+      }
+      return best;
+   }
+
+   private static <P> Deme<P> take(BlockingQueue<Deme<P>> completed) {
+      try {
+         return completed.take();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Interrupted while waiting for a deme", e);
+      }
+   }
+
+   // copies, so that the deme can evolve on while its candidates are read
+   private void publish(Deme<P> deme) {
+      List<P> elites = Migration.emigrants(deme.getPopulation().getMembers(), Math.max(1, migrantCount), manager::costOf, manager::copyOf);
+      published.put(deme.getIndex(), elites);
+   }
+
+   private void immigrate(Deme<P> deme) {
+      List<P> immigrants = new ArrayList<>();
+      for(Map.Entry<Integer, List<P>> entry : published.entrySet()) {
+         if(entry.getKey() != deme.getIndex()) {
+            immigrants.addAll(entry.getValue());
+         }
+      }
+      List<List<P>> populations = Arrays.asList(immigrants, deme.getPopulation().getMembers());
+      Migration.exchange(populations, new int[] { 1, 1 }, migrantCount, manager::costOf, manager::copyOf);
+   }
+
+   /**
+    * One population with a fork of the manager. The driver breeds its generations and the executors evaluate them with
+    * asynchronous spark jobs.
+    */
+   public static class Deme<P> {
+
+      private final int index;
+
+      private final SparkGP<P> manager;
+
+      private SparkPopulation<P> population;
+
+      private CompletableFuture<double[]> pendingCosts;
+
+      public Deme(int index, SparkGP<P> manager) {
+         this.index = index;
+         this.manager = manager;
+      }
+
+      public int getIndex() {
+         return index;
+      }
+
+      public SparkGP<P> getManager() {
+         return manager;
+      }
+
+      public SparkPopulation<P> getPopulation() {
+         return population;
+      }
+
+      // breeds the initial population or the next generation on the calling thread and submits the evaluation of its
+      // candidates; the deme enters the queue once the costs have arrived
+      public void submit(BlockingQueue<Deme<P>> completed) {
+         if(population == null) {
+            population = manager.newPopulation();
+         }
+         List<P> candidates = population.breed();
+         if(candidates.isEmpty()) {
+            pendingCosts = CompletableFuture.completedFuture(new double[0]);
+         } else {
+            pendingCosts = manager.evaluateCandidatesAsync(population.getMembers(), candidates);
+         }
+         pendingCosts.whenComplete((costs, failure) -> completed.add(this));
+      }
+
+      // hands the costs of the submitted generation to the population, which admits the better offspring
+      public void complete() {
+         try {
+            population.complete(pendingCosts.join());
+         } catch (CompletionException e) {
+            throw new RuntimeException("Failed to evaluate a generation of deme " + index, e.getCause());
+         } finally {
+            pendingCosts = null;
+         }
+      }
+   }
+}
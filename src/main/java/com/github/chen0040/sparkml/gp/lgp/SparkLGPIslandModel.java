@@ -0,0 +1,24 @@
+package com.github.chen0040.sparkml.gp.lgp;
+
+
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.island.IslandModel;
+
+
+/**
+ * Island model over SparkLGP populations.
+ */
+public class SparkLGPIslandModel extends IslandModel<Program, SparkLGP> {
+
+   private static final long serialVersionUID = 2840519763148305921L;
+
+   public SparkLGPIslandModel(SparkLGP manager) {
+      super(manager);
+   }
+
+   // the best program found by any of the islands so far
+   public Program getGlobalBestProgram() {
+      return getGlobalBest();
+   }
+}
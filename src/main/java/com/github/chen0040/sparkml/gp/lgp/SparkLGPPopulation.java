@@ -0,0 +1,112 @@
+package com.github.chen0040.sparkml.gp.lgp;
+
+
+import com.github.chen0040.gp.lgp.LGP;
+import com.github.chen0040.gp.lgp.gp.Population;
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.evolution.GenerationBatch;
+import com.github.chen0040.sparkml.gp.evolution.PopulationSnapshot;
+import com.github.chen0040.sparkml.gp.evolution.SparkPopulation;
+
+import java.util.List;
+
+
+/**
+ * Population which evaluates the initial programs and the offspring of every generation with a single spark job.
+ */
+public class SparkLGPPopulation extends Population implements SparkPopulation<Program> {
+
+   private final SparkLGP sparkManager;
+
+   private final GenerationBatch<Program> batch;
+
+   public SparkLGPPopulation(SparkLGP manager) {
+      super(manager);
+      this.sparkManager = manager;
+      this.batch = new GenerationBatch<>(manager);
+   }
+
+   public SparkLGP getSparkManager() {
+      return sparkManager;
+   }
+
+   @Override
+   public void initialize() {
+      batch.step(getPrograms(), 0, true, super::initialize);
+   }
+
+   @Override
+   public void evolve() {
+      batch.step(getPrograms(), getCurrentGeneration(), false, super::evolve);
+   }
+
+   @Override
+   public List<Program> breed() {
+      if(batch.isInitialized()) {
+         return batch.breed(getPrograms(), getCurrentGeneration(), false, super::evolve);
+      }
+      return batch.breed(getPrograms(), 0, true, super::initialize);
+   }
+
+   @Override
+   public void complete(double[] costs) {
+      batch.complete(getPrograms(), costs);
+   }
+
+   @Override
+   public int getCurrentGeneration() {
+      return batch.generation(super.getCurrentGeneration());
+   }
+
+   @Override
+   public boolean isTerminated() {
+      return getCurrentGeneration() >= sparkManager.getMaxGeneration();
+   }
+
+   @Override
+   public void evaluate(LGP manager, List<Program> programs) {
+      batch.prefetch(getPrograms(), programs);
+      super.evaluate(manager, programs);
+   }
+
+   @Override
+   public Program getGlobalBestProgram() {
+      return batch.globalBest(super.getGlobalBestProgram());
+   }
+
+   @Override
+   public double getCostInCurrentGeneration() {
+      return batch.bestCost(getPrograms());
+   }
+
+   @Override
+   public List<Program> getMembers() {
+      return getPrograms();
+   }
+
+   @Override
+   public Program getGlobalBest() {
+      return getGlobalBestProgram();
+   }
+
+   @Override
+   public void immigrate(List<Program> immigrants) {
+      batch.immigrate(getPrograms(), getCurrentGeneration(), immigrants);
+   }
+
+   @Override
+   public void reevaluate() {
+      batch.reevaluate(getPrograms(), getCurrentGeneration());
+   }
+
+   @Override
+   public PopulationSnapshot<Program> snapshot() {
+      return batch.snapshot(getPrograms(), getCurrentGeneration(), getGlobalBestProgram());
+   }
+
+   @Override
+   public void restore(PopulationSnapshot<Program> snapshot) {
+      batch.restore(getPrograms(), super.getCurrentGeneration(), snapshot);
+   }
+}
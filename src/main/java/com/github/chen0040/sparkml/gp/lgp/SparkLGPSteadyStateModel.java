@@ -0,0 +1,22 @@
+package com.github.chen0040.sparkml.gp.lgp;
+
+
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.island.SteadyStateModel;
+
+
+/**
+ * Steady-state deme model over SparkLGP populations.
+ */
+public class SparkLGPSteadyStateModel extends SteadyStateModel<Program, SparkLGP> {
+
+   public SparkLGPSteadyStateModel(SparkLGP manager) {
+      super(manager);
+   }
+
+   // the best program found by any of the demes
+   public Program getGlobalBestProgram() {
+      return getGlobalBest();
+   }
+}
@@ -0,0 +1,22 @@
+package com.github.chen0040.sparkml.gp.lgp;
+
+
+import com.github.chen0040.gp.lgp.program.Program;
+import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.streaming.StreamingModel;
+
+
+/**
+ * Streaming model over a single SparkLGP population.
+ */
+public class SparkLGPStreamingModel extends StreamingModel<Program, SparkLGP> {
+
+   public SparkLGPStreamingModel(SparkLGP manager) {
+      super(manager);
+   }
+
+   // the best program on the window after the latest batch, see getBest()
+   public Program getBestProgram() {
+      return getBest();
+   }
+}
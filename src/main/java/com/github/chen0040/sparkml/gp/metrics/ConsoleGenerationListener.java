@@ -0,0 +1,23 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+/**
+ * Prints the progress of fit() to stdout every displayEvery generations, as fit() used to do itself.
+ */
+public class ConsoleGenerationListener implements GenerationListener {
+
+   private final int displayEvery;
+
+   public ConsoleGenerationListener(int displayEvery) {
+      this.displayEvery = displayEvery;
+   }
+
+   @Override
+   public void onGeneration(GenerationEvent event) {
+      if(displayEvery > 0 && event.getGeneration() > 0 && event.getGeneration() % displayEvery == 0) {
+         long seconds = event.getElapsedMillis() / 1000;
+         System.out.println("Generation: " + event.getGeneration() + " (Pop: " + event.getPopulationSize() + "), elapsed: " + seconds + " seconds");
+         System.out.println("Global Cost: " + event.getGlobalBestCost() + "\tCurrent Cost: " + event.getBestCost());
+      }
+   }
+}
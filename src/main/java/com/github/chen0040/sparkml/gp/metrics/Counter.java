@@ -0,0 +1,21 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Monotonic count, e.g. of spark jobs or rows scanned.
+ */
+public class Counter {
+
+   private final AtomicLong count = new AtomicLong();
+
+   public void inc(long n) {
+      count.addAndGet(n);
+   }
+
+   public long getCount() {
+      return count.get();
+   }
+}
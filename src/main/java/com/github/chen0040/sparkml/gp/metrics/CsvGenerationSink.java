@@ -0,0 +1,52 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+
+/**
+ * Writes one csv line per generation, preceded by a header line, flushing after every line.
+ */
+public class CsvGenerationSink implements GenerationListener, Closeable {
+
+   private final Writer writer;
+   private boolean headerWritten = false;
+
+   public CsvGenerationSink(Writer writer) {
+      this.writer = writer;
+   }
+
+   public static CsvGenerationSink open(String path) throws IOException {
+      return new CsvGenerationSink(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
+   }
+
+   @Override
+   public synchronized void onGeneration(GenerationEvent event) {
+      Map<String, Object> fields = event.toMap();
+      try {
+         if(!headerWritten) {
+            writer.write(String.join(",", fields.keySet()));
+            writer.write("\n");
+            headerWritten = true;
+         }
+         StringBuilder line = new StringBuilder();
+         for(Object value : fields.values()) {
+            if(line.length() > 0) {
+               line.append(',');
+            }
+            line.append(value);
+         }
+         writer.write(line.append('\n').toString());
+         writer.flush();
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to write generation " + event.getGeneration(), e);
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      writer.close();
+   }
+}
@@ -0,0 +1,237 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * What happened during one generation: where the time went, how much work the evaluation did and how the population
+ * looks afterwards. Program size is the instruction count for LGP and the node count over all trees for TreeGP.
+ */
+public class GenerationEvent implements Serializable {
+
+   private static final long serialVersionUID = 8349702657117360293L;
+
+   private int generation;
+   private int populationSize;
+   private long elapsedMillis;
+   private long generationMillis;
+   private long evaluationMillis;
+   private long evaluationCount;
+   private long sparkJobCount;
+   private long rowsScanned;
+   private long broadcastCount;
+   private long broadcastBytes;
+   private long cacheHits;
+   private long cacheMisses;
+   private long lowerBoundCount;
+   private long savedRowEvaluations;
+   private double globalBestCost;
+   private double bestCost;
+   private double meanCost;
+   private int minProgramSize;
+   private double meanProgramSize;
+   private int maxProgramSize;
+
+   public int getGeneration() {
+      return generation;
+   }
+
+   public void setGeneration(int generation) {
+      this.generation = generation;
+   }
+
+   public int getPopulationSize() {
+      return populationSize;
+   }
+
+   public void setPopulationSize(int populationSize) {
+      this.populationSize = populationSize;
+   }
+
+   // since the start of fit()
+   public long getElapsedMillis() {
+      return elapsedMillis;
+   }
+
+   public void setElapsedMillis(long elapsedMillis) {
+      this.elapsedMillis = elapsedMillis;
+   }
+
+   public long getGenerationMillis() {
+      return generationMillis;
+   }
+
+   public void setGenerationMillis(long generationMillis) {
+      this.generationMillis = generationMillis;
+   }
+
+   public long getEvaluationMillis() {
+      return evaluationMillis;
+   }
+
+   public void setEvaluationMillis(long evaluationMillis) {
+      this.evaluationMillis = evaluationMillis;
+   }
+
+   // driver-side selection, crossover and mutation, i.e. the part of the generation not spent evaluating
+   public long getVariationMillis() {
+      return Math.max(0, generationMillis - evaluationMillis);
+   }
+
+   public long getEvaluationCount() {
+      return evaluationCount;
+   }
+
+   public void setEvaluationCount(long evaluationCount) {
+      this.evaluationCount = evaluationCount;
+   }
+
+   public long getSparkJobCount() {
+      return sparkJobCount;
+   }
+
+   public void setSparkJobCount(long sparkJobCount) {
+      this.sparkJobCount = sparkJobCount;
+   }
+
+   public long getRowsScanned() {
+      return rowsScanned;
+   }
+
+   public void setRowsScanned(long rowsScanned) {
+      this.rowsScanned = rowsScanned;
+   }
+
+   public long getBroadcastCount() {
+      return broadcastCount;
+   }
+
+   public void setBroadcastCount(long broadcastCount) {
+      this.broadcastCount = broadcastCount;
+   }
+
+   public long getBroadcastBytes() {
+      return broadcastBytes;
+   }
+
+   public void setBroadcastBytes(long broadcastBytes) {
+      this.broadcastBytes = broadcastBytes;
+   }
+
+   public long getCacheHits() {
+      return cacheHits;
+   }
+
+   public void setCacheHits(long cacheHits) {
+      this.cacheHits = cacheHits;
+   }
+
+   public long getCacheMisses() {
+      return cacheMisses;
+   }
+
+   public void setCacheMisses(long cacheMisses) {
+      this.cacheMisses = cacheMisses;
+   }
+
+   // candidates which received a lower bound instead of their exact cost from bounded evaluation
+   public long getLowerBoundCount() {
+      return lowerBoundCount;
+   }
+
+   public void setLowerBoundCount(long lowerBoundCount) {
+      this.lowerBoundCount = lowerBoundCount;
+   }
+
+   public long getSavedRowEvaluations() {
+      return savedRowEvaluations;
+   }
+
+   public void setSavedRowEvaluations(long savedRowEvaluations) {
+      this.savedRowEvaluations = savedRowEvaluations;
+   }
+
+   public double getGlobalBestCost() {
+      return globalBestCost;
+   }
+
+   public void setGlobalBestCost(double globalBestCost) {
+      this.globalBestCost = globalBestCost;
+   }
+
+   // best cost in the current generation
+   public double getBestCost() {
+      return bestCost;
+   }
+
+   public void setBestCost(double bestCost) {
+      this.bestCost = bestCost;
+   }
+
+   public double getMeanCost() {
+      return meanCost;
+   }
+
+   public void setMeanCost(double meanCost) {
+      this.meanCost = meanCost;
+   }
+
+   public int getMinProgramSize() {
+      return minProgramSize;
+   }
+
+   public void setMinProgramSize(int minProgramSize) {
+      this.minProgramSize = minProgramSize;
+   }
+
+   public double getMeanProgramSize() {
+      return meanProgramSize;
+   }
+
+   public void setMeanProgramSize(double meanProgramSize) {
+      this.meanProgramSize = meanProgramSize;
+   }
+
+   public int getMaxProgramSize() {
+      return maxProgramSize;
+   }
+
+   public void setMaxProgramSize(int maxProgramSize) {
+      this.maxProgramSize = maxProgramSize;
+   }
+
+   // field name to value in a fixed order, used by the csv and json-lines sinks
+   public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("generation", generation);
+      map.put("populationSize", populationSize);
+      map.put("elapsedMillis", elapsedMillis);
+      map.put("generationMillis", generationMillis);
+      map.put("evaluationMillis", evaluationMillis);
+      map.put("variationMillis", getVariationMillis());
+      map.put("evaluationCount", evaluationCount);
+      map.put("sparkJobCount", sparkJobCount);
+      map.put("rowsScanned", rowsScanned);
+      map.put("broadcastCount", broadcastCount);
+      map.put("broadcastBytes", broadcastBytes);
+      map.put("cacheHits", cacheHits);
+      map.put("cacheMisses", cacheMisses);
+      map.put("lowerBoundCount", lowerBoundCount);
+      map.put("savedRowEvaluations", savedRowEvaluations);
+      map.put("globalBestCost", globalBestCost);
+      map.put("bestCost", bestCost);
+      map.put("meanCost", meanCost);
+      map.put("minProgramSize", minProgramSize);
+      map.put("meanProgramSize", meanProgramSize);
+      map.put("maxProgramSize", maxProgramSize);
+      return map;
+   }
+
+   @Override
+   public String toString() {
+      return toMap().toString();
+   }
+}
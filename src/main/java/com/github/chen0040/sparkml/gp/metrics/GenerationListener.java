@@ -0,0 +1,10 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+/**
+ * Receives one event at the end of every generation of fit(), or of every round of the island, steady-state and
+ * streaming models.
+ */
+public interface GenerationListener {
+   void onGeneration(GenerationEvent event);
+}
@@ -0,0 +1,110 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+
+/**
+ * Takes the work counters of the watched managers before a generation and turns their difference after the generation,
+ * together with the work reported from elsewhere, into a GenerationEvent for the listeners.
+ */
+public class GenerationTracker {
+
+   private final List<Supplier<WorkCounters>> sources = new ArrayList<>();
+   private final List<WorkCounters> countersBefore = new ArrayList<>();
+   private final List<GenerationListener> listeners;
+
+   private long startTime;
+   private long generationStartTime;
+   private WorkCounters reported = WorkCounters.none();
+
+   public GenerationTracker(Supplier<WorkCounters> counters, List<GenerationListener> listeners) {
+      this.listeners = listeners;
+      watch(counters);
+   }
+
+   // also counts the work of another manager from now on, e.g. a fork which evaluates on behalf of the tracked one
+   public void watch(Supplier<WorkCounters> counters) {
+      sources.add(counters);
+      countersBefore.add(counters.get());
+   }
+
+   // adds work which the watched managers do not see to the current generation, e.g. that of their copies on the executors
+   public void addWork(WorkCounters work) {
+      reported = reported.plus(work);
+   }
+
+   public void start() {
+      startTime = System.currentTimeMillis();
+      beginGeneration();
+   }
+
+   public void beginGeneration() {
+      generationStartTime = System.currentTimeMillis();
+      for(int i=0; i < sources.size(); ++i) {
+         countersBefore.set(i, sources.get(i).get());
+      }
+      reported = WorkCounters.none();
+   }
+
+   public long getElapsedMillis() {
+      return System.currentTimeMillis() - startTime;
+   }
+
+   // costs and sizes are those of the population at the end of the generation
+   public GenerationEvent endGeneration(int generation, double globalBestCost, double bestCost, double[] costs, int[] programSizes) {
+      long now = System.currentTimeMillis();
+      WorkCounters work = reported;
+      for(int i=0; i < sources.size(); ++i) {
+         work = work.plus(sources.get(i).get().since(countersBefore.get(i)));
+      }
+      EvaluationStatistics evaluation = work.getEvaluation();
+
+      GenerationEvent event = new GenerationEvent();
+      event.setGeneration(generation);
+      event.setPopulationSize(costs.length);
+      event.setElapsedMillis(now - startTime);
+      event.setGenerationMillis(now - generationStartTime);
+      event.setEvaluationMillis(evaluation.getEvaluationNanos() / 1000000);
+      event.setEvaluationCount(evaluation.getEvaluationCount());
+      event.setSparkJobCount(evaluation.getSparkJobCount());
+      event.setRowsScanned(evaluation.getRowsScanned());
+      event.setBroadcastCount(work.getBroadcastCount());
+      event.setBroadcastBytes(work.getBroadcastBytes());
+      event.setCacheHits(work.getCacheHits());
+      event.setCacheMisses(work.getCacheMisses());
+      event.setLowerBoundCount(evaluation.getLowerBoundCount());
+      event.setSavedRowEvaluations(evaluation.getSavedRowEvaluations());
+      event.setGlobalBestCost(globalBestCost);
+      event.setBestCost(bestCost);
+
+      double costSum = 0;
+      for(double cost : costs) {
+         costSum += cost;
+      }
+      event.setMeanCost(costs.length == 0 ? Double.NaN : costSum / costs.length);
+
+      int minSize = Integer.MAX_VALUE;
+      int maxSize = 0;
+      long sizeSum = 0;
+      for(int size : programSizes) {
+         minSize = Math.min(minSize, size);
+         maxSize = Math.max(maxSize, size);
+         sizeSum += size;
+      }
+      event.setMinProgramSize(programSizes.length == 0 ? 0 : minSize);
+      event.setMaxProgramSize(maxSize);
+      event.setMeanProgramSize(programSizes.length == 0 ? 0 : (double) sizeSum / programSizes.length);
+
+      for(GenerationListener listener : listeners) {
+         listener.onGeneration(event);
+      }
+
+      beginGeneration();
+      return event;
+   }
+}
@@ -0,0 +1,42 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+/**
+ * Count, min, max, mean and last value of a per-generation quantity such as a duration or a cost.
+ */
+public class Histogram {
+
+   private long count;
+   private double min = Double.POSITIVE_INFINITY;
+   private double max = Double.NEGATIVE_INFINITY;
+   private double sum;
+   private double last = Double.NaN;
+
+   public synchronized void update(double value) {
+      count++;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+      sum += value;
+      last = value;
+   }
+
+   public synchronized long getCount() {
+      return count;
+   }
+
+   public synchronized double getMin() {
+      return min;
+   }
+
+   public synchronized double getMax() {
+      return max;
+   }
+
+   public synchronized double getMean() {
+      return count == 0 ? Double.NaN : sum / count;
+   }
+
+   public synchronized double getLast() {
+      return last;
+   }
+}
@@ -0,0 +1,57 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+
+/**
+ * Writes one json object per generation and line, flushing after every line.
+ */
+public class JsonLinesGenerationSink implements GenerationListener, Closeable {
+
+   private final Writer writer;
+
+   public JsonLinesGenerationSink(Writer writer) {
+      this.writer = writer;
+   }
+
+   public static JsonLinesGenerationSink open(String path) throws IOException {
+      return new JsonLinesGenerationSink(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
+   }
+
+   @Override
+   public synchronized void onGeneration(GenerationEvent event) {
+      try {
+         writer.write(toJson(event));
+         writer.write("\n");
+         writer.flush();
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to write generation " + event.getGeneration(), e);
+      }
+   }
+
+   public static String toJson(GenerationEvent event) {
+      StringBuilder json = new StringBuilder("{");
+      for(Map.Entry<String, Object> field : event.toMap().entrySet()) {
+         if(json.length() > 1) {
+            json.append(',');
+         }
+         json.append('"').append(field.getKey()).append("\":");
+         Object value = field.getValue();
+         if(value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+            // json has no literal for NaN or infinity
+            json.append('"').append(value).append('"');
+         } else {
+            json.append(value);
+         }
+      }
+      return json.append('}').toString();
+   }
+
+   @Override
+   public void close() throws IOException {
+      writer.close();
+   }
+}
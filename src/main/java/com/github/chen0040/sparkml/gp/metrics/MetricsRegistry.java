@@ -0,0 +1,68 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+
+/**
+ * Named counters, histograms and gauges in the style of a dropwizard metrics registry. Registered as a generation
+ * listener, it keeps counters of the work done (gp.evaluation.*, gp.broadcast.*, gp.cache.*) and histograms of the
+ * per-generation times, costs and program sizes (gp.generation.*, gp.cost.*, gp.program.size.*).
+ */
+public class MetricsRegistry implements GenerationListener {
+
+   private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+   private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+   private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+   public Counter counter(String name) {
+      return counters.computeIfAbsent(name, key -> new Counter());
+   }
+
+   public Histogram histogram(String name) {
+      return histograms.computeIfAbsent(name, key -> new Histogram());
+   }
+
+   public void register(String name, DoubleSupplier gauge) {
+      gauges.put(name, gauge);
+   }
+
+   public SortedMap<String, Counter> getCounters() {
+      return new TreeMap<>(counters);
+   }
+
+   public SortedMap<String, Histogram> getHistograms() {
+      return new TreeMap<>(histograms);
+   }
+
+   public SortedMap<String, DoubleSupplier> getGauges() {
+      return new TreeMap<>(gauges);
+   }
+
+   @Override
+   public void onGeneration(GenerationEvent event) {
+      counter("gp.generations").inc(1);
+      counter("gp.evaluation.count").inc(event.getEvaluationCount());
+      counter("gp.evaluation.sparkJobs").inc(event.getSparkJobCount());
+      counter("gp.evaluation.rowsScanned").inc(event.getRowsScanned());
+      counter("gp.broadcast.count").inc(event.getBroadcastCount());
+      counter("gp.broadcast.bytes").inc(event.getBroadcastBytes());
+      counter("gp.cache.hits").inc(event.getCacheHits());
+      counter("gp.cache.misses").inc(event.getCacheMisses());
+      counter("gp.evaluation.lowerBounds").inc(event.getLowerBoundCount());
+      counter("gp.evaluation.savedRowEvaluations").inc(event.getSavedRowEvaluations());
+
+      histogram("gp.generation.millis").update(event.getGenerationMillis());
+      histogram("gp.generation.evaluationMillis").update(event.getEvaluationMillis());
+      histogram("gp.generation.variationMillis").update(event.getVariationMillis());
+      histogram("gp.cost.globalBest").update(event.getGlobalBestCost());
+      histogram("gp.cost.best").update(event.getBestCost());
+      histogram("gp.cost.mean").update(event.getMeanCost());
+      histogram("gp.program.size.mean").update(event.getMeanProgramSize());
+      histogram("gp.program.size.max").update(event.getMaxProgramSize());
+   }
+}
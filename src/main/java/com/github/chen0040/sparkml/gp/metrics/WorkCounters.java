@@ -0,0 +1,80 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import com.github.chen0040.sparkml.gp.evaluation.BroadcastStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationStatistics;
+import com.github.chen0040.sparkml.gp.evaluation.FitnessCache;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+/**
+ * Running totals of the work of one manager which a GenerationEvent reports as differences: its evaluation statistics,
+ * the broadcasts of its backend and the hits and misses of its fitness cache. The work of managers which evaluate on
+ * behalf of another, e.g. the copies on the islands of an island model, is added up from these.
+ */
+public class WorkCounters implements Serializable {
+
+   private static final long serialVersionUID = 7315920468342156021L;
+
+   private final EvaluationStatistics evaluation;
+   private final long broadcastCount;
+   private final long broadcastBytes;
+   private final long cacheHits;
+   private final long cacheMisses;
+
+   public WorkCounters(EvaluationStatistics evaluation, long broadcastCount, long broadcastBytes, long cacheHits, long cacheMisses) {
+      this.evaluation = evaluation;
+      this.broadcastCount = broadcastCount;
+      this.broadcastBytes = broadcastBytes;
+      this.cacheHits = cacheHits;
+      this.cacheMisses = cacheMisses;
+   }
+
+   public static WorkCounters none() {
+      return new WorkCounters(new EvaluationStatistics(), 0, 0, 0, 0);
+   }
+
+   // the current totals of a manager
+   public static WorkCounters of(EvaluationStatistics evaluation, List<BroadcastStatistics> broadcasts, FitnessCache<?> fitnessCache) {
+      long broadcastCount = 0;
+      long broadcastBytes = 0;
+      for(BroadcastStatistics statistics : broadcasts) {
+         broadcastCount += statistics.getBroadcastCount();
+         broadcastBytes += statistics.getBytesShipped();
+      }
+      return new WorkCounters(evaluation.copy(), broadcastCount, broadcastBytes, fitnessCache.getHitCount(), fitnessCache.getMissCount());
+   }
+
+   // the work done since the earlier totals of the same manager were taken
+   public WorkCounters since(WorkCounters earlier) {
+      return new WorkCounters(evaluation.since(earlier.evaluation), broadcastCount - earlier.broadcastCount,
+              broadcastBytes - earlier.broadcastBytes, cacheHits - earlier.cacheHits, cacheMisses - earlier.cacheMisses);
+   }
+
+   public WorkCounters plus(WorkCounters other) {
+      return new WorkCounters(evaluation.plus(other.evaluation), broadcastCount + other.broadcastCount,
+              broadcastBytes + other.broadcastBytes, cacheHits + other.cacheHits, cacheMisses + other.cacheMisses);
+   }
+
+   public EvaluationStatistics getEvaluation() {
+      return evaluation;
+   }
+
+   public long getBroadcastCount() {
+      return broadcastCount;
+   }
+
+   public long getBroadcastBytes() {
+      return broadcastBytes;
+   }
+
+   public long getCacheHits() {
+      return cacheHits;
+   }
+
+   public long getCacheMisses() {
+      return cacheMisses;
+   }
+}
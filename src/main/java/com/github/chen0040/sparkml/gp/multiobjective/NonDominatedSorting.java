@@ -0,0 +1,136 @@
+package com.github.chen0040.sparkml.gp.multiobjective;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * NSGA-II ranking of objective vectors, all of which are minimized: the fast non-dominated sort assigns every vector the
+ * index of its Pareto front and the crowding distance measures how isolated a vector is within its front. NaN and
+ * infinite objective values, e.g. the error of a program which overflows, count as the worst value.
+ */
+public class NonDominatedSorting {
+
+   public static boolean dominates(double[] a, double[] b) {
+      boolean better = false;
+      for(int i=0; i < a.length; ++i) {
+         double ai = worstIfUndefined(a[i]);
+         double bi = worstIfUndefined(b[i]);
+         if(ai > bi) {
+            return false;
+         }
+         if(ai < bi) {
+            better = true;
+         }
+      }
+      return better;
+   }
+
+   // NaN and infinite values compare as +Inf, which no finite value is worse than
+   private static double worstIfUndefined(double value) {
+      return Double.isNaN(value) || Double.isInfinite(value) ? Double.POSITIVE_INFINITY : value;
+   }
+
+   private static double[][] worstIfUndefined(double[][] objectives) {
+      double[][] mapped = new double[objectives.length][];
+      for(int i=0; i < objectives.length; ++i) {
+         mapped[i] = new double[objectives[i].length];
+         for(int m=0; m < mapped[i].length; ++m) {
+            mapped[i][m] = worstIfUndefined(objectives[i][m]);
+         }
+      }
+      return mapped;
+   }
+
+   // the front of every vector, 0 being the non-dominated front
+   public static int[] ranks(double[][] objectives) {
+      int n = objectives.length;
+      int[] ranks = new int[n];
+      int[] dominatorCounts = new int[n];
+      List<List<Integer>> dominated = new ArrayList<>();
+      for(int i=0; i < n; ++i) {
+         dominated.add(new ArrayList<>());
+      }
+      for(int i=0; i < n; ++i) {
+         for(int j = i + 1; j < n; ++j) {
+            if(dominates(objectives[i], objectives[j])) {
+               dominated.get(i).add(j);
+               dominatorCounts[j]++;
+            } else if(dominates(objectives[j], objectives[i])) {
+               dominated.get(j).add(i);
+               dominatorCounts[i]++;
+            }
+         }
+      }
+
+      List<Integer> front = new ArrayList<>();
+      for(int i=0; i < n; ++i) {
+         if(dominatorCounts[i] == 0) {
+            front.add(i);
+         }
+      }
+      for(int rank = 0; !front.isEmpty(); ++rank) {
+         List<Integer> next = new ArrayList<>();
+         for(int i : front) {
+            ranks[i] = rank;
+            for(int j : dominated.get(i)) {
+               if(--dominatorCounts[j] == 0) {
+                  next.add(j);
+               }
+            }
+         }
+         front = next;
+      }
+      return ranks;
+   }
+
+   // crowding distance of every vector within its front; the extremes of every objective are infinitely far
+   public static double[] crowdingDistances(double[][] rawObjectives, int[] ranks) {
+      double[][] objectives = worstIfUndefined(rawObjectives);
+      int n = objectives.length;
+      double[] distances = new double[n];
+      if(n == 0) {
+         return distances;
+      }
+      int objectiveCount = objectives[0].length;
+      int maxRank = Arrays.stream(ranks).max().getAsInt();
+      for(int rank = 0; rank <= maxRank; ++rank) {
+         List<Integer> front = new ArrayList<>();
+         for(int i=0; i < n; ++i) {
+            if(ranks[i] == rank) {
+               front.add(i);
+            }
+         }
+         for(int m=0; m < objectiveCount; ++m) {
+            final int objective = m;
+            front.sort(Comparator.comparingDouble(i -> objectives[i][objective]));
+            double min = objectives[front.get(0)][objective];
+            double max = objectives[front.get(front.size() - 1)][objective];
+            distances[front.get(0)] = Double.POSITIVE_INFINITY;
+            distances[front.get(front.size() - 1)] = Double.POSITIVE_INFINITY;
+            if(!(max > min) || Double.isInfinite(max - min)) {
+               continue;
+            }
+            for(int k = 1; k < front.size() - 1; ++k) {
+               distances[front.get(k)] += (objectives[front.get(k + 1)][objective] - objectives[front.get(k - 1)][objective]) / (max - min);
+            }
+         }
+      }
+      return distances;
+   }
+
+   // single costs which order the vectors like the crowded-comparison operator of NSGA-II (lower front first, then larger
+   // crowding distance), so that the cost-based selection and replacement of the populations perform NSGA-II selection
+   public static double[] selectionCosts(double[][] objectives) {
+      int[] ranks = ranks(objectives);
+      double[] distances = crowdingDistances(objectives, ranks);
+      double[] costs = new double[objectives.length];
+      for(int i=0; i < costs.length; ++i) {
+         costs[i] = ranks[i] + 0.5 / (1.0 + distances[i]);
+      }
+      return costs;
+   }
+}
@@ -0,0 +1,82 @@
+package com.github.chen0040.sparkml.gp.multiobjective;
+
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+
+
+/**
+ * Objective vectors of the programs of a population together with their NSGA-II ranking. A vector is computed once per
+ * program and forgotten as soon as the program leaves the population, so the memory stays proportional to the population.
+ */
+public class ObjectiveRanking<P> implements Serializable {
+
+   private static final long serialVersionUID = -8297410655148367432L;
+
+   private Map<P, double[]> vectors = new IdentityHashMap<>();
+
+   private List<P> paretoFront = new ArrayList<>();
+
+   // ranks the members together with the new programs, evaluating the objectives of every program without a vector in one
+   // call, and returns the selection cost of each of them
+   public Map<P, Double> rank(List<P> members, List<P> programs, Function<List<P>, double[][]> objectiveEvaluator) {
+      Map<P, double[]> ranked = new IdentityHashMap<>();
+      List<P> union = new ArrayList<>();
+      List<P> missing = new ArrayList<>();
+      for(List<P> list : Arrays.asList(members, programs)) {
+         for(P program : list) {
+            if(ranked.containsKey(program)) {
+               continue;
+            }
+            double[] vector = vectors.get(program);
+            ranked.put(program, vector);
+            union.add(program);
+            if(vector == null) {
+               missing.add(program);
+            }
+         }
+      }
+
+      if(!missing.isEmpty()) {
+         double[][] values = objectiveEvaluator.apply(missing);
+         for(int i=0; i < missing.size(); ++i) {
+            ranked.put(missing.get(i), values[i]);
+         }
+      }
+      vectors = ranked;
+
+      double[][] matrix = new double[union.size()][];
+      for(int i=0; i < union.size(); ++i) {
+         matrix[i] = ranked.get(union.get(i));
+      }
+      double[] costs = NonDominatedSorting.selectionCosts(matrix);
+
+      Map<P, Double> selectionCosts = new IdentityHashMap<>();
+      List<P> front = new ArrayList<>();
+      for(int i=0; i < union.size(); ++i) {
+         selectionCosts.put(union.get(i), costs[i]);
+         if(costs[i] < 1.0) {
+            front.add(union.get(i));
+         }
+      }
+      front.sort(Comparator.comparingDouble(program -> ranked.get(program)[0]));
+      paretoFront = front;
+      return selectionCosts;
+   }
+
+   // objective values of a ranked program, or null
+   public double[] getObjectiveValues(P program) {
+      return vectors.get(program);
+   }
+
+   // the non-dominated programs of the last ranking, by increasing first objective
+   public List<P> getParetoFront() {
+      return paretoFront;
+   }
+
+   public void clear() {
+      vectors = new IdentityHashMap<>();
+      paretoFront = new ArrayList<>();
+   }
+}
@@ -0,0 +1,14 @@
+package com.github.chen0040.sparkml.gp.scoring;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+
+import java.io.Serializable;
+
+
+/**
+ * Runs a fitted model on one observation, writing the predicted outputs into it.
+ */
+public interface ModelExecutor<P> extends Serializable {
+   void execute(P model, BasicObservation observation);
+}
@@ -0,0 +1,107 @@
+package com.github.chen0040.sparkml.gp.scoring;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.evaluation.ObservationCostEvaluator;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * Scores a fitted model over an rdd without collecting it: the serialized model is broadcast once, every partition
+ * deserializes its own copy (the model keeps its registers in itself) and runs it on a single reused buffer, so the
+ * input observations are never modified. The predictions are produced lazily, one partition at a time, and keep the
+ * order and partitioning of the input. Each manager keeps one instance, which holds the broadcast of the model it
+ * scored last.
+ */
+public class ModelScoring implements Serializable {
+
+   private static final long serialVersionUID = 3188526473096715820L;
+
+   private transient Broadcast<byte[]> modelBroadcast;
+
+   // a null cost evaluator skips the per-row cost; otherwise the evaluator runs the model itself, as during training
+   public <P extends Serializable> JavaRDD<Prediction> transform(JavaRDD<BasicObservation> observations, P model, ModelExecutor<P> executor, ObservationCostEvaluator<P> costEvaluator) {
+      Broadcast<byte[]> modelBroadcast = broadcast(JavaSparkContext.fromSparkContext(observations.context()), JavaSerialization.serialize(model));
+
+      return observations.mapPartitionsWithIndex((partitionIndex, rows) -> {
+         P copy = JavaSerialization.deserialize(modelBroadcast.value());
+         return new PredictionIterator<>(rows, copy, executor, costEvaluator);
+      }, true);
+   }
+
+   // scoring the same model again reuses its broadcast; another model replaces it, and the previous broadcast is
+   // unpersisted from the executors rather than destroyed, so that predictions of the previous model which are not
+   // materialized yet can still fetch it from the driver
+   private synchronized Broadcast<byte[]> broadcast(JavaSparkContext context, byte[] serializedModel) {
+      if(modelBroadcast != null && Arrays.equals(modelBroadcast.value(), serializedModel)) {
+         return modelBroadcast;
+      }
+      if(modelBroadcast != null) {
+         modelBroadcast.unpersist(false);
+      }
+      modelBroadcast = context.broadcast(serializedModel);
+      return modelBroadcast;
+   }
+
+   // destroys the broadcast of the last model; its predictions can no longer be computed afterwards
+   public synchronized void release() {
+      if(modelBroadcast != null) {
+         modelBroadcast.destroy();
+         modelBroadcast = null;
+      }
+   }
+
+   private static class PredictionIterator<P> implements Iterator<Prediction> {
+      private final Iterator<BasicObservation> rows;
+      private final P model;
+      private final ModelExecutor<P> executor;
+      private final ObservationCostEvaluator<P> costEvaluator;
+      private BasicObservation buffer;
+
+      PredictionIterator(Iterator<BasicObservation> rows, P model, ModelExecutor<P> executor, ObservationCostEvaluator<P> costEvaluator) {
+         this.rows = rows;
+         this.model = model;
+         this.executor = executor;
+         this.costEvaluator = costEvaluator;
+      }
+
+      @Override
+      public boolean hasNext() {
+         return rows.hasNext();
+      }
+
+      @Override
+      public Prediction next() {
+         BasicObservation row = rows.next();
+         if(buffer == null || buffer.inputCount() != row.inputCount() || buffer.outputCount() != row.outputCount()) {
+            buffer = new BasicObservation(row.inputCount(), row.outputCount());
+         }
+         for(int i=0; i < row.inputCount(); ++i) {
+            buffer.setInput(i, row.getInput(i));
+         }
+         for(int i=0; i < row.outputCount(); ++i) {
+            buffer.setOutput(i, row.getOutput(i));
+         }
+
+         double cost = Double.NaN;
+         if(costEvaluator == null) {
+            executor.execute(model, buffer);
+         } else {
+            cost = costEvaluator.evaluate(model, buffer);
+         }
+
+         double[] outputs = new double[buffer.outputCount()];
+         for(int i=0; i < outputs.length; ++i) {
+            outputs[i] = buffer.getPredictedOutput(i);
+         }
+         return new Prediction(outputs, cost);
+      }
+   }
+}
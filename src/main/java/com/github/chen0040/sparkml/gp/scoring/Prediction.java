@@ -0,0 +1,48 @@
+package com.github.chen0040.sparkml.gp.scoring;
+
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * The predicted outputs of a fitted model for one observation, plus the cost of the observation when it was requested.
+ */
+public class Prediction implements Serializable {
+
+   private static final long serialVersionUID = 4870396524117780163L;
+
+   private final double[] outputs;
+   private final double cost;
+
+   public Prediction(double[] outputs, double cost) {
+      this.outputs = outputs;
+      this.cost = cost;
+   }
+
+   public double[] getOutputs() {
+      return outputs;
+   }
+
+   public double getOutput(int index) {
+      return outputs[index];
+   }
+
+   public int outputCount() {
+      return outputs.length;
+   }
+
+   // NaN unless the per-row cost was requested
+   public double getCost() {
+      return cost;
+   }
+
+   public boolean hasCost() {
+      return !Double.isNaN(cost);
+   }
+
+   @Override
+   public String toString() {
+      return "Prediction{outputs=" + Arrays.toString(outputs) + ", cost=" + cost + "}";
+   }
+}
@@ -0,0 +1,105 @@
+package com.github.chen0040.sparkml.gp.serialization;
+
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.compiler.CompactEncoding;
+import com.github.chen0040.sparkml.gp.compiler.CompiledLgpProgram;
+import com.github.chen0040.sparkml.gp.compiler.CompiledSolution;
+import com.github.chen0040.sparkml.gp.compiler.FusedSolution;
+import com.github.chen0040.sparkml.gp.compiler.SemanticSolution;
+import com.github.chen0040.sparkml.gp.compiler.SubtreeCacheStatistics;
+import com.github.chen0040.sparkml.gp.compiler.VectorizedLgpProgram;
+import com.github.chen0040.sparkml.gp.data.DatasetDescriptor;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.evaluation.CostAccumulator;
+import com.github.chen0040.sparkml.gp.scoring.Prediction;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoRegistrator;
+
+import java.util.ArrayList;
+
+
+/**
+ * Registers the classes which travel between the driver and the executors with kryo, writing compiled programs in their
+ * CompactEncoding. Registered classes are written as small ids instead of their class names.
+ */
+public class GpKryoRegistrator implements KryoRegistrator {
+
+   // switches the spark serializer to kryo with this registrator, e.g. before the JavaSparkContext is created
+   public static SparkConf configure(SparkConf conf) {
+      return conf.set("spark.serializer", "org.apache.spark.serializer.KryoSerializer")
+              .set("spark.kryo.registrator", GpKryoRegistrator.class.getName());
+   }
+
+   @Override
+   public void registerClasses(Kryo kryo) {
+      kryo.register(CompiledLgpProgram.class, new CompiledLgpProgramSerializer());
+      kryo.register(CompiledSolution.class, new CompiledSolutionSerializer());
+      kryo.register(VectorizedLgpProgram.class);
+      kryo.register(SemanticSolution.class);
+      kryo.register(FusedSolution.class);
+
+      kryo.register(com.github.chen0040.gp.lgp.program.Program.class);
+      kryo.register(com.github.chen0040.gp.lgp.program.Instruction.class);
+      kryo.register(com.github.chen0040.gp.treegp.program.Solution.class);
+      kryo.register(com.github.chen0040.gp.treegp.program.Program.class);
+      kryo.register(com.github.chen0040.gp.treegp.program.TreeNode.class);
+
+      kryo.register(BasicObservation.class);
+      kryo.register(ObservationBlock.class);
+      kryo.register(CostAccumulator.class);
+      kryo.register(DatasetDescriptor.class);
+      kryo.register(Prediction.class);
+      kryo.register(SubtreeCacheStatistics.class);
+
+      kryo.register(ArrayList.class);
+      kryo.register(int[].class);
+      kryo.register(int[][].class);
+      kryo.register(long[].class);
+      kryo.register(double[].class);
+      kryo.register(double[][].class);
+      kryo.register(boolean[].class);
+   }
+
+   /**
+    * Programs with delegated instructions carry library operators and fall back to java serialization.
+    */
+   public static class CompiledLgpProgramSerializer extends Serializer<CompiledLgpProgram> {
+
+      @Override
+      public void write(Kryo kryo, Output output, CompiledLgpProgram program) {
+         boolean compact = CompactEncoding.canEncode(program);
+         byte[] bytes = compact ? CompactEncoding.encode(program) : JavaSerialization.serialize(program);
+         output.writeBoolean(compact);
+         output.writeInt(bytes.length, true);
+         output.writeBytes(bytes);
+      }
+
+      @Override
+      public CompiledLgpProgram read(Kryo kryo, Input input, Class<CompiledLgpProgram> type) {
+         boolean compact = input.readBoolean();
+         byte[] bytes = input.readBytes(input.readInt(true));
+         return compact ? CompactEncoding.decodeLgp(bytes) : JavaSerialization.deserialize(bytes);
+      }
+   }
+
+   public static class CompiledSolutionSerializer extends Serializer<CompiledSolution> {
+
+      @Override
+      public void write(Kryo kryo, Output output, CompiledSolution solution) {
+         byte[] bytes = CompactEncoding.encode(solution);
+         output.writeInt(bytes.length, true);
+         output.writeBytes(bytes);
+      }
+
+      @Override
+      public CompiledSolution read(Kryo kryo, Input input, Class<CompiledSolution> type) {
+         return CompactEncoding.decodeTreeGp(input.readBytes(input.readInt(true)));
+      }
+   }
+}
@@ -0,0 +1,282 @@
+package com.github.chen0040.sparkml.gp.streaming;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.WindowType;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * The most recent batches of a stream as primitive blocks, oldest first. The window never holds more than maxBatchCount
+ * batches nor, beyond its newest batch, more than maxRowCount rows; a batch larger than maxRowCount is sampled down.
+ *
+ * Batches given by add() are kept on the driver and evaluated in the current JVM. Batches given by cache() stay on the
+ * cluster as cached block rdds, unpersisted when they leave the window, and the window is then evaluated by spark jobs
+ * over blockRdd().
+ */
+public class ObservationWindow implements Serializable {
+
+   private static final long serialVersionUID = -2470135880953541746L;
+
+   private WindowType type = WindowType.Sliding;
+
+   private int maxBatchCount = 10;
+
+   private long maxRowCount = 100000;
+
+   private double decay = 0.8;
+
+   private double minWeight = 0.01;
+
+   private long seed = 42L;
+
+   private final Deque<Batch> batches = new ArrayDeque<>();
+
+   private long rowCount = 0;
+
+   private long batchesSeen = 0;
+
+   public WindowType getType() {
+      return type;
+   }
+
+   public void setType(WindowType type) {
+      this.type = type;
+   }
+
+   public int getMaxBatchCount() {
+      return maxBatchCount;
+   }
+
+   public void setMaxBatchCount(int maxBatchCount) {
+      this.maxBatchCount = maxBatchCount;
+   }
+
+   public long getMaxRowCount() {
+      return maxRowCount;
+   }
+
+   public void setMaxRowCount(long maxRowCount) {
+      this.maxRowCount = maxRowCount;
+   }
+
+   public double getDecay() {
+      return decay;
+   }
+
+   // factor applied to the weight of every batch each time a newer batch arrives; used by the Decayed window
+   public void setDecay(double decay) {
+      this.decay = decay;
+   }
+
+   public double getMinWeight() {
+      return minWeight;
+   }
+
+   // batches of the Decayed window whose weight falls below this are dropped
+   public void setMinWeight(double minWeight) {
+      this.minWeight = minWeight;
+   }
+
+   public long getSeed() {
+      return seed;
+   }
+
+   // seeds the sampling of oversized batches
+   public void setSeed(long seed) {
+      this.seed = seed;
+   }
+
+   // collects the batch to the driver, drawing a sample of maxRowCount rows first if it is larger
+   public void add(JavaRDD<BasicObservation> batch) {
+      long count = batch.count();
+      if(count > maxRowCount) {
+         add(batch.takeSample(false, (int) maxRowCount, seed + batchesSeen));
+      } else {
+         add(batch.collect());
+      }
+   }
+
+   public void add(List<BasicObservation> batch) {
+      if(batch.size() > maxRowCount) {
+         batch = reservoirSample(batch, (int) maxRowCount, new Random(seed + batchesSeen));
+      }
+      ObservationBlock block = ObservationBlock.pack(batch);
+      push(new Batch(block, null, block.size(), 1));
+   }
+
+   // keeps the batch on the cluster as blocks cached at the storage level, sampled down to about maxRowCount rows if it is
+   // larger; counting the batch and loading the cache take one job each
+   public void cache(JavaRDD<BasicObservation> batch, StorageLevel storageLevel) {
+      long count = batch.count();
+      if(count > maxRowCount) {
+         batch = batch.sample(false, (double) maxRowCount / count, seed + batchesSeen);
+      }
+      JavaRDD<ObservationBlock> blocks = ObservationBlock.pack(batch).persist(storageLevel);
+      long size = (long) blocks.mapToDouble(block -> (double) block.size()).sum();
+      push(new Batch(null, blocks, size, blocks.partitions().size()));
+   }
+
+   private void push(Batch batch) {
+      batchesSeen++;
+      batches.addLast(batch);
+      rowCount += batch.size;
+
+      while(batches.size() > 1 && (batches.size() > maxBatchCount || rowCount > maxRowCount || weightOf(0) < minWeight)) {
+         Batch dropped = batches.removeFirst();
+         rowCount -= dropped.size;
+         dropped.release();
+      }
+   }
+
+   private static List<BasicObservation> reservoirSample(List<BasicObservation> rows, int size, Random random) {
+      List<BasicObservation> sample = new ArrayList<>(rows.subList(0, size));
+      for(int i = size; i < rows.size(); ++i) {
+         int slot = random.nextInt(i + 1);
+         if(slot < size) {
+            sample.set(slot, rows.get(i));
+         }
+      }
+      return sample;
+   }
+
+   // weight of the batch at the given position, counted from the oldest
+   private double weightOf(int position) {
+      if(type == WindowType.Sliding) {
+         return 1.0;
+      }
+      return Math.pow(decay, batches.size() - 1 - position);
+   }
+
+   // one block per batch, oldest first, for a window without batches on the cluster
+   public List<ObservationBlock> getBatches() {
+      if(isDistributed()) {
+         throw new IllegalStateException("The window holds batches cached on the cluster, see blockRdd()");
+      }
+      List<ObservationBlock> blocks = new ArrayList<>();
+      for(Batch batch : batches) {
+         blocks.add(batch.block);
+      }
+      return blocks;
+   }
+
+   // true when a batch of the window is cached on the cluster
+   public boolean isDistributed() {
+      for(Batch batch : batches) {
+         if(batch.blocks != null) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   // the union of the batches, oldest first, for a distributed window; batches added on the driver become one partition
+   public JavaRDD<ObservationBlock> blockRdd() {
+      JavaSparkContext context = null;
+      for(Batch batch : batches) {
+         if(batch.blocks != null) {
+            context = JavaSparkContext.fromSparkContext(batch.blocks.context());
+            break;
+         }
+      }
+      if(context == null) {
+         throw new IllegalStateException("The window holds no batches cached on the cluster, see getBatches()");
+      }
+      List<JavaRDD<ObservationBlock>> rdds = new ArrayList<>();
+      for(Batch batch : batches) {
+         rdds.add(batch.blocks != null ? batch.blocks : context.parallelize(Collections.singletonList(batch.block), 1));
+      }
+      return context.union(rdds.get(0), rdds.subList(1, rdds.size()));
+   }
+
+   // weight of every partition of blockRdd(), or null when the batches weigh the same
+   public double[] partitionWeights() {
+      if(type == WindowType.Sliding) {
+         return null;
+      }
+      List<Double> weights = new ArrayList<>();
+      int position = 0;
+      for(Batch batch : batches) {
+         for(int i=0; i < batch.partitionCount; ++i) {
+            weights.add(weightOf(position));
+         }
+         position++;
+      }
+      double[] partitionWeights = new double[weights.size()];
+      for(int i=0; i < partitionWeights.length; ++i) {
+         partitionWeights[i] = weights.get(i);
+      }
+      return partitionWeights;
+   }
+
+   // weight of every batch in the order of getBatches(), or null when the batches weigh the same
+   public double[] weights() {
+      if(type == WindowType.Sliding) {
+         return null;
+      }
+      double[] weights = new double[batches.size()];
+      for(int i=0; i < weights.length; ++i) {
+         weights[i] = weightOf(i);
+      }
+      return weights;
+   }
+
+   // number of batches added since the window was created, including the dropped ones
+   public long getBatchesSeen() {
+      return batchesSeen;
+   }
+
+   public int batchCount() {
+      return batches.size();
+   }
+
+   public long rowCount() {
+      return rowCount;
+   }
+
+   public void clear() {
+      for(Batch batch : batches) {
+         batch.release();
+      }
+      batches.clear();
+      rowCount = 0;
+   }
+
+   // a batch either as one block on the driver or as cached blocks on the cluster
+   private static class Batch implements Serializable {
+
+      private static final long serialVersionUID = 8214071865213140296L;
+
+      private final ObservationBlock block;
+
+      private final transient JavaRDD<ObservationBlock> blocks;
+
+      private final long size;
+
+      private final int partitionCount;
+
+      private Batch(ObservationBlock block, JavaRDD<ObservationBlock> blocks, long size, int partitionCount) {
+         this.block = block;
+         this.blocks = blocks;
+         this.size = size;
+         this.partitionCount = partitionCount;
+      }
+
+      private void release() {
+         if(blocks != null) {
+            blocks.unpersist();
+         }
+      }
+   }
+}
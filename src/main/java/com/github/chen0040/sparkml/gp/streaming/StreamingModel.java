@@ -0,0 +1,126 @@
+package com.github.chen0040.sparkml.gp.streaming;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.evolution.SparkGP;
+import com.github.chen0040.sparkml.gp.evolution.SparkPopulation;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Keeps one population alive over an unbounded stream of micro-batches, e.g. the rdds of a DStream handed over by
+ * foreachRDD or the batches of a local iterator. Every batch enters a bounded observation window, the population is
+ * re-evaluated against the window and evolved for a few generations; the maxGeneration of the manager does not apply.
+ * The generation listeners of the manager receive one event per batch. On the spark backend the window stays cached on
+ * the cluster, see ObservationWindow. SparkLGPStreamingModel and SparkTreeGPStreamingModel fix the candidate and
+ * manager types.
+ */
+public class StreamingModel<P, M extends SparkGP<P>> {
+
+   private final M manager;
+
+   private final ObservationWindow window = new ObservationWindow();
+
+   private int generationsPerBatch = 5;
+
+   private SparkPopulation<P> population;
+
+   private GenerationTracker tracker;
+
+   private volatile P best;
+
+   public StreamingModel(M manager) {
+      this.manager = manager;
+   }
+
+   public M getManager() {
+      return manager;
+   }
+
+   // sliding or decayed window, bounded by batch and row counts
+   public ObservationWindow getWindow() {
+      return window;
+   }
+
+   public int getGenerationsPerBatch() {
+      return generationsPerBatch;
+   }
+
+   public void setGenerationsPerBatch(int generationsPerBatch) {
+      this.generationsPerBatch = generationsPerBatch;
+   }
+
+   public SparkPopulation<P> getPopulation() {
+      return population;
+   }
+
+   // the best candidate on the window after the latest batch, or null before the first batch; it is a copy which
+   // training never touches, so it can be used for scoring while the next batch is being processed
+   public P getBest() {
+      return best;
+   }
+
+   // the batch stays cached on the cluster unless the backend of the manager is Local, or Auto with a window small enough
+   // for the local backend
+   public synchronized P update(JavaRDD<BasicObservation> batch) {
+      EvaluationBackendType backendType = manager.getEvaluationBackend();
+      if(backendType == EvaluationBackendType.Local || backendType == EvaluationBackendType.Auto && window.getMaxRowCount() <= manager.getLocalRowThreshold()) {
+         window.add(batch);
+      } else {
+         window.cache(batch, manager.getStorageLevel());
+      }
+      return evolve();
+   }
+
+   public synchronized P update(List<BasicObservation> batch) {
+      window.add(batch);
+      return evolve();
+   }
+
+   // trains on every batch of the source until it is exhausted
+   public P fit(Iterator<List<BasicObservation>> batches) {
+      while(batches.hasNext()) {
+         update(batches.next());
+      }
+      return best;
+   }
+
+   private P evolve() {
+      if(window.isDistributed()) {
+         manager.setObservationBlockRdd(window.blockRdd(), window.partitionWeights());
+      } else {
+         manager.setLocalObservationBlocks(window.getBatches(), window.weights());
+      }
+      if(population == null) {
+         tracker = manager.newGenerationTracker();
+         tracker.start();
+         population = manager.newPopulation();
+         population.initialize();
+      } else {
+         // the costs of the members were measured on the previous window
+         population.reevaluate();
+      }
+
+      for(int i=0; i < generationsPerBatch; ++i) {
+         population.evolve();
+      }
+
+      P candidate = null;
+      for(P member : population.getMembers()) {
+         if(candidate == null || Double.compare(manager.costOf(member), manager.costOf(candidate)) < 0) {
+            candidate = member;
+         }
+      }
+      best = manager.copyOf(candidate);
+
+      // the best-so-far of the population may have been measured on batches which left the window, so the event reports
+      // the best on the current window instead
+      manager.endGeneration(tracker, population.getCurrentGeneration(), best, population.getMembers());
+      return best;
+   }
+}
@@ -0,0 +1,24 @@
+package com.github.chen0040.sparkml.gp.treegp;
+
+
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.island.IslandModel;
+
+
+/**
+ * Island model over SparkTreeGP populations.
+ */
+public class SparkTreeGPIslandModel extends IslandModel<Solution, SparkTreeGP> {
+
+   private static final long serialVersionUID = 3907461825529173064L;
+
+   public SparkTreeGPIslandModel(SparkTreeGP manager) {
+      super(manager);
+   }
+
+   // the best solution found by any of the islands so far
+   public Solution getGlobalBestSolution() {
+      return getGlobalBest();
+   }
+}
@@ -0,0 +1,112 @@
+package com.github.chen0040.sparkml.gp.treegp;
+
+
+import com.github.chen0040.gp.treegp.TreeGP;
+import com.github.chen0040.gp.treegp.gp.Population;
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.evolution.GenerationBatch;
+import com.github.chen0040.sparkml.gp.evolution.PopulationSnapshot;
+import com.github.chen0040.sparkml.gp.evolution.SparkPopulation;
+
+import java.util.List;
+
+
+/**
+ * Population which evaluates the initial solutions and the offspring of every generation with a single spark job.
+ */
+public class SparkTreeGPPopulation extends Population implements SparkPopulation<Solution> {
+
+   private final SparkTreeGP sparkManager;
+
+   private final GenerationBatch<Solution> batch;
+
+   public SparkTreeGPPopulation(SparkTreeGP manager) {
+      super(manager);
+      this.sparkManager = manager;
+      this.batch = new GenerationBatch<>(manager);
+   }
+
+   public SparkTreeGP getSparkManager() {
+      return sparkManager;
+   }
+
+   @Override
+   public void initialize() {
+      batch.step(getSolutions(), 0, true, super::initialize);
+   }
+
+   @Override
+   public void evolve() {
+      batch.step(getSolutions(), getCurrentGeneration(), false, super::evolve);
+   }
+
+   @Override
+   public List<Solution> breed() {
+      if(batch.isInitialized()) {
+         return batch.breed(getSolutions(), getCurrentGeneration(), false, super::evolve);
+      }
+      return batch.breed(getSolutions(), 0, true, super::initialize);
+   }
+
+   @Override
+   public void complete(double[] costs) {
+      batch.complete(getSolutions(), costs);
+   }
+
+   @Override
+   public int getCurrentGeneration() {
+      return batch.generation(super.getCurrentGeneration());
+   }
+
+   @Override
+   public boolean isTerminated() {
+      return getCurrentGeneration() >= sparkManager.getMaxGeneration();
+   }
+
+   @Override
+   public void evaluate(TreeGP manager, List<Solution> solutions) {
+      batch.prefetch(getSolutions(), solutions);
+      super.evaluate(manager, solutions);
+   }
+
+   @Override
+   public Solution getGlobalBestSolution() {
+      return batch.globalBest(super.getGlobalBestSolution());
+   }
+
+   @Override
+   public double getCostInCurrentGeneration() {
+      return batch.bestCost(getSolutions());
+   }
+
+   @Override
+   public List<Solution> getMembers() {
+      return getSolutions();
+   }
+
+   @Override
+   public Solution getGlobalBest() {
+      return getGlobalBestSolution();
+   }
+
+   @Override
+   public void immigrate(List<Solution> immigrants) {
+      batch.immigrate(getSolutions(), getCurrentGeneration(), immigrants);
+   }
+
+   @Override
+   public void reevaluate() {
+      batch.reevaluate(getSolutions(), getCurrentGeneration());
+   }
+
+   @Override
+   public PopulationSnapshot<Solution> snapshot() {
+      return batch.snapshot(getSolutions(), getCurrentGeneration(), getGlobalBestSolution());
+   }
+
+   @Override
+   public void restore(PopulationSnapshot<Solution> snapshot) {
+      batch.restore(getSolutions(), super.getCurrentGeneration(), snapshot);
+   }
+}
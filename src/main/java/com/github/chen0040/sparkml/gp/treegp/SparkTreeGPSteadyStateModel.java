@@ -0,0 +1,22 @@
+package com.github.chen0040.sparkml.gp.treegp;
+
+
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.island.SteadyStateModel;
+
+
+/**
+ * Steady-state deme model over SparkTreeGP populations.
+ */
+public class SparkTreeGPSteadyStateModel extends SteadyStateModel<Solution, SparkTreeGP> {
+
+   public SparkTreeGPSteadyStateModel(SparkTreeGP manager) {
+      super(manager);
+   }
+
+   // the best solution found by any of the demes
+   public Solution getGlobalBestSolution() {
+      return getGlobalBest();
+   }
+}
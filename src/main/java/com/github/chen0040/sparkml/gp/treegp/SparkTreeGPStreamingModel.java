@@ -0,0 +1,22 @@
+package com.github.chen0040.sparkml.gp.treegp;
+
+
+import com.github.chen0040.gp.treegp.program.Solution;
+import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.streaming.StreamingModel;
+
+
+/**
+ * Streaming model over a single SparkTreeGP population.
+ */
+public class SparkTreeGPStreamingModel extends StreamingModel<Solution, SparkTreeGP> {
+
+   public SparkTreeGPStreamingModel(SparkTreeGP manager) {
+      super(manager);
+   }
+
+   // the best solution on the window after the latest batch, see getBest()
+   public Solution getBestSolution() {
+      return getBest();
+   }
+}
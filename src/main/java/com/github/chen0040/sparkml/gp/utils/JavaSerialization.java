@@ -0,0 +1,55 @@
+package com.github.chen0040.sparkml.gp.utils;
+
+
+import java.io.*;
+
+
+/**
+ * Java serialization helpers used to copy candidates and to measure how many bytes they occupy on the wire.
+ */
+public class JavaSerialization {
+
+   public static byte[] serialize(Serializable value) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      write(value, bytes);
+      return bytes.toByteArray();
+   }
+
+   @SuppressWarnings("unchecked")
+   public static <T> T deserialize(byte[] bytes) {
+      try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+         return (T) in.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+         throw new RuntimeException("Failed to deserialize " + bytes.length + " bytes", e);
+      }
+   }
+
+   // number of bytes written by java serialization, without keeping them
+   public static long serializedSize(Serializable value) {
+      CountingOutputStream counter = new CountingOutputStream();
+      write(value, counter);
+      return counter.count;
+   }
+
+   private static void write(Serializable value, OutputStream stream) {
+      try(ObjectOutputStream out = new ObjectOutputStream(stream)) {
+         out.writeObject(value);
+      } catch (IOException e) {
+         throw new RuntimeException("Failed to serialize " + value.getClass().getName(), e);
+      }
+   }
+
+   private static class CountingOutputStream extends OutputStream {
+      private long count;
+
+      @Override
+      public void write(int b) {
+         count++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+         count += len;
+      }
+   }
+}
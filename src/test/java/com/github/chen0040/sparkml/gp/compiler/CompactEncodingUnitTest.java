@@ -0,0 +1,94 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.chen0040.gp.lgp.program.Instruction;
+import com.github.chen0040.sparkml.gp.serialization.GpKryoRegistrator;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class CompactEncodingUnitTest {
+
+   private static CompiledLgpProgram program() {
+      int[] opcodes = { CompiledLgpProgram.OP_MULTIPLY, CompiledLgpProgram.OP_IF_LESS_THAN, CompiledLgpProgram.OP_SUBTRACT, CompiledLgpProgram.OP_SINE };
+      int[] operands1 = { 0, 0, 1, 0 };
+      int[] operands2 = { -1, 1, 300, -2 };
+      int[] targets = { 1, 0, 0, 2 };
+      boolean[] conditionals = { false, true, false, false };
+      return new CompiledLgpProgram(301, opcodes, operands1, operands2, targets, conditionals, new double[] { 2.0, -0.5 }, new Instruction[opcodes.length]);
+   }
+
+   private static CompiledSolution solution() {
+      int[] opcodes = { CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_CONSTANT, CompiledSolution.OP_VARIABLE };
+      int[] arguments = { 0, 200, 0, 1 };
+      return new CompiledSolution(opcodes, arguments, new int[] { 0, 3, 4 }, new double[] { Math.PI });
+   }
+
+   private static void assertSameProgram(CompiledLgpProgram actual, CompiledLgpProgram expected) {
+      assertThat(actual.getRegisterCount()).isEqualTo(expected.getRegisterCount());
+      assertThat(actual.length()).isEqualTo(expected.length());
+      for(int i = 0; i < expected.length(); ++i) {
+         assertThat(actual.getOpcode(i)).isEqualTo(expected.getOpcode(i));
+         assertThat(actual.getOperand1(i)).isEqualTo(expected.getOperand1(i));
+         assertThat(actual.getOperand2(i)).isEqualTo(expected.getOperand2(i));
+         assertThat(actual.getTarget(i)).isEqualTo(expected.getTarget(i));
+         assertThat(actual.isConditional(i)).isEqualTo(expected.isConditional(i));
+      }
+      assertThat(actual.constantCount()).isEqualTo(expected.constantCount());
+      for(int i = 0; i < expected.constantCount(); ++i) {
+         assertThat(actual.getConstant(i)).isEqualTo(expected.getConstant(i));
+      }
+   }
+
+   private static void assertSameSolution(CompiledSolution actual, CompiledSolution expected) {
+      assertThat(actual.treeCount()).isEqualTo(expected.treeCount());
+      for(int tree = 0; tree < expected.treeCount(); ++tree) {
+         assertThat(actual.getTreeStart(tree)).isEqualTo(expected.getTreeStart(tree));
+         assertThat(actual.getTreeEnd(tree)).isEqualTo(expected.getTreeEnd(tree));
+      }
+      for(int node = 0; node < expected.length(); ++node) {
+         assertThat(actual.getOpcode(node)).isEqualTo(expected.getOpcode(node));
+         assertThat(actual.getArgument(node)).isEqualTo(expected.getArgument(node));
+      }
+      assertThat(actual.getConstant(0)).isEqualTo(expected.getConstant(0));
+   }
+
+   @Test
+   public void test_round_trips() {
+      assertSameProgram(CompactEncoding.decodeLgp(CompactEncoding.encode(program())), program());
+      assertSameSolution(CompactEncoding.decodeTreeGp(CompactEncoding.encode(solution())), solution());
+   }
+
+   @Test
+   public void test_java_serialization_writes_the_compact_form() {
+      Object program = JavaSerialization.deserialize(JavaSerialization.serialize(program()));
+      assertThat(program).isInstanceOf(CompiledLgpProgram.class);
+      assertSameProgram((CompiledLgpProgram) program, program());
+
+      SemanticSolution semantic = JavaSerialization.deserialize(JavaSerialization.serialize(new SemanticSolution(solution(), 1024)));
+      assertSameSolution(semantic.getCompiledSolution(), solution());
+   }
+
+   @Test
+   public void test_kryo_registrator() {
+      Kryo kryo = new Kryo();
+      new GpKryoRegistrator().registerClasses(kryo);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try(Output output = new Output(bytes)) {
+         kryo.writeClassAndObject(output, program());
+         kryo.writeClassAndObject(output, solution());
+      }
+      try(Input input = new Input(bytes.toByteArray())) {
+         assertSameProgram((CompiledLgpProgram) kryo.readClassAndObject(input), program());
+         assertSameSolution((CompiledSolution) kryo.readClassAndObject(input), solution());
+      }
+   }
+}
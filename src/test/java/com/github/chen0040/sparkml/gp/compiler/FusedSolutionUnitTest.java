@@ -0,0 +1,51 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class FusedSolutionUnitTest {
+
+   // (x0 + x1) * (x1 + x0), (x0 + x1) - 2 and x0 < 2 ? x1 : (x1 + x0)
+   private static CompiledSolution solution() {
+      int[] opcodes = {
+              CompiledSolution.OP_MULTIPLY, CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_SUBTRACT, CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_CONSTANT,
+              CompiledSolution.OP_IF_LESS_THAN, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_CONSTANT, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE };
+      int[] arguments = { 0, 0, 0, 1, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 1, 1, 0, 1, 0 };
+      return new CompiledSolution(opcodes, arguments, new int[] { 0, 7, 12, 19 }, new double[] { 2.0, 2.0 });
+   }
+
+   @Test
+   public void test_predicts_as_the_compiled_solution() {
+      FusedSolution fused = FusedSolution.fuse(solution());
+      for(int i = 0; i < 20; ++i) {
+         BasicObservation expected = new BasicObservation(2, 3);
+         BasicObservation actual = new BasicObservation(2, 3);
+         for(BasicObservation observation : new BasicObservation[] { expected, actual }) {
+            observation.setInput(0, i * 0.25);
+            observation.setInput(1, 3 - i);
+         }
+         solution().execute(expected);
+         fused.execute(actual);
+         for(int tree = 0; tree < 3; ++tree) {
+            assertThat(actual.getPredictedOutput(tree)).isEqualTo(expected.getPredictedOutput(tree));
+         }
+      }
+   }
+
+   @Test
+   public void test_computes_shared_subexpressions_once() {
+      FusedSolution fused = FusedSolution.fuse(solution());
+      assertThat(fused.treeCount()).isEqualTo(3);
+      assertThat(fused.getCompiledLength()).isEqualTo(19);
+      // x0, x1, x0 + x1, the product, 2, the difference and the conditional
+      assertThat(fused.size()).isEqualTo(7);
+   }
+}
@@ -0,0 +1,108 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class SemanticSolutionUnitTest {
+
+   // (x0 + x1) * (x1 + x0) and (x0 + x1) - 2
+   private static CompiledSolution solution() {
+      int[] opcodes = {
+              CompiledSolution.OP_MULTIPLY, CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_SUBTRACT, CompiledSolution.OP_ADD, CompiledSolution.OP_VARIABLE, CompiledSolution.OP_VARIABLE,
+              CompiledSolution.OP_CONSTANT };
+      int[] arguments = { 0, 0, 0, 1, 0, 1, 0, 0, 0, 0, 1, 0 };
+      return new CompiledSolution(opcodes, arguments, new int[] { 0, 7, 12 }, new double[] { 2.0 });
+   }
+
+   private static List<BasicObservation> rows(int count) {
+      List<BasicObservation> rows = new ArrayList<>();
+      for(int i = 0; i < count; ++i) {
+         BasicObservation observation = new BasicObservation(2, 2);
+         observation.setInput(0, i * 0.25);
+         observation.setInput(1, 3 - i);
+         rows.add(observation);
+      }
+      return rows;
+   }
+
+   @Test
+   public void test_predicts_as_the_compiled_solution() {
+      List<BasicObservation> rows = rows(20);
+      ObservationBlock block = ObservationBlock.pack(rows);
+      SemanticSolution semantic = new SemanticSolution(solution(), SubtreeCache.DEFAULT_CAPACITY);
+      semantic.beginBlock(block);
+
+      BasicObservation buffer = block.newBuffer();
+      for(int row = 0; row < block.size(); ++row) {
+         block.read(row, buffer);
+         semantic.execute(buffer);
+         solution().execute(rows.get(row));
+         assertThat(buffer.getPredictedOutput(0)).isEqualTo(rows.get(row).getPredictedOutput(0));
+         assertThat(buffer.getPredictedOutput(1)).isEqualTo(rows.get(row).getPredictedOutput(1));
+      }
+   }
+
+   @Test
+   public void test_reuses_shared_subtrees() {
+      SemanticSolution semantic = new SemanticSolution(solution(), SubtreeCache.DEFAULT_CAPACITY);
+      assertThat(semantic.getHash(1)).isEqualTo(semantic.getHash(4)).isEqualTo(semantic.getHash(8));
+      assertThat(semantic.getHash(7)).isNotEqualTo(semantic.getHash(0));
+
+      SubtreeCache cache = SubtreeCache.getInstance();
+      cache.clear();
+      ObservationBlock block = ObservationBlock.pack(rows(20));
+      semantic.beginBlock(block);
+      assertThat(cache.statistics("driver").getMisses()).isEqualTo(3);
+      assertThat(cache.statistics("driver").getHits()).isEqualTo(2);
+
+      new SemanticSolution(solution(), SubtreeCache.DEFAULT_CAPACITY).beginBlock(block);
+      assertThat(cache.statistics("driver").getMisses()).isEqualTo(3);
+      assertThat(cache.statistics("driver").getHits()).isEqualTo(4);
+      assertThat(cache.statistics("driver").getBytes()).isGreaterThan(3 * 20 * 8);
+   }
+
+   @Test
+   public void test_colliding_hashes_miss() {
+      SubtreeCache cache = SubtreeCache.getInstance();
+      cache.clear();
+      CompiledSolution solution = solution();
+      double[] vector = new double[] { 1, 2, 3 };
+      cache.put(7L, 42L, solution, 1, vector);
+      assertThat(cache.get(7L, 42L, solution, 4)).isSameAs(vector);
+      assertThat(cache.get(7L, 42L, solution, 7)).isNull();
+      assertThat(cache.get(7L, 42L, solution, 0)).isNull();
+      assertThat(cache.statistics("driver").getHits()).isEqualTo(1);
+      assertThat(cache.statistics("driver").getMisses()).isEqualTo(2);
+   }
+
+   @Test
+   public void test_samples_are_keyed_by_their_rows() {
+      ObservationBlock block = ObservationBlock.pack(rows(200));
+      ObservationBlock sample = block.sample(0.5, new Random(3));
+      assertThat(block.sample(0.5, new Random(3)).getId()).isEqualTo(sample.getId());
+      assertThat(block.sample(0.5, new Random(4)).getId()).isNotEqualTo(sample.getId());
+      assertThat(ObservationBlock.pack(rows(200)).sample(0.5, new Random(3)).getId()).isNotEqualTo(sample.getId());
+   }
+
+   @Test
+   public void test_evicts_beyond_capacity() {
+      SubtreeCache cache = SubtreeCache.getInstance();
+      cache.clear();
+      new SemanticSolution(solution(), 500).beginBlock(ObservationBlock.pack(rows(20)));
+      SubtreeCacheStatistics statistics = cache.statistics("driver");
+      assertThat(statistics.getBytes()).isLessThanOrEqualTo(500);
+      assertThat(statistics.getEvictions()).isGreaterThan(0);
+      cache.setCapacity(SubtreeCache.DEFAULT_CAPACITY);
+   }
+}
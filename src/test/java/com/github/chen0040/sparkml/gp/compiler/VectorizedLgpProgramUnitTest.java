@@ -0,0 +1,77 @@
+package com.github.chen0040.sparkml.gp.compiler;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.gp.lgp.program.Instruction;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class VectorizedLgpProgramUnitTest {
+
+   // r1 = r0 * 2; if(r0 < r1) r0 = r1 - r2; r2 = sin(r0); if(r2 < 0.5) if(r0 < r1) r0 = r0 + r2; r1 = cos(r2)
+   private static CompiledLgpProgram program() {
+      int[] opcodes = { CompiledLgpProgram.OP_MULTIPLY, CompiledLgpProgram.OP_IF_LESS_THAN, CompiledLgpProgram.OP_SUBTRACT,
+              CompiledLgpProgram.OP_SINE, CompiledLgpProgram.OP_IF_LESS_THAN, CompiledLgpProgram.OP_IF_LESS_THAN,
+              CompiledLgpProgram.OP_ADD, CompiledLgpProgram.OP_COSINE };
+      int[] operands1 = { 0, 0, 1, 0, 2, 0, 0, 2 };
+      int[] operands2 = { -1, 1, 2, 0, -2, 1, 2, 0 };
+      int[] targets = { 1, 0, 0, 2, 0, 0, 0, 1 };
+      boolean[] conditionals = { false, true, false, false, true, true, false, false };
+      return new CompiledLgpProgram(3, opcodes, operands1, operands2, targets, conditionals, new double[] { 2.0, 0.5 }, new Instruction[opcodes.length]);
+   }
+
+   private static List<BasicObservation> rows(int count) {
+      List<BasicObservation> rows = new ArrayList<>();
+      for(int i = 0; i < count; ++i) {
+         BasicObservation observation = new BasicObservation(2, 2);
+         observation.setInput(0, (i - count / 2) * 0.37);
+         observation.setInput(1, Math.cos(i));
+         rows.add(observation);
+      }
+      return rows;
+   }
+
+   @Test
+   public void test_predicts_as_the_compiled_program_across_chunks() {
+      List<BasicObservation> rows = rows(50);
+      ObservationBlock block = ObservationBlock.pack(rows);
+      VectorizedLgpProgram vectorized = new VectorizedLgpProgram(program(), 7);
+      vectorized.beginBlock(block);
+
+      BasicObservation buffer = block.newBuffer();
+      for(int row = 0; row < block.size(); ++row) {
+         block.read(row, buffer);
+         vectorized.execute(buffer);
+         program().execute(rows.get(row));
+         assertThat(buffer.getPredictedOutput(0)).isEqualTo(rows.get(row).getPredictedOutput(0));
+         assertThat(buffer.getPredictedOutput(1)).isEqualTo(rows.get(row).getPredictedOutput(1));
+      }
+   }
+
+   @Test
+   public void test_threads_sharing_one_instance_answer_from_their_own_block() throws Exception {
+      List<BasicObservation> rows = rows(50);
+      ObservationBlock first = ObservationBlock.pack(rows.subList(0, 25));
+      ObservationBlock second = ObservationBlock.pack(rows.subList(25, 50));
+      VectorizedLgpProgram vectorized = new VectorizedLgpProgram(program(), 7);
+
+      vectorized.beginBlock(first);
+      Thread other = new Thread(() -> vectorized.beginBlock(second));
+      other.start();
+      other.join();
+
+      BasicObservation buffer = first.newBuffer();
+      for(int row = 0; row < first.size(); ++row) {
+         first.read(row, buffer);
+         vectorized.execute(buffer);
+         program().execute(rows.get(row));
+         assertThat(buffer.getPredictedOutput(0)).isEqualTo(rows.get(row).getPredictedOutput(0));
+      }
+   }
+}
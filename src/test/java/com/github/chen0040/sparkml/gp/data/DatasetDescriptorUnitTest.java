@@ -0,0 +1,57 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+public class DatasetDescriptorUnitTest {
+
+   private static List<BasicObservation> rows(int from, int to) {
+      List<BasicObservation> rows = new ArrayList<>();
+      for(int i = from; i < to; ++i) {
+         BasicObservation observation = new BasicObservation(2, 1);
+         observation.setInput(0, i);
+         observation.setInput(1, -i);
+         observation.setOutput(0, i * 0.5);
+         rows.add(observation);
+      }
+      return rows;
+   }
+
+   @Test
+   public void test_rows_and_blocks_give_the_same_descriptor() {
+      DatasetDescriptor byRows = DatasetDescriptor.of(rows(0, 10).iterator());
+      DatasetDescriptor byBlocks = new DatasetDescriptor()
+              .merge(new DatasetDescriptor().add(ObservationBlock.pack(rows(0, 4))))
+              .merge(new DatasetDescriptor())
+              .merge(new DatasetDescriptor().add(ObservationBlock.pack(rows(4, 10))));
+
+      for(DatasetDescriptor descriptor : new DatasetDescriptor[] { byRows, byBlocks }) {
+         assertThat(descriptor.getRowCount()).isEqualTo(10);
+         assertThat(descriptor.getInputCount()).isEqualTo(2);
+         assertThat(descriptor.getOutputCount()).isEqualTo(1);
+         assertThat(descriptor.getInputMin(0)).isEqualTo(0.0);
+         assertThat(descriptor.getInputMax(0)).isEqualTo(9.0);
+         assertThat(descriptor.getInputMin(1)).isEqualTo(-9.0);
+         assertThat(descriptor.getOutputMax(0)).isEqualTo(4.5);
+      }
+   }
+
+   @Test
+   public void test_rejects_rows_of_different_shapes() {
+      List<BasicObservation> rows = rows(0, 3);
+      rows.add(new BasicObservation(3, 1));
+      DatasetDescriptor descriptor = DatasetDescriptor.of(rows.iterator());
+
+      assertThat(descriptor.isConsistent()).isFalse();
+      assertThatThrownBy(descriptor::validate).isInstanceOf(IllegalArgumentException.class);
+      assertThatThrownBy(new DatasetDescriptor()::validate).isInstanceOf(IllegalArgumentException.class);
+   }
+}
@@ -0,0 +1,50 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class MappedObservationStoreUnitTest {
+
+   private static List<BasicObservation> rows(int count, double offset) {
+      List<BasicObservation> rows = new ArrayList<>();
+      for(int i = 0; i < count; ++i) {
+         BasicObservation observation = new BasicObservation(1, 1);
+         observation.setInput(0, i + offset);
+         observation.setOutput(0, 2 * i);
+         rows.add(observation);
+      }
+      return rows;
+   }
+
+   @Test
+   public void test_rewritten_store_is_mapped_again() throws IOException {
+      String directory = Files.createTempDirectory("observations").toString();
+      MappedObservationStore store = MappedObservationStore.write(rows(10, 0).iterator(), directory);
+      assertThat(store.partition(0).getInput(3, 0)).isEqualTo(3.0);
+
+      MappedObservationStore rewritten = MappedObservationStore.write(rows(20, 0.5).iterator(), directory);
+      assertThat(rewritten.partition(0).size()).isEqualTo(20);
+      assertThat(rewritten.partition(0).getInput(3, 0)).isEqualTo(3.5);
+   }
+
+   @Test
+   public void test_closed_store_maps_on_next_use() throws IOException {
+      String directory = Files.createTempDirectory("observations").toString();
+      MappedObservationStore store = MappedObservationStore.write(rows(10, 0).iterator(), directory);
+      MappedObservationPartition partition = store.partition(0);
+      assertThat(store.partition(0)).isSameAs(partition);
+
+      store.close();
+      assertThat(store.partition(0)).isNotSameAs(partition);
+      assertThat(store.partition(0).getOutput(4, 0)).isEqualTo(8.0);
+   }
+}
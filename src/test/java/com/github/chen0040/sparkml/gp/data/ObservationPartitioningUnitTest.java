@@ -0,0 +1,25 @@
+package com.github.chen0040.sparkml.gp.data;
+
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class ObservationPartitioningUnitTest {
+
+   @Test
+   public void test_partition_count_follows_cores_and_rows() {
+      assertThat(ObservationPartitioning.partitionCount(8, 10000000L)).isEqualTo(16);
+      assertThat(ObservationPartitioning.partitionCount(8, 5000L)).isEqualTo(5);
+      assertThat(ObservationPartitioning.partitionCount(8, 10L)).isEqualTo(1);
+      assertThat(ObservationPartitioning.partitionCount(0, 10000000L)).isEqualTo(2);
+   }
+
+   @Test
+   public void test_detects_skewed_partitions() {
+      assertThat(ObservationPartitioning.isSkewed(new long[] { 100, 110, 90, 100 })).isFalse();
+      assertThat(ObservationPartitioning.isSkewed(new long[] { 1000, 10, 10, 10 })).isTrue();
+      assertThat(ObservationPartitioning.isSkewed(new long[] { 1000 })).isFalse();
+   }
+}
@@ -0,0 +1,122 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.commons.SparkContextFactory;
+import com.github.chen0040.sparkml.gp.data.MappedObservationStore;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class EvaluationBackendUnitTest {
+
+   @Test
+   public void test_local_and_spark_backends_produce_identical_costs() {
+      List<BasicObservation> data = new ArrayList<>();
+      for(int i=0; i < 1000; ++i) {
+         BasicObservation observation = new BasicObservation(1, 1);
+         double x = i * 0.01;
+         observation.setInput(0, x);
+         observation.setOutput(0, Math.sin(x));
+         data.add(observation);
+      }
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      JavaRDD<BasicObservation> rdd = context.parallelize(data, 4);
+
+      List<Double> weights = Arrays.asList(0.1, 0.5, 1.0, 2.0);
+      ObservationCostEvaluator<Double> evaluator = (weight, observation) -> Math.pow(weight * observation.getInput(0) - observation.getOutput(0), 2.0);
+
+      EvaluationBackend local = LocalEvaluationBackend.collect(rdd);
+      EvaluationBackend rows = new SparkEvaluationBackend(rdd, false);
+      EvaluationBackend blocks = new SparkEvaluationBackend(rdd, true);
+
+      for(double fraction : new double[] { 1.0, 0.3 }) {
+         double[] expected = local.evaluate(weights, evaluator, fraction, 42L).means();
+         assertThat(rows.evaluate(weights, evaluator, fraction, 42L).means()).containsExactly(expected);
+         assertThat(blocks.evaluate(weights, evaluator, fraction, 42L).means()).containsExactly(expected);
+      }
+
+      rows.release();
+      blocks.release();
+   }
+
+   @Test
+   public void test_mapped_backends_produce_the_costs_of_the_local_backend() throws IOException {
+      List<BasicObservation> data = new ArrayList<>();
+      for(int i=0; i < 1000; ++i) {
+         BasicObservation observation = new BasicObservation(1, 1);
+         double x = i * 0.01;
+         observation.setInput(0, x);
+         observation.setOutput(0, Math.cos(x));
+         data.add(observation);
+      }
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      JavaRDD<BasicObservation> rdd = context.parallelize(data, 4);
+      MappedObservationStore store = MappedObservationStore.write(rdd, Files.createTempDirectory("observations").toString());
+      assertThat(store.partitionRowCounts()).containsExactly(250L, 250L, 250L, 250L);
+
+      List<Double> weights = Arrays.asList(0.1, 0.5, 1.0, 2.0);
+      ObservationCostEvaluator<Double> evaluator = (weight, observation) -> Math.pow(weight * observation.getInput(0) - observation.getOutput(0), 2.0);
+
+      EvaluationBackend local = LocalEvaluationBackend.collect(rdd);
+      EvaluationBackend mapped = new MappedEvaluationBackend(store);
+      EvaluationBackend distributed = new MappedEvaluationBackend(store, context);
+      assertThat(mapped.descriptor().getRowCount()).isEqualTo(1000);
+      assertThat(distributed.descriptor().getInputMax(0)).isEqualTo(9.99);
+
+      for(double fraction : new double[] { 1.0, 0.3 }) {
+         double[] expected = local.evaluate(weights, evaluator, fraction, 42L).means();
+         assertThat(mapped.evaluate(weights, evaluator, fraction, 42L).means()).containsExactly(expected);
+         assertThat(distributed.evaluate(weights, evaluator, fraction, 42L).means()).containsExactly(expected);
+      }
+
+      distributed.release();
+   }
+
+   @Test
+   public void test_spark_backend_reuses_generation_broadcasts() {
+      List<BasicObservation> data = new ArrayList<>();
+      for(int i=0; i < 100; ++i) {
+         BasicObservation observation = new BasicObservation(1, 1);
+         observation.setInput(0, i);
+         observation.setOutput(0, 2 * i);
+         data.add(observation);
+      }
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkEvaluationBackend backend = new SparkEvaluationBackend(context.parallelize(data, 2), false);
+      ObservationCostEvaluator<Double> evaluator = (weight, observation) -> Math.abs(weight * observation.getInput(0) - observation.getOutput(0));
+
+      Double elite = 2.0;
+      Double child = 1.0;
+      double[] first = backend.evaluate(Arrays.asList(elite, child), evaluator, 1.0, 1L).means();
+      double[] finalist = backend.evaluate(Arrays.asList(child), evaluator, 1.0, 1L).means();
+      assertThat(finalist[0]).isEqualTo(first[1]);
+
+      backend.beginGeneration(1);
+      Double newChild = 3.0;
+      double[] second = backend.evaluate(Arrays.asList(newChild, elite), evaluator, 1.0, 1L).means();
+      assertThat(second[1]).isEqualTo(first[0]);
+
+      List<BroadcastStatistics> statistics = backend.getBroadcastStatistics();
+      assertThat(statistics).hasSize(2);
+      assertThat(statistics.get(0).getBroadcastCount()).isEqualTo(1);
+      assertThat(statistics.get(0).getCandidatesReused()).isEqualTo(1);
+      assertThat(statistics.get(1).getBroadcastCount()).isEqualTo(1);
+      assertThat(statistics.get(1).getCandidatesShipped()).isEqualTo(1);
+      assertThat(statistics.get(1).getCandidatesReused()).isEqualTo(1);
+
+      backend.release();
+   }
+}
@@ -0,0 +1,107 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class EvaluationEngineUnitTest {
+
+   @Test
+   public void test_bounded_evaluation_cuts_off_hopeless_candidates() {
+      List<ObservationBlock> partitions = new ArrayList<>();
+      for(int partition = 0; partition < 4; ++partition) {
+         List<BasicObservation> rows = new ArrayList<>();
+         for(int i=0; i < 250; ++i) {
+            BasicObservation observation = new BasicObservation(1, 1);
+            double x = (partition * 250 + i) * 0.01;
+            observation.setInput(0, x);
+            observation.setOutput(0, 2 * x);
+            rows.add(observation);
+         }
+         partitions.add(ObservationBlock.pack(rows));
+      }
+
+      EvaluationEngine engine = new EvaluationEngine();
+      engine.setBackend(new LocalEvaluationBackend(partitions));
+
+      List<Double> weights = Arrays.asList(2.1, 1.9, 10.0);
+      ObservationCostEvaluator<Double> evaluator = (weight, observation) -> Math.pow(weight * observation.getInput(0) - observation.getOutput(0), 2.0);
+
+      double[] exactCosts = engine.evaluate(weights, evaluator);
+      double threshold = Math.max(exactCosts[0], exactCosts[1]) * 2;
+      CostEstimates estimates = engine.evaluate(weights, evaluator, threshold);
+
+      assertThat(estimates.isExact(0)).isTrue();
+      assertThat(estimates.isExact(1)).isTrue();
+      assertThat(estimates.getCost(0)).isEqualTo(exactCosts[0]);
+      assertThat(estimates.getCost(1)).isEqualTo(exactCosts[1]);
+
+      assertThat(estimates.isLowerBound(2)).isTrue();
+      assertThat(estimates.getCost(2)).isGreaterThanOrEqualTo(threshold).isLessThanOrEqualTo(exactCosts[2]);
+      assertThat(engine.getStatistics().getLowerBoundCount()).isEqualTo(1);
+      assertThat(engine.getStatistics().getSavedRowEvaluations()).isEqualTo(750);
+   }
+
+   @Test
+   public void test_cost_aware_scheduling_keeps_the_costs() {
+      List<ObservationBlock> partitions = new ArrayList<>();
+      for(int partition = 0; partition < 2; ++partition) {
+         List<BasicObservation> rows = new ArrayList<>();
+         for(int i=0; i < 300; ++i) {
+            BasicObservation observation = new BasicObservation(1, 1);
+            double x = (partition * 300 + i) * 0.01;
+            observation.setInput(0, x);
+            observation.setOutput(0, Math.sin(x));
+            rows.add(observation);
+         }
+         partitions.add(ObservationBlock.pack(rows));
+      }
+
+      EvaluationEngine engine = new EvaluationEngine();
+      engine.setBackend(new LocalEvaluationBackend(partitions) {
+         @Override
+         public int slotCount() {
+            return 8;
+         }
+      });
+
+      List<Double> weights = Arrays.asList(0.1, 0.5, 1.0, 2.0, 3.0, 0.2);
+      double[] sizes = { 1, 40, 3, 9, 2, 25 };
+      ObservationCostEvaluator<Double> evaluator = (weight, observation) -> Math.pow(weight * observation.getInput(0) - observation.getOutput(0), 2.0);
+      ObjectiveEvaluator<Double> objectives = ObjectiveEvaluator.ofPredictions((weight, observation) -> observation.setPredictedOutput(0, weight * observation.getInput(0)),
+              Arrays.asList(observation -> Math.abs(observation.getPredictedOutput(0) - observation.getOutput(0)), observation -> observation.getPredictedOutput(0)));
+
+      double[] expected = engine.evaluate(weights, evaluator);
+      double[][] expectedObjectives = engine.evaluateObjectives(weights, objectives, false);
+
+      engine.setCostAwareScheduling(true);
+      for(int run = 0; run < 3; ++run) {
+         assertThat(engine.evaluate(weights, evaluator, Double.POSITIVE_INFINITY, sizes).getCosts()).containsExactly(expected);
+         double[][] values = engine.evaluateObjectives(weights, objectives, false, sizes);
+         for(int i=0; i < weights.size(); ++i) {
+            assertThat(values[i]).containsExactly(expectedObjectives[i]);
+         }
+      }
+      assertThat(engine.getWorkUnitScheduler().getTaskCount()).isGreaterThan(0);
+   }
+
+   @Test
+   public void test_fitness_cache_keeps_only_exact_costs() {
+      FitnessCache<String> cache = new FitnessCache<>();
+      List<String> candidates = Arrays.asList("a", "b");
+
+      CostEstimates estimates = cache.estimate(candidates, candidates, misses -> new CostEstimates(new double[] { 1.0, 5.0 }, new boolean[] { true, false }));
+
+      assertThat(estimates.isLowerBound(1)).isTrue();
+      assertThat(cache.get("a")).isEqualTo(1.0);
+      assertThat(cache.get("b")).isNull();
+   }
+}
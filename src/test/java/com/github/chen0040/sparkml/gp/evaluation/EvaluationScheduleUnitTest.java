@@ -0,0 +1,31 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class EvaluationScheduleUnitTest {
+
+   @Test
+   public void test_growing_fraction_reaches_full_data() {
+      EvaluationSchedule schedule = EvaluationSchedule.growing(0.2);
+
+      assertThat(schedule.fractionAt(0, 10)).isEqualTo(0.2);
+      assertThat(schedule.fractionAt(5, 10)).isEqualTo(0.6);
+      assertThat(schedule.fractionAt(10, 10)).isEqualTo(1.0);
+      assertThat(schedule.cacheContext(10, 10)).isEmpty();
+      assertThat(schedule.cacheContext(0, 10)).isNotEqualTo(schedule.cacheContext(1, 10));
+   }
+
+   @Test
+   public void test_racing_selects_top_ranked_and_near_best() {
+      EvaluationSchedule schedule = EvaluationSchedule.racing(0.1, 0.25);
+
+      double[] sampleCosts = new double[] { 5.0, 1.0, 3.0, 2.05, 4.0, 6.0, 7.0, 8.0 };
+
+      assertThat(schedule.selectPromising(sampleCosts, Double.POSITIVE_INFINITY)).containsExactly(1, 3);
+      assertThat(schedule.selectPromising(sampleCosts, 2.9)).containsExactly(1, 2, 3);
+   }
+}
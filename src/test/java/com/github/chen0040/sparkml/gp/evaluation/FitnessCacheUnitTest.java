@@ -0,0 +1,43 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class FitnessCacheUnitTest {
+
+   @Test
+   public void test_evicts_least_recently_used() {
+      FitnessCache<String> cache = new FitnessCache<>(2);
+      cache.put("a", 1.0);
+      cache.put("b", 2.0);
+      cache.get("a");
+      cache.put("c", 3.0);
+
+      assertThat(cache.size()).isEqualTo(2);
+      assertThat(cache.get("b")).isNull();
+      assertThat(cache.get("a")).isEqualTo(1.0);
+      assertThat(cache.get("c")).isEqualTo(3.0);
+   }
+
+   @Test
+   public void test_batch_evaluates_distinct_misses_once() {
+      FitnessCache<String> cache = new FitnessCache<>(10);
+      cache.put("a", 1.0);
+
+      List<String> candidates = Arrays.asList("a", "b", "c", "b");
+      double[] costs = cache.evaluate(candidates, candidates, misses -> {
+         assertThat(misses).containsExactly("b", "c");
+         return new double[] { 2.0, 3.0 };
+      });
+
+      assertThat(costs).containsExactly(1.0, 2.0, 3.0, 2.0);
+      assertThat(cache.getHitCount()).isEqualTo(1);
+      assertThat(cache.getMissCount()).isEqualTo(3);
+   }
+}
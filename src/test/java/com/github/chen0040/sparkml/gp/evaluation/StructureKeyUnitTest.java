@@ -0,0 +1,42 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class StructureKeyUnitTest {
+
+   private static StructureKey.Builder node(String symbol, double value) {
+      return new StructureKey.Builder().symbol(symbol).code(0).constant(value);
+   }
+
+   @Test
+   public void test_equal_forms_are_equal_keys() {
+      StructureKey a = new StructureKey.Builder().code(2).append(node("x", 1.0)).append(node("y", 2.0)).build("");
+      StructureKey b = new StructureKey.Builder().code(2).append(node("x", 1.0)).append(node("y", 2.0)).build("");
+
+      assertThat(a).isEqualTo(b);
+      assertThat(a.getHash()).isEqualTo(b.getHash());
+      assertThat(a.hashCode()).isEqualTo(b.hashCode());
+   }
+
+   @Test
+   public void test_forms_contexts_and_symbols_tell_keys_apart() {
+      StructureKey key = new StructureKey.Builder().code(2).append(node("x", 1.0)).append(node("y", 2.0)).build("");
+
+      assertThat(new StructureKey.Builder().code(2).append(node("y", 2.0)).append(node("x", 1.0)).build("")).isNotEqualTo(key);
+      assertThat(new StructureKey.Builder().code(2).append(node("x", 1.0)).append(node("y", 2.5)).build("")).isNotEqualTo(key);
+      assertThat(new StructureKey.Builder().code(2).append(node("x", 1.0)).append(node("y", 2.0)).build("0.5@3")).isNotEqualTo(key);
+   }
+
+   @Test
+   public void test_keys_share_cached_costs() {
+      FitnessCache<StructureKey> cache = new FitnessCache<>();
+      cache.put(new StructureKey.Builder().append(node("x", 1.0)).build(""), 4.0);
+
+      assertThat(cache.get(node("x", 1.0).build(""))).isEqualTo(4.0);
+      assertThat(cache.get(node("x", -1.0).build(""))).isNull();
+   }
+}
@@ -0,0 +1,49 @@
+package com.github.chen0040.sparkml.gp.evaluation;
+
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+public class WorkUnitSchedulerUnitTest {
+
+   @Test
+   public void test_packs_the_costliest_candidates_first() {
+      List<int[]> units = WorkUnitScheduler.pack(new double[] { 5, 4, 3, 3, 3 }, 2);
+      assertThat(units).hasSize(2);
+      assertThat(units.get(0)).containsExactly(0, 3);
+      assertThat(units.get(1)).containsExactly(1, 2, 4);
+   }
+
+   @Test
+   public void test_splits_only_while_task_slots_are_free() {
+      WorkUnitScheduler scheduler = new WorkUnitScheduler();
+      double[] costs = scheduler.costs(null, 16);
+      assertThat(scheduler.unitCount(costs, 1000, 2, 8)).isEqualTo(4);
+      assertThat(scheduler.unitCount(costs, 1000, 8, 8)).isEqualTo(1);
+      assertThat(scheduler.unitCount(scheduler.costs(new double[] { 100, 1, 1, 1 }, 4), 1000, 1, 8)).isEqualTo(2);
+   }
+
+   @Test
+   public void test_learns_the_cost_model_from_task_times() {
+      WorkUnitScheduler scheduler = new WorkUnitScheduler();
+      double[] sizes = { 10, 200, 35, 80, 5, 120 };
+      int[] candidates = { 1, 3, 2, 4, 1, 2 };
+      long[] rows = { 100, 250, 400, 100, 300, 50 };
+      long[] nanos = new long[sizes.length];
+      for(int task = 0; task < sizes.length; ++task) {
+         nanos[task] = Math.round(rows[task] * (2.0 * sizes[task] + 50.0 * candidates[task]) + 1000.0);
+      }
+      scheduler.record(sizes, candidates, rows, nanos);
+
+      double[] coefficients = scheduler.getCoefficients();
+      assertThat(coefficients[0]).isCloseTo(2.0, within(1e-3));
+      assertThat(coefficients[1]).isCloseTo(50.0, within(1e-1));
+      assertThat(coefficients[2]).isCloseTo(1000.0, within(50.0));
+      assertThat(scheduler.getTaskCount()).isEqualTo(6);
+   }
+}
@@ -0,0 +1,129 @@
+package com.github.chen0040.sparkml.gp.evolution;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.metrics.GenerationTracker;
+import com.github.chen0040.sparkml.gp.metrics.WorkCounters;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class GenerationBatchUnitTest {
+
+   @Test
+   public void test_immigrants_compete_with_the_costs_of_their_destination() {
+      FakeGP manager = new FakeGP();
+      Candidate first = new Candidate(1, 1);
+      Candidate second = new Candidate(2, 2);
+      List<Candidate> members = new ArrayList<>(Arrays.asList(first, second, new Candidate(3, 3)));
+      // both came with a cost of 0 from their source, but only the first is better than the worst member here
+      Candidate good = new Candidate(0, 0.5);
+      Candidate bad = new Candidate(0, 7);
+
+      new GenerationBatch<>(manager).immigrate(members, 4, Arrays.asList(good, bad));
+
+      assertThat(manager.evaluations).isEqualTo(1);
+      assertThat(good.cost).isEqualTo(0.5);
+      assertThat(bad.cost).isEqualTo(7);
+      assertThat(members).containsExactly(first, second, good);
+      assertThat(first.cost).isEqualTo(1);
+   }
+
+   @Test
+   public void test_offspring_are_evaluated_together_and_nan_costs_never_get_in() {
+      FakeGP manager = new FakeGP();
+      List<Candidate> members = new ArrayList<>();
+      GenerationBatch<Candidate> batch = new GenerationBatch<>(manager);
+      batch.step(members, 0, true, () -> {
+         for(int i=0; i < 4; ++i) {
+            Candidate member = new Candidate(0, 10 + i);
+            member.cost = manager.evaluateCost(member);
+            members.add(member);
+         }
+      });
+      assertThat(manager.evaluations).isEqualTo(1);
+
+      batch.step(members, 1, false, () -> {
+         for(double value : new double[] { 5, 20, Double.NaN, 11 }) {
+            Candidate child = new Candidate(0, value);
+            child.cost = manager.evaluateCost(child);
+            members.set(3, child);
+         }
+      });
+
+      assertThat(manager.evaluations).isEqualTo(2);
+      assertThat(members).extracting(member -> member.cost).containsExactly(10.0, 11.0, 11.0, 5.0);
+      assertThat(batch.globalBest(null).cost).isEqualTo(5.0);
+   }
+
+   private static class Candidate {
+      private double cost;
+      private final double value;
+
+      Candidate(double cost, double value) {
+         this.cost = cost;
+         this.value = value;
+      }
+   }
+
+   // evaluates a candidate to its value
+   private static class FakeGP implements SparkGP<Candidate> {
+      private List<Candidate> offspring;
+      private int evaluations = 0;
+
+      double evaluateCost(Candidate candidate) {
+         if(offspring != null) {
+            offspring.add(candidate);
+            return Double.POSITIVE_INFINITY;
+         }
+         return candidate.value;
+      }
+
+      @Override public SparkPopulation<Candidate> newPopulation() { return null; }
+      @Override public int getMaxGeneration() { return 10; }
+      @Override public int getDisplayEvery() { return 0; }
+      @Override public void setObservationRdd(JavaRDD<BasicObservation> observationRdd) { }
+      @Override public void setLocalObservations(List<BasicObservation> observations) { }
+      @Override public void setLocalObservationBlocks(List<ObservationBlock> blocks, double[] weights) { }
+      @Override public void setObservationBlockRdd(JavaRDD<ObservationBlock> observationBlockRdd, double[] partitionWeights) { }
+      @Override public EvaluationBackendType getEvaluationBackend() { return EvaluationBackendType.Local; }
+      @Override public long getLocalRowThreshold() { return 0; }
+      @Override public StorageLevel getStorageLevel() { return StorageLevel.MEMORY_ONLY(); }
+      @Override public SparkGP<Candidate> fork() { return this; }
+      @Override public void reseed(long seed) { }
+      @Override public boolean isBatchEvaluation() { return true; }
+      @Override public boolean isMultiObjective() { return false; }
+      @Override public void beginGeneration(int generation) { }
+      @Override public void setSurvivalThreshold(double survivalThreshold) { }
+      @Override public void prefetchCosts(List<Candidate> candidates) { }
+      @Override public void rankObjectives(List<Candidate> members, List<Candidate> candidates) { }
+      @Override public void collectOffspring(List<Candidate> offspring) { this.offspring = offspring; }
+      @Override public CompletableFuture<double[]> evaluateCandidatesAsync(List<Candidate> members, List<Candidate> candidates) { return CompletableFuture.completedFuture(evaluateCandidates(members, candidates)); }
+      @Override public double costOf(Candidate candidate) { return candidate.cost; }
+      @Override public void assignCost(Candidate candidate, double cost) { candidate.cost = cost; }
+      @Override public Candidate copyOf(Candidate candidate) { return new Candidate(candidate.cost, candidate.value); }
+      @Override public int sizeOf(Candidate candidate) { return 1; }
+      @Override public WorkCounters getWorkCounters() { return WorkCounters.none(); }
+      @Override public GenerationTracker newGenerationTracker() { return null; }
+
+      @Override
+      public double[] evaluateCandidates(List<Candidate> members, List<Candidate> candidates) {
+         evaluations++;
+         double[] costs = new double[candidates.size()];
+         for(int i=0; i < costs.length; ++i) {
+            costs[i] = candidates.get(i).value;
+         }
+         return costs;
+      }
+   }
+}
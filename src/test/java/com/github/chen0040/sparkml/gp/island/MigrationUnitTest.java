@@ -0,0 +1,41 @@
+package com.github.chen0040.sparkml.gp.island;
+
+
+import com.github.chen0040.sparkml.gp.enums.MigrationTopology;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class MigrationUnitTest {
+
+   @Test
+   public void test_ring_destinations() {
+      assertThat(Migration.destinations(MigrationTopology.Ring, 3, new Random(1))).containsExactly(1, 2, 0);
+   }
+
+   @Test
+   public void test_random_destinations_never_send_to_self() {
+      int[] destinations = Migration.destinations(MigrationTopology.Random, 5, new Random(1));
+      for(int i=0; i < destinations.length; ++i) {
+         assertThat(destinations[i]).isNotEqualTo(i).isBetween(0, 4);
+      }
+   }
+
+   @Test
+   public void test_exchange_replaces_worst_with_best_of_source() {
+      List<List<Double>> populations = new ArrayList<>();
+      populations.add(new ArrayList<>(Arrays.asList(1.0, 5.0, 3.0)));
+      populations.add(new ArrayList<>(Arrays.asList(4.0, 9.0, 8.0)));
+
+      Migration.exchange(populations, new int[] { 1, 0 }, 2, cost -> cost, cost -> cost);
+
+      assertThat(populations.get(1)).containsExactlyInAnyOrder(4.0, 1.0, 3.0);
+      assertThat(populations.get(0)).containsExactlyInAnyOrder(1.0, 4.0, 3.0);
+   }
+}
@@ -15,6 +15,18 @@ import com.github.chen0040.gp.services.Tutorials;
 import com.github.chen0040.gp.utils.CollectionUtils;
 import com.github.chen0040.sparkml.commons.SparkContextFactory;
 import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.data.ObservationBlock;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
+import com.github.chen0040.sparkml.gp.enums.MigrationTopology;
+import com.github.chen0040.sparkml.gp.enums.WindowType;
+import com.github.chen0040.sparkml.gp.island.IslandModel;
+import com.github.chen0040.sparkml.gp.island.SteadyStateModel;
+import com.github.chen0040.sparkml.gp.metrics.GenerationEvent;
+import com.github.chen0040.sparkml.gp.metrics.JsonLinesGenerationSink;
+import com.github.chen0040.sparkml.gp.metrics.MetricsRegistry;
+import com.github.chen0040.sparkml.gp.multiobjective.NonDominatedSorting;
+import com.github.chen0040.sparkml.gp.scoring.Prediction;
+import com.github.chen0040.sparkml.gp.utils.JavaSerialization;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.Function;
 import org.slf4j.Logger;
@@ -22,9 +34,19 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 import scala.Tuple2;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
 
 /**
  * Created by xschen on 7/5/2017.
@@ -171,6 +193,370 @@ public class MexicanHatUnitTest {
 
    }
 
+   @Test
+   public void test_symbolic_regression_per_program_evaluation() {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setBatchEvaluation(false);
+
+      Program program = lgp.fit(context.parallelize(trainingData));
+
+      // a fresh manager measures the cost on the default batch path, without the fitness cache of the fit
+      SparkLGP batched = createLGP();
+      batched.setObservationRdd(context.parallelize(trainingData));
+      assertThat(batched.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      test(program, testingData, silent);
+
+   }
+
+   @Test
+   public void test_symbolic_regression_compiled_evaluation() {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      lgp.setCompiledEvaluation(true);
+
+      Program program = lgp.fit(context.parallelize(trainingData));
+
+      // a fresh manager measures the cost with the interpreter, without the fitness cache of the fit
+      SparkLGP interpreted = createLGP();
+      interpreted.setObservationRdd(context.parallelize(trainingData));
+      assertThat(interpreted.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      test(program, testingData, silent);
+
+   }
+
+   @Test
+   public void test_symbolic_regression_generation_events() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setMaxGeneration(5);
+      List<GenerationEvent> events = new ArrayList<>();
+      lgp.addGenerationListener(events::add);
+      MetricsRegistry registry = new MetricsRegistry();
+      lgp.addGenerationListener(registry);
+
+      lgp.fit(context.parallelize(data));
+
+      assertThat(events).hasSize(6);
+      assertThat(events.get(0).getGeneration()).isEqualTo(0);
+      assertThat(events.get(0).getRowsScanned()).isGreaterThan(0);
+      assertThat(events.get(5).getGlobalBestCost()).isLessThanOrEqualTo(events.get(0).getGlobalBestCost());
+      for(GenerationEvent event : events) {
+         // the offspring of a generation are evaluated together, apart from those found in the fitness cache
+         assertThat(event.getEvaluationCount()).isLessThanOrEqualTo(1);
+      }
+      assertThat(registry.counter("gp.generations").getCount()).isEqualTo(6);
+      logger.info("{}", JsonLinesGenerationSink.toJson(events.get(5)));
+   }
+
+   @Test
+   public void test_islands_start_from_different_populations() {
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      SparkLGP lgp = createLGP();
+      byte[] template = JavaSerialization.serialize(lgp);
+
+      // each island initializes its own deserialized copy of the same manager, as the tasks of fit() do
+      List<List<String>> initialMembers = new ArrayList<>();
+      for(int index : new int[] { 0, 1, 0 }) {
+         IslandModel.Island<Program> island = new IslandModel.Island<>(index);
+         island.evolve(JavaSerialization.<SparkLGP>deserialize(template), data, 0, 42L);
+         initialMembers.add(island.getMembers().stream().map(Program::toString).collect(Collectors.toList()));
+      }
+
+      assertThat(initialMembers.get(0)).isNotEqualTo(initialMembers.get(1));
+      assertThat(initialMembers.get(0)).isEqualTo(initialMembers.get(2));
+   }
+
+   @Test
+   public void test_symbolic_regression_island_model() {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGPIslandModel islandModel = new SparkLGPIslandModel(createLGP());
+      islandModel.setIslandCount(2);
+      islandModel.setMigrationInterval(5);
+      islandModel.setMigrationTopology(MigrationTopology.Random);
+      List<GenerationEvent> events = new ArrayList<>();
+      islandModel.getManager().addGenerationListener(events::add);
+
+      Program program = islandModel.fit(context.parallelize(trainingData));
+
+      assertThat(islandModel.getIslands()).hasSize(2);
+      assertThat(events).extracting(GenerationEvent::getGeneration).containsExactly(5, 10, 15, 20, 25, 30);
+      assertThat(events.get(5).getGlobalBestCost()).isEqualTo(program.getCost());
+      // the islands evaluate through their own copies of the manager, whose work is reported with every round
+      for(GenerationEvent event : events) {
+         assertThat(event.getEvaluationCount()).isGreaterThan(0);
+         assertThat(event.getRowsScanned()).isGreaterThan(0);
+      }
+      test(program, testingData, silent);
+
+   }
+
+   @Test
+   public void test_symbolic_regression_checkpoint_resume() throws IOException {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      File checkpoint = File.createTempFile("lgp", ".checkpoint");
+      checkpoint.deleteOnExit();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setMaxGeneration(6);
+      // the same manager in the same random state, i.e. the same seed
+      SparkLGP interrupted = JavaSerialization.deserialize(JavaSerialization.serialize(lgp));
+
+      Program uninterruptedProgram = lgp.fit(context.parallelize(data));
+
+      interrupted.setCheckpointEvery(3);
+      interrupted.setCheckpointPath(checkpoint.getAbsolutePath());
+      interrupted.addGenerationListener(event -> {
+         if(event.getGeneration() == 4) {
+            throw new IllegalStateException("interrupted");
+         }
+      });
+      assertThatThrownBy(() -> interrupted.fit(context.parallelize(data))).hasMessage("interrupted");
+
+      // the run resumed from the checkpoint of generation 3 ends where the uninterrupted run ended
+      SparkLGP resumed = SparkLGP.resume(checkpoint.getAbsolutePath());
+      resumed.setCheckpointEvery(0);
+      Program resumedProgram = resumed.fit(context.parallelize(data));
+
+      assertThat(resumedProgram.getCost()).isEqualTo(uninterruptedProgram.getCost());
+      assertThat(resumedProgram.toString()).isEqualTo(uninterruptedProgram.toString());
+   }
+
+   @Test
+   public void test_symbolic_regression_transform() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setMaxGeneration(5);
+      Program program = lgp.fit(context.parallelize(trainingData));
+
+      List<Prediction> predictions = lgp.transform(program, context.parallelize(testingData, 3), true).collect();
+
+      assertThat(predictions).hasSize(testingData.size());
+      for(int i=0; i < testingData.size(); ++i) {
+         BasicObservation observation = testingData.get(i);
+         program.execute(observation);
+         assertThat(predictions.get(i).getOutput(0)).isEqualTo(observation.getPredictedOutput(0));
+         assertThat(predictions.get(i).getCost()).isEqualTo(Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      }
+   }
+
+   @Test
+   public void test_symbolic_regression_multi_objective() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setMaxGeneration(5);
+      lgp.setObjectives(
+              observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0),
+              observation -> Math.abs(observation.getOutput(0) - observation.getPredictedOutput(0)) > 0.1 ? 1.0 : 0.0);
+      lgp.setTimeObjective(true);
+
+      Program program = lgp.fit(context.parallelize(data));
+
+      List<Program> front = lgp.getParetoFront();
+      assertThat(front).isNotEmpty();
+      assertThat(front.get(0)).isSameAs(program);
+      for(Program a : front) {
+         assertThat(lgp.getObjectiveValues(a)).hasSize(4);
+         for(Program b : front) {
+            assertThat(NonDominatedSorting.dominates(lgp.getObjectiveValues(a), lgp.getObjectiveValues(b))).isFalse();
+         }
+      }
+   }
+
+   @Test
+   public void test_symbolic_regression_streaming() {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      List<List<BasicObservation>> batches = new ArrayList<>();
+      for(int i=0; i < trainingData.size(); i += 50) {
+         batches.add(trainingData.subList(i, Math.min(trainingData.size(), i + 50)));
+      }
+
+      SparkLGP lgp = createLGP();
+      List<GenerationEvent> events = new ArrayList<>();
+      lgp.addGenerationListener(events::add);
+      SparkLGPStreamingModel streamingModel = new SparkLGPStreamingModel(lgp);
+      streamingModel.setGenerationsPerBatch(2);
+      streamingModel.getWindow().setType(WindowType.Decayed);
+      streamingModel.getWindow().setMaxBatchCount(4);
+
+      Program program = streamingModel.fit(batches.iterator());
+
+      assertThat(streamingModel.getWindow().batchCount()).isEqualTo(Math.min(4, batches.size()));
+      assertThat(streamingModel.getBestProgram()).isSameAs(program);
+      assertThat(events).hasSize(batches.size());
+      assertThat(events.get(events.size() - 1).getGeneration()).isEqualTo(2 * batches.size());
+      assertThat(events.get(events.size() - 1).getGlobalBestCost()).isEqualTo(program.getCost());
+      test(program, testingData, silent);
+
+   }
+
+   @Test
+   public void test_symbolic_regression_streaming_bounded_evaluation() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+
+      SparkLGP lgp = createLGP();
+      lgp.setBoundedEvaluation(true);
+      SparkLGPStreamingModel streamingModel = new SparkLGPStreamingModel(lgp);
+      streamingModel.setGenerationsPerBatch(1);
+      streamingModel.getWindow().setMaxBatchCount(2);
+
+      for(int i=0; i < Math.min(data.size(), 250); i += 50) {
+         streamingModel.update(data.subList(i, Math.min(data.size(), i + 50)));
+
+         // the members re-scored on the new window, and the offspring which beat them, carry exact costs on the window
+         List<Program> members = streamingModel.getPopulation().getMembers();
+         SparkLGP exact = createLGP();
+         exact.setLocalObservationBlocks(streamingModel.getWindow().getBatches(), streamingModel.getWindow().weights());
+         double[] costs = exact.evaluateCosts(members);
+         for(int j=0; j < members.size(); ++j) {
+            if(Double.isFinite(costs[j])) {
+               assertThat(members.get(j).getCost()).isCloseTo(costs[j], within(1e-9));
+            } else {
+               assertThat(members.get(j).getCost()).isEqualTo(costs[j]);
+            }
+         }
+      }
+   }
+
+   @Test
+   public void test_symbolic_regression_streaming_cached_window() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+
+      List<List<BasicObservation>> batches = new ArrayList<>();
+      for(int i=0; i < data.size(); i += 50) {
+         batches.add(data.subList(i, Math.min(data.size(), i + 50)));
+      }
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setEvaluationBackend(EvaluationBackendType.Spark);
+      SparkLGPStreamingModel streamingModel = new SparkLGPStreamingModel(lgp);
+      streamingModel.setGenerationsPerBatch(2);
+      streamingModel.getWindow().setType(WindowType.Decayed);
+      streamingModel.getWindow().setMaxBatchCount(4);
+
+      Program program = null;
+      for(List<BasicObservation> batch : batches) {
+         program = streamingModel.update(context.parallelize(batch, 2));
+      }
+
+      assertThat(streamingModel.getWindow().isDistributed()).isTrue();
+      assertThat(streamingModel.getWindow().batchCount()).isEqualTo(Math.min(4, batches.size()));
+      assertThat(streamingModel.getWindow().blockRdd().partitions()).hasSize(2 * streamingModel.getWindow().batchCount());
+
+      // the weighted cost over the cached window matches the weighted cost over the same batches on the driver
+      List<ObservationBlock> blocks = new ArrayList<>();
+      for(List<BasicObservation> batch : batches.subList(batches.size() - streamingModel.getWindow().batchCount(), batches.size())) {
+         blocks.add(ObservationBlock.pack(batch));
+      }
+      SparkLGP local = createLGP();
+      local.setLocalObservationBlocks(blocks, streamingModel.getWindow().weights());
+      assertThat(local.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      streamingModel.getWindow().clear();
+   }
+
+   @Test
+   public void test_symbolic_regression_steady_state() throws Exception {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setMaxGeneration(10);
+      lgp.setEvaluationBackend(EvaluationBackendType.Spark);
+      lgp.setMaxInFlightJobs(2);
+      SparkLGPSteadyStateModel steadyStateModel = new SparkLGPSteadyStateModel(lgp);
+      steadyStateModel.setDemeCount(3);
+      List<GenerationEvent> events = new ArrayList<>();
+      lgp.addGenerationListener(events::add);
+
+      Program program = steadyStateModel.fit(context.parallelize(trainingData));
+
+      assertThat(steadyStateModel.getDemes()).hasSize(3);
+      assertThat(steadyStateModel.getGenerationCount()).isBetween(3L, 3L * 11);
+      assertThat((long) events.size()).isEqualTo(steadyStateModel.getGenerationCount());
+      assertThat(events.get(events.size() - 1).getGlobalBestCost()).isEqualTo(program.getCost());
+      // the demes evaluate through forks of the manager, whose work is reported with the events
+      assertThat(events.stream().mapToLong(GenerationEvent::getEvaluationCount).sum()).isGreaterThan(0);
+      assertThat(events.stream().mapToLong(GenerationEvent::getRowsScanned).sum()).isGreaterThan(0);
+      test(program, testingData, silent);
+
+      List<Program> programs = new ArrayList<>();
+      for(SteadyStateModel.Deme<Program> deme : steadyStateModel.getDemes()) {
+         programs.addAll(deme.getPopulation().getMembers().subList(0, 2));
+      }
+      CompletableFuture<double[]> first = lgp.evaluateCostsAsync(programs.subList(0, 3));
+      CompletableFuture<double[]> second = lgp.evaluateCostsAsync(programs.subList(3, programs.size()));
+      double[] costs = lgp.evaluateCosts(programs);
+      assertThat(first.get()).containsExactly(Arrays.copyOfRange(costs, 0, 3));
+      assertThat(second.get()).containsExactly(Arrays.copyOfRange(costs, 3, costs.length));
+
+   }
+
    @Test
    public void test_symbolic_regression_pop_init_const_length() {
 
@@ -12,6 +12,7 @@ import com.github.chen0040.gp.lgp.program.operators.*;
 import com.github.chen0040.gp.utils.CollectionUtils;
 import com.github.chen0040.sparkml.commons.SparkContextFactory;
 import com.github.chen0040.sparkml.gp.SparkLGP;
+import com.github.chen0040.sparkml.gp.enums.EvaluationBackendType;
 import com.github.chen0040.sparkml.gp.utils.FileUtil;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.slf4j.Logger;
@@ -57,6 +58,28 @@ public class SpiralClassificationUnitTest {
       testMakeCopy(program);
    }
 
+   @Test
+   public void test_symbolic_classification_columnar() throws IOException {
+      List<BasicObservation> data = spiral();
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.8);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkLGP lgp = createLGP();
+      lgp.setColumnarObservations(true);
+      lgp.setEvaluationBackend(EvaluationBackendType.Spark);
+      lgp.setObservationRdd(context.parallelize(trainingData));
+
+      Population pop = train(lgp);
+
+      Program program = pop.getGlobalBestProgram();
+      logger.info("global: {}", program);
+
+      test(program, testingData);
+   }
+
    private void testMakeCopy(Program program) {
       Program copy = program.makeCopy();
       assertThat(copy).isEqualTo(program);
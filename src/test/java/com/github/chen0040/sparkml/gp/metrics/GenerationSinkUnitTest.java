@@ -0,0 +1,44 @@
+package com.github.chen0040.sparkml.gp.metrics;
+
+
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class GenerationSinkUnitTest {
+
+   @Test
+   public void test_csv_writes_header_once() {
+      StringWriter writer = new StringWriter();
+      CsvGenerationSink sink = new CsvGenerationSink(writer);
+      sink.onGeneration(event(1, 4.5));
+      sink.onGeneration(event(2, 3.5));
+
+      String[] lines = writer.toString().split("\n");
+      assertThat(lines).hasSize(3);
+      assertThat(lines[0]).startsWith("generation,populationSize,");
+      assertThat(lines[2]).startsWith("2,100,");
+   }
+
+   @Test
+   public void test_json_lines_quotes_non_finite_costs() {
+      String json = JsonLinesGenerationSink.toJson(event(3, Double.POSITIVE_INFINITY));
+
+      assertThat(json).startsWith("{\"generation\":3,").endsWith("}");
+      assertThat(json).contains("\"bestCost\":\"Infinity\"");
+      assertThat(json).contains("\"generationMillis\":40,\"evaluationMillis\":30,\"variationMillis\":10");
+   }
+
+   private GenerationEvent event(int generation, double bestCost) {
+      GenerationEvent event = new GenerationEvent();
+      event.setGeneration(generation);
+      event.setPopulationSize(100);
+      event.setGenerationMillis(40);
+      event.setEvaluationMillis(30);
+      event.setBestCost(bestCost);
+      return event;
+   }
+}
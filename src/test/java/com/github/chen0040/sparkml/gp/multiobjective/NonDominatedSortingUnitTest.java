@@ -0,0 +1,59 @@
+package com.github.chen0040.sparkml.gp.multiobjective;
+
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class NonDominatedSortingUnitTest {
+
+   private static final double[][] objectives = {
+           { 1.0, 5.0 },
+           { 2.0, 3.0 },
+           { 4.0, 1.0 },
+           { 3.0, 4.0 },
+           { 5.0, 5.0 },
+           { 2.5, 2.5 }
+   };
+
+   @Test
+   public void test_ranks_pareto_fronts() {
+      assertThat(NonDominatedSorting.ranks(objectives)).containsExactly(0, 0, 0, 1, 2, 0);
+   }
+
+   @Test
+   public void test_selection_costs_follow_crowded_comparison() {
+      double[] costs = NonDominatedSorting.selectionCosts(objectives);
+
+      // the extremes of the first front are preferred to its interior, and every front to the fronts behind it
+      assertThat(costs[0]).isEqualTo(0.0);
+      assertThat(costs[2]).isEqualTo(0.0);
+      assertThat(costs[1]).isGreaterThan(0.0).isLessThan(1.0);
+      assertThat(costs[5]).isGreaterThan(0.0).isLessThan(1.0);
+      assertThat(costs[3]).isGreaterThanOrEqualTo(1.0).isLessThan(2.0);
+      assertThat(costs[4]).isGreaterThanOrEqualTo(2.0);
+   }
+
+   @Test
+   public void test_undefined_errors_rank_as_the_worst() {
+      double[][] undefined = {
+              { 1.0, 5.0 },
+              { Double.NaN, 1.0 },
+              { Double.NEGATIVE_INFINITY, 1.0 },
+              { Double.POSITIVE_INFINITY, 2.0 },
+              { 2.0, 3.0 }
+      };
+
+      assertThat(NonDominatedSorting.dominates(undefined[4], undefined[1])).isFalse();
+      assertThat(NonDominatedSorting.dominates(undefined[1], undefined[3])).isTrue();
+      assertThat(NonDominatedSorting.dominates(undefined[2], undefined[4])).isFalse();
+      assertThat(NonDominatedSorting.ranks(undefined)).containsExactly(0, 0, 0, 1, 0);
+
+      double[] costs = NonDominatedSorting.selectionCosts(undefined);
+      for(double cost : costs) {
+         assertThat(cost).isNotNaN();
+      }
+      assertThat(costs[3]).isGreaterThanOrEqualTo(1.0);
+   }
+}
@@ -0,0 +1,66 @@
+package com.github.chen0040.sparkml.gp.streaming;
+
+
+import com.github.chen0040.gp.commons.BasicObservation;
+import com.github.chen0040.sparkml.gp.enums.WindowType;
+import com.github.chen0040.sparkml.gp.evaluation.LocalEvaluationBackend;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+public class ObservationWindowUnitTest {
+
+   private static List<BasicObservation> batch(int size, double output) {
+      List<BasicObservation> rows = new ArrayList<>();
+      for(int i=0; i < size; ++i) {
+         BasicObservation observation = new BasicObservation(1, 1);
+         observation.setInput(0, i);
+         observation.setOutput(0, output);
+         rows.add(observation);
+      }
+      return rows;
+   }
+
+   @Test
+   public void test_sliding_window_is_bounded() {
+      ObservationWindow window = new ObservationWindow();
+      window.setMaxBatchCount(3);
+      window.setMaxRowCount(25);
+
+      for(int i=0; i < 5; ++i) {
+         window.add(batch(10, i));
+      }
+      window.add(batch(40, 5));
+
+      assertThat(window.getBatchesSeen()).isEqualTo(6);
+      assertThat(window.batchCount()).isEqualTo(1);
+      assertThat(window.rowCount()).isEqualTo(25);
+      assertThat(window.weights()).isNull();
+   }
+
+   @Test
+   public void test_decayed_window_weighs_recent_batches_more() {
+      ObservationWindow window = new ObservationWindow();
+      window.setType(WindowType.Decayed);
+      window.setDecay(0.5);
+      window.setMinWeight(0.2);
+
+      window.add(batch(10, 0.0));
+      window.add(batch(10, 1.0));
+      window.add(batch(10, 2.0));
+      window.add(batch(10, 3.0));
+
+      assertThat(window.weights()).containsExactly(0.25, 0.5, 1.0);
+
+      // mean of the outputs weighted 0.25, 0.5 and 1.0
+      LocalEvaluationBackend backend = new LocalEvaluationBackend(window.getBatches(), window.weights());
+      double cost = backend.evaluate(Collections.singletonList("output"), (candidate, observation) -> observation.getOutput(0), 1.0, 0L).means()[0];
+      assertThat(cost).isCloseTo((0.25 * 1.0 + 0.5 * 2.0 + 3.0) / 1.75, within(1e-12));
+   }
+}
@@ -15,14 +15,21 @@ import com.github.chen0040.gp.treegp.program.operators.*;
 import com.github.chen0040.gp.utils.CollectionUtils;
 import com.github.chen0040.sparkml.commons.SparkContextFactory;
 import com.github.chen0040.sparkml.gp.SparkTreeGP;
+import com.github.chen0040.sparkml.gp.compiler.SubtreeCacheStatistics;
+import com.github.chen0040.sparkml.gp.compiler.TreeGpCompiler;
+import com.github.chen0040.sparkml.gp.evaluation.EvaluationSchedule;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
 
 /**
  * Created by xschen on 7/5/2017.
@@ -53,6 +60,111 @@ public class MexicanHatUnitTest {
 
    }
    
+   @Test
+   public void test_symbolic_regression_observation_cost_evaluator() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkTreeGP tgp = createTreeGP();
+      tgp.setObservationCostEvaluator((program, observation) -> {
+         program.execute(observation);
+         return Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0);
+      });
+      tgp.setMaxGeneration(3);
+
+      Solution program = tgp.fit(context.parallelize(trainingData));
+
+      // the block evaluator scores the solutions as the per-observation evaluator of Tuple2 does
+      SparkTreeGP perObservation = createTreeGP();
+      perObservation.setObservationRdd(context.parallelize(trainingData));
+      assertThat(perObservation.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      test(program, testingData, true);
+   }
+
+   @Test
+   public void test_symbolic_regression_semantic_caching() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkTreeGP tgp = createCompilableTreeGP();
+      tgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      tgp.setCompiledEvaluation(true);
+      tgp.setColumnarObservations(true);
+      tgp.setSemanticCaching(true);
+
+      Solution program = tgp.fit(context.parallelize(trainingData));
+
+      assertThat(TreeGpCompiler.compile(program)).isNotNull();
+      long hits = 0;
+      for(SubtreeCacheStatistics statistics : tgp.getSemanticCacheStatistics()) {
+         hits += statistics.getHits();
+      }
+      assertThat(hits).isGreaterThan(0L);
+
+      // the solutions evaluated through the subtree cache cost what the interpreter makes them cost
+      SparkTreeGP interpreted = createCompilableTreeGP();
+      interpreted.setObservationRdd(context.parallelize(trainingData));
+      assertThat(interpreted.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      test(program, testingData, true);
+   }
+
+   @Test
+   public void test_symbolic_regression_fused_evaluation() {
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkTreeGP tgp = createCompilableTreeGP();
+      tgp.setPredictionCostEvaluator(observation -> Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0));
+      tgp.setCompiledEvaluation(true);
+      tgp.setFusedEvaluation(true);
+
+      Solution program = tgp.fit(context.parallelize(trainingData));
+
+      assertThat(TreeGpCompiler.compile(program)).isNotNull();
+
+      // the fused solutions cost what the interpreter makes them cost
+      SparkTreeGP interpreted = createCompilableTreeGP();
+      interpreted.setObservationRdd(context.parallelize(trainingData));
+      assertThat(interpreted.evaluateCosts(Collections.singletonList(program))[0]).isCloseTo(program.getCost(), within(1e-9));
+
+      test(program, testingData, true);
+   }
+
+   // Divide and Power have no opcode, so the solutions of this operator set compile
+   private SparkTreeGP createCompilableTreeGP() {
+      SparkTreeGP tgp = new SparkTreeGP();
+      tgp.getOperatorSet().addAll(new Plus(), new Minus(), new Multiply());
+      tgp.getOperatorSet().addIfLessThanOperator();
+      tgp.addConstants(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+      tgp.setVariableCount(2);
+      tgp.setPerObservationCostEvaluator(tuple2 -> {
+         Solution program = tuple2._1();
+         BasicObservation observation = tuple2._2();
+         program.execute(observation);
+         return Math.pow(observation.getOutput(0) - observation.getPredictedOutput(0), 2.0);
+      });
+      tgp.setPopulationSize(1000);
+      tgp.setMaxGeneration(3);
+      return tgp;
+   }
+
    private void test(Solution program, List<BasicObservation> testingData, boolean silent) {
       for(Observation observation : testingData) {
          program.execute(observation);
@@ -169,6 +281,29 @@ public class MexicanHatUnitTest {
 
 
 
+   @Test
+   public void test_symbolic_regression_growing_evaluation_schedule() {
+
+      boolean silent = true;
+
+      List<BasicObservation> data = Tutorials.mexican_hat().stream().map(s -> (BasicObservation)s).collect(Collectors.toList());
+      CollectionUtils.shuffle(data);
+      TupleTwo<List<BasicObservation>, List<BasicObservation>> split_data = CollectionUtils.split(data, 0.9);
+      List<BasicObservation> trainingData = split_data._1();
+      List<BasicObservation> testingData = split_data._2();
+
+      JavaSparkContext context = SparkContextFactory.createSparkContext("testing-1");
+      SparkTreeGP tgp = createTreeGP();
+      tgp.setEvaluationSchedule(EvaluationSchedule.growing(0.1));
+      tgp.setTargetCost(0.01);
+
+      Solution program = tgp.fit(context.parallelize(trainingData));
+      logger.info("time to target cost: {} ms", tgp.getTimeToTargetCost());
+
+      test(program, testingData, silent);
+
+   }
+
    @Test
    public void test_symbolic_regression_pop_init_ptc_1() {
 